@@ -0,0 +1,165 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * checks the existence of or deletes many blobs at once.
+ *
+ * The digests are grouped by the shard they are routed to, so only one request per shard
+ * is sent. The results are returned per digest in the order the digests were given.
+ */
+public class BlobBatchOperations extends AbstractComponent {
+
+    private static final Pattern DIGEST_PATTERN = Pattern.compile("^[0-9a-f]{40}$");
+
+    private final ClusterService clusterService;
+    private final TransportExistsBlobsAction existsBlobsAction;
+    private final TransportDeleteBlobsAction deleteBlobsAction;
+
+    @Inject
+    public BlobBatchOperations(Settings settings,
+                               ClusterService clusterService,
+                               TransportExistsBlobsAction existsBlobsAction,
+                               TransportDeleteBlobsAction deleteBlobsAction) {
+        super(settings);
+        this.clusterService = clusterService;
+        this.existsBlobsAction = existsBlobsAction;
+        this.deleteBlobsAction = deleteBlobsAction;
+    }
+
+    /**
+     * @param index the full name of the blob index
+     */
+    public ListenableFuture<Map<String, Boolean>> exists(String index, Collection<String> digests) {
+        Map<Integer, List<String>> shards = groupByShard(index, digests);
+        final BatchResult result = new BatchResult(digests, shards.size());
+        for (Map.Entry<Integer, List<String>> entry : shards.entrySet()) {
+            final List<String> shardDigests = entry.getValue();
+            existsBlobsAction.execute(new ExistsBlobsRequest(index, entry.getKey(), shardDigests),
+                new ActionListener<ExistsBlobsResponse>() {
+                    @Override
+                    public void onResponse(ExistsBlobsResponse response) {
+                        result.set(shardDigests, response.exists());
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        result.fail(e);
+                    }
+                });
+        }
+        return result.future();
+    }
+
+    /**
+     * @param index the full name of the blob index
+     */
+    public ListenableFuture<Map<String, Boolean>> delete(String index, Collection<String> digests) {
+        Map<Integer, List<String>> shards = groupByShard(index, digests);
+        final BatchResult result = new BatchResult(digests, shards.size());
+        for (final List<String> shardDigests : shards.values()) {
+            deleteBlobsAction.execute(new DeleteBlobsRequest(index, shardDigests),
+                new ActionListener<DeleteBlobsResponse>() {
+                    @Override
+                    public void onResponse(DeleteBlobsResponse response) {
+                        result.set(shardDigests, response.deleted());
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        result.fail(e);
+                    }
+                });
+        }
+        return result.future();
+    }
+
+    private Map<Integer, List<String>> groupByShard(String index, Collection<String> digests) {
+        ClusterState state = clusterService.state();
+        Map<Integer, List<String>> shards = new HashMap<>();
+        for (String digest : new LinkedHashSet<>(digests)) {
+            if (!DIGEST_PATTERN.matcher(digest).matches()) {
+                throw new ElasticsearchIllegalArgumentException("invalid digest: " + digest);
+            }
+            int shardId = clusterService.operationRouting()
+                .indexShards(state, index, null, null, digest).shardId().id();
+            List<String> shardDigests = shards.get(shardId);
+            if (shardDigests == null) {
+                shardDigests = new ArrayList<>();
+                shards.put(shardId, shardDigests);
+            }
+            shardDigests.add(digest);
+        }
+        return shards;
+    }
+
+    private static class BatchResult {
+
+        private final Map<String, Boolean> results;
+        private final AtomicInteger pendingShards;
+        private final SettableFuture<Map<String, Boolean>> future = SettableFuture.create();
+
+        BatchResult(Collection<String> digests, int shards) {
+            results = new LinkedHashMap<>(digests.size());
+            for (String digest : digests) {
+                results.put(digest, Boolean.FALSE);
+            }
+            pendingShards = new AtomicInteger(shards);
+            if (shards == 0) {
+                future.set(results);
+            }
+        }
+
+        void set(List<String> digests, boolean[] values) {
+            synchronized (results) {
+                for (int i = 0; i < values.length; i++) {
+                    results.put(digests.get(i), values[i]);
+                }
+            }
+            if (pendingShards.decrementAndGet() == 0) {
+                future.set(results);
+            }
+        }
+
+        void fail(Throwable e) {
+            future.setException(e);
+        }
+
+        ListenableFuture<Map<String, Boolean>> future() {
+            return future;
+        }
+    }
+}
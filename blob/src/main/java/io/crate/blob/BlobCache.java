@@ -0,0 +1,311 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.crate.blob.exceptions.DigestNotFoundException;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * node level cache used to serve blobs via http.
+ *
+ * Small blobs are kept in direct (off-heap) buffers up to a configured byte budget,
+ * larger blobs are served from a bounded set of open file channels. Blobs are content
+ * addressed, so both caches are keyed by digest only; callers must make sure the blob
+ * still exists in the requested table before using a cached entry.
+ */
+public class BlobCache extends AbstractComponent {
+
+    /**
+     * byte budget of the content cache, 0 disables it
+     */
+    public static final String SETTING_CACHE_SIZE = "blobs.cache.size";
+
+    /**
+     * blobs up to this size are kept in the content cache
+     */
+    public static final String SETTING_CACHE_MAX_BLOB_SIZE = "blobs.cache.max_blob_size";
+
+    /**
+     * maximum number of blob files which are kept open, 0 disables it
+     */
+    public static final String SETTING_CACHE_OPEN_FILES = "blobs.cache.open_files";
+
+    private final long maxBlobSize;
+    private final Cache<String, CachedContent> contents;
+    private final Cache<String, OpenFile> openFiles;
+
+    @Inject
+    public BlobCache(Settings settings) {
+        super(settings);
+        long size = settings.getAsBytesSize(SETTING_CACHE_SIZE, new ByteSizeValue(0)).bytes();
+        maxBlobSize = Math.min(size, settings.getAsBytesSize(SETTING_CACHE_MAX_BLOB_SIZE,
+            new ByteSizeValue(64, ByteSizeUnit.KB)).bytes());
+        int maxOpenFiles = settings.getAsInt(SETTING_CACHE_OPEN_FILES, 0);
+
+        if (size > 0) {
+            contents = CacheBuilder.newBuilder()
+                .maximumWeight(size)
+                .weigher(new Weigher<String, CachedContent>() {
+                    @Override
+                    public int weigh(String digest, CachedContent cached) {
+                        return cached.weight();
+                    }
+                })
+                .recordStats()
+                .build();
+        } else {
+            contents = null;
+        }
+        if (maxOpenFiles > 0) {
+            openFiles = CacheBuilder.newBuilder()
+                .maximumSize(maxOpenFiles)
+                .removalListener(new RemovalListener<String, OpenFile>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, OpenFile> notification) {
+                        notification.getValue().release();
+                    }
+                })
+                .recordStats()
+                .build();
+        } else {
+            openFiles = null;
+        }
+    }
+
+    /**
+     * @return the content of the blob as a read only buffer or null if the blob isn't
+     *         eligible for the content cache. A miss loads the content into the cache,
+     *         the file is only accessed on a miss.
+     */
+    @Nullable
+    public ChannelBuffer content(String digest, final File file) {
+        if (contents == null) {
+            return null;
+        }
+        CachedContent cached = get(contents, digest, new Callable<CachedContent>() {
+            @Override
+            public CachedContent call() throws Exception {
+                if (file.length() > maxBlobSize) {
+                    // remember that the blob is too large so its length isn't checked again
+                    return CachedContent.TOO_LARGE;
+                }
+                return new CachedContent(readContent(file));
+            }
+        });
+        return cached.content == null ? null : cached.content.duplicate();
+    }
+
+    /**
+     * opens the blob file or returns an already open one.
+     * The returned file must be {@link OpenFile#release() released} after it has been used.
+     */
+    public OpenFile openFile(final String digest, final File file) {
+        if (openFiles == null) {
+            return OpenFile.open(digest, file);
+        }
+        while (true) {
+            OpenFile openFile = get(openFiles, digest, new Callable<OpenFile>() {
+                @Override
+                public OpenFile call() throws Exception {
+                    return OpenFile.open(digest, file);
+                }
+            });
+            if (openFile.retain()) {
+                return openFile;
+            }
+            // evicted and closed concurrently, the next lookup opens it again
+        }
+    }
+
+    private static <T> T get(Cache<String, T> cache, String digest, Callable<T> loader) {
+        try {
+            return cache.get(digest, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof ElasticsearchException) {
+                throw (ElasticsearchException) e.getCause();
+            }
+            throw new ElasticsearchException("could not read blob " + digest, e.getCause());
+        }
+    }
+
+    private static ChannelBuffer readContent(File file) throws IOException {
+        RandomAccessFile raf;
+        try {
+            raf = new RandomAccessFile(file, "r");
+        } catch (FileNotFoundException e) {
+            throw new DigestNotFoundException(file.getName());
+        }
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    throw new EOFException(file.getName());
+                }
+            }
+            buffer.flip();
+            return ChannelBuffers.unmodifiableBuffer(ChannelBuffers.wrappedBuffer(buffer));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @return the number of requests which were served from one of the caches
+     */
+    public long hits() {
+        return (contents == null ? 0 : contents.stats().hitCount())
+            + (openFiles == null ? 0 : openFiles.stats().hitCount());
+    }
+
+    /**
+     * @return the number of requests which had to load the blob
+     */
+    public long misses() {
+        return (contents == null ? 0 : contents.stats().missCount())
+            + (openFiles == null ? 0 : openFiles.stats().missCount());
+    }
+
+    public double hitRatio() {
+        long hits = hits();
+        long requests = hits + misses();
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    /**
+     * @return the number of bytes held by the content cache
+     */
+    public long size() {
+        if (contents == null) {
+            return 0;
+        }
+        long size = 0;
+        for (CachedContent cached : contents.asMap().values()) {
+            if (cached.content != null) {
+                size += cached.content.capacity();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * an entry of the content cache, blobs which are too large for the
+     * content cache are kept without content
+     */
+    private static class CachedContent {
+
+        /**
+         * approximate heap usage of an entry without content
+         */
+        private static final int ENTRY_WEIGHT = 64;
+
+        private static final CachedContent TOO_LARGE = new CachedContent(null);
+
+        @Nullable
+        private final ChannelBuffer content;
+
+        private CachedContent(@Nullable ChannelBuffer content) {
+            this.content = content;
+        }
+
+        private int weight() {
+            return content == null ? ENTRY_WEIGHT : ENTRY_WEIGHT + content.capacity();
+        }
+    }
+
+    /**
+     * a reference counted open blob file, the file is closed once it has been
+     * evicted from the cache and all transfers using it have released it.
+     */
+    public static class OpenFile {
+
+        private final FileChannel channel;
+        private final long length;
+        private int refCount = 1;
+
+        private OpenFile(FileChannel channel, long length) {
+            this.channel = channel;
+            this.length = length;
+        }
+
+        static OpenFile open(String digest, File file) {
+            try {
+                RandomAccessFile raf = new RandomAccessFile(file, "r");
+                return new OpenFile(raf.getChannel(), raf.length());
+            } catch (FileNotFoundException e) {
+                throw new DigestNotFoundException(digest);
+            } catch (IOException e) {
+                throw new ElasticsearchException("could not open blob " + digest, e);
+            }
+        }
+
+        public FileChannel channel() {
+            return channel;
+        }
+
+        public long length() {
+            return length;
+        }
+
+        synchronized boolean retain() {
+            if (refCount == 0) {
+                return false;
+            }
+            refCount++;
+            return true;
+        }
+
+        public synchronized void release() {
+            if (--refCount == 0) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+}
@@ -35,6 +35,10 @@ import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BlobContainer {
 
@@ -56,8 +60,36 @@ public class BlobContainer {
     private final File baseDirectory;
     private final File tmpDirectory;
     private final File varDirectory;
+    private final BlobDigestIndex digestIndex = new BlobDigestIndex();
+
+    // a sub-folder is listed and loaded into the digest index under the lock of its prefix
+    private final Object[] prefixLocks = new Object[256];
+    private final AtomicBoolean[] indexedPrefixes = new AtomicBoolean[256];
+    private final AtomicInteger unindexedPrefixes = new AtomicInteger(256);
+
+    /**
+     * runs the tasks on the calling thread
+     */
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
 
     public BlobContainer(File baseDirectory) {
+        this(baseDirectory, SAME_THREAD);
+    }
+
+    /**
+     * @param indexExecutor the executor used to list the sub-folders when the digest index is built,
+     *                      the constructor doesn't wait for the index
+     */
+    public BlobContainer(File baseDirectory, Executor indexExecutor) {
+        for (int i = 0; i < prefixLocks.length; i++) {
+            prefixLocks[i] = new Object();
+            indexedPrefixes[i] = new AtomicBoolean(false);
+        }
         this.baseDirectory = baseDirectory;
         this.tmpDirectory = new File(baseDirectory, "tmp");
         this.varDirectory = new File(baseDirectory, "var");
@@ -65,6 +97,7 @@ public class BlobContainer {
         FileSystemUtils.mkdirs(this.tmpDirectory);
 
         createSubDirectories(this.varDirectory);
+        buildDigestIndex(indexExecutor);
     }
 
     /**
@@ -98,27 +131,111 @@ public class BlobContainer {
     }
 
     /**
-     * get all digests in a subfolder
-     * the digests are returned as byte[][] instead as String[] to save overhead in the BlobRecovery
+     * builds the digest index in the background by listing the sub-folders in parallel
+     * using at most 8 tasks of the given executor. Until a sub-folder is indexed the
+     * existence of its blobs is checked on the file system.
      *
      * incomplete files leftover from a previous recovery are deleted.
-     *
-     * @param prefix the subfolder for which to get the digests
-     * @return byte array containing the digests (digest = byte[20])
      */
-    public byte[][] cleanAndReturnDigests(byte prefix) {
-        int index = prefix & 0xFF;  // byte is signed and may be negative, convert to int to get correct index
-        String[] names = cleanDigests(subDirs[index].list(), index);
-        byte[][] digests = new byte[names.length][];
-        for(int i = 0; i < names.length; i ++){
+    private void buildDigestIndex(Executor executor) {
+        int tasks = Math.min(Runtime.getRuntime().availableProcessors(), 8);
+        final AtomicInteger nextIndex = new AtomicInteger();
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    int index;
+                    while ((index = nextIndex.getAndIncrement()) < subDirs.length) {
+                        try {
+                            ensureIndexed(index);
+                        } catch (Throwable t) {
+                            // the sub-folder is indexed again once its digests are requested
+                            logger.error("failed to index the blobs in {}", t, subDirs[index]);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * loads the digests of the given sub-folder into the digest index unless this has been done already
+     */
+    private void ensureIndexed(int index) {
+        synchronized (prefixLocks[index]) {
+            if (indexedPrefixes[index].get()) {
+                return;
+            }
+            indexSubDirectory(index);
+            indexedPrefixes[index].set(true);
+        }
+        if (unindexedPrefixes.decrementAndGet() == 0) {
+            logger.debug("indexed {} blobs in {}", digestIndex.count(), varDirectory);
+        }
+    }
+
+    /**
+     * @return true once the digests of all sub-folders have been loaded into the digest index
+     */
+    public boolean isIndexed() {
+        return unindexedPrefixes.get() == 0;
+    }
+
+    private void indexSubDirectory(int index) {
+        String[] names = subDirs[index].list();
+        if (names == null) {
+            return;
+        }
+        names = cleanDigests(names, index);
+        List<byte[]> digests = new ArrayList<>(names.length);
+        long totalSize = 0;
+        for (String name : names) {
+            byte[] digest;
             try {
-                digests[i] = Hex.decodeHex(names[i]);
+                digest = Hex.decodeHex(name);
             } catch (ElasticsearchIllegalStateException ex) {
-                logger.error("Can't convert string {} to byte array", names[i]);
-                throw ex;
+                logger.warn("Skipping {}/{}, the file name is not a digest", ex, subDirs[index], name);
+                continue;
             }
+            // blobs are always stored with their lower case digest, see getFile
+            if (digest.length != BlobDigestIndex.DIGEST_LENGTH || (digest[0] & 0xFF) != index
+                    || !name.equals(name.toLowerCase(Locale.ENGLISH))) {
+                logger.warn("Skipping {}/{}, the file name is not a digest of this folder", subDirs[index], name);
+                continue;
+            }
+            digests.add(digest);
+            totalSize += new File(subDirs[index], name).length();
         }
-        return digests;
+        digestIndex.load(PREFIXES[index], digests.toArray(new byte[digests.size()][]), totalSize);
+    }
+
+    /**
+     * get all digests in a subfolder
+     * the digests are returned as byte[][] instead as String[] to save overhead in the BlobRecovery.
+     * The subfolder is indexed right away if the background indexing hasn't reached it yet.
+     *
+     * @param prefix the subfolder for which to get the digests
+     * @return byte array containing the digests (digest = byte[20])
+     */
+    public byte[][] digests(byte prefix) {
+        ensureIndexed(prefix & 0xFF);
+        return digestIndex.digests(prefix);
+    }
+
+    /**
+     * @return the number of digests in the given subfolder
+     */
+    public int count(byte prefix) {
+        ensureIndexed(prefix & 0xFF);
+        return digestIndex.count(prefix);
+    }
+
+    /**
+     * @return checksum of all digests in the given subfolder, see {@link BlobDigestIndex#checksum(byte)}
+     */
+    public byte[] checksum(byte prefix) {
+        ensureIndexed(prefix & 0xFF);
+        return digestIndex.checksum(prefix);
     }
 
     /**
@@ -140,6 +257,51 @@ public class BlobContainer {
         return newNames.toArray(new String[newNames.size()]);
     }
 
+    /**
+     * adds a blob file which has been moved to its final location to the digest index
+     */
+    public void blobAdded(File file) {
+        byte[] digest = Hex.decodeHex(file.getName());
+        int index = digest[0] & 0xFF;
+        synchronized (prefixLocks[index]) {
+            // otherwise the file is picked up once the sub-folder is listed
+            if (indexedPrefixes[index].get()) {
+                digestIndex.add(digest, file.length());
+            }
+        }
+    }
+
+    public boolean delete(String digest) {
+        File file = getFile(digest);
+        long length = file.length();
+        if (file.delete()) {
+            byte[] digestBytes = Hex.decodeHex(digest);
+            int index = digestBytes[0] & 0xFF;
+            synchronized (prefixLocks[index]) {
+                if (indexedPrefixes[index].get()) {
+                    digestIndex.remove(digestBytes, length);
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of blobs in this container, only the blobs indexed so far
+     * are counted while the digest index is built, see {@link #isIndexed()}
+     */
+    public long count() {
+        return digestIndex.count();
+    }
+
+    /**
+     * @return the total size of all blobs in this container, see {@link #count()}
+     */
+    public long totalSize() {
+        return digestIndex.totalSize();
+    }
+
     public File getBaseDirectory() {
         return baseDirectory;
     }
@@ -157,7 +319,11 @@ public class BlobContainer {
     }
 
     public boolean exists(String digest) {
-        return getFile(digest).exists();
+        byte[] digestBytes = Hex.decodeHex(digest);
+        if (!indexedPrefixes[digestBytes[0] & 0xFF].get()) {
+            return getFile(digest).exists();
+        }
+        return digestIndex.contains(digestBytes);
     }
 
     public DigestBlob createBlob(String digest, UUID transferId) {
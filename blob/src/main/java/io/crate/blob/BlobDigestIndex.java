@@ -0,0 +1,264 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of the digests stored in a {@link BlobContainer}.
+ *
+ * The digests are kept per prefix (the first byte of the digest) in a sorted array
+ * of packed 20 byte digests, along with the number and the total size of all blobs.
+ * This allows existence checks, stats and recovery diffs without hitting the file system.
+ *
+ * Every prefix also maintains a checksum (the XOR of all its digests) so that two
+ * indices can find the prefixes which differ without exchanging the digests.
+ */
+public class BlobDigestIndex {
+
+    public static final int DIGEST_LENGTH = 20;
+
+    private static final Comparator<byte[]> DIGEST_ORDER = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] o1, byte[] o2) {
+            return BlobDigestIndex.compare(o1, o2);
+        }
+    };
+
+    private final Bucket[] buckets = new Bucket[256];
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalSize = new AtomicLong();
+
+    public BlobDigestIndex() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    private static class Bucket {
+
+        private byte[] digests = new byte[0];
+        private int size = 0;
+        private final byte[] checksum = new byte[DIGEST_LENGTH];
+
+        /**
+         * @return the index of the digest or <code>-(insertion point) - 1</code> if it's missing
+         */
+        private int indexOf(byte[] digest) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(mid, digest);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private int compare(int idx, byte[] digest) {
+            int offset = idx * DIGEST_LENGTH;
+            // the first byte is the prefix of the bucket and always equal
+            for (int i = 1; i < DIGEST_LENGTH; i++) {
+                int cmp = (digests[offset + i] & 0xFF) - (digest[i] & 0xFF);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        }
+
+        private void insert(int idx, byte[] digest) {
+            if ((size + 1) * DIGEST_LENGTH > digests.length) {
+                int newSize = Math.max(16, size + (size >> 1));
+                byte[] newDigests = new byte[newSize * DIGEST_LENGTH];
+                System.arraycopy(digests, 0, newDigests, 0, size * DIGEST_LENGTH);
+                digests = newDigests;
+            }
+            int offset = idx * DIGEST_LENGTH;
+            System.arraycopy(digests, offset, digests, offset + DIGEST_LENGTH, (size - idx) * DIGEST_LENGTH);
+            System.arraycopy(digest, 0, digests, offset, DIGEST_LENGTH);
+            size++;
+            updateChecksum(digests, offset);
+        }
+
+        /**
+         * replaces the content of the bucket with the given sorted and distinct digests
+         */
+        private void load(byte[][] sortedDigests) {
+            digests = new byte[sortedDigests.length * DIGEST_LENGTH];
+            Arrays.fill(checksum, (byte) 0);
+            for (int i = 0; i < sortedDigests.length; i++) {
+                System.arraycopy(sortedDigests[i], 0, digests, i * DIGEST_LENGTH, DIGEST_LENGTH);
+                updateChecksum(digests, i * DIGEST_LENGTH);
+            }
+            size = sortedDigests.length;
+        }
+
+        private void delete(int idx) {
+            int offset = idx * DIGEST_LENGTH;
+            updateChecksum(digests, offset);
+            System.arraycopy(digests, offset + DIGEST_LENGTH, digests, offset, (size - idx - 1) * DIGEST_LENGTH);
+            size--;
+        }
+
+        private void updateChecksum(byte[] source, int offset) {
+            for (int i = 0; i < DIGEST_LENGTH; i++) {
+                checksum[i] ^= source[offset + i];
+            }
+        }
+    }
+
+    private Bucket bucket(byte[] digest) {
+        assert digest.length == DIGEST_LENGTH : "invalid digest length";
+        return buckets[digest[0] & 0xFF];
+    }
+
+    public boolean contains(byte[] digest) {
+        Bucket bucket = bucket(digest);
+        synchronized (bucket) {
+            return bucket.indexOf(digest) >= 0;
+        }
+    }
+
+    /**
+     * @return false if the digest was already part of the index
+     */
+    public boolean add(byte[] digest, long size) {
+        Bucket bucket = bucket(digest);
+        synchronized (bucket) {
+            int idx = bucket.indexOf(digest);
+            if (idx >= 0) {
+                return false;
+            }
+            bucket.insert(-(idx + 1), digest);
+        }
+        count.incrementAndGet();
+        totalSize.addAndGet(size);
+        return true;
+    }
+
+    /**
+     * loads all digests of an empty prefix at once, used to build the index from the file system.
+     * The digests are sorted once instead of being inserted one by one.
+     *
+     * @param digests the distinct digests starting with the given prefix, the array is sorted in place
+     * @param totalSize the total size of the blobs of the digests
+     * @throws IllegalStateException if the prefix already contains digests
+     */
+    public void load(byte prefix, byte[][] digests, long totalSize) {
+        Arrays.sort(digests, DIGEST_ORDER);
+        Bucket bucket = buckets[prefix & 0xFF];
+        synchronized (bucket) {
+            if (bucket.size > 0) {
+                throw new IllegalStateException("digests can only be loaded into an empty prefix");
+            }
+            for (int i = 0; i < digests.length; i++) {
+                assert digests[i].length == DIGEST_LENGTH && digests[i][0] == prefix : "invalid digest";
+                assert i == 0 || compare(digests[i - 1], digests[i]) != 0 : "duplicate digest";
+            }
+            bucket.load(digests);
+        }
+        count.addAndGet(digests.length);
+        this.totalSize.addAndGet(totalSize);
+    }
+
+    /**
+     * @return false if the digest wasn't part of the index
+     */
+    public boolean remove(byte[] digest, long size) {
+        Bucket bucket = bucket(digest);
+        synchronized (bucket) {
+            int idx = bucket.indexOf(digest);
+            if (idx < 0) {
+                return false;
+            }
+            bucket.delete(idx);
+        }
+        count.decrementAndGet();
+        totalSize.addAndGet(-size);
+        return true;
+    }
+
+    /**
+     * @return the sorted digests starting with the given prefix
+     */
+    public byte[][] digests(byte prefix) {
+        Bucket bucket = buckets[prefix & 0xFF];
+        synchronized (bucket) {
+            byte[][] result = new byte[bucket.size][];
+            for (int i = 0; i < bucket.size; i++) {
+                result[i] = new byte[DIGEST_LENGTH];
+                System.arraycopy(bucket.digests, i * DIGEST_LENGTH, result[i], 0, DIGEST_LENGTH);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return the number of digests starting with the given prefix
+     */
+    public int count(byte prefix) {
+        Bucket bucket = buckets[prefix & 0xFF];
+        synchronized (bucket) {
+            return bucket.size;
+        }
+    }
+
+    /**
+     * @return the XOR of all digests starting with the given prefix
+     */
+    public byte[] checksum(byte prefix) {
+        Bucket bucket = buckets[prefix & 0xFF];
+        synchronized (bucket) {
+            return bucket.checksum.clone();
+        }
+    }
+
+    /**
+     * compares two digests by their unsigned bytes, the order the digests of a prefix are sorted in
+     */
+    public static int compare(byte[] digest, byte[] other) {
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            int cmp = (digest[i] & 0xFF) - (other[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long totalSize() {
+        return totalSize.get();
+    }
+}
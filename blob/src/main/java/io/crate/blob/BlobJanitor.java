@@ -0,0 +1,254 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.blob.v2.BlobIndices;
+import io.crate.blob.v2.BlobShard;
+import org.apache.lucene.store.RateLimiter;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.File;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * periodically removes leftovers of interrupted uploads.
+ *
+ * Transfers which haven't received a chunk within <code>blobs.janitor.transfer_timeout</code>
+ * are expired and their tmp files are deleted. Files in the tmp directories of the blob
+ * shards which haven't been modified within <code>blobs.janitor.tmp_file_max_age</code> and
+ * don't belong to an active transfer are deleted as well, e.g. files of transfers which were
+ * interrupted by a node restart or parts of multi-part uploads which were never completed.
+ *
+ * Deletes are throttled to <code>blobs.janitor.max_bytes_per_sec</code> so that cleaning up
+ * large tmp directories doesn't compete with uploads for disk I/O.
+ */
+public class BlobJanitor extends AbstractLifecycleComponent<BlobJanitor> {
+
+    /**
+     * interval of the cleanup runs, 0 disables the janitor
+     */
+    public static final String SETTING_INTERVAL = "blobs.janitor.interval";
+
+    /**
+     * transfers which haven't received a chunk within this time are expired
+     */
+    public static final String SETTING_TRANSFER_TIMEOUT = "blobs.janitor.transfer_timeout";
+
+    /**
+     * tmp files which haven't been modified within this time are deleted
+     */
+    public static final String SETTING_TMP_FILE_MAX_AGE = "blobs.janitor.tmp_file_max_age";
+
+    /**
+     * maximum number of bytes deleted per second, 0 disables the throttling
+     */
+    public static final String SETTING_MAX_BYTES_PER_SEC = "blobs.janitor.max_bytes_per_sec";
+
+    /**
+     * every deleted file is accounted with at least this size, so that deleting many
+     * small files is throttled as well
+     */
+    private static final long MIN_FILE_COST = 4096;
+
+    private final ThreadPool threadPool;
+    private final BlobIndices blobIndices;
+    private final BlobTransferTarget transferTarget;
+
+    private final TimeValue interval;
+    private final TimeValue transferTimeout;
+    private final TimeValue tmpFileMaxAge;
+    private final RateLimiter rateLimiter;
+
+    private final AtomicLong expiredTransfers = new AtomicLong();
+    private final AtomicLong deletedFiles = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+
+    private volatile ScheduledFuture<?> scheduled;
+
+    @Inject
+    public BlobJanitor(Settings settings, ThreadPool threadPool,
+                       BlobIndices blobIndices, BlobTransferTarget transferTarget) {
+        super(settings);
+        this.threadPool = threadPool;
+        this.blobIndices = blobIndices;
+        this.transferTarget = transferTarget;
+        this.interval = settings.getAsTime(SETTING_INTERVAL, TimeValue.timeValueMinutes(10));
+        this.transferTimeout = settings.getAsTime(SETTING_TRANSFER_TIMEOUT, TimeValue.timeValueMinutes(30));
+        this.tmpFileMaxAge = settings.getAsTime(SETTING_TMP_FILE_MAX_AGE, TimeValue.timeValueHours(24));
+        ByteSizeValue maxBytesPerSec = settings.getAsBytesSize(SETTING_MAX_BYTES_PER_SEC,
+            new ByteSizeValue(20, ByteSizeUnit.MB));
+        if (maxBytesPerSec.bytes() > 0) {
+            this.rateLimiter = new RateLimiter.SimpleRateLimiter(maxBytesPerSec.mbFrac());
+        } else {
+            this.rateLimiter = null;
+        }
+    }
+
+    @Override
+    protected void doStart() throws ElasticsearchException {
+        if (interval.millis() > 0) {
+            schedule();
+        }
+    }
+
+    @Override
+    protected void doStop() throws ElasticsearchException {
+        ScheduledFuture<?> scheduled = this.scheduled;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+
+    @Override
+    protected void doClose() throws ElasticsearchException {
+    }
+
+    private void schedule() {
+        scheduled = threadPool.schedule(interval, ThreadPool.Names.GENERIC, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cleanUp();
+                } catch (Exception e) {
+                    logger.warn("failed to clean up blob tmp files", e);
+                } finally {
+                    if (lifecycle.started()) {
+                        schedule();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * expires abandoned transfers and deletes orphaned tmp files of all local blob shards
+     */
+    public void cleanUp() {
+        expireTransfers();
+        long modifiedBefore = System.currentTimeMillis() - tmpFileMaxAge.millis();
+        Set<UUID> activeTransfers = transferTarget.activeTransferIds();
+        for (BlobShard blobShard : blobIndices.localBlobShards()) {
+            if (!lifecycle.started()) {
+                return;
+            }
+            cleanTmpDirectory(blobShard.blobContainer(), activeTransfers, modifiedBefore);
+        }
+    }
+
+    /**
+     * expires the transfers which haven't received a chunk within the transfer timeout
+     */
+    public void expireTransfers() {
+        long idleSince = System.currentTimeMillis() - transferTimeout.millis();
+        for (BlobTransferStatus status : transferTarget.expireTransfers(idleSince)) {
+            expiredTransfers.incrementAndGet();
+            long length = status.digestBlob().discard();
+            if (length > 0) {
+                deleted(length);
+            }
+        }
+    }
+
+    /**
+     * deletes the files of the tmp directory which haven't been modified since
+     * <code>modifiedBefore</code> and don't belong to one of the active transfers
+     */
+    public void cleanTmpDirectory(BlobContainer container, Set<UUID> activeTransfers, long modifiedBefore) {
+        File[] files = container.getTmpDirectory().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.lastModified() >= modifiedBefore) {
+                continue;
+            }
+            UUID transferId = transferId(file.getName());
+            if (transferId != null && activeTransfers.contains(transferId)) {
+                continue;
+            }
+            long length = file.length();
+            if (rateLimiter != null) {
+                rateLimiter.pause(Math.max(length, MIN_FILE_COST));
+            }
+            if (file.delete()) {
+                logger.trace("deleted orphaned tmp file {}", file);
+                deleted(length);
+            } else if (file.exists()) {
+                logger.warn("could not delete orphaned tmp file {}", file);
+            }
+        }
+    }
+
+    /**
+     * tmp files are named <code>digest.transferId</code> or
+     * <code>digest.uploadId.part</code> for parts of multi-part uploads
+     */
+    @Nullable
+    private static UUID transferId(String name) {
+        String[] parts = name.split("\\.");
+        if (parts.length < 2) {
+            return null;
+        }
+        try {
+            return UUID.fromString(parts[1]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void deleted(long length) {
+        deletedFiles.incrementAndGet();
+        reclaimedBytes.addAndGet(length);
+    }
+
+    /**
+     * @return the number of transfers which have been expired since the node started
+     */
+    public long expiredTransfers() {
+        return expiredTransfers.get();
+    }
+
+    /**
+     * @return the number of tmp files which have been deleted since the node started
+     */
+    public long deletedFiles() {
+        return deletedFiles.get();
+    }
+
+    /**
+     * @return the size of all tmp files which have been deleted since the node started
+     */
+    public long reclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+}
@@ -31,20 +31,35 @@ public class BlobModule extends AbstractModule {
     @Override
     protected void configure() {
         bind(BlobService.class).asEagerSingleton();
+        bind(BlobCache.class).asEagerSingleton();
+        bind(BlobJanitor.class).asEagerSingleton();
+        bind(BlobBatchOperations.class).asEagerSingleton();
 
         bind(TransportPutChunkAction.class).asEagerSingleton();
         bind(TransportStartBlobAction.class).asEagerSingleton();
         bind(TransportDeleteBlobAction.class).asEagerSingleton();
+        bind(TransportPutBlobPartAction.class).asEagerSingleton();
+        bind(TransportCompleteBlobUploadAction.class).asEagerSingleton();
+        bind(TransportExistsBlobsAction.class).asEagerSingleton();
+        bind(TransportDeleteBlobsAction.class).asEagerSingleton();
 
         MapBinder<GenericAction, TransportAction> transportActionsBinder = MapBinder.newMapBinder(binder(), GenericAction.class,
                 TransportAction.class);
         transportActionsBinder.addBinding(PutChunkAction.INSTANCE).to(TransportPutChunkAction.class).asEagerSingleton();
         transportActionsBinder.addBinding(StartBlobAction.INSTANCE).to(TransportStartBlobAction.class).asEagerSingleton();
         transportActionsBinder.addBinding(DeleteBlobAction.INSTANCE).to(TransportDeleteBlobAction.class).asEagerSingleton();
+        transportActionsBinder.addBinding(PutBlobPartAction.INSTANCE).to(TransportPutBlobPartAction.class).asEagerSingleton();
+        transportActionsBinder.addBinding(CompleteBlobUploadAction.INSTANCE).to(TransportCompleteBlobUploadAction.class).asEagerSingleton();
+        transportActionsBinder.addBinding(ExistsBlobsAction.INSTANCE).to(TransportExistsBlobsAction.class).asEagerSingleton();
+        transportActionsBinder.addBinding(DeleteBlobsAction.INSTANCE).to(TransportDeleteBlobsAction.class).asEagerSingleton();
 
         MapBinder<String, GenericAction> actionsBinder = MapBinder.newMapBinder(binder(), String.class, GenericAction.class);
         actionsBinder.addBinding(PutChunkAction.NAME).toInstance(PutChunkAction.INSTANCE);
         actionsBinder.addBinding(StartBlobAction.NAME).toInstance(StartBlobAction.INSTANCE);
         actionsBinder.addBinding(DeleteBlobAction.NAME).toInstance(DeleteBlobAction.INSTANCE);
+        actionsBinder.addBinding(PutBlobPartAction.NAME).toInstance(PutBlobPartAction.INSTANCE);
+        actionsBinder.addBinding(CompleteBlobUploadAction.NAME).toInstance(CompleteBlobUploadAction.INSTANCE);
+        actionsBinder.addBinding(ExistsBlobsAction.NAME).toInstance(ExistsBlobsAction.INSTANCE);
+        actionsBinder.addBinding(DeleteBlobsAction.NAME).toInstance(DeleteBlobsAction.INSTANCE);
     }
 }
@@ -0,0 +1,103 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.blob.exceptions.DigestNotFoundException;
+import io.crate.blob.v2.BlobIndices;
+import io.crate.blob.v2.BlobShard;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.*;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+
+/**
+ * serves blob reads of nodes which don't hold a copy of the requested blob,
+ * used to proxy http downloads instead of redirecting the client.
+ */
+public class BlobReadRequestHandler {
+
+    public static class Actions {
+        public static final String READ_CHUNK = "crate/blob/read_chunk";
+    }
+
+    private final TransportService transportService;
+    private final BlobIndices blobIndices;
+    private final BlobCache blobCache;
+
+    @Inject
+    public BlobReadRequestHandler(TransportService transportService, BlobIndices blobIndices,
+                                  BlobCache blobCache) {
+        this.transportService = transportService;
+        this.blobIndices = blobIndices;
+        this.blobCache = blobCache;
+    }
+
+    public void registerHandler() {
+        transportService.registerHandler(Actions.READ_CHUNK, new ReadChunkHandler());
+    }
+
+    public void readChunk(DiscoveryNode node, ReadBlobChunkRequest request,
+                          TransportResponseHandler<ReadBlobChunkResponse> handler) {
+        transportService.sendRequest(node, Actions.READ_CHUNK, request,
+            TransportRequestOptions.options(), handler);
+    }
+
+    private class ReadChunkHandler extends BaseTransportRequestHandler<ReadBlobChunkRequest> {
+
+        @Override
+        public ReadBlobChunkRequest newInstance() {
+            return new ReadBlobChunkRequest();
+        }
+
+        @Override
+        public String executor() {
+            return ThreadPool.Names.GENERIC;
+        }
+
+        @Override
+        public void messageReceived(ReadBlobChunkRequest request, TransportChannel channel) throws Exception {
+            BlobShard blobShard = blobIndices.localBlobShard(request.index(), request.digest());
+            if (!blobShard.blobContainer().exists(request.digest())) {
+                throw new DigestNotFoundException(request.digest());
+            }
+            BlobCache.OpenFile openFile = blobCache.openFile(request.digest(),
+                blobShard.blobContainer().getFile(request.digest()));
+            try {
+                long length = openFile.length();
+                int toRead = (int) Math.max(0, Math.min(request.length(), length - request.position()));
+                ByteBuffer buffer = ByteBuffer.allocate(toRead);
+                while (buffer.hasRemaining()) {
+                    if (openFile.channel().read(buffer, request.position() + buffer.position()) < 0) {
+                        throw new EOFException("blob " + request.digest() + " is shorter than expected");
+                    }
+                }
+                channel.sendResponse(new ReadBlobChunkResponse(length, new BytesArray(buffer.array())));
+            } finally {
+                openFile.release();
+            }
+        }
+    }
+}
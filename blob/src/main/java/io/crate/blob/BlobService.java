@@ -25,44 +25,103 @@ import io.crate.blob.exceptions.MissingHTTPEndpointException;
 import io.crate.blob.pending_transfer.BlobHeadRequestHandler;
 import io.crate.blob.v2.BlobIndices;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.routing.ShardIterator;
 import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Injector;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.http.HttpServer;
 import org.elasticsearch.indices.recovery.BlobRecoverySource;
+import org.elasticsearch.transport.TransportResponseHandler;
 import org.elasticsearch.transport.TransportService;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.UUID;
 
 public class BlobService extends AbstractLifecycleComponent<BlobService> {
 
 
+    /**
+     * chunks received via http are coalesced into transport messages of this size
+     */
+    public static final String SETTING_TRANSFER_CHUNK_SIZE = "blobs.transfer.chunk_size";
+
+    /**
+     * maximum number of chunks per transfer which are sent without waiting for an acknowledgement
+     */
+    public static final String SETTING_TRANSFER_WINDOW_SIZE = "blobs.transfer.window_size";
+
+    /**
+     * how downloads of blobs without a copy on the receiving node are served:
+     * <code>redirect</code> the client to a node holding a copy or <code>proxy</code>
+     * the content from such a node over the transport layer
+     */
+    public static final String SETTING_REMOTE_READS = "blobs.remote_reads";
+
     private final Injector injector;
     private final BlobHeadRequestHandler blobHeadRequestHandler;
+    private final BlobReadRequestHandler blobReadRequestHandler;
+    private final int transferChunkSize;
+    private final int transferWindowSize;
+    private final boolean proxyRemoteReads;
 
     private final ClusterService clusterService;
 
     @Inject
     public BlobService(Settings settings,
             ClusterService clusterService, Injector injector,
-            BlobHeadRequestHandler blobHeadRequestHandler) {
+            BlobHeadRequestHandler blobHeadRequestHandler,
+            BlobReadRequestHandler blobReadRequestHandler) {
         super(settings);
         this.clusterService = clusterService;
         this.injector = injector;
         this.blobHeadRequestHandler = blobHeadRequestHandler;
+        this.blobReadRequestHandler = blobReadRequestHandler;
+        this.transferChunkSize = (int) settings.getAsBytesSize(SETTING_TRANSFER_CHUNK_SIZE,
+                new ByteSizeValue(256, ByteSizeUnit.KB)).bytes();
+        this.transferWindowSize = Math.max(1, settings.getAsInt(SETTING_TRANSFER_WINDOW_SIZE, 4));
+        String remoteReads = settings.get(SETTING_REMOTE_READS, "redirect");
+        if (!remoteReads.equals("redirect") && !remoteReads.equals("proxy")) {
+            throw new ElasticsearchIllegalArgumentException(
+                "invalid value for " + SETTING_REMOTE_READS + ": " + remoteReads + ", must be redirect or proxy");
+        }
+        this.proxyRemoteReads = remoteReads.equals("proxy");
+    }
+
+    /**
+     * @return true if downloads of blobs which aren't available locally are proxied
+     *         instead of redirected
+     */
+    public boolean proxyRemoteReads() {
+        return proxyRemoteReads;
+    }
+
+    public void readChunk(DiscoveryNode node, ReadBlobChunkRequest request,
+                          TransportResponseHandler<ReadBlobChunkResponse> handler) {
+        blobReadRequestHandler.readChunk(node, request, handler);
     }
 
     public RemoteDigestBlob newBlob(String index, String digest) {
-        return new RemoteDigestBlob(this, index, digest);
+        return new RemoteDigestBlob(this, index, digest, transferChunkSize, transferWindowSize);
+    }
+
+    /**
+     * @param uploadId id of the multi-part upload, a new upload is started if null
+     */
+    public RemoteBlobUpload newUpload(String index, String digest, @Nullable UUID uploadId) {
+        return new RemoteBlobUpload(this, index, digest,
+            uploadId == null ? UUID.randomUUID() : uploadId, transferChunkSize, transferWindowSize);
     }
 
     public Injector getInjector() {
@@ -84,6 +143,7 @@ public class BlobService extends AbstractLifecycleComponent<BlobService> {
 
 
         blobHeadRequestHandler.registerHandler();
+        blobReadRequestHandler.registerHandler();
 
         // by default the http server is started after the discovery service.
         // For the BlobService this is too late.
@@ -106,16 +166,15 @@ public class BlobService extends AbstractLifecycleComponent<BlobService> {
     }
 
     /**
-     * @param index  the name of blob-enabled index
-     * @param digest sha-1 hash value of the file
-     * @return null if no redirect is required, Otherwise the address to which should be redirected.
+     * @return the ids of the nodes holding an active copy of the shard of the blob or
+     *         null if the current node holds one
      */
-    public String getRedirectAddress(String index, String digest) throws MissingHTTPEndpointException {
+    private Set<String> remoteNodeIds(String index, String digest) {
         ShardIterator shards = clusterService.operationRouting().getShards(
                 clusterService.state(), index, null, null, digest, "_local");
 
         ShardRouting shard;
-        Set<String> nodeIds = new HashSet<>();
+        Set<String> nodeIds = new LinkedHashSet<>();
 
         // check if one of the shards is on the current node;
         while ((shard = shards.nextOrNull()) != null) {
@@ -127,6 +186,34 @@ public class BlobService extends AbstractLifecycleComponent<BlobService> {
             }
             nodeIds.add(shard.currentNodeId());
         }
+        return nodeIds;
+    }
+
+    /**
+     * @param index  the name of blob-enabled index
+     * @param digest sha-1 hash value of the file
+     * @return null if the blob can be read locally, a primary or replica copy on
+     *         the current node is sufficient. Otherwise a node to read the blob from.
+     */
+    @Nullable
+    public DiscoveryNode getReadNode(String index, String digest) {
+        Set<String> nodeIds = remoteNodeIds(index, digest);
+        if (nodeIds == null || nodeIds.isEmpty()) {
+            return null;
+        }
+        return clusterService.state().getNodes().get(nodeIds.iterator().next());
+    }
+
+    /**
+     * @param index  the name of blob-enabled index
+     * @param digest sha-1 hash value of the file
+     * @return null if no redirect is required, Otherwise the address to which should be redirected.
+     */
+    public String getRedirectAddress(String index, String digest) throws MissingHTTPEndpointException {
+        Set<String> nodeIds = remoteNodeIds(index, digest);
+        if (nodeIds == null) {
+            return null;
+        }
 
         DiscoveryNode node;
         DiscoveryNodes nodes = clusterService.state().getNodes();
@@ -22,6 +22,10 @@
 package io.crate.blob;
 
 
+import org.elasticsearch.common.bytes.BytesReference;
+
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 
 public class BlobTransferStatus {
@@ -30,10 +34,68 @@ public class BlobTransferStatus {
     private final UUID transferId;
     private final DigestBlob digestBlob;
 
+    /**
+     * chunks of a transfer are sent pipelined and may arrive out of order.
+     * Chunks are buffered by offset until all chunks in front of them are written.
+     */
+    private final TreeMap<Long, BytesReference> pendingChunks = new TreeMap<>();
+    private long nextPos;
+
+    private volatile long lastActivity = System.currentTimeMillis();
+
     public BlobTransferStatus(String index, UUID transferId, DigestBlob digestBlob) {
+        this(index, transferId, digestBlob, digestBlob.size());
+    }
+
+    /**
+     * @param nextPos the offset of the next chunk that is written to the digestBlob
+     */
+    public BlobTransferStatus(String index, UUID transferId, DigestBlob digestBlob, long nextPos) {
         this.index = index;
         this.transferId = transferId;
         this.digestBlob = digestBlob;
+        this.nextPos = nextPos;
+    }
+
+    /**
+     * writes the chunk at the given offset to the digestBlob, or buffers it if
+     * previous chunks are still missing.
+     *
+     * @return true if the content up to and including this chunk has been written
+     */
+    public synchronized boolean addContent(long pos, BytesReference content, boolean last) {
+        lastActivity = System.currentTimeMillis();
+        if (pos < nextPos) {
+            // already written, e.g. as part of the head of a restored transfer
+            return true;
+        }
+        if (pos > nextPos) {
+            if (last) {
+                throw new IllegalStateException(String.format(
+                        "received last chunk at %d but only got content up to %d", pos, nextPos));
+            }
+            pendingChunks.put(pos, content);
+            return false;
+        }
+        write(content, last);
+        Map.Entry<Long, BytesReference> next;
+        while ((next = pendingChunks.firstEntry()) != null && next.getKey() == nextPos) {
+            pendingChunks.pollFirstEntry();
+            write(next.getValue(), false);
+        }
+        return true;
+    }
+
+    private void write(BytesReference content, boolean last) {
+        digestBlob.addContent(content, last);
+        nextPos += content.length();
+    }
+
+    /**
+     * @return the time in milliseconds the last chunk of this transfer has been received
+     */
+    public long lastActivity() {
+        return lastActivity;
     }
 
     public String index() {
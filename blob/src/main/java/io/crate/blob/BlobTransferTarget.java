@@ -35,6 +35,10 @@ import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.transport.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.*;
 
@@ -43,6 +47,12 @@ public class BlobTransferTarget extends AbstractComponent {
     private final ConcurrentMap<UUID, BlobTransferStatus> activeTransfers =
         ConcurrentCollections.newConcurrentMap();
 
+    /**
+     * transfers whose status is currently restored, chunks of the same transfer wait for the restore
+     */
+    private final ConcurrentMap<UUID, SettableFuture<BlobTransferStatus>> restoringTransfers =
+        ConcurrentCollections.newConcurrentMap();
+
     private final BlobIndices blobIndices;
     private final TransportService transportService;
     private final ClusterService clusterService;
@@ -66,16 +76,39 @@ public class BlobTransferTarget extends AbstractComponent {
         return activeTransfers.get(transferId);
     }
 
+    /**
+     * @return the ids of the transfers which are currently in progress on this node
+     */
+    public Set<UUID> activeTransferIds() {
+        return activeTransfers.keySet();
+    }
+
+    /**
+     * removes the transfers which haven't received a chunk since <code>idleSince</code>
+     * and discards their tmp files.
+     *
+     * @return the expired transfers
+     */
+    public List<BlobTransferStatus> expireTransfers(long idleSince) {
+        List<BlobTransferStatus> expired = new ArrayList<>();
+        for (BlobTransferStatus status : activeTransfers.values()) {
+            if (status.lastActivity() < idleSince && activeTransfers.remove(status.transferId(), status)) {
+                logger.debug("expiring abandoned transfer {} of {}",
+                    status.transferId(), status.digestBlob().getDigest());
+                expired.add(status);
+            }
+        }
+        return expired;
+    }
+
     public void startTransfer(int shardId, StartBlobRequest request, StartBlobResponse response) {
         logger.debug("startTransfer {} {}", request.transferId(), request.isLast());
 
         BlobShard blobShard = blobIndices.blobShardSafe(request.index(), shardId);
-        File existing = blobShard.blobContainer().getFile(request.id());
-        long size = existing.length();
-        if (existing.exists()) {
+        if (blobShard.blobContainer().exists(request.id())) {
             // the file exists
             response.status(RemoteDigestBlob.Status.EXISTS);
-            response.size(size);
+            response.size(blobShard.blobContainer().getFile(request.id()).length());
             return;
         }
 
@@ -100,13 +133,55 @@ public class BlobTransferTarget extends AbstractComponent {
         logger.debug("startTransfer finished {} {}", response.status(), response.size());
     }
 
+    public void putPart(int shardId, PutBlobPartRequest request, PutBlobPartResponse response) {
+        BlobShard blobShard = blobIndices.blobShardSafe(request.index(), shardId);
+        MultipartUpload upload = new MultipartUpload(
+            blobShard.blobContainer(), request.digest(), request.transferId());
+        try {
+            response.size(upload.writePart(
+                request.part(), request.position(), request.content(), request.isLast()));
+        } catch (IOException e) {
+            throw new BlobWriteException(request.digest(), request.position(), e);
+        }
+        response.status(request.isLast() ? RemoteDigestBlob.Status.FULL : RemoteDigestBlob.Status.PARTIAL);
+    }
+
+    public void completeUpload(int shardId, CompleteBlobUploadRequest request, CompleteBlobUploadResponse response) {
+        BlobShard blobShard = blobIndices.blobShardSafe(request.index(), shardId);
+        BlobContainer container = blobShard.blobContainer();
+        MultipartUpload upload = new MultipartUpload(container, request.digest(), request.uploadId());
+        if (request.abort()) {
+            upload.abort();
+            // the upload has been discarded
+            response.status(RemoteDigestBlob.Status.FAILED);
+            return;
+        }
+        if (container.exists(request.digest())) {
+            upload.abort();
+            response.status(RemoteDigestBlob.Status.EXISTS);
+            response.size(container.getFile(request.digest()).length());
+            return;
+        }
+        try {
+            File file = upload.complete(request.parts());
+            response.status(RemoteDigestBlob.Status.FULL);
+            response.size(file.length());
+        } catch (DigestMismatchException e) {
+            response.status(RemoteDigestBlob.Status.MISMATCH);
+        } catch (IOException e) {
+            throw new BlobWriteException(request.digest(), 0, e);
+        }
+        logger.debug("upload {} of {} completed with {} parts status:{} size:{}",
+            request.uploadId(), request.digest(), request.parts(), response.status(), response.size());
+    }
+
     public void continueTransfer(PutChunkReplicaRequest request, PutChunkResponse response, int shardId) {
         BlobTransferStatus status = activeTransfers.get(request.transferId);
         if (status == null) {
             status = restoreTransferStatus(request, shardId);
         }
 
-        addContent(request, response, status);
+        addContent(request, request.currentPos, response, status);
     }
 
     public void continueTransfer(PutChunkRequest request, PutChunkResponse response) {
@@ -117,10 +192,51 @@ public class BlobTransferTarget extends AbstractComponent {
             return;
         }
 
-        addContent(request, response, status);
+        addContent(request, request.currentPos(), response, status);
     }
 
+    /**
+     * restores the status of a transfer which has been started before this node became a replica.
+     * Only one chunk per transfer restores the status, pipelined chunks of the same transfer wait for it
+     * while chunks of other transfers aren't blocked.
+     */
     private BlobTransferStatus restoreTransferStatus(PutChunkReplicaRequest request, int shardId) {
+        SettableFuture<BlobTransferStatus> restore = SettableFuture.create();
+        SettableFuture<BlobTransferStatus> pendingRestore = restoringTransfers.putIfAbsent(request.transferId, restore);
+        if (pendingRestore != null) {
+            return waitForRestore(request.transferId, pendingRestore);
+        }
+        try {
+            // pipelined chunks of the same transfer might have restored the status already
+            BlobTransferStatus status = activeTransfers.get(request.transferId);
+            if (status == null) {
+                status = doRestoreTransferStatus(request, shardId);
+            }
+            restore.set(status);
+            return status;
+        } catch (RuntimeException e) {
+            restore.setException(e);
+            throw e;
+        } finally {
+            restoringTransfers.remove(request.transferId, restore);
+        }
+    }
+
+    private BlobTransferStatus waitForRestore(UUID transferId, SettableFuture<BlobTransferStatus> restore) {
+        try {
+            return restore.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferRestoreException("interrupted while waiting for the restore", transferId, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new TransferRestoreException("failure restoring the transfer", transferId, e.getCause());
+        }
+    }
+
+    private BlobTransferStatus doRestoreTransferStatus(PutChunkReplicaRequest request, int shardId) {
         logger.trace("Restoring transferContext for PutChunkReplicaRequest with transferId {}",
             request.transferId);
 
@@ -157,7 +273,8 @@ public class BlobTransferTarget extends AbstractComponent {
         assert digestBlob != null : "DigestBlob couldn't be restored";
 
         BlobTransferStatus status;
-        status = new BlobTransferStatus(transferInfoResponse.index, request.transferId, digestBlob);
+        status = new BlobTransferStatus(
+            transferInfoResponse.index, request.transferId, digestBlob, request.currentPos);
         activeTransfers.put(request.transferId, status);
         logger.trace("Restored transferStatus for digest {} transferId: {}",
             transferInfoResponse.digest, request.transferId
@@ -173,10 +290,11 @@ public class BlobTransferTarget extends AbstractComponent {
         return status;
     }
 
-    private void addContent(IPutChunkRequest request, PutChunkResponse response, BlobTransferStatus status) {
+    private void addContent(IPutChunkRequest request, long currentPos,
+                            PutChunkResponse response, BlobTransferStatus status) {
         DigestBlob digestBlob = status.digestBlob();
         try {
-            digestBlob.addContent(request.content(), request.isLast());
+            status.addContent(currentPos, request.content(), request.isLast());
         } catch (BlobWriteException e) {
             activeTransfers.remove(status.transferId());
             throw e;
@@ -0,0 +1,138 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.EmptyTransportResponseHandler;
+import org.elasticsearch.transport.TransportException;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportRequestOptions;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * sends chunk requests of a file transfer without waiting for their responses,
+ * limiting the number of requests which are in flight at the same time.
+ *
+ * The receiver must handle chunks arriving out of order, the request which completes
+ * the transfer should only be sent after {@link #waitForInFlightChunks()} returned.
+ */
+public class ChunkRequestWindow {
+
+    private final TransportService transportService;
+    private final DiscoveryNode node;
+    private final String action;
+    private final int windowSize;
+    private final Semaphore window;
+    private volatile Throwable failure;
+
+    /**
+     * creates a window for requests which are sent by the caller, see {@link #acquire()}
+     */
+    public ChunkRequestWindow(int windowSize) {
+        this(null, null, null, windowSize);
+    }
+
+    public ChunkRequestWindow(TransportService transportService, DiscoveryNode node,
+                              String action, int windowSize) {
+        this.transportService = transportService;
+        this.node = node;
+        this.action = action;
+        this.windowSize = windowSize;
+        this.window = new Semaphore(windowSize);
+    }
+
+    /**
+     * sends the request, blocks if the window of in-flight requests is full
+     *
+     * @throws ElasticsearchException if a previously sent request failed
+     */
+    public void send(TransportRequest request) throws InterruptedException {
+        assert transportService != null : "window has been created without a transport service";
+        final ActionListener<TransportResponse.Empty> listener = acquire();
+        transportService.sendRequest(node, action, request, TransportRequestOptions.options(),
+            new EmptyTransportResponseHandler(ThreadPool.Names.SAME) {
+                @Override
+                public void handleResponse(TransportResponse.Empty response) {
+                    listener.onResponse(response);
+                }
+
+                @Override
+                public void handleException(TransportException exp) {
+                    listener.onFailure(exp);
+                }
+            });
+    }
+
+    /**
+     * reserves a slot for a request, blocks if the window of in-flight requests is full
+     *
+     * @return the listener which must be notified about the response of the request
+     * @throws ElasticsearchException if a previously sent request failed
+     */
+    public <Response> ActionListener<Response> acquire() throws InterruptedException {
+        window.acquire();
+        if (failure != null) {
+            window.release();
+            checkFailure();
+        }
+        return new ActionListener<Response>() {
+            @Override
+            public void onResponse(Response response) {
+                window.release();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                failure = e;
+                window.release();
+            }
+        };
+    }
+
+    /**
+     * blocks until all sent requests have been answered
+     *
+     * @throws ElasticsearchException if one of the requests failed
+     */
+    public void waitForInFlightChunks() throws InterruptedException {
+        window.acquire(windowSize);
+        window.release(windowSize);
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        Throwable e = failure;
+        if (e == null) {
+            return;
+        }
+        if (e instanceof ElasticsearchException) {
+            throw (ElasticsearchException) e;
+        }
+        throw new ElasticsearchException("chunk request failed", e);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.common.Hex;
+import org.elasticsearch.action.support.replication.ShardReplicationOperationRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * completes a multi-part upload by concatenating the parts 1 to <code>parts</code>,
+ * or discards all parts of the upload if <code>abort</code> is set
+ */
+public class CompleteBlobUploadRequest extends ShardReplicationOperationRequest<CompleteBlobUploadRequest> {
+
+    private byte[] digest;
+    private UUID uploadId;
+    private int parts;
+    private boolean abort;
+
+    public CompleteBlobUploadRequest() {
+    }
+
+    public CompleteBlobUploadRequest(String index, byte[] digest, UUID uploadId, int parts, boolean abort) {
+        this.index = index;
+        this.digest = digest;
+        this.uploadId = uploadId;
+        this.parts = parts;
+        this.abort = abort;
+    }
+
+    public String digest() {
+        return Hex.encodeHexString(digest);
+    }
+
+    public UUID uploadId() {
+        return uploadId;
+    }
+
+    public int parts() {
+        return parts;
+    }
+
+    public boolean abort() {
+        return abort;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        digest = new byte[20];
+        in.read(digest);
+        uploadId = new UUID(in.readLong(), in.readLong());
+        parts = in.readVInt();
+        abort = in.readBoolean();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.write(digest);
+        out.writeLong(uploadId.getMostSignificantBits());
+        out.writeLong(uploadId.getLeastSignificantBits());
+        out.writeVInt(parts);
+        out.writeBoolean(abort);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.common.Hex;
+import org.elasticsearch.action.support.replication.ShardReplicationOperationRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * deletes multiple blobs which all belong to the same shard
+ */
+public class DeleteBlobsRequest extends ShardReplicationOperationRequest<DeleteBlobsRequest> {
+
+    private byte[][] digests;
+
+    public DeleteBlobsRequest() {
+    }
+
+    public DeleteBlobsRequest(String index, List<String> digests) {
+        this.index = index;
+        this.digests = new byte[digests.size()][];
+        for (int i = 0; i < this.digests.length; i++) {
+            this.digests[i] = Hex.decodeHex(digests.get(i));
+        }
+    }
+
+    public int size() {
+        return digests.length;
+    }
+
+    public String digest(int i) {
+        return Hex.encodeHexString(digests[i]);
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        digests = new byte[in.readVInt()][];
+        for (int i = 0; i < digests.length; i++) {
+            digests[i] = new byte[20];
+            in.readBytes(digests[i], 0, 20);
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(digests.length);
+        for (byte[] digest : digests) {
+            out.writeBytes(digest);
+        }
+    }
+}
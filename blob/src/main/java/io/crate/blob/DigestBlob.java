@@ -21,8 +21,10 @@
 
 package io.crate.blob;
 
+import io.crate.blob.exceptions.BlobTransferExpiredException;
 import io.crate.blob.exceptions.DigestMismatchException;
 import io.crate.common.Hex;
+import org.elasticsearch.ElasticsearchIllegalStateException;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.elasticsearch.common.logging.ESLogger;
@@ -30,15 +32,27 @@ import org.elasticsearch.common.logging.Loggers;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * A blob which is written to a tmp file and moved to its final location on commit.
+ *
+ * The SHA-1 digest is calculated while the content is written. If the transfer has
+ * been resumed the head and the tail of the file are received concurrently; the tail
+ * is then digested once the head has caught up, reading only the part of the tail
+ * which has been written in the meantime. Commit never has to read the whole file.
+ */
 public class DigestBlob {
 
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
     private final String digest;
     private final BlobContainer container;
     private final UUID transferId;
@@ -48,9 +62,19 @@ public class DigestBlob {
     private int size;
     private long headLength;
     private AtomicLong headSize;
-    private MessageDigest md;
+    private final MessageDigest md;
     private long chunks;
     private CountDownLatch headCatchedupLatch;
+
+    // number of bytes from the start of the file which have been digested
+    private long digestedPos = 0;
+    // end of the tail content which has been written to the file
+    private long tailPos = 0;
+    // head chunks received out of order, by offset
+    private final TreeMap<Long, BytesReference> pendingHeadChunks = new TreeMap<>();
+    // set under the lock of this blob once the transfer has expired
+    private volatile boolean discarded = false;
+
     private static final ESLogger logger = Loggers.getLogger(DigestBlob.class);
 
     public DigestBlob(BlobContainer container, String digest, UUID transferId) {
@@ -58,6 +82,11 @@ public class DigestBlob {
         this.container = container;
         this.size = 0;
         this.transferId = transferId;
+        try {
+            this.md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ElasticsearchIllegalStateException("SHA-1 digest is not available", e);
+        }
     }
 
     public String getDigest() {
@@ -83,52 +112,81 @@ public class DigestBlob {
         return tmpFile;
     }
 
-    private void updateDigest(ByteBuffer bbf){
-        if (md == null){
-            try {
-                md = MessageDigest.getInstance("SHA-1");
-            } catch (NoSuchAlgorithmException e) {
-                // TODO: error handling
-                e.printStackTrace();
-            }
+    private void openFileChannel() throws IOException {
+        if (file == null) {
+            file = createTmpFile();
+        }
+        if (fileChannel == null) {
+            FileOutputStream outputStream = new FileOutputStream(file);
+            fileChannel = outputStream.getChannel();
+        }
+    }
+
+    /**
+     * @return the channel to append the tail content to, opened if necessary
+     */
+    private synchronized FileChannel tailChannel() throws IOException {
+        checkDiscarded();
+        openFileChannel();
+        return fileChannel;
+    }
+
+    private synchronized FileChannel headChannel() {
+        checkDiscarded();
+        return headFileChannel;
+    }
+
+    private void checkDiscarded() {
+        if (discarded) {
+            throw new BlobTransferExpiredException(digest, transferId);
         }
-        md.update(bbf.slice());
     }
 
     private void addContent(ChannelBuffer buffer, boolean last) throws IOException {
         if (buffer != null) {
             int readableBytes = buffer.readableBytes();
-            ByteBuffer byteBuffer = buffer.toByteBuffer();
-            if (file == null) {
-                file = createTmpFile();
-            }
-            if (fileChannel == null) {
-                FileOutputStream outputStream = new FileOutputStream(file);
-                fileChannel = outputStream.getChannel();
-            }
+            FileChannel channel = tailChannel();
 
-            int written = 0;
-            do {
-                if (headLength == 0) {
-                    updateDigest(byteBuffer);
+            // gathering write of the buffer components, avoids merging composite buffers
+            ByteBuffer[] byteBuffers = buffer.toByteBuffers();
+            long written = 0;
+            try {
+                while (written < readableBytes) {
+                    written += channel.write(byteBuffers);
+                }
+            } catch (ClosedChannelException e) {
+                // the channel is closed if the transfer is discarded concurrently
+                checkDiscarded();
+                throw e;
+            }
+            synchronized (this) {
+                checkDiscarded();
+                if (digestedPos == tailPos) {
+                    for (ByteBuffer byteBuffer : buffer.toByteBuffers()) {
+                        md.update(byteBuffer);
+                    }
+                    digestedPos += readableBytes;
                 }
-                written += fileChannel.write(byteBuffer);
-            } while (written < readableBytes);
+                tailPos += readableBytes;
+                notifyAll();
+            }
             size += readableBytes;
-            buffer.readerIndex(buffer.readerIndex() + written);
+            buffer.readerIndex(buffer.readerIndex() + readableBytes);
             chunks ++;
         }
         if (last) {
-            if (file == null) {
-                file = createTmpFile();
+            FileChannel channel = tailChannel();
+            try {
+                // the only sync of the file, done once all content is written
+                channel.force(false);
+                channel.close();
+            } catch (ClosedChannelException e) {
+                checkDiscarded();
+                throw e;
             }
-            if (fileChannel == null) {
-                FileOutputStream outputStream = new FileOutputStream(file);
-                fileChannel = outputStream.getChannel();
+            synchronized (this) {
+                fileChannel = null;
             }
-            fileChannel.force(false);
-            fileChannel.close();
-            fileChannel = null;
         } else {
             if (buffer == null) {
                 throw new NullPointerException("buffer");
@@ -136,35 +194,52 @@ public class DigestBlob {
         }
     }
 
-    private void calculateDigest() {
-        assert headSize.get() == headLength : "Head hasn't catched up, can't calculate digest";
+    /**
+     * digests the tail content which has been written while the head was still missing
+     */
+    private void digestWrittenTail() throws IOException {
+        assert headLength == 0 || headSize.get() == headLength : "Head hasn't catched up, can't calculate digest";
+        if (digestedPos == tailPos) {
+            return;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
         try {
-            FileInputStream stream = new FileInputStream(file);
-            stream.skip(headLength);
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = stream.read(buffer, 0, 4096)) > 0) {
-                md.update(buffer, 0, bytesRead);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, tailPos - digestedPos));
+            while (digestedPos < tailPos) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), tailPos - digestedPos));
+                int read = channel.read(buffer, digestedPos);
+                if (read < 0) {
+                    throw new EOFException("tmp file of blob " + digest + " is shorter than the written content");
+                }
+                md.update(buffer.array(), 0, read);
+                digestedPos += read;
             }
-            stream.close();
-        } catch (IOException ex) {
-            logger.error("error accessing file to calculate digest", ex);
+        } finally {
+            raf.close();
         }
     }
 
     public File commit() throws DigestMismatchException {
-        if (headLength > 0) {
-            calculateDigest();
+        String contentDigest;
+        synchronized (this) {
+            checkDiscarded();
+            try {
+                digestWrittenTail();
+            } catch (IOException ex) {
+                throw new BlobWriteException(digest, size, ex);
+            }
+            contentDigest = Hex.encodeHexString(md.digest());
         }
-
-        assert md != null;
-        String contentDigest = Hex.encodeHexString(md.digest());
         if (!contentDigest.equals(digest)) {
             file.delete();
             throw new DigestMismatchException(digest, contentDigest);
         }
         File newFile = container.getFile(digest);
-        file.renameTo(newFile);
+        if (file.renameTo(newFile)) {
+            container.blobAdded(newFile);
+        }
         return newFile;
     }
 
@@ -176,25 +251,108 @@ public class DigestBlob {
         }
     }
 
-    public void addToHead(BytesReference content) throws IOException {
+    /**
+     * writes a chunk of the head of a resumed transfer. Chunks may arrive out of order,
+     * they are written to their position right away but digested in order.
+     */
+    public void addToHead(long position, BytesReference content) throws IOException {
         if (content == null) {
             return;
         }
 
-        int written = 0;
         ChannelBuffer channelBuffer = content.toChannelBuffer();
         int readableBytes = channelBuffer.readableBytes();
-        assert readableBytes + headSize.get() <= headLength : "Got too many bytes in addToHead()";
+        assert position + readableBytes <= headLength : "Got too many bytes in addToHead()";
+
+        FileChannel channel = headChannel();
+        long writePos = position;
+        try {
+            for (ByteBuffer byteBuffer : channelBuffer.toByteBuffers()) {
+                while (byteBuffer.hasRemaining()) {
+                    writePos += channel.write(byteBuffer, writePos);
+                }
+            }
+        } catch (ClosedChannelException e) {
+            checkDiscarded();
+            throw e;
+        }
+        synchronized (this) {
+            checkDiscarded();
+            if (position != headSize.get()) {
+                pendingHeadChunks.put(position, content);
+                return;
+            }
+            digestHead(content);
+            BytesReference next;
+            while ((next = pendingHeadChunks.remove(headSize.get())) != null) {
+                digestHead(next);
+            }
+            if (headSize.get() == headLength) {
+                digestWrittenTail();
+                headCatchedupLatch.countDown();
+            }
+        }
+    }
 
-        ByteBuffer byteBuffer = channelBuffer.toByteBuffer();
-        while (written < readableBytes) {
-            updateDigest(byteBuffer);
-            written += headFileChannel.write(byteBuffer);
+    private void digestHead(BytesReference content) {
+        for (ByteBuffer byteBuffer : content.toChannelBuffer().toByteBuffers()) {
+            md.update(byteBuffer);
         }
-        headSize.addAndGet(written);
-        if (headSize.get() == headLength) {
+        digestedPos += content.length();
+        headSize.addAndGet(content.length());
+    }
+
+    /**
+     * blocks until the file contains at least <code>minPos</code> bytes or the timeout elapsed.
+     * Used to read the head of a transfer which is still being written.
+     *
+     * @return the number of bytes which have been written to the file
+     */
+    public synchronized long waitForWrittenBytes(long minPos, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (tailPos < minPos && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return tailPos;
+    }
+
+    /**
+     * closes and deletes the tmp file of an abandoned transfer, content which is
+     * received afterwards fails with a {@link BlobTransferExpiredException}.
+     *
+     * @return the size of the deleted file
+     */
+    public synchronized long discard() {
+        discarded = true;
+        closeQuietly(fileChannel);
+        closeQuietly(headFileChannel);
+        fileChannel = null;
+        headFileChannel = null;
+        if (headCatchedupLatch != null) {
             headCatchedupLatch.countDown();
         }
+        if (file == null) {
+            return 0;
+        }
+        long length = file.length();
+        if (file.delete()) {
+            return length;
+        }
+        logger.warn("could not delete tmp file {} of discarded transfer", file);
+        return 0;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("failed to close tmp file channel", e);
+        }
     }
 
     public long chunks() {
@@ -218,6 +376,7 @@ public class DigestBlob {
             digestBlob.headLength = currentPos;
             digestBlob.headSize = new AtomicLong();
             digestBlob.headCatchedupLatch = new CountDownLatch(1);
+            digestBlob.tailPos = currentPos;
 
             RandomAccessFile raf = new RandomAccessFile(digestBlob.file, "rw");
             raf.setLength(currentPos);
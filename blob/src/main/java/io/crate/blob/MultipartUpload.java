@@ -0,0 +1,165 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.blob.exceptions.BlobUploadPartMissingException;
+import io.crate.blob.exceptions.DigestMismatchException;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+
+/**
+ * The parts of a multi-part upload of a blob on one shard copy.
+ *
+ * Every part is written to its own file in the tmp directory of the container, the
+ * chunks of a part may arrive out of order and are written to their position. Once
+ * the last chunk of a part arrived the part is sealed, parts may be re-uploaded until
+ * the upload is completed. On completion the sealed parts are concatenated in the
+ * order of their part number into a {@link DigestBlob} which verifies the digest.
+ */
+public class MultipartUpload {
+
+    private static final ESLogger logger = Loggers.getLogger(MultipartUpload.class);
+
+    private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+
+    private final BlobContainer container;
+    private final String digest;
+    private final UUID uploadId;
+
+    public MultipartUpload(BlobContainer container, String digest, UUID uploadId) {
+        this.container = container;
+        this.digest = digest;
+        this.uploadId = uploadId;
+    }
+
+    private String prefix() {
+        return digest + "." + uploadId + ".";
+    }
+
+    File partFile(int part, boolean sealed) {
+        String name = prefix() + part;
+        return new File(container.getTmpDirectory(), sealed ? name : name + ".tmp");
+    }
+
+    /**
+     * writes a chunk of a part, the last chunk seals the part
+     *
+     * @return the size of the part if it has been sealed, otherwise the end of the written chunk
+     */
+    public long writePart(int part, long position, BytesReference content, boolean last) throws IOException {
+        File file = partFile(part, false);
+        long end = position + content.length();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            long writePos = position;
+            for (ByteBuffer byteBuffer : content.toChannelBuffer().toByteBuffers()) {
+                while (byteBuffer.hasRemaining()) {
+                    writePos += channel.write(byteBuffer, writePos);
+                }
+            }
+            if (last) {
+                // all previous chunks have been acknowledged, a longer file is left over from a previous attempt
+                raf.setLength(end);
+                channel.force(false);
+            }
+        } finally {
+            raf.close();
+        }
+        if (last) {
+            File sealed = partFile(part, true);
+            if (sealed.exists() && !sealed.delete()) {
+                throw new IOException("could not replace part " + part + " of upload " + uploadId);
+            }
+            if (!file.renameTo(sealed)) {
+                throw new IOException("could not seal part " + part + " of upload " + uploadId);
+            }
+            logger.trace("sealed part {} of upload {} size: {}", part, uploadId, end);
+        }
+        return end;
+    }
+
+    /**
+     * concatenates the parts 1 to <code>parts</code> and moves the blob to its final location
+     *
+     * @throws BlobUploadPartMissingException if one of the parts hasn't been sealed
+     * @throws DigestMismatchException if the content doesn't match the digest
+     */
+    public File complete(int parts) throws IOException {
+        for (int part = 1; part <= parts; part++) {
+            if (!partFile(part, true).exists()) {
+                throw new BlobUploadPartMissingException(uploadId, part);
+            }
+        }
+        DigestBlob digestBlob = container.createBlob(digest, uploadId);
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try {
+            for (int part = 1; part <= parts; part++) {
+                FileInputStream in = new FileInputStream(partFile(part, true));
+                try {
+                    int read;
+                    while ((read = in.read(buffer)) > 0) {
+                        digestBlob.addContent(new BytesArray(buffer, 0, read), false);
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+            digestBlob.addContent(new BytesArray(new byte[0]), true);
+            return digestBlob.commit();
+        } finally {
+            abort();
+        }
+    }
+
+    /**
+     * deletes all parts of the upload
+     */
+    public void abort() {
+        final String prefix = prefix();
+        File[] files = container.getTmpDirectory().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.delete()) {
+                logger.warn("could not delete part {} of upload {}", file.getName(), uploadId);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.common.Hex;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * a chunk of a part of a multi-part upload, the transferId is the id of the upload
+ */
+public class PutBlobPartRequest extends BlobTransferRequest<PutBlobPartRequest> {
+
+    private byte[] digest;
+    private int part;
+    private long position;
+
+    public PutBlobPartRequest() {
+    }
+
+    public PutBlobPartRequest(String index, byte[] digest, UUID uploadId, int part,
+                              long position, BytesArray content, boolean last) {
+        super(index, uploadId, content, last);
+        this.digest = digest;
+        this.part = part;
+        this.position = position;
+    }
+
+    public String digest() {
+        return Hex.encodeHexString(digest);
+    }
+
+    public int part() {
+        return part;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        digest = new byte[20];
+        in.read(digest);
+        part = in.readVInt();
+        position = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.write(digest);
+        out.writeVInt(part);
+        out.writeVLong(position);
+    }
+}
@@ -52,7 +52,7 @@ public class PutChunkReplicaRequest extends ActionRequest<PutChunkReplicaRequest
         super.readFrom(in);
         sourceNodeId = in.readString();
         transferId = new UUID(in.readLong(), in.readLong());
-        currentPos = in.readVInt();
+        currentPos = in.readVLong();
         content = in.readBytesReference();
         isLast = in.readBoolean();
     }
@@ -0,0 +1,194 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.common.Hex;
+import org.elasticsearch.ElasticsearchIllegalStateException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.jboss.netty.buffer.ChannelBuffer;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * A multi-part upload of a blob to the shard of its digest.
+ *
+ * The parts are uploaded independently, possibly in parallel via different nodes, and
+ * are concatenated in the order of their part number once the upload is completed.
+ * The content of a part is sent in pipelined chunks using a {@link ChunkRequestWindow}.
+ */
+public class RemoteBlobUpload {
+
+    private final ESLogger logger = Loggers.getLogger(getClass());
+
+    private final String index;
+    private final String digest;
+    private final UUID uploadId;
+    private final Client client;
+    private final int chunkSize;
+    private final int windowSize;
+
+    public RemoteBlobUpload(BlobService blobService, String index, String digest, UUID uploadId,
+                            int chunkSize, int windowSize) {
+        this.index = index;
+        this.digest = digest;
+        this.uploadId = uploadId;
+        this.client = blobService.getInjector().getInstance(Client.class);
+        this.chunkSize = chunkSize;
+        this.windowSize = windowSize;
+    }
+
+    public UUID uploadId() {
+        return uploadId;
+    }
+
+    /**
+     * @param expectedDigest hex encoded SHA-1 digest of the part, verified before the part is sealed
+     */
+    public Part newPart(int part, @Nullable String expectedDigest) {
+        return new Part(part, expectedDigest);
+    }
+
+    /**
+     * concatenates the parts 1 to <code>parts</code> and verifies the digest of the blob
+     */
+    public RemoteDigestBlob.Status complete(int parts) {
+        CompleteBlobUploadRequest request = new CompleteBlobUploadRequest(
+            index, Hex.decodeHex(digest), uploadId, parts, false);
+        CompleteBlobUploadResponse response = client.execute(CompleteBlobUploadAction.INSTANCE, request).actionGet();
+        logger.trace("completed upload {} of {} status: {}", uploadId, digest, response.status());
+        return response.status();
+    }
+
+    /**
+     * discards all parts of the upload
+     */
+    public void abort() {
+        CompleteBlobUploadRequest request = new CompleteBlobUploadRequest(
+            index, Hex.decodeHex(digest), uploadId, 0, true);
+        client.execute(CompleteBlobUploadAction.INSTANCE, request).actionGet();
+    }
+
+    public class Part {
+
+        private final int part;
+        private final String expectedDigest;
+        private final MessageDigest md;
+        private final ChunkRequestWindow window;
+
+        private long size = 0;
+        private byte[] pending;
+        private int pendingLength;
+        private String partDigest;
+
+        private Part(int part, @Nullable String expectedDigest) {
+            this.part = part;
+            this.expectedDigest = expectedDigest;
+            this.window = new ChunkRequestWindow(windowSize);
+            try {
+                this.md = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new ElasticsearchIllegalStateException("SHA-1 digest is not available", e);
+            }
+        }
+
+        /**
+         * @return the hex encoded SHA-1 digest of the part, available once the last content has been added
+         */
+        public String partDigest() {
+            return partDigest;
+        }
+
+        /**
+         * @return PARTIAL until the last content has been added, then FULL if the part
+         *         has been sealed or MISMATCH if its digest doesn't match the expected one
+         */
+        public RemoteDigestBlob.Status addContent(ChannelBuffer buffer, boolean last) {
+            for (ByteBuffer byteBuffer : buffer.toByteBuffers()) {
+                md.update(byteBuffer);
+            }
+            while (buffer.readable()) {
+                if (pending == null) {
+                    pending = new byte[chunkSize];
+                }
+                int toCopy = Math.min(buffer.readableBytes(), pending.length - pendingLength);
+                buffer.readBytes(pending, pendingLength, toCopy);
+                pendingLength += toCopy;
+                if (pendingLength == pending.length && !(last && !buffer.readable())) {
+                    sendChunk();
+                }
+            }
+            if (!last) {
+                return RemoteDigestBlob.Status.PARTIAL;
+            }
+            waitForInFlightChunks();
+            partDigest = Hex.encodeHexString(md.digest());
+            if (expectedDigest != null && !expectedDigest.equals(partDigest)) {
+                // the part isn't sealed, it can be uploaded again
+                logger.debug("digest mismatch of part {} of upload {}: {}", part, uploadId, partDigest);
+                return RemoteDigestBlob.Status.MISMATCH;
+            }
+            return client.execute(PutBlobPartAction.INSTANCE, newChunkRequest(true)).actionGet().status();
+        }
+
+        private PutBlobPartRequest newChunkRequest(boolean last) {
+            BytesArray content = pending == null ? new BytesArray(new byte[0]) : new BytesArray(pending, 0, pendingLength);
+            PutBlobPartRequest request = new PutBlobPartRequest(
+                index, Hex.decodeHex(digest), uploadId, part, size, content, last);
+            size += pendingLength;
+            pending = null;
+            pendingLength = 0;
+            return request;
+        }
+
+        /**
+         * sends the pending chunk without waiting for the response,
+         * blocks if the window of in-flight chunks is full
+         */
+        private void sendChunk() {
+            ActionListener<PutBlobPartResponse> listener;
+            try {
+                listener = window.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BlobWriteException(digest, size, e);
+            }
+            client.execute(PutBlobPartAction.INSTANCE, newChunkRequest(false), listener);
+        }
+
+        private void waitForInFlightChunks() {
+            try {
+                window.waitForInFlightChunks();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BlobWriteException(digest, size, e);
+            }
+        }
+    }
+}
@@ -22,15 +22,27 @@
 package io.crate.blob;
 
 import io.crate.common.Hex;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.jboss.netty.buffer.ChannelBuffer;
 
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.Semaphore;
 
+/**
+ * Uploads a blob to the primary shard of its digest.
+ *
+ * The http chunks are coalesced into chunks of <code>chunkSize</code> bytes which
+ * are sent pipelined: up to <code>windowSize</code> chunks are in flight without
+ * waiting for their acknowledgement. The last chunk is sent once all previous
+ * chunks have been acknowledged and returns the final status of the transfer.
+ */
 public class RemoteDigestBlob {
 
     private final String index;
@@ -85,13 +97,32 @@ public class RemoteDigestBlob {
     private StartBlobResponse startResponse;
     private UUID transferId;
 
+    private final int chunkSize;
+    private final int windowSize;
+    private final Semaphore window;
+    private byte[] pending;
+    private int pendingLength;
+
+    // offsets of acknowledged chunks which aren't contiguous with ackedSize yet
+    private final TreeMap<Long, Long> ackedChunks = new TreeMap<>();
+    private long ackedSize;
+    private volatile Throwable failure;
+
 
     public RemoteDigestBlob(BlobService blobService, String index, String digest) {
+        this(blobService, index, digest, 256 * 1024, 1);
+    }
+
+    public RemoteDigestBlob(BlobService blobService, String index, String digest,
+                            int chunkSize, int windowSize) {
         this.digest = digest;
         this.blobService = blobService;
         this.client = blobService.getInjector().getInstance(Client.class);
         this.size = 0;
         this.index = index;
+        this.chunkSize = chunkSize;
+        this.windowSize = windowSize;
+        this.window = new Semaphore(windowSize);
     }
 
     public Status status(){
@@ -120,6 +151,7 @@ public class RemoteDigestBlob {
                 last
         );
         size += buffer.readableBytes();
+        ackedSize = size;
         startResponse = client.execute(StartBlobAction.INSTANCE, request).actionGet();
         transferId = request.transferId();
         status = startResponse.status();
@@ -127,17 +159,104 @@ public class RemoteDigestBlob {
 
     private void chunk(ChannelBuffer buffer, boolean last) {
         assert (transferId != null);
+        while (buffer.readable()) {
+            if (pending == null) {
+                pending = new byte[chunkSize];
+            }
+            int toCopy = Math.min(buffer.readableBytes(), pending.length - pendingLength);
+            buffer.readBytes(pending, pendingLength, toCopy);
+            pendingLength += toCopy;
+            if (pendingLength == pending.length && !(last && !buffer.readable())) {
+                sendChunk();
+            }
+        }
+        if (last) {
+            waitForInFlightChunks();
+            assert ackedSize == size : "not all chunks have been acknowledged";
+            PutChunkResponse response = client.execute(PutChunkAction.INSTANCE, newChunkRequest(true)).actionGet();
+            status = response.status();
+        }
+    }
+
+    private PutChunkRequest newChunkRequest(boolean last) {
+        BytesArray content = pending == null ? new BytesArray(new byte[0]) : new BytesArray(pending, 0, pendingLength);
         PutChunkRequest request = new PutChunkRequest(
             index,
             Hex.decodeHex(digest),
             transferId,
-            new BytesArray(buffer.array()),
+            content,
             size,
             last
         );
-        size += buffer.readableBytes();
-        PutChunkResponse response = client.execute(PutChunkAction.INSTANCE, request).actionGet();
-        status = response.status();
+        size += pendingLength;
+        pending = null;
+        pendingLength = 0;
+        return request;
+    }
+
+    /**
+     * sends the pending chunk without waiting for the response,
+     * blocks if the window of in-flight chunks is full
+     */
+    private void sendChunk() {
+        acquire(1);
+        if (failure != null) {
+            window.release();
+            checkFailure();
+        }
+        final long offset = size;
+        final long end = size + pendingLength;
+        client.execute(PutChunkAction.INSTANCE, newChunkRequest(false), new ActionListener<PutChunkResponse>() {
+            @Override
+            public void onResponse(PutChunkResponse response) {
+                acknowledge(offset, end);
+                window.release();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                failure = e;
+                window.release();
+            }
+        });
+    }
+
+    private synchronized void acknowledge(long offset, long end) {
+        if (offset != ackedSize) {
+            ackedChunks.put(offset, end);
+            return;
+        }
+        ackedSize = end;
+        Long next;
+        while ((next = ackedChunks.remove(ackedSize)) != null) {
+            ackedSize = next;
+        }
+    }
+
+    private void waitForInFlightChunks() {
+        acquire(windowSize);
+        window.release(windowSize);
+        checkFailure();
+    }
+
+    private void acquire(int permits) {
+        try {
+            window.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlobWriteException(digest, size, e);
+        }
+    }
+
+    private void checkFailure() {
+        Throwable e = failure;
+        if (e == null) {
+            return;
+        }
+        if (e instanceof ElasticsearchException) {
+            throw (ElasticsearchException) e;
+        }
+        throw new BlobWriteException(digest, size, e);
     }
 
     public Status addContent(ChannelBuffer buffer, boolean last) {
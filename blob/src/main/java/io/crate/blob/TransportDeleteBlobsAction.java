@@ -0,0 +1,130 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.blob.v2.BlobIndices;
+import io.crate.blob.v2.BlobShard;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.support.replication.TransportShardReplicationOperationAction;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.action.shard.ShardStateAction;
+import org.elasticsearch.cluster.block.ClusterBlockException;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class TransportDeleteBlobsAction extends TransportShardReplicationOperationAction<DeleteBlobsRequest, DeleteBlobsRequest,
+        DeleteBlobsResponse> {
+
+    private final BlobIndices blobIndices;
+
+    @Inject
+    public TransportDeleteBlobsAction(Settings settings,
+                                      TransportService transportService,
+                                      ClusterService clusterService,
+                                      IndicesService indicesService,
+                                      ThreadPool threadPool,
+                                      ShardStateAction shardStateAction,
+                                      BlobIndices blobIndices) {
+        super(settings, transportService, clusterService, indicesService, threadPool, shardStateAction);
+        this.blobIndices = blobIndices;
+    }
+
+    @Override
+    protected DeleteBlobsRequest newRequestInstance() {
+        return new DeleteBlobsRequest();
+    }
+
+    @Override
+    protected DeleteBlobsRequest newReplicaRequestInstance() {
+        return new DeleteBlobsRequest();
+    }
+
+    @Override
+    protected DeleteBlobsResponse newResponseInstance() {
+        return new DeleteBlobsResponse();
+    }
+
+    @Override
+    protected String transportAction() {
+        return DeleteBlobsAction.NAME;
+    }
+
+    @Override
+    protected String executor() {
+        return ThreadPool.Names.INDEX;
+    }
+
+    @Override
+    protected PrimaryResponse<DeleteBlobsResponse, DeleteBlobsRequest> shardOperationOnPrimary(ClusterState clusterState,
+            PrimaryOperationRequest shardRequest) {
+        final DeleteBlobsRequest request = shardRequest.request;
+        BlobShard blobShard = blobIndices.blobShardSafe(request.index(), shardRequest.shardId);
+        boolean[] deleted = new boolean[request.size()];
+        for (int i = 0; i < deleted.length; i++) {
+            deleted[i] = blobShard.delete(request.digest(i));
+        }
+        logger.trace("deleted blobs on primary of shard {}", shardRequest.shardId);
+        return new PrimaryResponse<DeleteBlobsResponse, DeleteBlobsRequest>(
+                request, new DeleteBlobsResponse(deleted), null);
+    }
+
+    @Override
+    protected void shardOperationOnReplica(ReplicaOperationRequest shardRequest) {
+        final DeleteBlobsRequest request = shardRequest.request;
+        BlobShard blobShard = blobIndices.blobShardSafe(request.index(), shardRequest.shardId);
+        for (int i = 0; i < request.size(); i++) {
+            blobShard.delete(request.digest(i));
+        }
+    }
+
+    @Override
+    protected ShardIterator shards(ClusterState clusterState, DeleteBlobsRequest request) throws ElasticsearchException {
+        // all digests of the request are routed to the same shard
+        return clusterService.operationRouting()
+                .indexShards(clusterService.state(),
+                        request.index(),
+                        null,
+                        null,
+                        request.digest(0));
+    }
+
+    @Override
+    protected boolean checkWriteConsistency() {
+        return true;
+    }
+
+    @Override
+    protected ClusterBlockException checkGlobalBlock(ClusterState state, DeleteBlobsRequest request) {
+        return state.blocks().globalBlockedException(ClusterBlockLevel.WRITE);
+    }
+
+    @Override
+    protected ClusterBlockException checkRequestBlock(ClusterState state, DeleteBlobsRequest request) {
+        return state.blocks().indexBlockedException(ClusterBlockLevel.WRITE, request.index());
+    }
+}
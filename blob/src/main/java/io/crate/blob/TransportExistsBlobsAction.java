@@ -0,0 +1,105 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import io.crate.blob.v2.BlobIndices;
+import io.crate.blob.v2.BlobShard;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.support.single.shard.TransportShardSingleOperationAction;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlockException;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+/**
+ * checks the existence of blobs on one copy of their shard, a local copy is preferred
+ */
+public class TransportExistsBlobsAction extends TransportShardSingleOperationAction<ExistsBlobsRequest, ExistsBlobsResponse> {
+
+    private final BlobIndices blobIndices;
+
+    @Inject
+    public TransportExistsBlobsAction(Settings settings,
+                                      ThreadPool threadPool,
+                                      ClusterService clusterService,
+                                      TransportService transportService,
+                                      BlobIndices blobIndices) {
+        super(settings, threadPool, clusterService, transportService);
+        this.blobIndices = blobIndices;
+    }
+
+    @Override
+    protected String transportAction() {
+        return ExistsBlobsAction.NAME;
+    }
+
+    @Override
+    protected String executor() {
+        return ThreadPool.Names.GET;
+    }
+
+    @Override
+    protected ExistsBlobsResponse shardOperation(ExistsBlobsRequest request, int shardId) throws ElasticsearchException {
+        BlobShard blobShard = blobIndices.blobShardSafe(request.index(), shardId);
+        boolean[] exists = new boolean[request.size()];
+        for (int i = 0; i < exists.length; i++) {
+            exists[i] = blobShard.blobContainer().exists(request.digest(i));
+        }
+        return new ExistsBlobsResponse(exists);
+    }
+
+    @Override
+    protected ExistsBlobsRequest newRequest() {
+        return new ExistsBlobsRequest();
+    }
+
+    @Override
+    protected ExistsBlobsResponse newResponse() {
+        return new ExistsBlobsResponse();
+    }
+
+    @Override
+    protected ClusterBlockException checkGlobalBlock(ClusterState state, ExistsBlobsRequest request) {
+        return state.blocks().globalBlockedException(ClusterBlockLevel.READ);
+    }
+
+    @Override
+    protected ClusterBlockException checkRequestBlock(ClusterState state, ExistsBlobsRequest request) {
+        return state.blocks().indexBlockedException(ClusterBlockLevel.READ, request.index());
+    }
+
+    @Override
+    protected void resolveRequest(ClusterState state, ExistsBlobsRequest request) {
+        // the blob index name is already concrete
+    }
+
+    @Override
+    protected ShardIterator shards(ClusterState state, ExistsBlobsRequest request) throws ElasticsearchException {
+        return clusterService.operationRouting().getShards(
+            state, request.index(), request.shardId(), "_local");
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.blob;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.support.replication.TransportShardReplicationOperationAction;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.action.shard.ShardStateAction;
+import org.elasticsearch.cluster.block.ClusterBlockException;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class TransportPutBlobPartAction extends TransportShardReplicationOperationAction<PutBlobPartRequest, PutBlobPartRequest,
+        PutBlobPartResponse> {
+
+    private final BlobTransferTarget transferTarget;
+
+    @Inject
+    public TransportPutBlobPartAction(Settings settings,
+            TransportService transportService,
+            ClusterService clusterService,
+            IndicesService indicesService,
+            ThreadPool threadPool,
+            ShardStateAction shardStateAction,
+            BlobTransferTarget transferTarget) {
+        super(settings, transportService, clusterService, indicesService, threadPool, shardStateAction);
+        this.transferTarget = transferTarget;
+    }
+
+    @Override
+    protected PutBlobPartRequest newRequestInstance() {
+        return new PutBlobPartRequest();
+    }
+
+    @Override
+    protected PutBlobPartRequest newReplicaRequestInstance() {
+        return new PutBlobPartRequest();
+    }
+
+    @Override
+    protected PutBlobPartResponse newResponseInstance() {
+        return new PutBlobPartResponse();
+    }
+
+    @Override
+    protected String transportAction() {
+        return PutBlobPartAction.NAME;
+    }
+
+    @Override
+    protected String executor() {
+        return ThreadPool.Names.INDEX;
+    }
+
+    @Override
+    protected PrimaryResponse<PutBlobPartResponse, PutBlobPartRequest> shardOperationOnPrimary(ClusterState clusterState,
+            PrimaryOperationRequest shardRequest) {
+        logger.trace("shardOperationOnPrimary {}", shardRequest);
+        final PutBlobPartRequest request = shardRequest.request;
+        final PutBlobPartResponse response = newResponseInstance();
+        transferTarget.putPart(shardRequest.shardId, request, response);
+        return new PrimaryResponse<PutBlobPartResponse, PutBlobPartRequest>(
+                request, response, null);
+
+    }
+
+    @Override
+    protected void shardOperationOnReplica(ReplicaOperationRequest shardRequest) {
+        logger.trace("shardOperationOnReplica operating on replica {}", shardRequest);
+        final PutBlobPartRequest request = shardRequest.request;
+        final PutBlobPartResponse response = newResponseInstance();
+        transferTarget.putPart(shardRequest.shardId, request, response);
+    }
+
+    @Override
+    protected ShardIterator shards(ClusterState clusterState, PutBlobPartRequest request) throws ElasticsearchException {
+        return clusterService.operationRouting()
+                .indexShards(clusterService.state(),
+                        request.index(),
+                        null,
+                        null, request.digest());
+    }
+
+    @Override
+    protected boolean checkWriteConsistency() {
+        return true;
+    }
+
+    @Override
+    protected ClusterBlockException checkGlobalBlock(ClusterState state, PutBlobPartRequest request) {
+        return state.blocks().globalBlockedException(ClusterBlockLevel.WRITE);
+    }
+
+    @Override
+    protected ClusterBlockException checkRequestBlock(ClusterState state, PutBlobPartRequest request) {
+        return state.blocks().indexBlockedException(ClusterBlockLevel.WRITE, request.index());
+    }
+}
+
@@ -29,8 +29,6 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 
-import java.io.File;
-
 public class BlobHeadRequestHandler {
 
     private final TransportService transportService;
@@ -88,7 +86,6 @@ public class BlobHeadRequestHandler {
                 "Received GetBlobHeadRequest for transfer" + request.transferId.toString() + "but don't have an activeTransfer with that id";
 
             final DiscoveryNode recipientNode = clusterService.state().getNodes().get(request.senderNodeId);
-            final File pendingFile = transferStatus.digestBlob().file();
             final long bytesToSend = request.endPos;
 
             blobTransferTarget.gotAGetBlobHeadRequest(request.transferId);
@@ -97,7 +94,7 @@ public class BlobHeadRequestHandler {
 
             threadPool.generic().execute(
                 new PutHeadChunkRunnable(
-                    pendingFile, bytesToSend, transportService, blobTransferTarget,
+                    transferStatus.digestBlob(), bytesToSend, transportService, blobTransferTarget,
                     recipientNode, request.transferId)
             );
         }
@@ -118,7 +115,7 @@ public class BlobHeadRequestHandler {
         public void messageReceived(PutBlobHeadChunkRequest request, TransportChannel channel) throws Exception {
             BlobTransferStatus transferStatus = blobTransferTarget.getActiveTransfer(request.transferId);
             assert transferStatus != null;
-            transferStatus.digestBlob().addToHead(request.content);
+            transferStatus.digestBlob().addToHead(request.position, request.content);
             channel.sendResponse(TransportResponse.Empty.INSTANCE);
         }
 
@@ -33,12 +33,14 @@ import java.util.UUID;
 public class PutBlobHeadChunkRequest extends TransportRequest {
 
     public UUID transferId;
+    public long position;
     public BytesReference content;
 
     public PutBlobHeadChunkRequest() {}
 
-    public PutBlobHeadChunkRequest(UUID transferId, BytesArray bytesArray) {
+    public PutBlobHeadChunkRequest(UUID transferId, long position, BytesArray bytesArray) {
         this.transferId = transferId;
+        this.position = position;
         this.content = bytesArray;
     }
 
@@ -46,6 +48,7 @@ public class PutBlobHeadChunkRequest extends TransportRequest {
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
         transferId = new UUID(in.readLong(), in.readLong());
+        position = in.readVLong();
         content = in.readBytesReference();
     }
 
@@ -54,6 +57,7 @@ public class PutBlobHeadChunkRequest extends TransportRequest {
         super.writeTo(out);
         out.writeLong(transferId.getMostSignificantBits());
         out.writeLong(transferId.getLeastSignificantBits());
+        out.writeVLong(position);
         out.writeBytesReference(content);
     }
 }
@@ -22,39 +22,50 @@
 package io.crate.blob.pending_transfer;
 
 import io.crate.blob.BlobTransferTarget;
+import io.crate.blob.ChunkRequestWindow;
+import io.crate.blob.DigestBlob;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
-import org.elasticsearch.transport.EmptyTransportResponseHandler;
-import org.elasticsearch.transport.TransportRequestOptions;
 import org.elasticsearch.transport.TransportService;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
+/**
+ * sends the head of a blob which is still being uploaded to a replica which resumed the transfer.
+ *
+ * The head is read with positional reads in large chunks which are sent pipelined. If the
+ * head hasn't been written completely the available part is sent and the runnable waits
+ * for the {@link DigestBlob} to grow.
+ */
 public class PutHeadChunkRunnable implements Runnable {
 
-    private final File pendingFile;
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int WINDOW_SIZE = 4;
+    private static final long MAX_FILE_GROWTH_WAIT_MILLIS = 25 * 1000;
+
+    private final DigestBlob digestBlob;
     private final long bytesToSend;
     private final DiscoveryNode recipientNode;
     private final TransportService transportService;
     private final BlobTransferTarget blobTransferTarget;
     private final UUID transferId;
-    private WatchKey watchKey;
-    private WatchService watcher;
     private final ESLogger logger = Loggers.getLogger(getClass());
 
-    public PutHeadChunkRunnable(File pendingFile, long bytesToSend,
+    public PutHeadChunkRunnable(DigestBlob digestBlob, long bytesToSend,
                                 TransportService transportService,
                                 BlobTransferTarget blobTransferTarget,
                                 DiscoveryNode recipientNode, UUID transferId) {
-        this.pendingFile = pendingFile;
+        this.digestBlob = digestBlob;
         this.bytesToSend = bytesToSend;
         this.recipientNode = recipientNode;
         this.blobTransferTarget = blobTransferTarget;
@@ -64,85 +75,53 @@ public class PutHeadChunkRunnable implements Runnable {
 
     @Override
     public void run() {
+        File pendingFile = digestBlob.file();
+        FileInputStream inputStream = null;
         try {
-            FileInputStream inputStream = new FileInputStream(pendingFile);
-            int bufSize = 4096;
-            int bytesRead;
-            int size;
-            int maxFileGrowthWait = 5;
-            int fileGrowthWaited = 0;
-            byte[] buffer = new byte[bufSize];
-            long remainingBytes = bytesToSend;
+            inputStream = new FileInputStream(pendingFile);
+            FileChannel channel = inputStream.getChannel();
+            ChunkRequestWindow window = new ChunkRequestWindow(transportService, recipientNode,
+                BlobHeadRequestHandler.Actions.PUT_BLOB_HEAD_CHUNK, WINDOW_SIZE);
+            // reused for every chunk, a request is serialized when it is sent
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, bytesToSend));
+            long position = 0;
+
+            while (position < bytesToSend) {
+                // send whatever has been written so far instead of waiting for a full chunk
+                long written = digestBlob.waitForWrittenBytes(position + 1, MAX_FILE_GROWTH_WAIT_MILLIS);
+                if (written <= position) {
+                    throw new HeadChunkFileTooSmallException(pendingFile.getAbsolutePath());
+                }
+                int size = (int) Math.min(CHUNK_SIZE, Math.min(bytesToSend, written) - position);
 
-            while (remainingBytes > 0) {
-                size = (int)Math.min(bufSize, remainingBytes);
-                bytesRead = inputStream.read(buffer, 0, size);
-                if (bytesRead < size) {
-                    waitUntilFileHasGrown(pendingFile);
-                    fileGrowthWaited++;
-                    if (fileGrowthWaited == maxFileGrowthWait) {
-                        throw new HeadChunkFileTooSmallException(pendingFile.getAbsolutePath());
-                    }
-                    if (bytesRead < 1) {
-                        continue;
+                buffer.clear();
+                buffer.limit(size);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new EOFException(pendingFile.getAbsolutePath());
                     }
                 }
-                remainingBytes -= bytesRead;
-
-                transportService.submitRequest(
-                    recipientNode,
-                    BlobHeadRequestHandler.Actions.PUT_BLOB_HEAD_CHUNK,
-                    new PutBlobHeadChunkRequest(transferId, new BytesArray(buffer, 0, bytesRead)),
-                    TransportRequestOptions.options(),
-                    EmptyTransportResponseHandler.INSTANCE_SAME
-                ).txGet();
+                window.send(new PutBlobHeadChunkRequest(transferId, position, new BytesArray(buffer.array(), 0, size)));
+                position += size;
             }
-
-
+            window.waitForInFlightChunks();
         } catch (FileNotFoundException ex) {
             logger.error("Can't send HeadChunk - file not found", ex);
         } catch (IOException ex) {
             logger.error("IOException in PutHeadChunkRunnable", ex);
+        } catch (ElasticsearchException ex) {
+            logger.error("failed to send HeadChunk", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         } finally {
-            blobTransferTarget.putHeadChunkTransferFinished(transferId);
-        }
-    }
-
-    private void waitUntilFileHasGrown(File pendingFile)
-    {
-        try {
-            if (watcher == null) {
-                initWatcher(pendingFile.getParent());
-            }
-
-            watchKey = watcher.poll(5, TimeUnit.SECONDS);
-            if (watchKey == null) {
-                return;
-            }
-            for (WatchEvent<?> event : watchKey.pollEvents()) {
-                WatchEvent.Kind<?> kind = event.kind();
-
-                if (kind == StandardWatchEventKinds.OVERFLOW) {
-                    continue;
-                }
-
-                WatchEvent<Path> ev = (WatchEvent<Path>)event;
-                Path filename = ev.context();
-                if (filename.toString().equals(pendingFile.getName())) {
-                    break;
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    // ignore
                 }
             }
-        } catch (IOException ex) {
-            // ignore
-        } catch (InterruptedException ex) {
-            // ignore
+            blobTransferTarget.putHeadChunkTransferFinished(transferId);
         }
     }
-
-    private void initWatcher(String directoryToWatch) throws IOException {
-        FileSystem fs = FileSystems.getDefault();
-        watcher = fs.newWatchService();
-        Path path = fs.getPath(directoryToWatch);
-        watchKey = path.register(watcher, StandardWatchEventKinds.ENTRY_MODIFY);
-    }
 }
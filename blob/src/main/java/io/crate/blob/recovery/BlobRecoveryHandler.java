@@ -22,7 +22,9 @@
 package io.crate.blob.recovery;
 
 import io.crate.blob.BlobContainer;
+import io.crate.blob.BlobDigestIndex;
 import io.crate.blob.BlobTransferTarget;
+import io.crate.blob.ChunkRequestWindow;
 import io.crate.blob.v2.BlobIndices;
 import io.crate.blob.v2.BlobShard;
 import io.crate.common.Hex;
@@ -31,23 +33,34 @@ import org.elasticsearch.common.StopWatch;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.index.shard.IndexShardClosedException;
 import org.elasticsearch.index.shard.IndexShardState;
 import org.elasticsearch.index.shard.service.InternalIndexShard;
 import org.elasticsearch.indices.recovery.*;
 import org.elasticsearch.transport.*;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class BlobRecoveryHandler {
 
+    /**
+     * number of chunk requests of a single file which may be in flight at the same time
+     */
+    private static final int TRANSFER_WINDOW_SIZE = 4;
+
     private final ESLogger logger = Loggers.getLogger(getClass());
     private final StartRecoveryRequest request;
     private final TransportService transportService;
@@ -55,6 +68,8 @@ public class BlobRecoveryHandler {
     private final RecoverySettings recoverySettings;
     private final InternalIndexShard shard;
     private final BlobTransferTarget blobTransferTarget;
+    private final AtomicLong transferredFiles = new AtomicLong();
+    private final AtomicLong transferredBytes = new AtomicLong();
 
     public BlobRecoveryHandler(TransportService transportService,
                                RecoverySettings recoverySettings,
@@ -70,7 +85,7 @@ public class BlobRecoveryHandler {
         this.shard = shard;
     }
 
-    private Set<BytesArray> getExistingDigestsFromTarget(byte prefix) {
+    private byte[][] getExistingDigestsFromTarget(byte prefix) {
         BlobStartPrefixResponse response =
             (BlobStartPrefixResponse)transportService.submitRequest(
                 request.targetNode(),
@@ -84,12 +99,22 @@ public class BlobRecoveryHandler {
                     }
                 }
             ).txGet();
+        return response.existingDigests;
+    }
 
-        Set<BytesArray> result = new HashSet<BytesArray>();
-        for (byte[] digests : response.existingDigests) {
-            result.add(new BytesArray(digests));
-        }
-        return result;
+    private BlobPrefixChecksumsResponse getPrefixChecksumsFromTarget() {
+        return (BlobPrefixChecksumsResponse)transportService.submitRequest(
+            request.targetNode(),
+            BlobRecoveryTarget.Actions.PREFIX_CHECKSUMS,
+            new BlobPrefixChecksumsRequest(request.recoveryId(), request.shardId()),
+            TransportRequestOptions.options(),
+            new FutureTransportResponseHandler<TransportResponse>() {
+                @Override
+                public TransportResponse newInstance() {
+                    return new BlobPrefixChecksumsResponse();
+                }
+            }
+        ).txGet();
     }
 
     public void phase1() throws Exception {
@@ -134,47 +159,81 @@ public class BlobRecoveryHandler {
         sendFinalizeRecoveryRequest();
 
         stopWatch.stop();
-        logger.debug("[{}][{}] recovery [phase1] to {}: took [{}]",
+        long millis = Math.max(1, stopWatch.totalTime().millis());
+        blobShard.recoveryFinished(transferredBytes.get(), millis);
+        logger.debug("[{}][{}] recovery [phase1] to {}: took [{}], transferred [{}] files with [{}] ([{}]/s)",
             request.shardId().index().name(), request.shardId().id(), request.targetNode().getName(),
-            stopWatch.totalTime());
+            stopWatch.totalTime(), transferredFiles.get(), new ByteSizeValue(transferredBytes.get()),
+            new ByteSizeValue(transferredBytes.get() * 1000 / millis));
     }
 
     public void phase2() throws ElasticsearchException {
     }
 
+    /**
+     * Only prefixes with a differing count or checksum exchange their digests. The digests of
+     * both sides are sorted, so the missing and deletable digests are found by merging them.
+     *
+     * File transfers are started as soon as a prefix is diffed and run concurrently with
+     * the following prefixes, only the end of the sync waits for all of them.
+     */
     private void syncVarFiles(AtomicReference<Exception> lastException) throws InterruptedException {
+        BlobContainer container = blobShard.blobContainer();
+        BlobPrefixChecksumsResponse remoteChecksums = getPrefixChecksumsFromTarget();
+        List<CountDownLatch> latches = new ArrayList<>();
 
         for (byte prefix : BlobContainer.PREFIXES) {
-            // byte[1] and byte[1] have different hashCodes
-            // so setA.removeAll(setB) wouldn't work with byte[], that's why BytesArray is used here
-            Set<BytesArray> remoteDigests = getExistingDigestsFromTarget(prefix);
-            Set<BytesArray> localDigests = new HashSet<BytesArray>();
-            for (byte[] digest : blobShard.currentDigests(prefix)) {
-                localDigests.add(new BytesArray(digest));
+            int idx = prefix & 0xFF;
+            if (remoteChecksums.counts[idx] == container.count(prefix)
+                && Arrays.equals(remoteChecksums.checksums[idx], container.checksum(prefix))) {
+                continue;
+            }
+            byte[][] remoteDigests = getExistingDigestsFromTarget(prefix);
+            byte[][] localDigests = blobShard.currentDigests(prefix);
+
+            List<byte[]> localOnlyDigests = new ArrayList<>();
+            List<BytesArray> remoteOnlyDigests = new ArrayList<>();
+            int localIdx = 0;
+            int remoteIdx = 0;
+            while (localIdx < localDigests.length || remoteIdx < remoteDigests.length) {
+                int cmp;
+                if (localIdx == localDigests.length) {
+                    cmp = 1;
+                } else if (remoteIdx == remoteDigests.length) {
+                    cmp = -1;
+                } else {
+                    cmp = BlobDigestIndex.compare(localDigests[localIdx], remoteDigests[remoteIdx]);
+                }
+                if (cmp < 0) {
+                    localOnlyDigests.add(localDigests[localIdx++]);
+                } else if (cmp > 0) {
+                    remoteOnlyDigests.add(new BytesArray(remoteDigests[remoteIdx++]));
+                } else {
+                    localIdx++;
+                    remoteIdx++;
+                }
             }
 
-            Set<BytesArray> localButNotRemoteDigests = new HashSet<BytesArray>(localDigests);
-            localButNotRemoteDigests.removeAll(remoteDigests);
-
-            final CountDownLatch latch = new CountDownLatch(localButNotRemoteDigests.size());
-            for (BytesArray digestBytes : localButNotRemoteDigests) {
-                final String digest = Hex.encodeHexString(digestBytes.toBytes());
+            final CountDownLatch latch = new CountDownLatch(localOnlyDigests.size());
+            for (byte[] digestBytes : localOnlyDigests) {
+                final String digest = Hex.encodeHexString(digestBytes);
                 logger.trace("[{}][{}] start to transfer file var/{} to {}",
                     request.shardId().index().name(), request.shardId().id(), digest,
                     request.targetNode().getName());
 
                 recoverySettings.concurrentStreamPool().execute(
-                    new TransferFileRunnable(blobShard.blobContainer().getFile(digest),
-                        lastException, latch)
+                    new TransferFileRunnable(container.getFile(digest), lastException, latch)
                 );
             }
-            latch.await();
+            latches.add(latch);
 
-            remoteDigests.removeAll(localDigests);
-            if (!remoteDigests.isEmpty()) {
-                deleteFilesRequest(remoteDigests.toArray(new BytesArray[remoteDigests.size()]));
+            if (!remoteOnlyDigests.isEmpty()) {
+                deleteFilesRequest(remoteOnlyDigests.toArray(new BytesArray[remoteOnlyDigests.size()]));
             }
         }
+        for (CountDownLatch latch : latches) {
+            latch.await();
+        }
     }
 
     private void deleteFilesRequest(BytesArray[] digests) {
@@ -210,6 +269,7 @@ public class BlobRecoveryHandler {
         private final String baseDir;
         private final File file;
         private final CountDownLatch latch;
+        private ByteBuffer buffer;
 
         public TransferFileRunnable(File filePath, AtomicReference<Exception> lastException,
                                     CountDownLatch latch) {
@@ -221,91 +281,104 @@ public class BlobRecoveryHandler {
 
         @Override
         public void run() {
-
+            FileInputStream fileStream = null;
             try {
-                final int BUFFER_SIZE = 4 * 4096;
-
-                long fileSize = file.length();
+                final int chunkSize = (int) recoverySettings.fileChunkSize().bytes();
 
+                fileStream = new FileInputStream(file);
+                FileChannel channel = fileStream.getChannel();
+                long fileSize = channel.size();
                 if (fileSize == 0) {
                     logger.warn("[{}][{}] empty file: {}",
                         request.shardId().index().name(), request.shardId().id(), file.getName());
                 }
 
-                FileInputStream fileStream = new FileInputStream(file);
                 String filePath = file.getAbsolutePath();
                 String relPath = filePath.substring(baseDir.length(), filePath.length());
-                byte[] buf = new byte[BUFFER_SIZE];
-                int bytesRead = fileStream.read(buf, 0, BUFFER_SIZE);
-                long bytesReadTotal = 0;
-                BytesArray content = new BytesArray(buf, 0, bytesRead);
+                buffer = ByteBuffer.allocate((int) Math.min(chunkSize, fileSize));
+                BytesArray content = readChunk(channel, 0, (int) Math.min(chunkSize, fileSize));
+                long position = content.length();
                 BlobRecoveryStartTransferRequest startTransferRequest =
                     new BlobRecoveryStartTransferRequest(request.recoveryId(), relPath, content,
                         fileSize
                     );
 
-                if (bytesRead > 0) {
-                    bytesReadTotal += bytesRead;
-
-                    logger.trace("[{}][{}] send BlobRecoveryStartTransferRequest to {} for file {} with size {}",
-                        request.shardId().index().name(), request.shardId().id(),
-                        request.targetNode().getName(),
-                        relPath,
-                        fileSize
-                    );
-                    transportService.submitRequest(
-                        request.targetNode(),
-                        BlobRecoveryTarget.Actions.START_TRANSFER,
-                        startTransferRequest,
-                        TransportRequestOptions.options(),
-                        EmptyTransportResponseHandler.INSTANCE_SAME
-                    ).txGet();
-
-                    boolean isLast = false;
-                    boolean sentChunks = false;
-                    while ( (bytesRead = fileStream.read(buf, 0, BUFFER_SIZE)) > 0 ) {
-
-                        sentChunks = true;
-                        bytesReadTotal += bytesRead;
-
-                        if (shard.state() == IndexShardState.CLOSED) { // check if the shard got closed on us
-                            throw new IndexShardClosedException(shard.shardId());
-                        }
-                        if (bytesReadTotal == fileSize) {
-                            isLast = true;
-                        }
-                        content = new BytesArray(buf, 0, bytesRead);
-
-                        transportService.submitRequest(request.targetNode(),
-                            BlobRecoveryTarget.Actions.TRANSFER_CHUNK,
-                            new BlobRecoveryChunkRequest(request.recoveryId(),
-                                startTransferRequest.transferId(), content, isLast),
-                            TransportRequestOptions.options(),
-                            EmptyTransportResponseHandler.INSTANCE_SAME
-                        ).txGet();
+                logger.trace("[{}][{}] send BlobRecoveryStartTransferRequest to {} for file {} with size {}",
+                    request.shardId().index().name(), request.shardId().id(),
+                    request.targetNode().getName(),
+                    relPath,
+                    fileSize
+                );
+                transportService.submitRequest(
+                    request.targetNode(),
+                    BlobRecoveryTarget.Actions.START_TRANSFER,
+                    startTransferRequest,
+                    TransportRequestOptions.options(),
+                    EmptyTransportResponseHandler.INSTANCE_SAME
+                ).txGet();
+
+                ChunkRequestWindow window = new ChunkRequestWindow(transportService,
+                    request.targetNode(), BlobRecoveryTarget.Actions.TRANSFER_CHUNK, TRANSFER_WINDOW_SIZE);
+                while (position < fileSize) {
+                    if (shard.state() == IndexShardState.CLOSED) { // check if the shard got closed on us
+                        throw new IndexShardClosedException(shard.shardId());
                     }
-
-                    if (!isLast && sentChunks) {
-                        logger.error("Sending isLast because it wasn't sent before for {}", relPath);
+                    content = readChunk(channel, position, (int) Math.min(chunkSize, fileSize - position));
+                    BlobRecoveryChunkRequest chunkRequest = new BlobRecoveryChunkRequest(request.recoveryId(),
+                        startTransferRequest.transferId(), position, content, position + content.length() == fileSize);
+                    position += content.length();
+
+                    if (chunkRequest.isLast()) {
+                        // the target completes the file on the last chunk, so all others must have been written
+                        window.waitForInFlightChunks();
                         transportService.submitRequest(request.targetNode(),
                             BlobRecoveryTarget.Actions.TRANSFER_CHUNK,
-                            new BlobRecoveryChunkRequest(request.recoveryId(),
-                                startTransferRequest.transferId(), BytesArray.EMPTY, true),
+                            chunkRequest,
                             TransportRequestOptions.options(),
                             EmptyTransportResponseHandler.INSTANCE_SAME
                         ).txGet();
+                    } else {
+                        window.send(chunkRequest);
                     }
                 }
 
+                transferredFiles.incrementAndGet();
+                transferredBytes.addAndGet(fileSize);
                 logger.trace("[{}][{}] completed to transfer file {} to {}",
                     request.shardId().index().name(), request.shardId().id(), file.getName(),
                     request.targetNode().getName());
-            } catch (IOException ex) {
+            } catch (Exception ex) {
                 logger.error("exception while file transfer", ex);
                 lastException.set(ex);
             } finally {
+                if (fileStream != null) {
+                    try {
+                        fileStream.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
                 latch.countDown();
             }
         }
+
+        /**
+         * reads the chunk with a positional read into the buffer of this transfer.
+         * The buffer is reused for the next chunk, which is safe because a request
+         * is serialized when it is sent.
+         */
+        private BytesArray readChunk(FileChannel channel, long position, int length) throws IOException {
+            if (recoverySettings.rateLimiter() != null) {
+                recoverySettings.rateLimiter().pause(length);
+            }
+            buffer.clear();
+            buffer.limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("file " + file.getName() + " is shorter than expected");
+                }
+            }
+            return new BytesArray(buffer.array(), 0, length);
+        }
     }
 }
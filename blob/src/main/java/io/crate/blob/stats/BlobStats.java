@@ -35,6 +35,7 @@ public class BlobStats implements Streamable, ToXContent {
     private long totalUsage;
     private long availableSpace;
     private String location;
+    private long recoveryThroughput;
 
     public String location() {
         return location;
@@ -68,12 +69,24 @@ public class BlobStats implements Streamable, ToXContent {
         this.totalUsage = totalUsage;
     }
 
+    /**
+     * bytes per second sent by the last recovery of this shard to another node
+     */
+    public long recoveryThroughput() {
+        return recoveryThroughput;
+    }
+
+    public void recoveryThroughput(long recoveryThroughput) {
+        this.recoveryThroughput = recoveryThroughput;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         count = in.readVLong();
         totalUsage = in.readVLong();
         availableSpace = in.readVLong();
         location = in.readString();
+        recoveryThroughput = in.readVLong();
     }
 
     @Override
@@ -82,6 +95,7 @@ public class BlobStats implements Streamable, ToXContent {
         out.writeVLong(totalUsage);
         out.writeVLong(availableSpace);
         out.writeString(location);
+        out.writeVLong(recoveryThroughput);
     }
 
     @Override
@@ -92,6 +106,7 @@ public class BlobStats implements Streamable, ToXContent {
             .field("size", totalUsage)
             .field("available_space", availableSpace)
             .field("location", location)
+            .field("recovery_throughput", recoveryThroughput)
         .endObject();
 
         return builder;
@@ -50,6 +50,7 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndicesLifecycle;
 import org.elasticsearch.indices.IndicesService;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class BlobIndices extends AbstractComponent {
@@ -222,6 +223,26 @@ public class BlobIndices extends AbstractComponent {
 
     }
 
+    /**
+     * @return the blob shards allocated on this node
+     */
+    public List<BlobShard> localBlobShards() {
+        List<BlobShard> shards = new ArrayList<>();
+        for (IndexService indexService : indicesService) {
+            String index = indexService.index().name();
+            if (!isBlobIndex(index)) {
+                continue;
+            }
+            for (Integer shardId : indexService.shardIds()) {
+                BlobShard blobShard = blobShard(index, shardId);
+                if (blobShard != null) {
+                    shards.add(blobShard);
+                }
+            }
+        }
+        return shards;
+    }
+
     public List<String> indices() {
         return FluentIterable.from(indicesService.indices())
                 .filter(indicesFilter).toList();
@@ -31,6 +31,7 @@ import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.shard.AbstractIndexShardComponent;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.shard.service.IndexShard;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.File;
 
@@ -38,25 +39,27 @@ public class BlobShard extends AbstractIndexShardComponent {
 
     private final BlobContainer blobContainer;
     private final IndexShard indexShard;
+    private volatile long recoveryThroughput;
 
     @Inject
     protected BlobShard(ShardId shardId, Settings indexSettings,
             BlobTransferTarget transferTarget,
             NodeEnvironment nodeEnvironment,
-            IndexShard indexShard) {
+            IndexShard indexShard,
+            ThreadPool threadPool) {
         super(shardId, indexSettings);
         this.indexShard = indexShard;
         File blobDir = new File(nodeEnvironment.shardLocations(shardId)[0], "blobs");
         logger.info("creating BlobContainer at {}", blobDir);
-        this.blobContainer = new BlobContainer(blobDir);
+        this.blobContainer = new BlobContainer(blobDir, threadPool.executor(ThreadPool.Names.GENERIC));
     }
 
     public byte[][] currentDigests(byte prefix) {
-        return blobContainer.cleanAndReturnDigests(prefix);
+        return blobContainer.digests(prefix);
     }
 
     public boolean delete(String digest) {
-        return blobContainer.getFile(digest).delete();
+        return blobContainer.delete(digest);
     }
 
     public BlobContainer blobContainer() {
@@ -67,19 +70,21 @@ public class BlobShard extends AbstractIndexShardComponent {
         return indexShard.routingEntry();
     }
 
+    /**
+     * records the bytes per second sent by a finished recovery of this shard
+     */
+    public void recoveryFinished(long transferredBytes, long millis) {
+        recoveryThroughput = transferredBytes * 1000 / Math.max(1, millis);
+    }
+
     public BlobStats blobStats() {
         final BlobStats stats = new BlobStats();
 
         stats.location(blobContainer().getBaseDirectory().getAbsolutePath());
         stats.availableSpace(blobContainer().getBaseDirectory().getFreeSpace());
-        blobContainer().walkFiles(null, new BlobContainer.FileVisitor() {
-            @Override
-            public boolean visit(File file) {
-                stats.totalUsage(stats.totalUsage() + file.length());
-                stats.count(stats.count() + 1);
-                return true;
-            }
-        });
+        stats.totalUsage(blobContainer().totalSize());
+        stats.count(blobContainer().count());
+        stats.recoveryThroughput(recoveryThroughput);
 
         return stats;
     }
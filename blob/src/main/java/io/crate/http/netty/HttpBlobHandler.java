@@ -21,35 +21,51 @@
 
 package io.crate.http.netty;
 
+import io.crate.blob.BlobCache;
 import io.crate.blob.BlobService;
 import io.crate.blob.DigestBlob;
+import io.crate.blob.ReadBlobChunkRequest;
+import io.crate.blob.ReadBlobChunkResponse;
+import io.crate.blob.RemoteBlobUpload;
 import io.crate.blob.RemoteDigestBlob;
+import io.crate.blob.exceptions.BlobUploadPartMissingException;
 import io.crate.blob.exceptions.DigestMismatchException;
 import io.crate.blob.exceptions.DigestNotFoundException;
 import io.crate.blob.exceptions.MissingHTTPEndpointException;
 import io.crate.blob.v2.BlobIndices;
 import io.crate.blob.v2.BlobShard;
 import io.crate.blob.v2.BlobsDisabledException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.indices.IndexMissingException;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.BaseTransportResponseHandler;
+import org.elasticsearch.transport.TransportException;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.*;
 import org.jboss.netty.handler.codec.http.*;
 import org.jboss.netty.util.CharsetUtil;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static org.jboss.netty.channel.Channels.succeededFuture;
 import static org.jboss.netty.channel.Channels.write;
 import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.*;
+import static org.jboss.netty.handler.codec.http.HttpResponseStatus.NOT_MODIFIED;
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.OK;
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.PARTIAL_CONTENT;
 import static org.jboss.netty.handler.codec.http.HttpVersion.HTTP_1_1;
@@ -67,20 +83,100 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
 
     private final BlobService blobService;
     private final BlobIndices blobIndices;
+    private final BlobCache blobCache;
     private HttpMessage currentMessage;
     private ChannelHandlerContext ctx;
     private static final Pattern contentRangePattern = Pattern.compile("^bytes=(\\d+)-(\\d{0,})$");
 
-    private RemoteDigestBlob digestBlob;
+    /**
+     * size of the chunks read from another node if a blob is proxied
+     */
+    static final int PROXY_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * query parameters and header of the multi-part upload protocol
+     */
+    private static final String UPLOADS_PARAM = "uploads";
+    private static final String UPLOAD_ID_PARAM = "upload_id";
+    private static final String PART_PARAM = "part";
+    private static final String PARTS_PARAM = "parts";
+    public static final String PART_DIGEST_HEADER = "X-Part-Digest";
+    public static final int MAX_UPLOAD_PARTS = 10000;
 
-    public HttpBlobHandler(BlobService blobService, BlobIndices blobIndices) {
+    private RemoteDigestBlob digestBlob;
+    private RemoteBlobUpload.Part blobPart;
+
+    /**
+     * a proxied response is written asynchronously, messages of pipelined requests
+     * received in the meantime are deferred until it is complete
+     */
+    private final Object proxyLock = new Object();
+    private final Queue<MessageEvent> deferredMessages = new ArrayDeque<>();
+    private boolean proxying = false;
+    private boolean deferring = false;
+
+    public HttpBlobHandler(BlobService blobService, BlobIndices blobIndices, BlobCache blobCache) {
         this.blobService = blobService;
         this.blobIndices = blobIndices;
+        this.blobCache = blobCache;
+    }
+
+    /**
+     * blobs are content addressed, so a client which already has the blob with the
+     * requested digest gets a 304 without the content being read.
+     * Must only be called once the existence of the blob has been checked.
+     *
+     * @return true if a 304 has been sent
+     */
+    private boolean notModified(HttpRequest request, String digest) {
+        if (!hasMatchingETag(request, digest)) {
+            return false;
+        }
+        HttpResponse response = new DefaultHttpResponse(HTTP_1_1, NOT_MODIFIED);
+        setDefaultGetHeaders(response, digest);
+        ChannelFuture cf = ctx.getChannel().write(response);
+        if (!HttpHeaders.isKeepAlive(request)) {
+            cf.addListener(ChannelFutureListener.CLOSE);
+        }
+        return true;
+    }
+
+    private static boolean hasMatchingETag(HttpRequest request, String digest) {
+        String ifNoneMatch = request.getHeader(IF_NONE_MATCH);
+        return ifNoneMatch != null && matchesETag(ifNoneMatch, digest);
+    }
+
+    static boolean matchesETag(String ifNoneMatch, String digest) {
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag(digest))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String eTag(String digest) {
+        return "\"" + digest + "\"";
     }
 
 
     private boolean possibleRedirect(HttpRequest request, String index, String digest) {
         HttpMethod method = request.getMethod();
+        if (blobService.proxyRemoteReads() &&
+                (method.equals(HttpMethod.GET) || method.equals(HttpMethod.HEAD))) {
+            DiscoveryNode node = blobService.getReadNode(index, digest);
+            if (node == null) {
+                return false;
+            }
+            logger.trace("proxy read of {} from {}", digest, node);
+            proxyStarted();
+            new ProxiedBlobResponse(request, node, index, digest).start();
+            return true;
+        }
         if (method.equals(HttpMethod.GET) ||
                 method.equals(HttpMethod.HEAD) ||
                 (method.equals(HttpMethod.PUT) &&
@@ -104,13 +200,67 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
     @Override
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e)
             throws Exception {
+        synchronized (proxyLock) {
+            if (deferring) {
+                deferredMessages.add(e);
+                return;
+            }
+        }
+        handleMessage(ctx, e);
+    }
+
+    /**
+     * stops reading requests from the channel until {@link #proxyFinished()} is called
+     */
+    private void proxyStarted() {
+        synchronized (proxyLock) {
+            proxying = true;
+            deferring = true;
+        }
+        ctx.getChannel().setReadable(false);
+    }
+
+    /**
+     * handles the messages which have been deferred while the proxied response was written
+     * and resumes reading from the channel, unless one of them starts another proxied response
+     */
+    private void proxyFinished() {
+        synchronized (proxyLock) {
+            proxying = false;
+        }
+        while (true) {
+            MessageEvent deferred;
+            synchronized (proxyLock) {
+                if (proxying) {
+                    return;
+                }
+                deferred = deferredMessages.poll();
+                if (deferred == null) {
+                    deferring = false;
+                    break;
+                }
+            }
+            try {
+                handleMessage(ctx, deferred);
+            } catch (Exception ex) {
+                try {
+                    exceptionCaught(ctx, new DefaultExceptionEvent(ctx.getChannel(), ex));
+                } catch (Exception inner) {
+                    logger.error("failed to handle deferred request", inner);
+                }
+            }
+        }
+        ctx.getChannel().setReadable(true);
+    }
 
+    private void handleMessage(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
         Object msg = e.getMessage();
         HttpMessage currentMessage = this.currentMessage;
 
         if (msg instanceof HttpRequest) {
 
             digestBlob = null;
+            blobPart = null;
             HttpRequest request = (HttpRequest) msg;
             URI uri;
             try {
@@ -136,6 +286,11 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
 
             index = BlobIndices.fullIndexName(index);
 
+            Map<String, List<String>> params = new QueryStringDecoder(request.getUri()).getParameters();
+            if (params.containsKey(UPLOADS_PARAM) || params.containsKey(UPLOAD_ID_PARAM)) {
+                multipartUpload(request, params, index, digest);
+                return;
+            }
             if (possibleRedirect(request, index, digest)) {
                 reset();
                 return;
@@ -219,10 +374,18 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
             return;
         }
 
+        errorResponse(ex);
+    }
+
+    private void errorResponse(Throwable ex) {
+        ex = ExceptionsHelper.unwrapCause(ex);
         HttpResponseStatus status;
         String body = ex.toString();
         if (ex instanceof DigestMismatchException) {
             status = HttpResponseStatus.BAD_REQUEST;
+        } else if (ex instanceof BlobUploadPartMissingException) {
+            status = HttpResponseStatus.BAD_REQUEST;
+            body = ex.getMessage();
         } else if (ex instanceof DigestNotFoundException) {
             status = HttpResponseStatus.NOT_FOUND;
             body = null;
@@ -242,14 +405,18 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         // should be a redirect upfront if data is not local
 
         BlobShard blobShard = localBlobShard(index, digest);
-        long length = blobShard.blobContainer().getFile(digest).length();
+        File file = localBlobFile(blobShard, digest);
+        if (notModified(request, digest)) {
+            return;
+        }
+        long length = file.length();
         if (length < 1) {
             simpleResponse(HttpResponseStatus.NOT_FOUND, null);
             return;
         }
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
         HttpHeaders.setContentLength(response, length);
-        setDefaultGetHeaders(response);
+        setDefaultGetHeaders(response, digest);
         ChannelFuture cf = ctx.getChannel().write(response);
         if (!HttpHeaders.isKeepAlive(request)) {
             cf.addListener(ChannelFutureListener.CLOSE);
@@ -257,11 +424,15 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
     }
 
     private void get(HttpRequest request, String index, final String digest) throws IOException {
+        File file = localBlobFile(localBlobShard(index, digest), digest);
+        if (notModified(request, digest)) {
+            return;
+        }
         String range = request.getHeader(RANGE);
         if (range != null) {
-            partialContentResponse(range, request, index, digest);
+            partialContentResponse(range, request, digest, file);
         } else {
-            fullContentResponse(request, index, digest);
+            fullContentResponse(request, digest, file);
         }
     }
 
@@ -269,69 +440,97 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         return blobIndices.localBlobShard(index, digest);
     }
 
-    private void partialContentResponse(String range, HttpRequest request, String index, final String digest)
+    private void partialContentResponse(String range, HttpRequest request, final String digest, File file)
         throws  IOException
     {
         assert(range != null);
         Matcher matcher = contentRangePattern.matcher(range);
         if (!matcher.matches()) {
             logger.warn("Invalid byte-range: {}; returning full content", range);
-            fullContentResponse(request, index, digest);
+            fullContentResponse(request, digest, file);
             return;
         }
-        BlobShard blobShard = localBlobShard(index, digest);
+        ChannelBuffer content = blobCache.content(digest, file);
+        BlobCache.OpenFile openFile = content == null ? blobCache.openFile(digest, file) : null;
+        long length = content == null ? openFile.length() : content.readableBytes();
 
-        final RandomAccessFile raf = blobShard.blobContainer().getRandomAccessFile(digest);
         long start;
         long end;
         try {
             start = Long.parseLong(matcher.group(1));
-            if (start > raf.length()) {
+            if (start > length) {
                 logger.warn("416 Requested Range not satisfiable");
                 simpleResponse(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, null);
-                raf.close();
+                if (openFile != null) {
+                    openFile.release();
+                }
                 return;
             }
-            end = raf.length() - 1 ;
+            end = length - 1 ;
             if (!matcher.group(2).equals("")) {
-                end = Long.parseLong(matcher.group(2));
+                end = Math.min(end, Long.parseLong(matcher.group(2)));
             }
         } catch (NumberFormatException ex) {
             logger.error("Couldn't parse Range Header", ex);
             start = 0;
-            end = raf.length();
+            end = length - 1;
         }
 
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, PARTIAL_CONTENT);
         HttpHeaders.setContentLength(response, end - start + 1);
-        response.setHeader(CONTENT_RANGE, "bytes " + start + "-" + end + "/" + raf.length());
-        setDefaultGetHeaders(response);
+        response.setHeader(CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        setDefaultGetHeaders(response, digest);
 
-        ctx.getChannel().write(response);
-        ChannelFuture writeFuture = transferFile(digest, raf, start, end - start + 1);
+        ChannelFuture writeFuture;
+        if (content != null) {
+            response.setContent(content.slice((int) start, (int) (end - start + 1)));
+            writeFuture = ctx.getChannel().write(response);
+        } else {
+            ctx.getChannel().write(response);
+            writeFuture = transferFile(digest, openFile, start, end - start + 1);
+        }
         if (!HttpHeaders.isKeepAlive(request)) {
             writeFuture.addListener(ChannelFutureListener.CLOSE);
         }
     }
 
-    private void fullContentResponse(HttpRequest request, String index, final String digest) throws  IOException {
-        BlobShard blobShard = localBlobShard(index, digest);
-        final RandomAccessFile raf = blobShard.blobContainer().getRandomAccessFile(digest);
+    private void fullContentResponse(HttpRequest request, final String digest, File file) throws  IOException {
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
-        HttpHeaders.setContentLength(response, raf.length());
-        setDefaultGetHeaders(response);
-        logger.trace("HttpResponse: {}", response);
-        ctx.getChannel().write(response);
-        ChannelFuture writeFuture = transferFile(digest, raf, 0, raf.length());
+        setDefaultGetHeaders(response, digest);
+
+        ChannelFuture writeFuture;
+        ChannelBuffer content = blobCache.content(digest, file);
+        if (content != null) {
+            HttpHeaders.setContentLength(response, content.readableBytes());
+            response.setContent(content);
+            writeFuture = ctx.getChannel().write(response);
+        } else {
+            BlobCache.OpenFile openFile = blobCache.openFile(digest, file);
+            HttpHeaders.setContentLength(response, openFile.length());
+            logger.trace("HttpResponse: {}", response);
+            ctx.getChannel().write(response);
+            writeFuture = transferFile(digest, openFile, 0, openFile.length());
+        }
         if (!HttpHeaders.isKeepAlive(request)) {
             writeFuture.addListener(ChannelFutureListener.CLOSE);
         }
     }
 
-    private ChannelFuture transferFile(final String digest, RandomAccessFile raf, long position, long count)
+    /**
+     * the caches may still hold deleted blobs, so the existence is checked
+     * against the digest index of the shard first
+     */
+    private File localBlobFile(BlobShard blobShard, String digest) {
+        if (!blobShard.blobContainer().exists(digest)) {
+            throw new DigestNotFoundException(digest);
+        }
+        return blobShard.blobContainer().getFile(digest);
+    }
+
+    private ChannelFuture transferFile(final String digest, final BlobCache.OpenFile openFile, long position, long count)
         throws IOException
     {
-        final FileRegion region = new DefaultFileRegion(raf.getChannel(), position, count);
+        final FileRegion region = new DefaultFileRegion(openFile.channel(), position, count);
         ChannelFuture writeFuture = ctx.getChannel().write(region);
         writeFuture.addListener(new ChannelFutureProgressListener() {
             @Override
@@ -341,15 +540,16 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
 
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
-                region.releaseExternalResources();
+                openFile.release();
                 logger.trace("file transfer completed");
             }
         });
         return writeFuture;
     }
 
-    private void setDefaultGetHeaders(HttpResponse response) {
+    private void setDefaultGetHeaders(HttpResponse response, String digest) {
         response.setHeader(ACCEPT_RANGES, "bytes");
+        response.setHeader(ETAG, eTag(digest));
         response.setHeader(EXPIRES, EXPIRES_VALUE);
         response.setHeader(CACHE_CONTROL, CACHE_CONTROL_VALUE);
     }
@@ -389,14 +589,121 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         }
     }
 
+    /**
+     * handles the requests of a multi-part upload:
+     *
+     * POST ?uploads starts an upload, PUT ?upload_id=..&amp;part=N uploads a part,
+     * POST ?upload_id=..&amp;parts=N completes and DELETE ?upload_id=.. aborts the upload.
+     */
+    private void multipartUpload(HttpRequest request, Map<String, List<String>> params,
+                                 String index, String digest) throws IOException {
+        HttpMethod method = request.getMethod();
+        if (params.containsKey(UPLOADS_PARAM)) {
+            if (!method.equals(HttpMethod.POST)) {
+                simpleResponse(HttpResponseStatus.METHOD_NOT_ALLOWED, null);
+                return;
+            }
+            RemoteBlobUpload upload = blobService.newUpload(index, digest, null);
+            ChannelBuffer content = ChannelBuffers.copiedBuffer(
+                "{\"upload_id\":\"" + upload.uploadId() + "\"}\n", CharsetUtil.UTF_8);
+            HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
+            response.setHeader(CONTENT_TYPE, "application/json; charset=UTF-8");
+            HttpHeaders.setContentLength(response, content.readableBytes());
+            response.setContent(content);
+            statusResponse(request, response);
+            return;
+        }
+
+        UUID uploadId;
+        try {
+            uploadId = UUID.fromString(param(params, UPLOAD_ID_PARAM));
+        } catch (IllegalArgumentException ex) {
+            simpleResponse(HttpResponseStatus.BAD_REQUEST, "invalid upload_id");
+            return;
+        }
+        RemoteBlobUpload upload = blobService.newUpload(index, digest, uploadId);
+
+        if (method.equals(HttpMethod.PUT)) {
+            int part = partNumber(param(params, PART_PARAM));
+            if (part < 1) {
+                simpleResponse(HttpResponseStatus.BAD_REQUEST,
+                    "part must be a number between 1 and " + MAX_UPLOAD_PARTS);
+                return;
+            }
+            blobPart = upload.newPart(part, request.getHeader(PART_DIGEST_HEADER));
+            currentMessage = request;
+            if (request.isChunked()) {
+                writeToFile(request.getContent(), false, HttpHeaders.is100ContinueExpected(request));
+            } else {
+                writeToFile(request.getContent(), true, HttpHeaders.is100ContinueExpected(request));
+                reset();
+            }
+        } else if (method.equals(HttpMethod.POST)) {
+            int parts = partNumber(param(params, PARTS_PARAM));
+            if (parts < 1) {
+                simpleResponse(HttpResponseStatus.BAD_REQUEST,
+                    "parts must be a number between 1 and " + MAX_UPLOAD_PARTS);
+                return;
+            }
+            HttpResponseStatus exitStatus;
+            switch (upload.complete(parts)) {
+                case FULL:
+                    exitStatus = HttpResponseStatus.CREATED;
+                    break;
+                case MISMATCH:
+                    exitStatus = HttpResponseStatus.BAD_REQUEST;
+                    break;
+                case EXISTS:
+                    exitStatus = HttpResponseStatus.CONFLICT;
+                    break;
+                default:
+                    exitStatus = HttpResponseStatus.INTERNAL_SERVER_ERROR;
+            }
+            HttpResponse response = new DefaultHttpResponse(HTTP_1_1, exitStatus);
+            HttpHeaders.setContentLength(response, 0);
+            statusResponse(request, response);
+        } else if (method.equals(HttpMethod.DELETE)) {
+            upload.abort();
+            simpleResponse(HttpResponseStatus.NO_CONTENT, null);
+        } else {
+            simpleResponse(HttpResponseStatus.METHOD_NOT_ALLOWED, null);
+        }
+    }
+
+    private static String param(Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+        return values == null || values.isEmpty() ? "" : values.get(0);
+    }
+
+    /**
+     * @return the part number or -1 if it isn't valid
+     */
+    private static int partNumber(String value) {
+        try {
+            int part = Integer.parseInt(value);
+            return part >= 1 && part <= MAX_UPLOAD_PARTS ? part : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private void statusResponse(HttpRequest request, HttpResponse response) {
+        reset();
+        ChannelFuture cf = ctx.getChannel().write(response);
+        if (!HttpHeaders.isKeepAlive(request)) {
+            cf.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
     protected void writeToFile(ChannelBuffer input, boolean last, boolean continueExpected) throws
             IOException {
-        if (digestBlob == null) {
+        if (digestBlob == null && blobPart == null) {
             throw new IllegalStateException("digestBlob is null in writeToFile");
         }
 
         HttpResponseStatus exitStatus = null;
-        RemoteDigestBlob.Status status = digestBlob.addContent(input, last);
+        RemoteDigestBlob.Status status = blobPart != null ?
+            blobPart.addContent(input, last) : digestBlob.addContent(input, last);
         switch (status) {
             case FULL:
                 exitStatus = HttpResponseStatus.CREATED;
@@ -422,12 +729,166 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         logger.trace("writeToFile exit status http:{} blob: {}", exitStatus, status);
         HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, exitStatus);
         HttpHeaders.setContentLength(response, 0);
+        if (blobPart != null) {
+            response.setHeader(ETAG, eTag(blobPart.partDigest()));
+        }
         ChannelFuture cf = ctx.getChannel().write(response);
         if (currentMessage == null || !HttpHeaders.isKeepAlive(currentMessage)) {
             cf.addListener(ChannelFutureListener.CLOSE);
         }
     }
 
+    /**
+     * streams a blob which isn't available locally from a node holding a copy of it,
+     * the next chunk is requested once the previous one has been written to the client.
+     */
+    private class ProxiedBlobResponse extends BaseTransportResponseHandler<ReadBlobChunkResponse> {
+
+        private final HttpRequest request;
+        private final DiscoveryNode node;
+        private final String index;
+        private final String digest;
+        private final boolean headOnly;
+        private final boolean notModified;
+        private boolean partial = false;
+        private Long requestedEnd;
+        private long position = 0;
+        private long end = -1;
+
+        ProxiedBlobResponse(HttpRequest request, DiscoveryNode node, String index, String digest) {
+            this.request = request;
+            this.node = node;
+            this.index = index;
+            this.digest = digest;
+            this.headOnly = request.getMethod().equals(HttpMethod.HEAD);
+            // the remote node checks that the blob exists before the 304 is sent
+            this.notModified = hasMatchingETag(request, digest);
+
+            String range = request.getHeader(RANGE);
+            if (!headOnly && !notModified && range != null) {
+                Matcher matcher = contentRangePattern.matcher(range);
+                if (matcher.matches()) {
+                    try {
+                        position = Long.parseLong(matcher.group(1));
+                        if (!matcher.group(2).equals("")) {
+                            requestedEnd = Long.parseLong(matcher.group(2));
+                        }
+                        partial = true;
+                    } catch (NumberFormatException ex) {
+                        logger.error("Couldn't parse Range Header", ex);
+                        position = 0;
+                        requestedEnd = null;
+                    }
+                } else {
+                    logger.warn("Invalid byte-range: {}; returning full content", range);
+                }
+            }
+        }
+
+        void start() {
+            long length = PROXY_CHUNK_SIZE;
+            if (headOnly || notModified) {
+                length = 0;
+            } else if (requestedEnd != null) {
+                length = Math.max(0, Math.min(length, requestedEnd - position + 1));
+            }
+            requestChunk((int) length);
+        }
+
+        private void requestChunk(int length) {
+            blobService.readChunk(node, new ReadBlobChunkRequest(index, digest, position, length), this);
+        }
+
+        @Override
+        public ReadBlobChunkResponse newInstance() {
+            return new ReadBlobChunkResponse();
+        }
+
+        @Override
+        public String executor() {
+            return ThreadPool.Names.SAME;
+        }
+
+        @Override
+        public void handleResponse(ReadBlobChunkResponse chunk) {
+            if (end < 0 && !writeHeaders(chunk.blobLength())) {
+                return;
+            }
+            ChannelBuffer content = chunk.content().toChannelBuffer();
+            position += content.readableBytes();
+            ChannelFuture writeFuture = ctx.getChannel().write(content);
+            if (position > end || content.readableBytes() == 0) {
+                finish(writeFuture);
+                return;
+            }
+            writeFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (future.isSuccess()) {
+                        requestChunk((int) Math.min(PROXY_CHUNK_SIZE, end - position + 1));
+                    }
+                }
+            });
+        }
+
+        /**
+         * @return false if the response is already complete
+         */
+        private boolean writeHeaders(long length) {
+            if (notModified) {
+                end = 0;
+                HttpResponse response = new DefaultHttpResponse(HTTP_1_1, NOT_MODIFIED);
+                setDefaultGetHeaders(response, digest);
+                finish(ctx.getChannel().write(response));
+                return false;
+            }
+            if (partial && position > length) {
+                logger.warn("416 Requested Range not satisfiable");
+                simpleResponse(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, null);
+                return false;
+            }
+            end = requestedEnd == null ? length - 1 : Math.min(requestedEnd, length - 1);
+            HttpResponse response = new DefaultHttpResponse(HTTP_1_1, partial ? PARTIAL_CONTENT : OK);
+            HttpHeaders.setContentLength(response, end - position + 1);
+            if (partial) {
+                response.setHeader(CONTENT_RANGE, "bytes " + position + "-" + end + "/" + length);
+            }
+            setDefaultGetHeaders(response, digest);
+            ChannelFuture writeFuture = ctx.getChannel().write(response);
+            if (headOnly || position > end) {
+                finish(writeFuture);
+                return false;
+            }
+            return true;
+        }
+
+        private void finish(ChannelFuture writeFuture) {
+            if (!HttpHeaders.isKeepAlive(request)) {
+                writeFuture.addListener(ChannelFutureListener.CLOSE);
+                return;
+            }
+            writeFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if (future.isSuccess()) {
+                        proxyFinished();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void handleException(TransportException exp) {
+            if (end >= 0) {
+                // the response has already been started, the client only notices the missing content
+                logger.error("proxy read of {} from {} failed", exp, digest, node);
+                ctx.getChannel().close();
+            } else {
+                errorResponse(ExceptionsHelper.unwrapCause(exp));
+            }
+        }
+    }
+
     public void beforeAdd(ChannelHandlerContext ctx) throws Exception {
         this.ctx = ctx;
     }
@@ -22,6 +22,7 @@
 package io.crate.http.netty;
 
 import com.google.common.collect.ImmutableMap;
+import io.crate.blob.BlobCache;
 import io.crate.blob.BlobService;
 import io.crate.blob.v2.BlobIndices;
 import org.elasticsearch.ElasticsearchException;
@@ -106,6 +107,7 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
     final int maxCompositeBufferComponents;
     private final BlobService blobService;
     private final BlobIndices blobIndices;
+    private final BlobCache blobCache;
 
     private volatile ServerBootstrap serverBootstrap;
 
@@ -123,11 +125,13 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
     public NettyHttpServerTransport(Settings settings, NetworkService networkService,
             BlobService blobService,
             BlobIndices blobIndices,
+            BlobCache blobCache,
             DiscoveryNodeService discoveryNodeService) {
         super(settings);
         this.networkService = networkService;
         this.blobService = blobService;
         this.blobIndices = blobIndices;
+        this.blobCache = blobCache;
         this.discoveryNodeService = discoveryNodeService;
 
         if (settings.getAsBoolean("netty.epollBugWorkaround", false)) {
@@ -371,7 +375,7 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
                 pipeline.addLast("decoder_compress", new HttpContentDecompressor());
             }
 
-            HttpBlobHandler blobHandler = new HttpBlobHandler(transport.blobService, transport.blobIndices);
+            HttpBlobHandler blobHandler = new HttpBlobHandler(transport.blobService, transport.blobIndices, transport.blobCache);
             pipeline.addLast("blob_handler", blobHandler);
 
             HttpChunkAggregator httpChunkAggregator = new HttpChunkAggregator((int) transport.maxContentLength.bytes());
@@ -23,16 +23,19 @@ package io.crate.plugin;
 
 
 import com.google.common.collect.Lists;
+import io.crate.blob.BlobJanitor;
 import io.crate.blob.BlobModule;
 import io.crate.blob.BlobService;
 import io.crate.blob.v2.BlobIndexModule;
 import io.crate.blob.v2.BlobIndicesModule;
 import io.crate.blob.v2.BlobShardModule;
+import io.crate.rest.action.RestBlobBatchAction;
 import org.elasticsearch.common.component.LifecycleComponent;
 import org.elasticsearch.common.inject.Module;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.plugins.AbstractPlugin;
+import org.elasticsearch.rest.RestModule;
 
 import java.util.Collection;
 
@@ -76,11 +79,18 @@ public class BlobPlugin extends AbstractPlugin {
         if (!settings.getAsBoolean("node.client", false)) {
             Collection<Class<? extends LifecycleComponent>> services = Lists.newArrayList();
             services.add(BlobService.class);
+            services.add(BlobJanitor.class);
             return services;
         }
         return super.services();
     }
 
+    public void onModule(RestModule restModule) {
+        if (!settings.getAsBoolean("node.client", false)) {
+            restModule.addRestAction(RestBlobBatchAction.class);
+        }
+    }
+
     @Override
     public Collection<Class<? extends Module>> indexModules() {
         Collection<Class<? extends Module>> modules = Lists.newArrayList();
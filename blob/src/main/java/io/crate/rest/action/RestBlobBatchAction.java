@@ -0,0 +1,123 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.rest.action;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.crate.blob.BlobBatchOperations;
+import io.crate.blob.v2.BlobIndices;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.rest.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.rest.action.support.RestXContentBuilder.restContentBuilder;
+
+/**
+ * checks the existence of or deletes the blobs given within the <code>digests</code>
+ * array of the request body:
+ *
+ * POST /_blobs/{table}/_exists
+ * POST /_blobs/{table}/_delete
+ */
+public class RestBlobBatchAction extends BaseRestHandler {
+
+    private final BlobBatchOperations blobBatchOperations;
+
+    @Inject
+    public RestBlobBatchAction(Settings settings, Client client, RestController controller,
+                               BlobBatchOperations blobBatchOperations) {
+        super(settings, client);
+        this.blobBatchOperations = blobBatchOperations;
+
+        controller.registerHandler(RestRequest.Method.POST, "/_blobs/{table}/_exists", this);
+        controller.registerHandler(RestRequest.Method.POST, "/_blobs/{table}/_delete", this);
+    }
+
+    @Override
+    public void handleRequest(final RestRequest request, final RestChannel channel) {
+        final String index = BlobIndices.fullIndexName(request.param("table"));
+        final boolean delete = request.path().endsWith("/_delete");
+
+        ListenableFuture<Map<String, Boolean>> future;
+        try {
+            List<String> digests = digests(request);
+            future = delete ? blobBatchOperations.delete(index, digests) : blobBatchOperations.exists(index, digests);
+        } catch (Exception e) {
+            sendFailure(request, channel, e);
+            return;
+        }
+        Futures.addCallback(future, new FutureCallback<Map<String, Boolean>>() {
+            @Override
+            public void onSuccess(Map<String, Boolean> result) {
+                try {
+                    XContentBuilder builder = restContentBuilder(request);
+                    builder.startObject().startObject(delete ? "deleted" : "exists");
+                    for (Map.Entry<String, Boolean> entry : result.entrySet()) {
+                        builder.field(entry.getKey(), entry.getValue());
+                    }
+                    builder.endObject().endObject();
+                    channel.sendResponse(new XContentRestResponse(request, RestStatus.OK, builder));
+                } catch (IOException e) {
+                    onFailure(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                sendFailure(request, channel, t);
+            }
+        });
+    }
+
+    private static List<String> digests(RestRequest request) {
+        if (!request.hasContent()) {
+            throw new ElasticsearchIllegalArgumentException("missing request body");
+        }
+        Object digests = XContentHelper.convertToMap(request.content(), false).v2().get("digests");
+        if (!(digests instanceof List)) {
+            throw new ElasticsearchIllegalArgumentException("request body must contain a digests array");
+        }
+        List<String> result = new ArrayList<>(((List) digests).size());
+        for (Object digest : (List) digests) {
+            result.add(String.valueOf(digest));
+        }
+        return result;
+    }
+
+    private void sendFailure(RestRequest request, RestChannel channel, Throwable t) {
+        try {
+            channel.sendResponse(new XContentThrowableRestResponse(request, t));
+        } catch (IOException e) {
+            logger.error("Failed to send failure response", e);
+        }
+    }
+}
@@ -31,6 +31,7 @@ import java.io.IOException;
 public class BlobRecoveryChunkRequest extends BlobRecoveryRequest {
 
     private long transferId;
+    private long position;
     private BytesReference content;
     private boolean isLast;
 
@@ -38,9 +39,11 @@ public class BlobRecoveryChunkRequest extends BlobRecoveryRequest {
 
     }
 
-    public BlobRecoveryChunkRequest(long requestId, long transferId, BytesArray content, boolean isLast) {
+    public BlobRecoveryChunkRequest(long requestId, long transferId, long position,
+                                    BytesArray content, boolean isLast) {
         super(requestId);
         this.transferId = transferId;
+        this.position = position;
         this.content = content;
         this.isLast = isLast;
     }
@@ -53,6 +56,13 @@ public class BlobRecoveryChunkRequest extends BlobRecoveryRequest {
         return transferId;
     }
 
+    /**
+     * @return the offset of the content within the file
+     */
+    public long position() {
+        return position;
+    }
+
     public boolean isLast() {
         return isLast;
     }
@@ -61,6 +71,7 @@ public class BlobRecoveryChunkRequest extends BlobRecoveryRequest {
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
         transferId = in.readVLong();
+        position = in.readVLong();
         content = in.readBytesReference();
         isLast = in.readBoolean();
     }
@@ -69,6 +80,7 @@ public class BlobRecoveryChunkRequest extends BlobRecoveryRequest {
     public void writeTo(StreamOutput out) throws IOException {
         super.writeTo(out);
         out.writeVLong(transferId);
+        out.writeVLong(position);
         out.writeBytesReference(content);
         out.writeBoolean(isLast);
     }
@@ -21,6 +21,7 @@
 
 package org.elasticsearch.indices.recovery;
 
+import io.crate.blob.BlobContainer;
 import io.crate.blob.BlobWriteException;
 import io.crate.blob.exceptions.IllegalBlobRecoveryStateException;
 import io.crate.blob.v2.BlobShard;
@@ -42,6 +43,8 @@ import org.elasticsearch.transport.*;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 
 public class BlobRecoveryTarget extends AbstractComponent {
@@ -52,12 +55,14 @@ public class BlobRecoveryTarget extends AbstractComponent {
     * actor SourceNode as s
     * actor TargetNode as t
     *
-    * group for every two char prefix
+    * s -> t:PrefixChecksums
+    * t --> s:count and checksum of every prefix
+    * group for every two char prefix with a differing checksum
     * s -> t:StartPrefixSync(prefix)
     * t -> t:getDigests for prefix
     * t --> s:found digests
-    * s -> s: get missing digests
-    * group for every missing digest
+    * s -> s: merge sorted digests to get missing digests
+    * group for every missing digest, not waiting for the prefix to finish
     *  s -> t:BlobSyncStartRequest(transferId, digest, contents, totalsize)
     *  t -> s: ack
     *  s -> s: BlobSyncChunkRequest(transferid, contents, isLast)
@@ -68,6 +73,7 @@ public class BlobRecoveryTarget extends AbstractComponent {
     * t -> t: delete deletable digests
     * s -> t: ack
     * end
+    * s -> s: wait for all transfers
     *
     *
     * @enduml
@@ -82,6 +88,7 @@ public class BlobRecoveryTarget extends AbstractComponent {
         public static final String FINALIZE_RECOVERY = "crate/blob/shard/recovery/finalize_recovery";
         public static final String DELETE_FILE = "crate/blob/shard/recovery/delete_file";
         public static final String START_RECOVERY = "crate/blob/shard/recovery/start";
+        public static final String PREFIX_CHECKSUMS = "crate/blob/shard/recovery/prefix_checksums";
         public static final String START_PREFIX = "crate/blob/shard/recovery/start_prefix";
         public static final String TRANSFER_CHUNK = "crate/blob/shard/recovery/transfer_chunk";
         public static final String START_TRANSFER = "crate/blob/shard/recovery/start_transfer";
@@ -95,6 +102,7 @@ public class BlobRecoveryTarget extends AbstractComponent {
         this.indicesService = indicesService;
 
         transportService.registerHandler(Actions.START_RECOVERY, new StartRecoveryRequestHandler());
+        transportService.registerHandler(Actions.PREFIX_CHECKSUMS, new PrefixChecksumsRequestHandler());
         transportService.registerHandler(Actions.START_PREFIX, new StartPrefixSyncRequestHandler());
         transportService.registerHandler(Actions.TRANSFER_CHUNK, new TransferChunkRequestHandler());
         transportService.registerHandler(Actions.START_TRANSFER, new StartTransferRequestHandler());
@@ -194,13 +202,14 @@ public class BlobRecoveryTarget extends AbstractComponent {
                 throw new IndexShardClosedException(onGoingRecovery.shardId());
             }
 
-            BytesReference content = request.content();
-            if (!content.hasArray()) {
-                content = content.toBytesArray();
+            // chunks are sent pipelined and may arrive out of order
+            FileChannel fileChannel = transferStatus.outputStream().getChannel();
+            long position = request.position();
+            for (ByteBuffer buffer : request.content().toChannelBuffer().toByteBuffers()) {
+                while (buffer.hasRemaining()) {
+                    position += fileChannel.write(buffer, position);
+                }
             }
-            transferStatus.outputStream().write(
-                content.array(), content.arrayOffset(), content.length()
-            );
 
             if (request.isLast()) {
                 transferStatus.outputStream().close();
@@ -219,6 +228,7 @@ public class BlobRecoveryTarget extends AbstractComponent {
                     if (!source.renameTo(target)) {
                         throw new BlobWriteException(target.getName(), target.length(), null);
                     }
+                    shard.blobContainer().blobAdded(target);
                 }
 
                 onGoingRecovery.onGoingTransfers().remove(request.transferId());
@@ -229,6 +239,34 @@ public class BlobRecoveryTarget extends AbstractComponent {
     }
 
 
+    class PrefixChecksumsRequestHandler extends BaseHandler<BlobPrefixChecksumsRequest> {
+
+        @Override
+        public BlobPrefixChecksumsRequest newInstance() {
+            return new BlobPrefixChecksumsRequest();
+        }
+
+        @Override
+        public void messageReceived(BlobPrefixChecksumsRequest request, TransportChannel channel) throws Exception {
+            BlobRecoveryStatus status = onGoingRecoveries.get(request.recoveryId());
+            if (status == null) {
+                throw new IllegalBlobRecoveryStateException(
+                    "could not retrieve BlobRecoveryStatus"
+                );
+            }
+            if (status.canceled()) {
+                throw new IndexShardClosedException(status.shardId());
+            }
+            BlobPrefixChecksumsResponse response = new BlobPrefixChecksumsResponse();
+            BlobContainer container = status.blobShard.blobContainer();
+            for (byte prefix : BlobContainer.PREFIXES) {
+                response.counts[prefix & 0xFF] = container.count(prefix);
+                response.checksums[prefix & 0xFF] = container.checksum(prefix);
+            }
+            channel.sendResponse(response);
+        }
+    }
+
     class StartPrefixSyncRequestHandler extends BaseHandler<BlobStartPrefixSyncRequest> {
 
         @Override
@@ -296,6 +334,7 @@ public class BlobRecoveryTarget extends AbstractComponent {
                             "couldn't rename file to " + request.path()
                         );
                     }
+                    shard.blobContainer().blobAdded(target);
                 }
             } else {
                 BlobRecoveryTransferStatus transferStatus= new BlobRecoveryTransferStatus(
@@ -0,0 +1,220 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate;
+
+import io.crate.blob.BlobBatchOperations;
+import io.crate.blob.DeleteBlobsRequest;
+import io.crate.blob.DeleteBlobsResponse;
+import io.crate.blob.ExistsBlobsRequest;
+import io.crate.blob.ExistsBlobsResponse;
+import io.crate.blob.TransportDeleteBlobsAction;
+import io.crate.blob.TransportExistsBlobsAction;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchIllegalArgumentException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.operation.OperationRouting;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class BlobBatchOperationsTests {
+
+    private static final String INDEX = ".blob_test";
+
+    // digests starting with 0 are routed to shard 0, all others to shard 1
+    private static final String SHARD0_DIGEST1 = "0628aaf4c3dd704e95bdfea30e9c601862524350";
+    private static final String SHARD0_DIGEST2 = "0000000000000000000000000000000000000000";
+    private static final String SHARD1_DIGEST = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+
+    private TransportExistsBlobsAction existsBlobsAction;
+    private TransportDeleteBlobsAction deleteBlobsAction;
+    private BlobBatchOperations batchOperations;
+    private List<ExistsBlobsRequest> existsRequests;
+    private List<DeleteBlobsRequest> deleteRequests;
+
+    @Before
+    public void prepare() throws Exception {
+        ClusterService clusterService = mock(ClusterService.class);
+        OperationRouting operationRouting = mock(OperationRouting.class);
+        when(clusterService.state()).thenReturn(mock(ClusterState.class));
+        when(clusterService.operationRouting()).thenReturn(operationRouting);
+        when(operationRouting.indexShards(any(ClusterState.class), eq(INDEX),
+                (String) isNull(), (String) isNull(), anyString()))
+            .thenAnswer(new Answer<ShardIterator>() {
+                @Override
+                public ShardIterator answer(InvocationOnMock invocation) throws Throwable {
+                    String digest = (String) invocation.getArguments()[4];
+                    ShardIterator shardIterator = mock(ShardIterator.class);
+                    when(shardIterator.shardId()).thenReturn(new ShardId(INDEX, digest.startsWith("0") ? 0 : 1));
+                    return shardIterator;
+                }
+            });
+
+        existsBlobsAction = mock(TransportExistsBlobsAction.class);
+        deleteBlobsAction = mock(TransportDeleteBlobsAction.class);
+        batchOperations = new BlobBatchOperations(ImmutableSettings.EMPTY, clusterService,
+            existsBlobsAction, deleteBlobsAction);
+        existsRequests = new ArrayList<>();
+        deleteRequests = new ArrayList<>();
+    }
+
+    /**
+     * answers the exists requests, only digests of shard 1 exist
+     */
+    @SuppressWarnings("unchecked")
+    private void answerExists() {
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ExistsBlobsRequest request = (ExistsBlobsRequest) invocation.getArguments()[0];
+                existsRequests.add(request);
+                boolean[] exists = new boolean[request.size()];
+                Arrays.fill(exists, request.shardId() == 1);
+                ((ActionListener<ExistsBlobsResponse>) invocation.getArguments()[1])
+                    .onResponse(new ExistsBlobsResponse(exists));
+                return null;
+            }
+        }).when(existsBlobsAction).execute(any(ExistsBlobsRequest.class), any(ActionListener.class));
+    }
+
+    @Test
+    public void testExistsSendsOneRequestPerShard() throws Exception {
+        answerExists();
+
+        Map<String, Boolean> result = batchOperations.exists(INDEX,
+            Arrays.asList(SHARD1_DIGEST, SHARD0_DIGEST1, SHARD0_DIGEST2)).get();
+
+        assertThat(existsRequests.size(), is(2));
+        for (ExistsBlobsRequest request : existsRequests) {
+            if (request.shardId() == 0) {
+                assertThat(request.size(), is(2));
+                assertThat(request.digest(0), is(SHARD0_DIGEST1));
+                assertThat(request.digest(1), is(SHARD0_DIGEST2));
+            } else {
+                assertThat(request.size(), is(1));
+                assertThat(request.digest(0), is(SHARD1_DIGEST));
+            }
+        }
+        // the results are in the order of the given digests
+        assertThat(result.keySet(), contains(SHARD1_DIGEST, SHARD0_DIGEST1, SHARD0_DIGEST2));
+        assertThat(result.get(SHARD1_DIGEST), is(true));
+        assertThat(result.get(SHARD0_DIGEST1), is(false));
+        assertThat(result.get(SHARD0_DIGEST2), is(false));
+    }
+
+    @Test
+    public void testDuplicateDigestsAreRequestedOnce() throws Exception {
+        answerExists();
+
+        Map<String, Boolean> result = batchOperations.exists(INDEX,
+            Arrays.asList(SHARD1_DIGEST, SHARD1_DIGEST)).get();
+
+        assertThat(existsRequests.size(), is(1));
+        assertThat(existsRequests.get(0).size(), is(1));
+        assertThat(result.size(), is(1));
+        assertThat(result.get(SHARD1_DIGEST), is(true));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDelete() throws Exception {
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                DeleteBlobsRequest request = (DeleteBlobsRequest) invocation.getArguments()[0];
+                deleteRequests.add(request);
+                boolean[] deleted = new boolean[request.size()];
+                for (int i = 0; i < deleted.length; i++) {
+                    deleted[i] = !request.digest(i).equals(SHARD0_DIGEST2);
+                }
+                ((ActionListener<DeleteBlobsResponse>) invocation.getArguments()[1])
+                    .onResponse(new DeleteBlobsResponse(deleted));
+                return null;
+            }
+        }).when(deleteBlobsAction).execute(any(DeleteBlobsRequest.class), any(ActionListener.class));
+
+        Map<String, Boolean> result = batchOperations.delete(INDEX,
+            Arrays.asList(SHARD0_DIGEST1, SHARD1_DIGEST, SHARD0_DIGEST2)).get();
+
+        assertThat(deleteRequests.size(), is(2));
+        assertThat(result.keySet(), contains(SHARD0_DIGEST1, SHARD1_DIGEST, SHARD0_DIGEST2));
+        assertThat(result.get(SHARD0_DIGEST1), is(true));
+        assertThat(result.get(SHARD1_DIGEST), is(true));
+        assertThat(result.get(SHARD0_DIGEST2), is(false));
+    }
+
+    @Test
+    public void testNoDigests() throws Exception {
+        Map<String, Boolean> result = batchOperations.exists(INDEX, Collections.<String>emptyList()).get();
+        assertTrue(result.isEmpty());
+        verifyZeroInteractions(existsBlobsAction);
+    }
+
+    @Test(expected = ElasticsearchIllegalArgumentException.class)
+    public void testInvalidDigest() throws Exception {
+        batchOperations.exists(INDEX, Arrays.asList(SHARD1_DIGEST, "invalid"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testShardFailureFailsTheBatch() throws Exception {
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ((ActionListener<ExistsBlobsResponse>) invocation.getArguments()[1])
+                    .onFailure(new ElasticsearchException("shard failed"));
+                return null;
+            }
+        }).when(existsBlobsAction).execute(any(ExistsBlobsRequest.class), any(ActionListener.class));
+
+        try {
+            batchOperations.exists(INDEX, Arrays.asList(SHARD1_DIGEST)).get();
+            fail("the batch must fail if a shard request fails");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("shard failed"));
+        }
+    }
+}
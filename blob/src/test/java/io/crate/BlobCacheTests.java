@@ -0,0 +1,117 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate;
+
+import io.crate.blob.BlobCache;
+import org.elasticsearch.common.io.FileSystemUtils;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class BlobCacheTests {
+
+    private static final String DIGEST = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+
+    private File tmpDir;
+    private File file;
+
+    @Before
+    public void prepare() throws Exception {
+        tmpDir = Files.createTempDirectory(getClass().getName()).toFile();
+        file = new File(tmpDir, DIGEST);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("ABCDEFGHIJKLMNO".getBytes());
+        out.close();
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        FileSystemUtils.deleteRecursively(tmpDir);
+    }
+
+    @Test
+    public void testContentCache() throws Exception {
+        BlobCache cache = new BlobCache(ImmutableSettings.builder()
+            .put(BlobCache.SETTING_CACHE_SIZE, "1kb").build());
+
+        ChannelBuffer content = cache.content(DIGEST, file);
+        assertThat(content.readableBytes(), is(15));
+        assertThat(cache.misses(), is(1L));
+
+        content.skipBytes(5);
+        content = cache.content(DIGEST, file);
+        assertThat(content.readableBytes(), is(15));
+        assertThat(cache.hits(), is(1L));
+        assertThat(cache.size(), is(15L));
+        assertThat(cache.hitRatio(), is(0.5));
+    }
+
+    @Test
+    public void testContentCacheHitDoesNotAccessTheFile() throws Exception {
+        BlobCache cache = new BlobCache(ImmutableSettings.builder()
+            .put(BlobCache.SETTING_CACHE_SIZE, "1kb").build());
+        assertThat(cache.content(DIGEST, file).readableBytes(), is(15));
+
+        assertTrue(file.delete());
+        assertThat(cache.content(DIGEST, file).readableBytes(), is(15));
+        assertThat(cache.hits(), is(1L));
+    }
+
+    @Test
+    public void testContentCacheDisabledOrBlobTooLarge() throws Exception {
+        assertNull(new BlobCache(ImmutableSettings.EMPTY).content(DIGEST, file));
+
+        BlobCache cache = new BlobCache(ImmutableSettings.builder()
+            .put(BlobCache.SETTING_CACHE_SIZE, "1kb")
+            .put(BlobCache.SETTING_CACHE_MAX_BLOB_SIZE, "10b").build());
+        assertNull(cache.content(DIGEST, file));
+    }
+
+    @Test
+    public void testOpenFileIsClosedAfterEvictionAndRelease() throws Exception {
+        BlobCache cache = new BlobCache(ImmutableSettings.builder()
+            .put(BlobCache.SETTING_CACHE_OPEN_FILES, 1).build());
+
+        BlobCache.OpenFile openFile = cache.openFile(DIGEST, file);
+        assertThat(openFile.length(), is(15L));
+        assertSame(openFile, cache.openFile(DIGEST, file));
+        openFile.release();
+
+        File other = new File(tmpDir, "other");
+        new FileOutputStream(other).close();
+        cache.openFile("other", other).release();
+
+        // evicted, but still retained once
+        assertTrue(openFile.channel().isOpen());
+        openFile.release();
+        assertFalse(openFile.channel().isOpen());
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate;
+
+import io.crate.blob.BlobContainer;
+import io.crate.blob.BlobDigestIndex;
+import io.crate.blob.DigestBlob;
+import io.crate.common.Hex;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.FileSystemUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class BlobContainerTests {
+
+    private static final String DIGEST = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+
+    private File tmpDir;
+
+    @Before
+    public void prepare() throws Exception {
+        tmpDir = Files.createTempDirectory(getClass().getName()).toFile();
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        FileSystemUtils.deleteRecursively(tmpDir);
+    }
+
+    private void commitBlob(BlobContainer container) throws Exception {
+        DigestBlob digestBlob = container.createBlob(DIGEST, UUID.randomUUID());
+        digestBlob.addContent(new BytesArray("ABCDEFGHIJKLMNO".getBytes()), true);
+        digestBlob.commit();
+    }
+
+    @Test
+    public void testCommittedBlobIsIndexed() throws Exception {
+        BlobContainer container = new BlobContainer(tmpDir);
+        assertFalse(container.exists(DIGEST));
+
+        commitBlob(container);
+        assertTrue(container.exists(DIGEST));
+        assertThat(container.count(), is(1L));
+        assertThat(container.totalSize(), is(15L));
+        assertThat(container.digests((byte) 0x41).length, is(1));
+
+        assertTrue(container.delete(DIGEST));
+        assertFalse(container.exists(DIGEST));
+        assertThat(container.count(), is(0L));
+        assertThat(container.totalSize(), is(0L));
+        assertFalse(container.delete(DIGEST));
+    }
+
+    @Test
+    public void testIndexIsRebuiltOnStartup() throws Exception {
+        commitBlob(new BlobContainer(tmpDir));
+
+        // leftover of an interrupted recovery
+        File leftover = new File(tmpDir, "var/41/" + DIGEST + "." + UUID.randomUUID());
+        new FileOutputStream(leftover).close();
+
+        BlobContainer container = new BlobContainer(tmpDir);
+        assertTrue(container.exists(DIGEST));
+        assertThat(container.count(), is(1L));
+        assertThat(container.totalSize(), is(15L));
+        assertFalse(leftover.exists());
+    }
+
+    @Test
+    public void testPrefixChecksum() throws Exception {
+        BlobContainer container = new BlobContainer(tmpDir);
+        assertThat(container.count((byte) 0x41), is(0));
+        assertArrayEquals(new byte[20], container.checksum((byte) 0x41));
+
+        commitBlob(container);
+        assertThat(container.count((byte) 0x41), is(1));
+        assertArrayEquals(container.digests((byte) 0x41)[0], container.checksum((byte) 0x41));
+        assertArrayEquals(new byte[20], container.checksum((byte) 0x42));
+
+        container.delete(DIGEST);
+        assertThat(container.count((byte) 0x41), is(0));
+        assertArrayEquals(new byte[20], container.checksum((byte) 0x41));
+    }
+
+    @Test
+    public void testRebuildSortsDigestsAndSkipsInvalidFiles() throws Exception {
+        Random random = new Random(42);
+        byte[] checksum = new byte[20];
+        for (int i = 0; i < 100; i++) {
+            byte[] digest = new byte[20];
+            random.nextBytes(digest);
+            digest[0] = 0x41;
+            for (int j = 0; j < checksum.length; j++) {
+                checksum[j] ^= digest[j];
+            }
+            new FileOutputStream(new File(tmpDir, "var/41/" + Hex.encodeHexString(digest))).close();
+        }
+        new FileOutputStream(new File(tmpDir, "var/41/not-a-digest")).close();
+        new FileOutputStream(new File(tmpDir, "var/41/4142")).close();
+        new FileOutputStream(new File(tmpDir, "var/42/" + DIGEST)).close();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BlobContainer container = new BlobContainer(tmpDir, executor);
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertTrue(container.isIndexed());
+            assertThat(container.count(), is(100L));
+            assertThat(container.count((byte) 0x42), is(0));
+            assertArrayEquals(checksum, container.checksum((byte) 0x41));
+
+            byte[][] digests = container.digests((byte) 0x41);
+            assertThat(digests.length, is(100));
+            for (int i = 1; i < digests.length; i++) {
+                assertTrue(BlobDigestIndex.compare(digests[i - 1], digests[i]) < 0);
+            }
+            for (byte[] digest : digests) {
+                assertTrue(container.exists(Hex.encodeHexString(digest)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBlobsAreFoundWhileTheIndexIsBuilt() throws Exception {
+        commitBlob(new BlobContainer(tmpDir));
+
+        // the index tasks are never run
+        BlobContainer container = new BlobContainer(tmpDir, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+            }
+        });
+        assertFalse(container.isIndexed());
+        assertTrue(container.exists(DIGEST));
+        assertFalse(container.exists("417de3231e23dcd6d224ff60918024bc6c59aa59"));
+
+        // the prefix is indexed on demand
+        assertThat(container.count((byte) 0x41), is(1));
+        assertThat(container.count(), is(1L));
+        assertTrue(container.exists(DIGEST));
+
+        assertTrue(container.delete(DIGEST));
+        assertFalse(container.exists(DIGEST));
+        assertThat(container.count(), is(0L));
+    }
+}
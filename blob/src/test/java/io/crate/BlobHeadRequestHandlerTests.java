@@ -21,21 +21,26 @@
 
 package io.crate;
 
+import io.crate.blob.BlobContainer;
 import io.crate.blob.BlobTransferTarget;
+import io.crate.blob.DigestBlob;
 import io.crate.blob.pending_transfer.BlobHeadRequestHandler;
 import io.crate.blob.pending_transfer.HeadChunkFileTooSmallException;
 import io.crate.blob.pending_transfer.PutHeadChunkRunnable;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.FileSystemUtils;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.*;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.nio.file.Files;
 import java.util.UUID;
 
 import static org.mockito.Matchers.any;
@@ -45,93 +50,94 @@ import static org.mockito.Mockito.*;
 public class BlobHeadRequestHandlerTests {
 
     protected ThreadPool threadPool;
+    private File tmpDir;
 
 
     @Before
     public void setUp() throws Exception {
         threadPool = new ThreadPool();
+        tmpDir = Files.createTempDirectory(getClass().getName()).toFile();
     }
 
     @After
     public void tearDown() {
         threadPool.shutdown();
+        FileSystemUtils.deleteRecursively(tmpDir);
+    }
+
+    private DigestBlob newDigestBlob() {
+        BlobContainer container = new BlobContainer(tmpDir);
+        DigestBlob digestBlob = container.createBlob(
+            "417de3231e23dcd6d224ff60918024bc6c59aa58", UUID.randomUUID());
+        digestBlob.addContent(new BytesArray(new byte[] { 0x65 }), false);
+        return digestBlob;
+    }
+
+    private TransportService respondingTransportService(DiscoveryNode discoveryNode) {
+        TransportService transportService = mock(TransportService.class);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                TransportResponseHandler handler = (TransportResponseHandler) invocation.getArguments()[4];
+                handler.handleResponse(TransportResponse.Empty.INSTANCE);
+                return null;
+            }
+        }).when(transportService).sendRequest(
+            eq(discoveryNode),
+            eq(BlobHeadRequestHandler.Actions.PUT_BLOB_HEAD_CHUNK),
+            any(TransportRequest.class),
+            any(TransportRequestOptions.class),
+            any(TransportResponseHandler.class)
+        );
+        return transportService;
     }
 
     @Test
     public void testPutHeadChunkRunnableFileGrowth() throws Exception {
-
-        File file = File.createTempFile("test", "");
-        final FileOutputStream outputStream = new FileOutputStream(file);
-        outputStream.write(new byte[] { 0x65 });
+        final DigestBlob digestBlob = newDigestBlob();
 
         UUID transferId = UUID.randomUUID();
         BlobTransferTarget blobTransferTarget = mock(BlobTransferTarget.class);
-        TransportService transportService = mock(TransportService.class);
         DiscoveryNode discoveryNode = mock(DiscoveryNode.class);
+        TransportService transportService = respondingTransportService(discoveryNode);
 
         threadPool.schedule(TimeValue.timeValueMillis(800), ThreadPool.Names.GENERIC, new Runnable() {
             @Override
             public void run() {
-                try {
-                    outputStream.write(new byte[] { 0x66, 0x67, 0x68, 0x69 });
-                } catch (IOException ex) {
-                    //pass
-                }
+                digestBlob.addContent(new BytesArray(new byte[] { 0x66, 0x67, 0x68, 0x69 }), false);
             }
         });
 
         PutHeadChunkRunnable runnable = new PutHeadChunkRunnable(
-            file, 5, transportService, blobTransferTarget, discoveryNode, transferId
+            digestBlob, 5, transportService, blobTransferTarget, discoveryNode, transferId
         );
 
-        TransportFuture<TransportResponse.Empty> result = mock(TransportFuture.class);
-
-        when(transportService.submitRequest(
-            eq(discoveryNode),
-            eq(BlobHeadRequestHandler.Actions.PUT_BLOB_HEAD_CHUNK),
-            any(TransportRequest.class),
-            any(TransportRequestOptions.class),
-            eq(EmptyTransportResponseHandler.INSTANCE_SAME)
-        )).thenReturn(result);
-
         runnable.run();
 
         verify(blobTransferTarget).putHeadChunkTransferFinished(transferId);
-        verify(transportService, times(2)).submitRequest(
+        verify(transportService, times(2)).sendRequest(
             eq(discoveryNode),
             eq(BlobHeadRequestHandler.Actions.PUT_BLOB_HEAD_CHUNK),
             any(TransportRequest.class),
             any(TransportRequestOptions.class),
-            eq(EmptyTransportResponseHandler.INSTANCE_SAME)
+            any(TransportResponseHandler.class)
         );
     }
 
     @Test(expected = HeadChunkFileTooSmallException.class)
     public void testPutHeadChunkRunnableFileDoesntGrow() throws Exception {
         // this test is rather slow, tune wait time in PutHeadChunkRunnable?
-
-        File file = File.createTempFile("test", "");
-        final FileOutputStream outputStream = new FileOutputStream(file);
-        outputStream.write(new byte[] { 0x65 });
+        DigestBlob digestBlob = newDigestBlob();
 
         UUID transferId = UUID.randomUUID();
         BlobTransferTarget transferTarget = mock(BlobTransferTarget.class);
-        TransportService transportService = mock(TransportService.class);
         DiscoveryNode discoveryNode = mock(DiscoveryNode.class);
+        TransportService transportService = respondingTransportService(discoveryNode);
 
         PutHeadChunkRunnable runnable = new PutHeadChunkRunnable(
-            file, 5, transportService, transferTarget, discoveryNode, transferId
+            digestBlob, 5, transportService, transferTarget, discoveryNode, transferId
         );
 
-        TransportFuture<TransportResponse.Empty> result = mock(TransportFuture.class);
-        when(transportService.submitRequest(
-            eq(discoveryNode),
-            eq(BlobHeadRequestHandler.Actions.PUT_BLOB_HEAD_CHUNK),
-            any(TransportRequest.class),
-            any(TransportRequestOptions.class),
-            eq(EmptyTransportResponseHandler.INSTANCE_SAME)
-        )).thenReturn(result);
-
         runnable.run();
     }
 }
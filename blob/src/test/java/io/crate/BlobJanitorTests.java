@@ -0,0 +1,120 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate;
+
+import io.crate.blob.BlobContainer;
+import io.crate.blob.BlobJanitor;
+import io.crate.blob.BlobTransferStatus;
+import io.crate.blob.BlobTransferTarget;
+import io.crate.blob.DigestBlob;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.FileSystemUtils;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BlobJanitorTests {
+
+    private static final String DIGEST = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+
+    private File tmpDir;
+    private BlobContainer container;
+
+    @Before
+    public void prepare() throws Exception {
+        tmpDir = Files.createTempDirectory(getClass().getName()).toFile();
+        container = new BlobContainer(tmpDir);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        FileSystemUtils.deleteRecursively(tmpDir);
+    }
+
+    private File tmpFile(String name, int length, long lastModified) throws Exception {
+        File file = new File(container.getTmpDirectory(), name);
+        Files.write(file.toPath(), new byte[length]);
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    private BlobJanitor janitor(BlobTransferTarget transferTarget) {
+        return new BlobJanitor(ImmutableSettings.EMPTY, null, null, transferTarget);
+    }
+
+    @Test
+    public void testCleanTmpDirectory() throws Exception {
+        long now = System.currentTimeMillis();
+        UUID activeTransfer = UUID.randomUUID();
+        File active = tmpFile(DIGEST + "." + activeTransfer, 10, now - 60000);
+        File orphaned = tmpFile(DIGEST + "." + UUID.randomUUID(), 20, now - 60000);
+        File part = tmpFile(DIGEST + "." + UUID.randomUUID() + ".1", 30, now - 60000);
+        File recent = tmpFile(DIGEST + "." + UUID.randomUUID(), 40, now);
+
+        BlobJanitor janitor = janitor(mock(BlobTransferTarget.class));
+        janitor.cleanTmpDirectory(container, new HashSet<>(Arrays.asList(activeTransfer)), now - 30000);
+
+        assertTrue(active.exists());
+        assertFalse(orphaned.exists());
+        assertFalse(part.exists());
+        assertTrue(recent.exists());
+        assertThat(janitor.deletedFiles(), is(2L));
+        assertThat(janitor.reclaimedBytes(), is(50L));
+    }
+
+    @Test
+    public void testExpireTransfers() throws Exception {
+        UUID transferId = UUID.randomUUID();
+        DigestBlob digestBlob = container.createBlob(DIGEST, transferId);
+        digestBlob.addContent(new BytesArray("ABCDEFG".getBytes()), false);
+        File file = digestBlob.file();
+        assertTrue(file.exists());
+
+        BlobTransferTarget transferTarget = mock(BlobTransferTarget.class);
+        when(transferTarget.expireTransfers(anyLong())).thenReturn(
+            Arrays.asList(new BlobTransferStatus(".blob_test", transferId, digestBlob)));
+        when(transferTarget.activeTransferIds()).thenReturn(Collections.<UUID>emptySet());
+
+        BlobJanitor janitor = janitor(transferTarget);
+        janitor.expireTransfers();
+
+        assertFalse(file.exists());
+        assertThat(janitor.expiredTransfers(), is(1L));
+        assertThat(janitor.reclaimedBytes(), is(7L));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate;
+
+import io.crate.blob.BlobCache;
+import io.crate.blob.BlobContainer;
+import io.crate.blob.BlobReadRequestHandler;
+import io.crate.blob.DigestBlob;
+import io.crate.blob.ReadBlobChunkRequest;
+import io.crate.blob.ReadBlobChunkResponse;
+import io.crate.blob.exceptions.DigestNotFoundException;
+import io.crate.blob.v2.BlobIndices;
+import io.crate.blob.v2.BlobShard;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.FileSystemUtils;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.transport.TransportChannel;
+import org.elasticsearch.transport.TransportRequestHandler;
+import org.elasticsearch.transport.TransportService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BlobReadRequestHandlerTests {
+
+    private static final String INDEX = ".blob_b1";
+    private static final String DIGEST = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+
+    private File tmpDir;
+    private BlobShard blobShard;
+    private BlobIndices blobIndices;
+    private TransportRequestHandler<ReadBlobChunkRequest> readChunkHandler;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void prepare() throws Exception {
+        tmpDir = Files.createTempDirectory(getClass().getName()).toFile();
+        BlobContainer container = new BlobContainer(tmpDir);
+        DigestBlob digestBlob = container.createBlob(DIGEST, UUID.randomUUID());
+        digestBlob.addContent(new BytesArray("ABCDEFGHIJKLMNO".getBytes()), true);
+        digestBlob.commit();
+
+        blobShard = mock(BlobShard.class);
+        when(blobShard.blobContainer()).thenReturn(container);
+        blobIndices = mock(BlobIndices.class);
+        when(blobIndices.localBlobShard(INDEX, DIGEST)).thenReturn(blobShard);
+
+        TransportService transportService = mock(TransportService.class);
+        new BlobReadRequestHandler(transportService, blobIndices, new BlobCache(ImmutableSettings.EMPTY))
+            .registerHandler();
+        ArgumentCaptor<TransportRequestHandler> captor = ArgumentCaptor.forClass(TransportRequestHandler.class);
+        verify(transportService).registerHandler(eq(BlobReadRequestHandler.Actions.READ_CHUNK), captor.capture());
+        readChunkHandler = captor.getValue();
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        FileSystemUtils.deleteRecursively(tmpDir);
+    }
+
+    private ReadBlobChunkResponse readChunk(String digest, long position, int length) throws Exception {
+        TransportChannel channel = mock(TransportChannel.class);
+        readChunkHandler.messageReceived(new ReadBlobChunkRequest(INDEX, digest, position, length), channel);
+        ArgumentCaptor<ReadBlobChunkResponse> captor = ArgumentCaptor.forClass(ReadBlobChunkResponse.class);
+        verify(channel).sendResponse(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    public void testReadChunk() throws Exception {
+        ReadBlobChunkResponse response = readChunk(DIGEST, 5, 4);
+        assertThat(response.blobLength(), is(15L));
+        assertThat(response.content().toUtf8(), is("FGHI"));
+    }
+
+    @Test
+    public void testReadChunkIsTruncatedAtTheEndOfTheBlob() throws Exception {
+        ReadBlobChunkResponse response = readChunk(DIGEST, 10, 100);
+        assertThat(response.blobLength(), is(15L));
+        assertThat(response.content().toUtf8(), is("KLMNO"));
+    }
+
+    @Test
+    public void testReadChunkBehindTheEndOfTheBlobIsEmpty() throws Exception {
+        ReadBlobChunkResponse response = readChunk(DIGEST, 20, 100);
+        assertThat(response.blobLength(), is(15L));
+        assertThat(response.content().length(), is(0));
+    }
+
+    @Test(expected = DigestNotFoundException.class)
+    public void testReadChunkOfMissingDigest() throws Exception {
+        String missingDigest = "0000000000000000000000000000000000000000";
+        when(blobIndices.localBlobShard(INDEX, missingDigest)).thenReturn(blobShard);
+        readChunk(missingDigest, 0, 10);
+    }
+}
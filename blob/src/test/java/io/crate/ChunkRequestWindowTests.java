@@ -0,0 +1,69 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate;
+
+import io.crate.blob.ChunkRequestWindow;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ChunkRequestWindowTests {
+
+    @Test(timeout = 10000)
+    public void testFailedRequestDoesNotLeakPermits() throws Exception {
+        ChunkRequestWindow window = new ChunkRequestWindow(2);
+        ActionListener<Object> first = window.acquire();
+        ActionListener<Object> second = window.acquire();
+        first.onFailure(new ElasticsearchException("chunk failed"));
+
+        try {
+            window.acquire();
+            fail("acquire must fail after a request failed");
+        } catch (ElasticsearchException e) {
+            assertThat(e.getMessage(), is("chunk failed"));
+        }
+        second.onResponse(null);
+
+        try {
+            window.waitForInFlightChunks();
+            fail("waitForInFlightChunks must fail after a request failed");
+        } catch (ElasticsearchException e) {
+            assertThat(e.getMessage(), is("chunk failed"));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testNonElasticsearchFailureIsWrapped() throws Exception {
+        ChunkRequestWindow window = new ChunkRequestWindow(1);
+        window.<Object>acquire().onFailure(new IllegalStateException("boom"));
+        try {
+            window.waitForInFlightChunks();
+            fail("waitForInFlightChunks must fail after a request failed");
+        } catch (ElasticsearchException e) {
+            assertThat(e.getCause().getMessage(), is("boom"));
+        }
+    }
+}
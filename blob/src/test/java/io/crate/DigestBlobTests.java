@@ -22,7 +22,9 @@
 package io.crate;
 
 import io.crate.blob.BlobContainer;
+import io.crate.blob.BlobTransferStatus;
 import io.crate.blob.DigestBlob;
+import io.crate.blob.exceptions.BlobTransferExpiredException;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.junit.After;
 import org.junit.Before;
@@ -39,6 +41,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class DigestBlobTests {
@@ -99,13 +102,13 @@ public class DigestBlobTests {
             container, digest, transferId, currentPos);
 
         BytesArray contentHead = new BytesArray("A".getBytes());
-        digestBlob.addToHead(contentHead);
+        digestBlob.addToHead(0, contentHead);
 
         BytesArray contentTail = new BytesArray("CDEFGHIJKL".getBytes());
         digestBlob.addContent(contentTail, false);
 
         contentHead = new BytesArray("B".getBytes());
-        digestBlob.addToHead(contentHead);
+        digestBlob.addToHead(1, contentHead);
 
         contentTail = new BytesArray("MNO".getBytes());
         digestBlob.addContent(contentTail, true);
@@ -130,7 +133,7 @@ public class DigestBlobTests {
         digestBlob.addContent(contentTail, false);
 
         BytesArray contentHead = new BytesArray("AB".getBytes());
-        digestBlob.addToHead(contentHead);
+        digestBlob.addToHead(0, contentHead);
 
         contentTail = new BytesArray("O".getBytes());
         digestBlob.addContent(contentTail, true);
@@ -144,4 +147,76 @@ public class DigestBlobTests {
         file.delete();
     }
 
+    @Test
+    public void testResumeDigestBlobHeadChunksOutOfOrder() throws Exception {
+        UUID transferId = UUID.randomUUID();
+        BlobContainer container = new BlobContainer(tmpDir.toFile());
+        DigestBlob digestBlob = DigestBlob.resumeTransfer(
+            container, "417de3231e23dcd6d224ff60918024bc6c59aa58", transferId, 6);
+
+        digestBlob.addContent(new BytesArray("GHIJKLMNO".getBytes()), true);
+        assertEquals(15L, digestBlob.waitForWrittenBytes(15, 0));
+
+        digestBlob.addToHead(4, new BytesArray("EF".getBytes()));
+        digestBlob.addToHead(2, new BytesArray("CD".getBytes()));
+        digestBlob.addToHead(0, new BytesArray("AB".getBytes()));
+        digestBlob.waitForHead();
+
+        File file = digestBlob.commit();
+        assertTrue(file.exists());
+        file.delete();
+    }
+
+    @Test
+    public void testTransferStatusOrdersPipelinedChunks() throws IOException {
+        UUID transferId = UUID.randomUUID();
+        BlobContainer container = new BlobContainer(tmpDir.toFile());
+        DigestBlob digestBlob = container.createBlob("417de3231e23dcd6d224ff60918024bc6c59aa58", transferId);
+        digestBlob.addContent(new BytesArray("AB".getBytes()), false);
+        BlobTransferStatus status = new BlobTransferStatus("blobs", transferId, digestBlob);
+
+        assertFalse(status.addContent(8, new BytesArray("IJK".getBytes()), false));
+        assertFalse(status.addContent(5, new BytesArray("FGH".getBytes()), false));
+        assertTrue(status.addContent(2, new BytesArray("CDE".getBytes()), false));
+        // duplicated chunk is ignored
+        assertTrue(status.addContent(5, new BytesArray("FGH".getBytes()), false));
+        assertTrue(status.addContent(11, new BytesArray("LMNO".getBytes()), true));
+
+        File file = digestBlob.commit();
+        assertTrue(file.exists());
+        file.delete();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTransferStatusLastChunkWithMissingContent() throws IOException {
+        UUID transferId = UUID.randomUUID();
+        BlobContainer container = new BlobContainer(tmpDir.toFile());
+        DigestBlob digestBlob = container.createBlob("417de3231e23dcd6d224ff60918024bc6c59aa58", transferId);
+        BlobTransferStatus status = new BlobTransferStatus("blobs", transferId, digestBlob);
+
+        status.addContent(2, new BytesArray("CDEFGHIJKLMNO".getBytes()), true);
+    }
+
+    @Test(expected = BlobTransferExpiredException.class)
+    public void testAddContentAfterDiscard() throws IOException {
+        UUID transferId = UUID.randomUUID();
+        BlobContainer container = new BlobContainer(tmpDir.toFile());
+        DigestBlob digestBlob = container.createBlob("417de3231e23dcd6d224ff60918024bc6c59aa58", transferId);
+        digestBlob.addContent(new BytesArray("AB".getBytes()), false);
+        assertEquals(2L, digestBlob.discard());
+        assertFalse(digestBlob.file().exists());
+
+        digestBlob.addContent(new BytesArray("CDEFGHIJKLMNO".getBytes()), true);
+    }
+
+    @Test(expected = BlobTransferExpiredException.class)
+    public void testAddToHeadAfterDiscard() throws IOException {
+        UUID transferId = UUID.randomUUID();
+        BlobContainer container = new BlobContainer(tmpDir.toFile());
+        DigestBlob digestBlob = DigestBlob.resumeTransfer(
+            container, "417de3231e23dcd6d224ff60918024bc6c59aa58", transferId, 2);
+        digestBlob.discard();
+
+        digestBlob.addToHead(0, new BytesArray("AB".getBytes()));
+    }
 }
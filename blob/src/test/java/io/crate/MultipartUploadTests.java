@@ -0,0 +1,136 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate;
+
+import io.crate.blob.BlobContainer;
+import io.crate.blob.MultipartUpload;
+import io.crate.blob.exceptions.BlobUploadPartMissingException;
+import io.crate.blob.exceptions.DigestMismatchException;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.FileSystemUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class MultipartUploadTests {
+
+    // sha1 of "ABCDEFGHIJKLMNO"
+    private static final String DIGEST = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+
+    private File tmpDir;
+    private BlobContainer container;
+
+    @Before
+    public void prepare() throws Exception {
+        tmpDir = Files.createTempDirectory(getClass().getName()).toFile();
+        container = new BlobContainer(tmpDir);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        FileSystemUtils.deleteRecursively(tmpDir);
+    }
+
+    private static BytesArray bytes(String content) {
+        return new BytesArray(content.getBytes());
+    }
+
+    @Test
+    public void testCompleteUploadWithPartsOutOfOrder() throws Exception {
+        MultipartUpload upload = new MultipartUpload(container, DIGEST, UUID.randomUUID());
+
+        // part 2 is uploaded first, its chunks arrive out of order
+        assertThat(upload.writePart(2, 4, bytes("LMNO"), false), is(8L));
+        assertThat(upload.writePart(2, 0, bytes("HIJK"), true), is(8L));
+        assertThat(upload.writePart(1, 0, bytes("ABCDEFG"), true), is(7L));
+
+        File file = upload.complete(2);
+        assertTrue(container.exists(DIGEST));
+        assertThat(file.length(), is(15L));
+        assertThat(tmpDir.toPath().resolve("tmp").toFile().list().length, is(0));
+    }
+
+    @Test
+    public void testPartCanBeUploadedAgain() throws Exception {
+        MultipartUpload upload = new MultipartUpload(container, DIGEST, UUID.randomUUID());
+        upload.writePart(1, 0, bytes("ABCDEFGXXXX"), true);
+        upload.writePart(1, 0, bytes("ABCDEFG"), true);
+        upload.writePart(2, 0, bytes("HIJKLMNO"), true);
+
+        assertThat(upload.complete(2).length(), is(15L));
+    }
+
+    @Test
+    public void testMissingPart() throws Exception {
+        UUID uploadId = UUID.randomUUID();
+        MultipartUpload upload = new MultipartUpload(container, DIGEST, uploadId);
+        upload.writePart(1, 0, bytes("ABCDEFG"), true);
+        // not sealed
+        upload.writePart(2, 0, bytes("HIJKLMNO"), false);
+
+        try {
+            upload.complete(2);
+            fail("expected BlobUploadPartMissingException");
+        } catch (BlobUploadPartMissingException e) {
+            assertThat(e.getMessage(), is("Part 2 of upload " + uploadId + " is missing"));
+        }
+        assertFalse(container.exists(DIGEST));
+
+        // the upload can be continued
+        upload.writePart(2, 0, bytes("HIJKLMNO"), true);
+        assertThat(upload.complete(2).length(), is(15L));
+    }
+
+    @Test
+    public void testDigestMismatch() throws Exception {
+        MultipartUpload upload = new MultipartUpload(container, DIGEST, UUID.randomUUID());
+        upload.writePart(1, 0, bytes("HIJKLMNO"), true);
+        upload.writePart(2, 0, bytes("ABCDEFG"), true);
+
+        try {
+            upload.complete(2);
+            fail("expected DigestMismatchException");
+        } catch (DigestMismatchException e) {
+            // expected
+        }
+        assertFalse(container.exists(DIGEST));
+        assertThat(tmpDir.toPath().resolve("tmp").toFile().list().length, is(0));
+    }
+
+    @Test
+    public void testAbort() throws Exception {
+        MultipartUpload upload = new MultipartUpload(container, DIGEST, UUID.randomUUID());
+        upload.writePart(1, 0, bytes("ABCDEFG"), true);
+        upload.writePart(2, 0, bytes("HIJK"), false);
+        assertThat(tmpDir.toPath().resolve("tmp").toFile().list().length, is(2));
+
+        upload.abort();
+        assertThat(tmpDir.toPath().resolve("tmp").toFile().list().length, is(0));
+    }
+}
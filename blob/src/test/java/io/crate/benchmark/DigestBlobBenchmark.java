@@ -0,0 +1,115 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.benchmark;
+
+import com.carrotsearch.junitbenchmarks.AbstractBenchmark;
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.annotation.AxisRange;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkMethodChart;
+import io.crate.blob.BlobContainer;
+import io.crate.blob.DigestBlob;
+import io.crate.common.Hex;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.FileSystemUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * measures writing and verifying blobs of 1KB up to 1GB,
+ * the content is added in chunks as received by the transfer target.
+ */
+@AxisRange(min = 0)
+@BenchmarkMethodChart(filePrefix = "benchmark-blob-upload")
+public class DigestBlobBenchmark extends AbstractBenchmark {
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final long KB = 1024;
+    private static final long MB = 1024 * KB;
+    private static final long GB = 1024 * MB;
+
+    private static byte[] chunk;
+    private static File dataDir;
+    private static BlobContainer container;
+
+    @BeforeClass
+    public static void prepareContainer() throws Exception {
+        chunk = new byte[CHUNK_SIZE];
+        new Random(42).nextBytes(chunk);
+        dataDir = Files.createTempDirectory(DigestBlobBenchmark.class.getName()).toFile();
+        container = new BlobContainer(dataDir);
+    }
+
+    @AfterClass
+    public static void removeContainer() throws Exception {
+        FileSystemUtils.deleteRecursively(dataDir);
+    }
+
+    private static String digest(long size) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        for (long pos = 0; pos < size; pos += CHUNK_SIZE) {
+            md.update(chunk, 0, (int) Math.min(CHUNK_SIZE, size - pos));
+        }
+        return Hex.encodeHexString(md.digest());
+    }
+
+    private void upload(long size) throws Exception {
+        String digest = digest(size);
+        DigestBlob digestBlob = container.createBlob(digest, UUID.randomUUID());
+        for (long pos = 0; pos < size; pos += CHUNK_SIZE) {
+            int length = (int) Math.min(CHUNK_SIZE, size - pos);
+            digestBlob.addContent(new BytesArray(chunk, 0, length), pos + length >= size);
+        }
+        File file = digestBlob.commit();
+        file.delete();
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 100, warmupRounds = 10)
+    @Test
+    public void testUpload1KB() throws Exception {
+        upload(KB);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 50, warmupRounds = 5)
+    @Test
+    public void testUpload1MB() throws Exception {
+        upload(MB);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 10, warmupRounds = 1)
+    @Test
+    public void testUpload64MB() throws Exception {
+        upload(64 * MB);
+    }
+
+    @BenchmarkOptions(benchmarkRounds = 3, warmupRounds = 1)
+    @Test
+    public void testUpload1GB() throws Exception {
+        upload(GB);
+    }
+}
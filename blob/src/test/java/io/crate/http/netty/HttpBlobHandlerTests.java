@@ -0,0 +1,258 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.http.netty;
+
+import io.crate.blob.BlobService;
+import io.crate.blob.ReadBlobChunkRequest;
+import io.crate.blob.ReadBlobChunkResponse;
+import io.crate.blob.exceptions.DigestNotFoundException;
+import io.crate.blob.v2.BlobIndices;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.transport.RemoteTransportException;
+import org.elasticsearch.transport.TransportException;
+import org.elasticsearch.transport.TransportResponseHandler;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.UpstreamMessageEvent;
+import org.jboss.netty.handler.codec.http.*;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.jboss.netty.channel.Channels.succeededFuture;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class HttpBlobHandlerTests {
+
+    private static final String DIGEST = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+    private static final String URI = "/_blobs/b1/" + DIGEST;
+
+    private BlobService blobService;
+    private Channel channel;
+    private ChannelHandlerContext ctx;
+    private HttpBlobHandler handler;
+    private List<ReadBlobChunkRequest> chunkRequests;
+    private List<TransportResponseHandler<ReadBlobChunkResponse>> responseHandlers;
+
+    @Before
+    public void prepare() throws Exception {
+        blobService = mock(BlobService.class);
+        when(blobService.proxyRemoteReads()).thenReturn(true);
+        when(blobService.getReadNode(anyString(), anyString())).thenReturn(mock(DiscoveryNode.class));
+
+        channel = mock(Channel.class);
+        when(channel.write(any())).thenReturn(succeededFuture(channel));
+        ctx = mock(ChannelHandlerContext.class);
+        when(ctx.getChannel()).thenReturn(channel);
+
+        handler = new HttpBlobHandler(blobService, mock(BlobIndices.class), null);
+        handler.beforeAdd(ctx);
+
+        chunkRequests = new ArrayList<>();
+        responseHandlers = new ArrayList<>();
+    }
+
+    /**
+     * answers the chunk requests from <code>blob</code>, the chunk with the index
+     * <code>failingChunk</code> fails with the given exception
+     */
+    @SuppressWarnings("unchecked")
+    private void remoteBlob(final byte[] blob, final int failingChunk, final TransportException failure) {
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ReadBlobChunkRequest request = (ReadBlobChunkRequest) invocation.getArguments()[1];
+                TransportResponseHandler<ReadBlobChunkResponse> responseHandler =
+                    (TransportResponseHandler<ReadBlobChunkResponse>) invocation.getArguments()[2];
+                chunkRequests.add(request);
+                if (chunkRequests.size() - 1 == failingChunk) {
+                    responseHandler.handleException(failure);
+                    return null;
+                }
+                int length = (int) Math.max(0, Math.min(request.length(), blob.length - request.position()));
+                responseHandler.handleResponse(new ReadBlobChunkResponse(blob.length,
+                    new BytesArray(blob, (int) Math.min(request.position(), blob.length), length)));
+                return null;
+            }
+        }).when(blobService).readChunk(any(DiscoveryNode.class), any(ReadBlobChunkRequest.class),
+            any(TransportResponseHandler.class));
+    }
+
+    private void remoteBlob(byte[] blob) {
+        remoteBlob(blob, -1, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void pendingRemoteBlob() {
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                chunkRequests.add((ReadBlobChunkRequest) invocation.getArguments()[1]);
+                responseHandlers.add((TransportResponseHandler<ReadBlobChunkResponse>) invocation.getArguments()[2]);
+                return null;
+            }
+        }).when(blobService).readChunk(any(DiscoveryNode.class), any(ReadBlobChunkRequest.class),
+            any(TransportResponseHandler.class));
+    }
+
+    private static byte[] blob(int length) {
+        byte[] blob = new byte[length];
+        for (int i = 0; i < length; i++) {
+            blob[i] = (byte) i;
+        }
+        return blob;
+    }
+
+    private MessageEvent request(HttpMethod method, String uri) {
+        return new UpstreamMessageEvent(channel, new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, uri), null);
+    }
+
+    private List<Object> writes() {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(channel, atLeast(0)).write(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private ChannelBuffer writtenContent(List<Object> writes) {
+        ChannelBuffer content = ChannelBuffers.dynamicBuffer();
+        for (Object write : writes.subList(1, writes.size())) {
+            content.writeBytes((ChannelBuffer) write);
+        }
+        return content;
+    }
+
+    @Test
+    public void testProxiedBlobIsReadInChunks() throws Exception {
+        byte[] blob = blob(HttpBlobHandler.PROXY_CHUNK_SIZE + 100);
+        remoteBlob(blob);
+
+        handler.messageReceived(ctx, request(HttpMethod.GET, URI));
+
+        assertThat(chunkRequests.size(), is(2));
+        assertThat(chunkRequests.get(0).position(), is(0L));
+        assertThat(chunkRequests.get(0).length(), is(HttpBlobHandler.PROXY_CHUNK_SIZE));
+        assertThat(chunkRequests.get(1).position(), is((long) HttpBlobHandler.PROXY_CHUNK_SIZE));
+        assertThat(chunkRequests.get(1).length(), is(100));
+
+        List<Object> writes = writes();
+        HttpResponse response = (HttpResponse) writes.get(0);
+        assertThat(response.getStatus(), is(HttpResponseStatus.OK));
+        assertThat(HttpHeaders.getContentLength(response), is((long) blob.length));
+        assertThat(writtenContent(writes), is(ChannelBuffers.wrappedBuffer(blob)));
+        verify(channel, never()).close();
+    }
+
+    @Test
+    public void testProxiedRangeRequest() throws Exception {
+        byte[] blob = blob(100);
+        remoteBlob(blob);
+
+        MessageEvent event = request(HttpMethod.GET, URI);
+        ((HttpRequest) event.getMessage()).setHeader(HttpHeaders.Names.RANGE, "bytes=10-19");
+        handler.messageReceived(ctx, event);
+
+        assertThat(chunkRequests.size(), is(1));
+        assertThat(chunkRequests.get(0).position(), is(10L));
+        assertThat(chunkRequests.get(0).length(), is(10));
+
+        List<Object> writes = writes();
+        HttpResponse response = (HttpResponse) writes.get(0);
+        assertThat(response.getStatus(), is(HttpResponseStatus.PARTIAL_CONTENT));
+        assertThat(response.getHeader(HttpHeaders.Names.CONTENT_RANGE), is("bytes 10-19/100"));
+        assertThat(HttpHeaders.getContentLength(response), is(10L));
+        assertThat(writtenContent(writes), is(ChannelBuffers.wrappedBuffer(blob, 10, 10)));
+    }
+
+    @Test
+    public void testProxiedRangeNotSatisfiable() throws Exception {
+        remoteBlob(blob(100));
+
+        MessageEvent event = request(HttpMethod.GET, URI);
+        ((HttpRequest) event.getMessage()).setHeader(HttpHeaders.Names.RANGE, "bytes=200-");
+        handler.messageReceived(ctx, event);
+
+        List<Object> writes = writes();
+        assertThat(writes.size(), is(1));
+        assertThat(((HttpResponse) writes.get(0)).getStatus(),
+            is(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE));
+    }
+
+    @Test
+    public void testDigestMissingOnRemoteNode() throws Exception {
+        remoteBlob(new byte[0], 0, new RemoteTransportException("read failed", new DigestNotFoundException(DIGEST)));
+
+        handler.messageReceived(ctx, request(HttpMethod.GET, URI));
+
+        List<Object> writes = writes();
+        assertThat(writes.size(), is(1));
+        assertThat(((HttpResponse) writes.get(0)).getStatus(), is(HttpResponseStatus.NOT_FOUND));
+    }
+
+    @Test
+    public void testTransportFailureWhileStreamingClosesTheChannel() throws Exception {
+        byte[] blob = blob(HttpBlobHandler.PROXY_CHUNK_SIZE + 100);
+        remoteBlob(blob, 1, new TransportException("connection lost"));
+
+        handler.messageReceived(ctx, request(HttpMethod.GET, URI));
+
+        List<Object> writes = writes();
+        // the headers and the first chunk have been written, the response can't be turned into an error
+        assertThat(writes.size(), is(2));
+        assertThat(((HttpResponse) writes.get(0)).getStatus(), is(HttpResponseStatus.OK));
+        verify(channel).close();
+    }
+
+    @Test
+    public void testPipelinedRequestWaitsForProxiedResponse() throws Exception {
+        pendingRemoteBlob();
+
+        handler.messageReceived(ctx, request(HttpMethod.GET, URI));
+        verify(channel).setReadable(false);
+
+        MessageEvent next = request(HttpMethod.GET, "/");
+        handler.messageReceived(ctx, next);
+        verify(ctx, never()).sendUpstream(next);
+
+        byte[] blob = blob(10);
+        responseHandlers.get(0).handleResponse(new ReadBlobChunkResponse(blob.length, new BytesArray(blob)));
+
+        verify(ctx).sendUpstream(next);
+        verify(channel).setReadable(true);
+        List<Object> writes = writes();
+        assertThat(writes.size(), is(2));
+        assertTrue(writes.get(0) instanceof HttpResponse);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.core.collections;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * set of byte sequences which are copied into one growing byte array.
+ *
+ * The values are looked up by their hash using open addressing, values with the same hash
+ * are compared byte by byte, so the set is exact. Apart from the arrays no objects are
+ * allocated per value.
+ */
+public class BytesRefHashSet {
+
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int MIN_CAPACITY = 8;
+
+    private byte[] bytes = new byte[64];
+    // the value with the id i is stored in bytes[starts[i]] to bytes[starts[i + 1]]
+    private int[] starts = new int[MIN_CAPACITY + 1];
+    private int[] hashes = new int[MIN_CAPACITY];
+    // ids + 1, 0 marks an empty slot
+    private int[] table;
+    private int mask;
+    private int resizeAt;
+    private int size = 0;
+
+    public BytesRefHashSet() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        table = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    static int hash(BytesRef value) {
+        int hash = 0;
+        for (int i = value.offset; i < value.offset + value.length; i++) {
+            hash = 31 * hash + value.bytes[i];
+        }
+        // spread the bits, the slot is taken from the lower bits
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * adds a copy of the value
+     *
+     * @return true if the value wasn't contained yet
+     */
+    public boolean add(BytesRef value) {
+        int hash = hash(value);
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && equals(id, value)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int start = starts[size];
+        bytes = ArrayUtil.grow(bytes, start + value.length);
+        System.arraycopy(value.bytes, value.offset, bytes, start, value.length);
+        starts = ArrayUtil.grow(starts, size + 2);
+        hashes = ArrayUtil.grow(hashes, size + 1);
+        starts[size + 1] = start + value.length;
+        hashes[size] = hash;
+        size++;
+        table[slot] = size;
+        if (size > resizeAt) {
+            resize();
+        }
+        return true;
+    }
+
+    public boolean contains(BytesRef value) {
+        int hash = hash(value);
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && equals(id, value)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    private boolean equals(int id, BytesRef value) {
+        int start = starts[id];
+        if (starts[id + 1] - start != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (bytes[start + i] != value.bytes[value.offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param id the id of the value, the ids range from 0 to size - 1 in the order the values were added
+     * @return the value, sharing the bytes of this set
+     */
+    public BytesRef get(int id) {
+        return new BytesRef(bytes, starts[id], starts[id + 1] - starts[id]);
+    }
+
+    private void resize() {
+        allocate(table.length << 1);
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+}
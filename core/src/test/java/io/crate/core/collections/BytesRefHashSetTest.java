@@ -0,0 +1,71 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.core.collections;
+
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static junit.framework.Assert.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BytesRefHashSetTest {
+
+    @Test
+    public void testAddCopiesValues() throws Exception {
+        BytesRefHashSet set = new BytesRefHashSet();
+        byte[] bytes = "foobar".getBytes();
+        BytesRef foo = new BytesRef(bytes, 0, 3);
+        assertTrue(set.add(foo));
+        assertFalse(set.add(new BytesRef("foo")));
+        assertTrue(set.add(new BytesRef(bytes, 3, 3)));
+        assertTrue(set.add(new BytesRef("")));
+
+        bytes[0] = 'g';
+        assertThat(set.size(), is(3));
+        assertThat(set.get(0).utf8ToString(), is("foo"));
+        assertThat(set.get(1).utf8ToString(), is("bar"));
+        assertTrue(set.contains(new BytesRef("")));
+        assertFalse(set.contains(new BytesRef("goo")));
+    }
+
+    @Test
+    public void testManyValues() throws Exception {
+        BytesRefHashSet set = new BytesRefHashSet();
+        for (int i = 0; i < 10000; i++) {
+            set.add(new BytesRef("value" + (i % 2500)));
+        }
+        assertThat(set.size(), is(2500));
+
+        Set<String> values = new HashSet<>();
+        for (int i = 0; i < set.size(); i++) {
+            values.add(set.get(i).utf8ToString());
+        }
+        assertThat(values.size(), is(2500));
+        assertTrue(values.contains("value2499"));
+        assertTrue(set.contains(new BytesRef("value0")));
+    }
+}
@@ -98,6 +98,7 @@ tokens {
     VALUES_LIST;
     ASSIGNMENT;
     ASSIGNMENT_LIST;
+    ON_DUPLICATE_KEY;
     COPY_FROM;
     COPY_TO;
     INDEX_COLUMNS;
@@ -702,7 +703,12 @@ integer
 
 
 insertStmt
-    : INSERT INTO table (columns=identList)? VALUES values=insertValues -> ^(INSERT table $values $columns?)
+    : INSERT INTO table (columns=identList)? VALUES values=insertValues onDuplicateKey?
+        -> ^(INSERT table $values $columns? onDuplicateKey?)
+    ;
+
+onDuplicateKey
+    : ON DUPLICATE KEY UPDATE assignmentList -> ^(ON_DUPLICATE_KEY assignmentList)
     ;
 
 identList
@@ -935,6 +941,7 @@ nonReserved
     | SHARDS | CLUSTERED | COPY | ANALYZER
     | EXTENDS | TOKENIZER | CHAR_FILTERS | TOKEN_FILTERS | BLOB
     | TO | PARTITIONED
+    | DUPLICATE | KEY
     ;
 
 SELECT: 'SELECT';
@@ -1001,6 +1008,8 @@ FULL: 'FULL';
 NATURAL: 'NATURAL';
 USING: 'USING';
 ON: 'ON';
+DUPLICATE: 'DUPLICATE';
+KEY: 'KEY';
 OVER: 'OVER';
 PARTITION: 'PARTITION';
 RANGE: 'RANGE';
@@ -612,12 +612,16 @@ dropTable returns [Statement value]
     ;
 
 insert returns [Statement value]
-    : ^(INSERT namedTable values=insertValues cols=columnIdentList?)
+    : ^(INSERT namedTable values=insertValues cols=columnIdentList? onDuplicate=onDuplicateKey?)
         {
-            $value = new Insert($namedTable.value, $values.value, $cols.value);
+            $value = new Insert($namedTable.value, $values.value, $cols.value, $onDuplicate.value);
         }
     ;
 
+onDuplicateKey returns [List<Assignment> value]
+    : ^(ON_DUPLICATE_KEY assignmentList) { $value = $assignmentList.value; }
+    ;
+
 insertValues returns [List<ValuesList> value = new ArrayList<>()]
     : ^(INSERT_VALUES (valuesList { $value.add($valuesList.value); })+)
     ;
@@ -32,12 +32,22 @@ public class Insert extends Statement {
     private final Table table;
     private final List<ValuesList> valuesLists;
     private final List<String> columns;
+    private final List<Assignment> onDuplicateKeyAssignments;
     private final int maxValuesLength;
 
     public Insert(Table table, List<ValuesList> valuesLists, @Nullable List<String> columns) {
+        this(table, valuesLists, columns, null);
+    }
+
+    public Insert(Table table,
+                  List<ValuesList> valuesLists,
+                  @Nullable List<String> columns,
+                  @Nullable List<Assignment> onDuplicateKeyAssignments) {
         this.table = table;
         this.valuesLists = valuesLists;
         this.columns = Objects.firstNonNull(columns, ImmutableList.<String>of());
+        this.onDuplicateKeyAssignments = Objects.firstNonNull(
+                onDuplicateKeyAssignments, ImmutableList.<Assignment>of());
         int i = 0;
         for (ValuesList valuesList : valuesLists) {
             i = Math.max(i, valuesList.values().size());
@@ -57,6 +67,13 @@ public class Insert extends Statement {
         return valuesLists;
     }
 
+    /**
+     * the assignments of the <code>ON DUPLICATE KEY UPDATE</code> clause, empty if there is none
+     */
+    public List<Assignment> onDuplicateKeyAssignments() {
+        return onDuplicateKeyAssignments;
+    }
+
     /**
      * returns the length of the longest values List
      */
@@ -66,7 +83,7 @@ public class Insert extends Statement {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(table, valuesLists, columns);
+        return Objects.hashCode(table, valuesLists, columns, onDuplicateKeyAssignments);
     }
 
 
@@ -76,6 +93,7 @@ public class Insert extends Statement {
                 .add("table", table)
                 .add("values", valuesLists)
                 .add("columns", columns)
+                .add("onDuplicateKeyAssignments", onDuplicateKeyAssignments)
                 .toString();
     }
 
@@ -91,6 +109,7 @@ public class Insert extends Statement {
         if (table != null ? !table.equals(insert.table) : insert.table != null)
             return false;
         if (valuesLists != null ? !valuesLists.equals(insert.valuesLists) : insert.valuesLists != null) return false;
+        if (!onDuplicateKeyAssignments.equals(insert.onDuplicateKeyAssignments)) return false;
 
         return true;
     }
@@ -111,6 +111,8 @@ public class TestStatementBuilder
         printStatement("insert into foo values ('string', NULL)");
         printStatement("insert into foo (id, name) values ('string', 1.2), (abs(-4), 4+?)");
         printStatement("insert into schemah.foo (id, name) values ('string', 1.2)");
+        printStatement("insert into foo (id, name) values ('string', 1.2) on duplicate key update name = 'foo'");
+        printStatement("insert into foo (id, name) values (1, 'a'), (2, 'b') on duplicate key update foo.name = ?, o['x'] = 2");
 
         printStatement("delete from foo");
         printStatement("delete from schemah.foo where foo.a=foo.b and a is not null");
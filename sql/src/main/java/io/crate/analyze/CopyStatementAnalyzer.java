@@ -23,6 +23,8 @@ package io.crate.analyze;
 
 import io.crate.exceptions.UnsupportedFeatureException;
 import io.crate.metadata.TableIdent;
+import io.crate.operation.collect.files.FileCompression;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.planner.symbol.Symbol;
 import io.crate.sql.tree.*;
 import org.elasticsearch.common.settings.ImmutableSettings;
@@ -39,6 +41,9 @@ public class CopyStatementAnalyzer extends DataStatementAnalyzer<CopyAnalysis> {
     public Symbol visitCopyFromStatement(CopyFromStatement node, CopyAnalysis context) {
         if (node.genericProperties().isPresent()) {
             context.settings(settingsFromProperties(node.genericProperties().get(), context));
+            // fail early on unsupported compressions or formats
+            FileCompression.fromOption(context.settings().get("compression"));
+            FileReadingCollector.FileFormat.fromOption(context.settings().get("format"));
         }
         context.mode(CopyAnalysis.Mode.FROM);
         process(node.table(), context);
@@ -52,6 +57,7 @@ public class CopyStatementAnalyzer extends DataStatementAnalyzer<CopyAnalysis> {
         context.mode(CopyAnalysis.Mode.TO);
         if (node.genericProperties().isPresent()) {
             context.settings(settingsFromProperties(node.genericProperties().get(), context));
+            FileReadingCollector.FileFormat.fromOption(context.settings().get("format"));
         }
         process(node.table(), context);
         if (context.table().isPartitioned()) {
@@ -23,6 +23,8 @@ package io.crate.analyze;
 
 import com.google.common.base.Preconditions;
 import io.crate.metadata.TableIdent;
+import io.crate.metadata.blob.BlobSchemaInfo;
+import io.crate.metadata.blob.BlobTableInfo;
 import io.crate.planner.symbol.Symbol;
 import io.crate.sql.tree.Delete;
 import io.crate.sql.tree.Table;
@@ -36,6 +38,10 @@ public class DeleteStatementAnalyzer extends DataStatementAnalyzer<DeleteAnalysi
         if (node.getWhere().isPresent()) {
             processWhereClause(node.getWhere().get(), context);
         }
+        if (context.table() instanceof BlobTableInfo && !context.noMatch() && context.ids().isEmpty()) {
+            throw new UnsupportedOperationException(
+                    "blobs can only be deleted by their digest, e.g. WHERE digest IN (...)");
+        }
 
         return null;
     }
@@ -43,7 +49,13 @@ public class DeleteStatementAnalyzer extends DataStatementAnalyzer<DeleteAnalysi
     @Override
     protected Symbol visitTable(Table node, DeleteAnalysis context) {
         Preconditions.checkState(context.table() == null, "deleting multiple tables is not supported");
-        context.editableTable(TableIdent.of(node));
+        TableIdent tableIdent = TableIdent.of(node);
+        if (BlobSchemaInfo.NAME.equals(tableIdent.schema())) {
+            // the blob schema is read only except for deleting blobs
+            context.table(tableIdent);
+        } else {
+            context.editableTable(tableIdent);
+        }
         return null;
     }
 }
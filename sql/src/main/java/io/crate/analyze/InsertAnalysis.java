@@ -26,11 +26,9 @@ import com.carrotsearch.hppc.IntSet;
 import io.crate.PartitionName;
 import io.crate.metadata.*;
 import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class InsertAnalysis extends AbstractDataAnalysis {
 
@@ -42,6 +40,7 @@ public class InsertAnalysis extends AbstractDataAnalysis {
 
     private final List<Map<String, Object>> sourceMaps = new ArrayList<>();
     private List<Map<String, String>> partitionMaps = new ArrayList<>();
+    private final Map<Reference, Symbol> onDuplicateKeyAssignments = new HashMap<>();
 
     public InsertAnalysis(ReferenceInfos referenceInfos,
                           Functions functions,
@@ -153,6 +152,21 @@ public class InsertAnalysis extends AbstractDataAnalysis {
         return sourceMaps;
     }
 
+    /**
+     * assignments applied to an already existing document
+     * if a row with the same primary key is inserted
+     */
+    public Map<Reference, Symbol> onDuplicateKeyAssignments() {
+        return onDuplicateKeyAssignments;
+    }
+
+    public void addOnDuplicateKeyAssignment(Reference reference, Symbol value) {
+        if (onDuplicateKeyAssignments.containsKey(reference)) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH, "reference repeated %s", reference.info().ident().columnIdent().fqn()));
+        }
+        onDuplicateKeyAssignments.put(reference, value);
+    }
+
     @Override
     public void addIdAndRouting(List<String> primaryKeyValues, String clusteredByValue) {
         addIdAndRouting(true, primaryKeyValues, clusteredByValue);
@@ -31,6 +31,7 @@ import io.crate.metadata.ReferenceInfo;
 import io.crate.metadata.TableIdent;
 import io.crate.planner.symbol.Reference;
 import io.crate.planner.symbol.Symbol;
+import io.crate.sql.tree.Assignment;
 import io.crate.sql.tree.Expression;
 import io.crate.sql.tree.Insert;
 import io.crate.sql.tree.Table;
@@ -90,6 +91,30 @@ public class InsertStatementAnalyzer extends DataStatementAnalyzer<InsertAnalysi
             process(valuesList, context);
         }
 
+        if (!node.onDuplicateKeyAssignments().isEmpty() && context.table().hasAutoGeneratedPrimaryKey()) {
+            // the _id is generated, so an insert never conflicts with an existing row
+            throw new IllegalArgumentException(
+                    "ON DUPLICATE KEY UPDATE is only supported on tables with a primary key");
+        }
+        for (Assignment assignment : node.onDuplicateKeyAssignments()) {
+            process(assignment, context);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Symbol visitAssignment(Assignment node, InsertAnalysis context) {
+        Reference reference = (Reference) process(node.columnName(), context);
+        UpdateStatementAnalyzer.ensureUpdatable(reference, context.table());
+
+        Symbol value = process(node.expression(), context);
+        try {
+            value = context.normalizeInputForReference(value, reference);
+        } catch (IllegalArgumentException|UnsupportedOperationException e) {
+            throw new ValidationException(reference.info().ident().columnIdent().fqn(), e);
+        }
+        context.addOnDuplicateKeyAssignment(reference, value);
         return null;
     }
 
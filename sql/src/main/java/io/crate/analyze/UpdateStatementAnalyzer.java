@@ -24,6 +24,7 @@ package io.crate.analyze;
 import com.google.common.base.Preconditions;
 import io.crate.metadata.ReferenceIdent;
 import io.crate.metadata.TableIdent;
+import io.crate.metadata.table.TableInfo;
 import io.crate.planner.symbol.Literal;
 import io.crate.planner.symbol.Reference;
 import io.crate.planner.symbol.Symbol;
@@ -64,17 +65,7 @@ public class UpdateStatementAnalyzer extends DataStatementAnalyzer<UpdateAnalysi
     public Symbol visitAssignment(Assignment node, UpdateAnalysis context) {
         // unknown columns in strict objects handled in here
         Reference reference = (Reference)process(node.columnName(), context);
-        String columnName = reference.info().ident().columnIdent().name();
-        if (columnName.startsWith("_")) {
-            throw new IllegalArgumentException("Updating system columns is not allowed");
-        } else if (context.table().primaryKey().contains(columnName)) {
-            throw new IllegalArgumentException("Updating a primary key is currently not supported");
-        } else if (context.table().clusteredBy() != null
-                && context.table().clusteredBy().equals(columnName)) {
-            throw new IllegalArgumentException("Updating a clustered-by column is currently not supported");
-        } else if (context.table().partitionedBy().contains(columnName)) {
-            throw new IllegalArgumentException("Updating a partitioned-by column is currently not supported");
-        }
+        ensureUpdatable(reference, context.table());
 
         Symbol value = process(node.expression(), context);
 
@@ -83,4 +74,21 @@ public class UpdateStatementAnalyzer extends DataStatementAnalyzer<UpdateAnalysi
         context.addAssignement(reference, updateValue);
         return null;
     }
+
+    /**
+     * @throws IllegalArgumentException if the column of the reference can't be updated
+     */
+    static void ensureUpdatable(Reference reference, TableInfo table) {
+        String columnName = reference.info().ident().columnIdent().name();
+        if (columnName.startsWith("_")) {
+            throw new IllegalArgumentException("Updating system columns is not allowed");
+        } else if (table.primaryKey().contains(columnName)) {
+            throw new IllegalArgumentException("Updating a primary key is currently not supported");
+        } else if (table.clusteredBy() != null
+                && table.clusteredBy().equals(columnName)) {
+            throw new IllegalArgumentException("Updating a clustered-by column is currently not supported");
+        } else if (table.partitionedBy().contains(columnName)) {
+            throw new IllegalArgumentException("Updating a partitioned-by column is currently not supported");
+        }
+    }
 }
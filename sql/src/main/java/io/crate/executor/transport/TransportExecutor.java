@@ -22,12 +22,14 @@
 package io.crate.executor.transport;
 
 import com.google.common.util.concurrent.ListenableFuture;
+import io.crate.blob.BlobBatchOperations;
 import io.crate.executor.Executor;
 import io.crate.executor.Job;
 import io.crate.executor.Task;
 import io.crate.executor.task.LocalCollectTask;
 import io.crate.executor.task.LocalMergeTask;
 import io.crate.executor.transport.merge.TransportMergeNodeAction;
+import io.crate.executor.transport.task.DeleteBlobsTask;
 import io.crate.executor.transport.task.DistributedMergeTask;
 import io.crate.executor.transport.task.RemoteCollectTask;
 import io.crate.executor.transport.task.elasticsearch.*;
@@ -40,7 +42,7 @@ import io.crate.planner.RowGranularity;
 import io.crate.planner.node.PlanNode;
 import io.crate.planner.node.PlanVisitor;
 import io.crate.planner.node.ddl.*;
-import io.crate.planner.node.dml.ESDeleteByQueryNode;
+import io.crate.planner.node.dml.DeleteBlobsNode;
 import io.crate.planner.node.dml.ESDeleteNode;
 import io.crate.planner.node.dml.ESIndexNode;
 import io.crate.planner.node.dml.ESUpdateNode;
@@ -54,7 +56,6 @@ import org.elasticsearch.action.admin.indices.template.put.TransportPutIndexTemp
 import org.elasticsearch.action.bulk.TransportBulkAction;
 import org.elasticsearch.action.count.TransportCountAction;
 import org.elasticsearch.action.delete.TransportDeleteAction;
-import org.elasticsearch.action.deletebyquery.TransportDeleteByQueryAction;
 import org.elasticsearch.action.get.TransportGetAction;
 import org.elasticsearch.action.get.TransportMultiGetAction;
 import org.elasticsearch.action.index.TransportIndexAction;
@@ -79,7 +80,6 @@ public class TransportExecutor implements Executor {
     private final TransportMergeNodeAction transportMergeNodeAction;
     private final TransportGetAction transportGetAction;
     private final TransportMultiGetAction transportMultiGetAction;
-    private final TransportDeleteByQueryAction transportDeleteByQueryAction;
     private final TransportDeleteAction transportDeleteAction;
     private final TransportCreateIndexAction transportCreateIndexAction;
     private final TransportCountAction transportCountAction;
@@ -94,6 +94,7 @@ public class TransportExecutor implements Executor {
     // operation for handler side collecting
     private final HandlerSideDataCollectOperation handlerSideDataCollectOperation;
     private final Provider<Client> clientProvider;
+    private final BlobBatchOperations blobBatchOperations;
 
     @Inject
     public TransportExecutor(Provider<Client> clientProvider,
@@ -102,7 +103,6 @@ public class TransportExecutor implements Executor {
                              TransportMergeNodeAction transportMergeNodeAction,
                              TransportGetAction transportGetAction,
                              TransportMultiGetAction transportMultiGetAction,
-                             TransportDeleteByQueryAction transportDeleteByQueryAction,
                              TransportDeleteAction transportDeleteAction,
                              TransportCreateIndexAction transportCreateIndexAction,
                              TransportCountAction transportCountAction,
@@ -117,13 +117,13 @@ public class TransportExecutor implements Executor {
                              TransportPutIndexTemplateAction transportPutIndexTemplateAction,
                              TransportDeleteIndexTemplateAction transportDeleteIndexTemplateAction,
                              TransportIndicesAliasesAction transportCreateAliasAction,
-                             HandlerSideDataCollectOperation handlerSideDataCollectOperation) {
+                             HandlerSideDataCollectOperation handlerSideDataCollectOperation,
+                             BlobBatchOperations blobBatchOperations) {
         this.transportGetAction = transportGetAction;
         this.transportMultiGetAction = transportMultiGetAction;
         this.transportCollectNodeAction = transportCollectNodeAction;
         this.transportMergeNodeAction = transportMergeNodeAction;
         this.transportSearchAction = transportSearchAction;
-        this.transportDeleteByQueryAction = transportDeleteByQueryAction;
         this.transportDeleteAction = transportDeleteAction;
         this.transportCreateIndexAction = transportCreateIndexAction;
         this.transportCountAction = transportCountAction;
@@ -138,6 +138,7 @@ public class TransportExecutor implements Executor {
         this.clientProvider = clientProvider;
 
         this.handlerSideDataCollectOperation = handlerSideDataCollectOperation;
+        this.blobBatchOperations = blobBatchOperations;
         this.threadPool = threadPool;
         this.functions = functions;
         this.referenceResolver = referenceResolver;
@@ -216,14 +217,14 @@ public class TransportExecutor implements Executor {
         }
 
         @Override
-        public Void visitESDeleteByQueryNode(ESDeleteByQueryNode node, Job context) {
-            context.addTask(new ESDeleteByQueryTask(node, transportDeleteByQueryAction));
+        public Void visitESDeleteNode(ESDeleteNode node, Job context) {
+            context.addTask(new ESDeleteTask(transportDeleteAction, node));
             return null;
         }
 
         @Override
-        public Void visitESDeleteNode(ESDeleteNode node, Job context) {
-            context.addTask(new ESDeleteTask(transportDeleteAction, node));
+        public Void visitDeleteBlobsNode(DeleteBlobsNode node, Job context) {
+            context.addTask(new DeleteBlobsTask(blobBatchOperations, node));
             return null;
         }
 
@@ -261,6 +262,8 @@ public class TransportExecutor implements Executor {
         public Void visitESIndexNode(ESIndexNode node, Job context) {
             if (node.sourceMaps().size() > 1) {
                 context.addTask(new ESBulkIndexTask(transportBulkAction, node));
+            } else if (node.isUpsert()) {
+                context.addTask(new ESUpsertTask(transportUpdateAction, node));
             } else {
                 context.addTask(new ESIndexTask(transportIndexAction, node));
             }
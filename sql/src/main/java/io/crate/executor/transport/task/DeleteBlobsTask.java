@@ -0,0 +1,89 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.executor.transport.task;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.blob.BlobBatchOperations;
+import io.crate.executor.Task;
+import io.crate.planner.node.dml.DeleteBlobsNode;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * deletes blobs using one request per shard, the result is the number of deleted blobs
+ */
+public class DeleteBlobsTask implements Task<Object[][]> {
+
+    private final BlobBatchOperations blobBatchOperations;
+    private final DeleteBlobsNode node;
+    private final SettableFuture<Object[][]> result = SettableFuture.create();
+    private final List<ListenableFuture<Object[][]>> results;
+
+    public DeleteBlobsTask(BlobBatchOperations blobBatchOperations, DeleteBlobsNode node) {
+        this.blobBatchOperations = blobBatchOperations;
+        this.node = node;
+        this.results = Arrays.<ListenableFuture<Object[][]>>asList(result);
+    }
+
+    @Override
+    public void start() {
+        ListenableFuture<Map<String, Boolean>> deleted;
+        try {
+            deleted = blobBatchOperations.delete(node.index(), node.digests());
+        } catch (Exception e) {
+            result.setException(e);
+            return;
+        }
+        Futures.addCallback(deleted, new FutureCallback<Map<String, Boolean>>() {
+            @Override
+            public void onSuccess(Map<String, Boolean> deleted) {
+                long count = 0;
+                for (Boolean value : deleted.values()) {
+                    if (value) {
+                        count++;
+                    }
+                }
+                result.set(new Object[][]{new Object[]{count}});
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.setException(t);
+            }
+        });
+    }
+
+    @Override
+    public List<ListenableFuture<Object[][]>> result() {
+        return results;
+    }
+
+    @Override
+    public void upstreamResult(List<ListenableFuture<Object[][]>> result) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -25,6 +25,7 @@ import io.crate.Constants;
 import io.crate.executor.transport.task.AbstractChainedTask;
 import io.crate.planner.node.dml.ESIndexNode;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.common.Nullable;
 
 import java.util.Map;
@@ -50,4 +51,22 @@ public abstract class AbstractESIndexTask extends AbstractChainedTask<Object[][]
 
         return request;
     }
+
+    /**
+     * builds a request which inserts the source or applies the
+     * <code>ON DUPLICATE KEY UPDATE</code> assignments if the document already exists.
+     * Both happen on the primary shard of the document, no separate get is needed.
+     */
+    protected UpdateRequest buildUpsertRequest(String index,
+                                               Map<String, Object> sourceMap,
+                                               String id,
+                                               @Nullable String routingValue) {
+        UpdateRequest request = new UpdateRequest(index, Constants.DEFAULT_MAPPING_TYPE, id);
+        request.paths(node.updateDoc());
+        request.upsert(sourceMap);
+        request.retryOnConflict(Constants.UPDATE_RETRY_ON_CONFLICT);
+        request.routing(routingValue);
+
+        return request;
+    }
 }
@@ -84,12 +84,21 @@ public class ESBulkIndexTask extends AbstractESIndexTask {
                 indices = node.indices();
             }
 
-            IndexRequest indexRequest = buildIndexRequest(
-                    indices[i],
-                    node.sourceMaps().get(i),
-                    node.ids().get(i),
-                    node.routingValues().get(i));
-            this.request.add(indexRequest);
+            if (node.isUpsert()) {
+                // the bulk request is split into one shard request per shard
+                this.request.add(buildUpsertRequest(
+                        indices[i],
+                        node.sourceMaps().get(i),
+                        node.ids().get(i),
+                        node.routingValues().get(i)));
+            } else {
+                IndexRequest indexRequest = buildIndexRequest(
+                        indices[i],
+                        node.sourceMaps().get(i),
+                        node.ids().get(i),
+                        node.routingValues().get(i));
+                this.request.add(indexRequest);
+            }
         }
 
         this.listener = new BulkIndexResponseListener(result);
@@ -33,7 +33,6 @@ import io.crate.operation.operator.*;
 import io.crate.operation.predicate.IsNullPredicate;
 import io.crate.operation.predicate.NotPredicate;
 import io.crate.operation.scalar.MatchFunction;
-import io.crate.planner.node.dml.ESDeleteByQueryNode;
 import io.crate.planner.node.dml.ESUpdateNode;
 import io.crate.planner.node.dql.ESSearchNode;
 import io.crate.planner.symbol.*;
@@ -152,22 +151,6 @@ public class ESQueryBuilder {
         return builder.bytes();
     }
 
-    /**
-     * use to create a full elasticsearch query "statement" used by deleteByQuery actions.
-     */
-    public BytesReference convert(ESDeleteByQueryNode node) throws IOException {
-        assert node != null;
-
-        Context context = new Context();
-        context.builder = XContentFactory.jsonBuilder().startObject();
-        XContentBuilder builder = context.builder;
-
-        whereClause(context, node.whereClause());
-
-        builder.endObject();
-        return builder.bytes();
-    }
-
     public BytesReference convert(ESUpdateNode node) throws IOException {
         assert node != null;
 
@@ -398,6 +381,13 @@ public class ESQueryBuilder {
 
         static class InConverter extends Converter<Function> {
 
+            /**
+             * larger lists are converted to a terms filter, a terms query would be rewritten
+             * to a boolean query with one clause per value which is expensive to score
+             * and fails if it exceeds the maximum number of clauses
+             */
+            static final int TERMS_FILTER_THRESHOLD = 256;
+
             @Override
             public void convert(Function function, Context context) throws IOException {
                 assert (function != null);
@@ -411,6 +401,10 @@ public class ESQueryBuilder {
                 if (setLiteral.valueType() == DataType.STRING_SET) {
                     convertBytesRef = true;
                 }
+                boolean useFilter = setLiteral.size() > TERMS_FILTER_THRESHOLD;
+                if (useFilter) {
+                    context.builder.startObject("filtered").startObject("filter");
+                }
                 context.builder.startObject("terms").field(refName);
                 context.builder.startArray();
                 for (Object o : setLiteral.value()) {
@@ -421,6 +415,9 @@ public class ESQueryBuilder {
                     }
                 }
                 context.builder.endArray().endObject();
+                if (useFilter) {
+                    context.builder.endObject().endObject();
+                }
             }
 
         }
@@ -0,0 +1,77 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.executor.transport.task.elasticsearch;
+
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.planner.node.dml.ESIndexNode;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.update.TransportUpdateAction;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+
+import java.util.List;
+
+/**
+ * inserts a single document or updates it if a document with the same id already exists
+ */
+public class ESUpsertTask extends AbstractESIndexTask {
+
+    private final TransportUpdateAction transport;
+    private final UpdateRequest request;
+    private final ActionListener<UpdateResponse> listener;
+
+    static class UpsertResponseListener implements ActionListener<UpdateResponse> {
+        private final SettableFuture<Object[][]> result;
+
+        UpsertResponseListener(SettableFuture<Object[][]> result) {
+            this.result = result;
+        }
+
+        @Override
+        public void onResponse(UpdateResponse updateResponse) {
+            result.set(ESIndexTask.IndexResponseListener.affectedRowsResult);
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            result.setException(e);
+        }
+    }
+
+    public ESUpsertTask(TransportUpdateAction transport, ESIndexNode node) {
+        super(node);
+        this.transport = transport;
+
+        assert node.indices().length == 1 : "invalid number of indices";
+        request = buildUpsertRequest(this.node.indices()[0],
+                this.node.sourceMaps().get(0),
+                this.node.ids().get(0),
+                this.node.routingValues().get(0)
+        );
+        listener = new UpsertResponseListener(result);
+    }
+
+    @Override
+    protected void doStart(List<Object[][]> upstreamResults) {
+        transport.execute(request, listener);
+    }
+}
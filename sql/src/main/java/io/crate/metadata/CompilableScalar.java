@@ -0,0 +1,40 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.metadata;
+
+import io.crate.planner.symbol.Symbol;
+
+import java.util.List;
+
+/**
+ * a scalar that can prepare the evaluation of a function call once before it is evaluated
+ * for every row, e.g. to parse arguments which are literals only once.
+ */
+public interface CompilableScalar<ReturnType, InputType> extends Scalar<ReturnType, InputType> {
+
+    /**
+     * @param arguments the arguments of the function call
+     * @return the scalar to evaluate the function call with, this instance if nothing can be prepared
+     */
+    public Scalar<ReturnType, InputType> compile(List<Symbol> arguments);
+}
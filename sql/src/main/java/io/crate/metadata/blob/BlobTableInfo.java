@@ -168,6 +168,13 @@ public class BlobTableInfo implements TableInfo {
         return false;
     }
 
+    /**
+     * @return the name of the index holding the blobs of this table
+     */
+    public String index() {
+        return index;
+    }
+
     @Override
     public String[] concreteIndices() {
         return Strings.EMPTY_ARRAY;
@@ -74,6 +74,15 @@ public class SysNodesTableInfo extends SysTableInfo {
         register("version", DataType.STRING, ImmutableList.of("number"));
         register("version", DataType.STRING, ImmutableList.of("build_hash"));
         register("version", DataType.BOOLEAN, ImmutableList.of("build_snapshot"));
+        register("blob_cache", DataType.OBJECT, null);
+        register("blob_cache", DataType.LONG, ImmutableList.of("size"));
+        register("blob_cache", DataType.LONG, ImmutableList.of("hits"));
+        register("blob_cache", DataType.LONG, ImmutableList.of("misses"));
+        register("blob_cache", DataType.DOUBLE, ImmutableList.of("hit_ratio"));
+        register("blob_janitor", DataType.OBJECT, null);
+        register("blob_janitor", DataType.LONG, ImmutableList.of("expired_transfers"));
+        register("blob_janitor", DataType.LONG, ImmutableList.of("deleted_files"));
+        register("blob_janitor", DataType.LONG, ImmutableList.of("reclaimed_bytes"));
     }
 
     private final ClusterService clusterService;
@@ -82,6 +82,14 @@ public class AverageAggregation extends AggregationFunction<AverageAggregation.A
             }
         }
 
+        /**
+         * adds the sum and the number of already aggregated values
+         */
+        public void add(double sum, long count) {
+            this.sum += sum;
+            this.count += count;
+        }
+
         @Override
         public void readFrom(StreamInput in) throws IOException {
             sum = in.readDouble();
@@ -22,6 +22,8 @@
 package io.crate.operation.aggregation.impl;
 
 import com.google.common.collect.ImmutableList;
+import io.crate.core.collections.BytesRefHashSet;
+import io.crate.core.collections.LongHashSet;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.operation.Input;
@@ -33,7 +35,10 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
 import java.io.IOException;
+import java.util.AbstractSet;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 public abstract class CollectSetAggregation<T extends Comparable<T>> extends AggregationFunction<CollectSetAggregation.CollectSetAggState<T>> {
@@ -42,71 +47,52 @@ public abstract class CollectSetAggregation<T extends Comparable<T>> extends Agg
 
     private final FunctionInfo info;
 
+    private static FunctionInfo info(DataType dataType) {
+        return new FunctionInfo(new FunctionIdent(NAME, ImmutableList.of(dataType)), dataType, true);
+    }
+
     public static void register(AggregationImplModule mod) {
         for (final DataType dataType : new DataType[]{DataType.STRING, DataType.IP}) {
-
             mod.registerAggregateFunction(
-                    new CollectSetAggregation<BytesRef>(
-                            new FunctionInfo(new FunctionIdent(NAME,
-                                    ImmutableList.of(dataType)),
-                                    dataType, true)
-                    ) {
+                    new CollectSetAggregation<BytesRef>(info(dataType)) {
                         @Override
                         public CollectSetAggState<BytesRef> newState() {
-                            return new CollectSetAggState<BytesRef>() {
-                                @Override
-                                public void readFrom(StreamInput in) throws IOException {
-                                    setValue(DataType.STRING_SET.streamer().readFrom(in));
-                                }
-
-                                @Override
-                                public void writeTo(StreamOutput out) throws IOException {
-                                    DataType.STRING_SET.streamer().writeTo(out, value());
-                                }
-                            };
+                            return new BytesRefSetAggState();
                         }
                     }
             );
         }
         mod.registerAggregateFunction(
-                new CollectSetAggregation<Double>(
-                        new FunctionInfo(new FunctionIdent(NAME,
-                                ImmutableList.of(DataType.DOUBLE)),
-                                DataType.DOUBLE, true)
-                ) {
+                new CollectSetAggregation<Double>(info(DataType.DOUBLE)) {
                     @Override
                     public CollectSetAggState<Double> newState() {
-                        return new CollectSetAggState<Double>() {
+                        return new PrimitiveSetAggState<Double>() {
                             @Override
-                            public void readFrom(StreamInput in) throws IOException {
-                                setValue(DataType.DOUBLE_SET.streamer().readFrom(in));
+                            long toBits(Object value) {
+                                return Double.doubleToLongBits(((Number) value).doubleValue());
                             }
 
                             @Override
-                            public void writeTo(StreamOutput out) throws IOException {
-                                DataType.DOUBLE_SET.streamer().writeTo(out, value());
+                            Double fromBits(long bits) {
+                                return Double.longBitsToDouble(bits);
                             }
                         };
                     }
                 }
         );
         mod.registerAggregateFunction(
-                new CollectSetAggregation<Float>(
-                        new FunctionInfo(new FunctionIdent(NAME,
-                                ImmutableList.of(DataType.FLOAT)),
-                                DataType.FLOAT, true)
-                ) {
+                new CollectSetAggregation<Float>(info(DataType.FLOAT)) {
                     @Override
                     public CollectSetAggState<Float> newState() {
-                        return new CollectSetAggState<Float>() {
+                        return new PrimitiveSetAggState<Float>() {
                             @Override
-                            public void readFrom(StreamInput in) throws IOException {
-                                setValue(DataType.FLOAT_SET.streamer().readFrom(in));
+                            long toBits(Object value) {
+                                return Float.floatToIntBits(((Number) value).floatValue());
                             }
 
                             @Override
-                            public void writeTo(StreamOutput out) throws IOException {
-                                DataType.FLOAT_SET.streamer().writeTo(out, value());
+                            Float fromBits(long bits) {
+                                return Float.intBitsToFloat((int) bits);
                             }
                         };
                     }
@@ -114,22 +100,18 @@ public abstract class CollectSetAggregation<T extends Comparable<T>> extends Agg
         );
         for (final DataType dataType : new DataType[]{DataType.LONG, DataType.TIMESTAMP}) {
             mod.registerAggregateFunction(
-                    new CollectSetAggregation<Long>(
-                            new FunctionInfo(new FunctionIdent(NAME,
-                                    ImmutableList.of(dataType)),
-                                    dataType, true)
-                    ) {
+                    new CollectSetAggregation<Long>(info(dataType)) {
                         @Override
                         public CollectSetAggState<Long> newState() {
-                            return new CollectSetAggState<Long>() {
+                            return new PrimitiveSetAggState<Long>() {
                                 @Override
-                                public void readFrom(StreamInput in) throws IOException {
-                                    setValue(DataType.LONG_SET.streamer().readFrom(in));
+                                long toBits(Object value) {
+                                    return ((Number) value).longValue();
                                 }
 
                                 @Override
-                                public void writeTo(StreamOutput out) throws IOException {
-                                    DataType.LONG_SET.streamer().writeTo(out, value());
+                                Long fromBits(long bits) {
+                                    return bits;
                                 }
                             };
                         }
@@ -137,58 +119,46 @@ public abstract class CollectSetAggregation<T extends Comparable<T>> extends Agg
             );
         }
         mod.registerAggregateFunction(
-                new CollectSetAggregation<Short>(
-                        new FunctionInfo(new FunctionIdent(NAME,
-                                ImmutableList.of(DataType.SHORT)),
-                                DataType.SHORT, true)
-                ) {
+                new CollectSetAggregation<Short>(info(DataType.SHORT)) {
                     @Override
                     public CollectSetAggState<Short> newState() {
-                        return new CollectSetAggState<Short>() {
+                        return new PrimitiveSetAggState<Short>() {
                             @Override
-                            public void readFrom(StreamInput in) throws IOException {
-                                setValue(DataType.SHORT_SET.streamer().readFrom(in));
+                            long toBits(Object value) {
+                                return ((Number) value).shortValue();
                             }
 
                             @Override
-                            public void writeTo(StreamOutput out) throws IOException {
-                                DataType.SHORT_SET.streamer().writeTo(out, value());
+                            Short fromBits(long bits) {
+                                return (short) bits;
                             }
                         };
                     }
                 }
         );
         mod.registerAggregateFunction(
-                new CollectSetAggregation<Integer>(
-                        new FunctionInfo(new FunctionIdent(NAME,
-                                ImmutableList.of(DataType.INTEGER)),
-                                DataType.INTEGER, true)
-                ) {
+                new CollectSetAggregation<Integer>(info(DataType.INTEGER)) {
                     @Override
                     public CollectSetAggState<Integer> newState() {
-                        return new CollectSetAggState<Integer>() {
+                        return new PrimitiveSetAggState<Integer>() {
                             @Override
-                            public void readFrom(StreamInput in) throws IOException {
-                                setValue(DataType.INTEGER_SET.streamer().readFrom(in));
+                            long toBits(Object value) {
+                                return ((Number) value).intValue();
                             }
 
                             @Override
-                            public void writeTo(StreamOutput out) throws IOException {
-                                DataType.INTEGER_SET.streamer().writeTo(out, value());
+                            Integer fromBits(long bits) {
+                                return (int) bits;
                             }
                         };
                     }
                 }
         );
         mod.registerAggregateFunction(
-                new CollectSetAggregation<Boolean>(
-                        new FunctionInfo(new FunctionIdent(NAME,
-                                ImmutableList.of(DataType.BOOLEAN)),
-                                DataType.BOOLEAN, true)
-                ) {
+                new CollectSetAggregation<Boolean>(info(DataType.BOOLEAN)) {
                     @Override
                     public CollectSetAggState<Boolean> newState() {
-                        return new CollectSetAggState<Boolean>() {
+                        return new HashSetAggState<Boolean>() {
                             @Override
                             public void readFrom(StreamInput in) throws IOException {
                                 setValue(DataType.BOOLEAN_SET.streamer().readFrom(in));
@@ -216,12 +186,40 @@ public abstract class CollectSetAggregation<T extends Comparable<T>> extends Agg
 
     @Override
     public boolean iterate(CollectSetAggState<T> state, Input... args) {
-        state.add((T) args[0].value());
+        Object value = args[0].value();
+        // null values are ignored
+        if (value != null) {
+            state.add(value);
+        }
         return true;
     }
 
     public static abstract class CollectSetAggState<T> extends AggregationState<CollectSetAggState<T>> {
 
+        @Override
+        public abstract Set<T> value();
+
+        public abstract int size();
+
+        /**
+         * @param value the value to add, never null
+         */
+        abstract void add(Object value);
+
+        @Override
+        public int compareTo(CollectSetAggState<T> o) {
+            if (o == null) return -1;
+            return Integer.compare(size(), o.size());
+        }
+
+        @Override
+        public String toString() {
+            return "<CollectSetAggState \"" + value() + "\"";
+        }
+    }
+
+    static abstract class HashSetAggState<T> extends CollectSetAggState<T> {
+
         private Set<T> value = new HashSet<>();
 
         @Override
@@ -230,36 +228,203 @@ public abstract class CollectSetAggregation<T extends Comparable<T>> extends Agg
         }
 
         @Override
-        public void reduce(CollectSetAggState<T> other) {
-            value.addAll(other.value());
+        public int size() {
+            return value.size();
         }
 
-        void add(T otherValue) {
-            // ignore null values? yes
-            if (otherValue != null) {
-                value.add(otherValue);
-            }
+        @Override
+        @SuppressWarnings("unchecked")
+        void add(Object otherValue) {
+            value.add((T) otherValue);
         }
 
+        @Override
+        public void reduce(CollectSetAggState<T> other) {
+            value.addAll(other.value());
+        }
+
+        @SuppressWarnings("unchecked")
         public void setValue(Object value) {
             this.value = (Set<T>)value;
         }
+    }
+
+    /**
+     * keeps the values as long bits in a {@link LongHashSet} to avoid boxing them,
+     * {@link #value()} is a read-only view which boxes the values on iteration.
+     */
+    static abstract class PrimitiveSetAggState<T> extends CollectSetAggState<T> {
+
+        private LongHashSet values = new LongHashSet();
+
+        abstract long toBits(Object value);
+
+        abstract T fromBits(long bits);
 
         @Override
-        public int compareTo(CollectSetAggState<T> o) {
-            if (o == null) return -1;
-            return compareValue(o.value);
+        void add(Object value) {
+            values.add(toBits(value));
         }
 
-        public int compareValue(Set<T> otherValue) {
-            return value.size() < otherValue.size() ? -1 : value.size() == otherValue.size() ? 0 : 1;
+        @Override
+        public int size() {
+            return values.size();
         }
 
         @Override
-        public String toString() {
-            return "<CollectSetAggState \"" + value + "\"";
+        public void reduce(CollectSetAggState<T> other) {
+            values.addAll(((PrimitiveSetAggState<T>) other).values);
+        }
+
+        @Override
+        public Set<T> value() {
+            return new AbstractSet<T>() {
+                @Override
+                public boolean contains(Object o) {
+                    return o instanceof Number && values.contains(toBits(o));
+                }
+
+                @Override
+                public Iterator<T> iterator() {
+                    final long[] bits = values.toArray();
+                    return new Iterator<T>() {
+                        private int idx = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return idx < bits.length;
+                        }
+
+                        @Override
+                        public T next() {
+                            if (idx >= bits.length) {
+                                throw new NoSuchElementException();
+                            }
+                            return fromBits(bits[idx++]);
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("remove not supported");
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return values.size();
+                }
+            };
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            int size = in.readVInt();
+            values = new LongHashSet(size);
+            for (int i = 0; i < size; i++) {
+                values.add(in.readLong());
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            long[] bits = values.toArray();
+            out.writeVInt(bits.length);
+            for (long value : bits) {
+                out.writeLong(value);
+            }
         }
     }
 
+    /**
+     * keeps the values in a {@link BytesRefHashSet} instead of a set of BytesRef objects,
+     * {@link #value()} is a read-only view on it.
+     */
+    static class BytesRefSetAggState extends CollectSetAggState<BytesRef> {
+
+        private BytesRefHashSet values = new BytesRefHashSet();
+
+        private static BytesRef toBytesRef(Object value) {
+            if (value instanceof BytesRef) {
+                return (BytesRef) value;
+            }
+            return new BytesRef(value.toString());
+        }
 
+        @Override
+        void add(Object value) {
+            values.add(toBytesRef(value));
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+
+        @Override
+        public void reduce(CollectSetAggState<BytesRef> other) {
+            BytesRefHashSet otherValues = ((BytesRefSetAggState) other).values;
+            for (int i = 0; i < otherValues.size(); i++) {
+                values.add(otherValues.get(i));
+            }
+        }
+
+        @Override
+        public Set<BytesRef> value() {
+            return new AbstractSet<BytesRef>() {
+                @Override
+                public boolean contains(Object o) {
+                    return (o instanceof BytesRef || o instanceof String) && values.contains(toBytesRef(o));
+                }
+
+                @Override
+                public Iterator<BytesRef> iterator() {
+                    final int size = values.size();
+                    return new Iterator<BytesRef>() {
+                        private int id = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return id < size;
+                        }
+
+                        @Override
+                        public BytesRef next() {
+                            if (id >= size) {
+                                throw new NoSuchElementException();
+                            }
+                            return values.get(id++);
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException("remove not supported");
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return values.size();
+                }
+            };
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            int size = in.readVInt();
+            values = new BytesRefHashSet();
+            for (int i = 0; i < size; i++) {
+                values.add(in.readBytesRef());
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVInt(values.size());
+            for (int i = 0; i < values.size(); i++) {
+                out.writeBytesRef(values.get(i));
+            }
+        }
+    }
 }
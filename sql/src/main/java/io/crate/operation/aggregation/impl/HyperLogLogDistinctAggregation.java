@@ -0,0 +1,481 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.DataType;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationState;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Symbol;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * estimates the number of distinct values using a HyperLogLog++ sketch.
+ *
+ * The state has a fixed maximum size of <code>2^precision</code> bytes and can be merged,
+ * so only the sketches are sent between the nodes instead of the distinct values.
+ * The precision can be given as optional second argument, the default is {@value #DEFAULT_PRECISION}.
+ */
+public class HyperLogLogDistinctAggregation extends AggregationFunction<HyperLogLogDistinctAggregation.HllState> {
+
+    public static final String NAME = "hyperloglog_distinct";
+
+    public static final int DEFAULT_PRECISION = 14;
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private final FunctionInfo info;
+
+    public static void register(AggregationImplModule mod) {
+        for (DataType dataType : DataType.PRIMITIVE_TYPES) {
+            mod.registerAggregateFunction(new HyperLogLogDistinctAggregation(
+                    new FunctionInfo(new FunctionIdent(NAME, ImmutableList.of(dataType)), DataType.LONG, true)));
+            mod.registerAggregateFunction(new HyperLogLogDistinctAggregation(
+                    new FunctionInfo(new FunctionIdent(NAME, ImmutableList.of(dataType, DataType.LONG)), DataType.LONG, true)));
+        }
+    }
+
+    HyperLogLogDistinctAggregation(FunctionInfo info) {
+        this.info = info;
+    }
+
+    @Override
+    public FunctionInfo info() {
+        return info;
+    }
+
+    @Override
+    public Symbol normalizeSymbol(Function function) {
+        if (function.arguments().size() == 2) {
+            Symbol precision = function.arguments().get(1);
+            if (!precision.symbolType().isLiteral()) {
+                throw new IllegalArgumentException(
+                        "the precision argument of " + NAME + " must be a constant number");
+            }
+            Object value = ((Literal) precision).value();
+            if (!(value instanceof Number)) {
+                throw new IllegalArgumentException(
+                        "the precision argument of " + NAME + " must be a constant number");
+            }
+            validatePrecision(((Number) value).intValue());
+        }
+        return function;
+    }
+
+    @Override
+    public boolean iterate(HllState state, Input... args) {
+        Object value = args[0].value();
+        if (value != null) {
+            if (!state.isInitialized()) {
+                state.init(args.length > 1 ? ((Number) args[1].value()).intValue() : DEFAULT_PRECISION);
+            }
+            state.addHash(hash(value));
+        }
+        return true;
+    }
+
+    @Override
+    public HllState newState() {
+        return new HllState();
+    }
+
+    static int validatePrecision(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "precision of %s must be between %d and %d, got %d",
+                    NAME, MIN_PRECISION, MAX_PRECISION, precision));
+        }
+        return precision;
+    }
+
+    static long hash(Object value) {
+        if (value instanceof BytesRef) {
+            BytesRef bytes = (BytesRef) value;
+            return murmur3(bytes.bytes, bytes.offset, bytes.length);
+        } else if (value instanceof Double || value instanceof Float) {
+            return fmix64(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof Number) {
+            return fmix64(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            return fmix64((Boolean) value ? 1L : 0L);
+        }
+        BytesRef bytes = new BytesRef(value.toString());
+        return murmur3(bytes.bytes, bytes.offset, bytes.length);
+    }
+
+    /**
+     * the first 64 bits of the 128 bit x64 variant of MurmurHash3 with seed 0
+     */
+    static long murmur3(byte[] data, int offset, int length) {
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+        long h1 = 0;
+        long h2 = 0;
+        int end = offset + (length & ~15);
+        for (int i = offset; i < end; i += 16) {
+            long k1 = getLongLE(data, i);
+            long k2 = getLongLE(data, i + 8);
+            k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+            k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+        }
+        long k1 = 0;
+        long k2 = 0;
+        switch (length & 15) {
+            case 15: k2 ^= (data[end + 14] & 0xFFL) << 48;
+            case 14: k2 ^= (data[end + 13] & 0xFFL) << 40;
+            case 13: k2 ^= (data[end + 12] & 0xFFL) << 32;
+            case 12: k2 ^= (data[end + 11] & 0xFFL) << 24;
+            case 11: k2 ^= (data[end + 10] & 0xFFL) << 16;
+            case 10: k2 ^= (data[end + 9] & 0xFFL) << 8;
+            case 9:
+                k2 ^= data[end + 8] & 0xFFL;
+                k2 *= c2; k2 = Long.rotateLeft(k2, 33); k2 *= c1; h2 ^= k2;
+            case 8: k1 ^= (data[end + 7] & 0xFFL) << 56;
+            case 7: k1 ^= (data[end + 6] & 0xFFL) << 48;
+            case 6: k1 ^= (data[end + 5] & 0xFFL) << 40;
+            case 5: k1 ^= (data[end + 4] & 0xFFL) << 32;
+            case 4: k1 ^= (data[end + 3] & 0xFFL) << 24;
+            case 3: k1 ^= (data[end + 2] & 0xFFL) << 16;
+            case 2: k1 ^= (data[end + 1] & 0xFFL) << 8;
+            case 1:
+                k1 ^= data[end] & 0xFFL;
+                k1 *= c1; k1 = Long.rotateLeft(k1, 31); k1 *= c2; h1 ^= k1;
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        return h1 + h2;
+    }
+
+    private static long getLongLE(byte[] data, int offset) {
+        return (data[offset] & 0xFFL)
+                | (data[offset + 1] & 0xFFL) << 8
+                | (data[offset + 2] & 0xFFL) << 16
+                | (data[offset + 3] & 0xFFL) << 24
+                | (data[offset + 4] & 0xFFL) << 32
+                | (data[offset + 5] & 0xFFL) << 40
+                | (data[offset + 6] & 0xFFL) << 48
+                | (data[offset + 7] & 0xFFL) << 56;
+    }
+
+    static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * HyperLogLog++ sketch.
+     *
+     * Small cardinalities are kept in a sparse list of the register index with a precision of
+     * {@value #SPARSE_PRECISION} bits and the number of leading zeros of the remaining bits,
+     * estimated by linear counting. Once the sparse list would take more memory than the
+     * dense registers it is converted to an array of <code>2^precision</code> registers.
+     */
+    public static class HllState extends AggregationState<HllState> {
+
+        static final int SPARSE_PRECISION = 25;
+        private static final int RANK_BITS = 6;
+        private static final int RANK_MASK = (1 << RANK_BITS) - 1;
+
+        private int precision = 0;
+
+        // sorted sparse entries, <index with SPARSE_PRECISION bits> << RANK_BITS | rank
+        private int[] sparse;
+        private int sparseSize;
+        // unsorted entries not yet merged into the sparse list
+        private int[] buffer;
+        private int bufferSize;
+
+        private byte[] registers;
+
+        boolean isInitialized() {
+            return precision > 0;
+        }
+
+        void init(int precision) {
+            this.precision = validatePrecision(precision);
+            this.sparse = new int[0];
+            this.sparseSize = 0;
+            this.buffer = new int[Math.max(16, maxSparseSize() / 8)];
+            this.bufferSize = 0;
+            this.registers = null;
+        }
+
+        int precision() {
+            return precision;
+        }
+
+        boolean isSparse() {
+            return registers == null;
+        }
+
+        private int maxSparseSize() {
+            // 4 bytes per sparse entry vs. one byte per dense register
+            return (1 << precision) / 4;
+        }
+
+        void addHash(long hash) {
+            if (registers != null) {
+                addDense(hash);
+                return;
+            }
+            int index = (int) (hash >>> (64 - SPARSE_PRECISION));
+            int rank = Long.numberOfLeadingZeros((hash << SPARSE_PRECISION) | (1L << (SPARSE_PRECISION - 1))) + 1;
+            buffer[bufferSize++] = (index << RANK_BITS) | rank;
+            if (bufferSize == buffer.length) {
+                mergeBuffer();
+            }
+        }
+
+        private void addDense(long hash) {
+            int index = (int) (hash >>> (64 - precision));
+            int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+            if (registers[index] < rank) {
+                registers[index] = (byte) rank;
+            }
+        }
+
+        /**
+         * adds an entry of the sparse list to the dense registers
+         */
+        private void addSparseEntry(int entry) {
+            int sparseIndex = entry >>> RANK_BITS;
+            int index = sparseIndex >>> (SPARSE_PRECISION - precision);
+            int remainingBits = SPARSE_PRECISION - precision;
+            int remaining = sparseIndex & ((1 << remainingBits) - 1);
+            int rank;
+            if (remaining == 0) {
+                rank = remainingBits + (entry & RANK_MASK);
+            } else {
+                rank = Integer.numberOfLeadingZeros(remaining) - (32 - remainingBits) + 1;
+            }
+            if (registers[index] < rank) {
+                registers[index] = (byte) rank;
+            }
+        }
+
+        private void mergeBuffer() {
+            if (bufferSize == 0) {
+                return;
+            }
+            Arrays.sort(buffer, 0, bufferSize);
+            int[] merged = new int[sparseSize + bufferSize];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < sparseSize || j < bufferSize) {
+                int next;
+                if (j >= bufferSize || (i < sparseSize && sparse[i] < buffer[j])) {
+                    next = sparse[i++];
+                } else {
+                    next = buffer[j++];
+                }
+                // entries with the same index are sorted by rank, keep the last one
+                if (size > 0 && (merged[size - 1] >>> RANK_BITS) == (next >>> RANK_BITS)) {
+                    merged[size - 1] = next;
+                } else {
+                    merged[size++] = next;
+                }
+            }
+            bufferSize = 0;
+            if (size > maxSparseSize()) {
+                toDense(merged, size);
+            } else {
+                sparse = merged;
+                sparseSize = size;
+            }
+        }
+
+        private void toDense(int[] entries, int size) {
+            registers = new byte[1 << precision];
+            for (int i = 0; i < size; i++) {
+                addSparseEntry(entries[i]);
+            }
+            sparse = null;
+            sparseSize = 0;
+            buffer = null;
+        }
+
+        @Override
+        public Object value() {
+            return cardinality();
+        }
+
+        long cardinality() {
+            if (!isInitialized()) {
+                return 0L;
+            }
+            if (registers == null) {
+                mergeBuffer();
+            }
+            if (registers == null) {
+                long m = 1L << SPARSE_PRECISION;
+                return Math.round(linearCounting(m, m - sparseSize));
+            }
+            int m = registers.length;
+            double sum = 0;
+            int zeros = 0;
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+            double estimate = alpha(m) * m * m / sum;
+            if (zeros > 0 && estimate <= 2.5 * m) {
+                return Math.round(linearCounting(m, zeros));
+            }
+            return Math.round(estimate);
+        }
+
+        private static double linearCounting(long m, long zeros) {
+            return m * Math.log((double) m / zeros);
+        }
+
+        private static double alpha(int m) {
+            switch (m) {
+                case 16:
+                    return 0.673;
+                case 32:
+                    return 0.697;
+                case 64:
+                    return 0.709;
+                default:
+                    return 0.7213 / (1 + 1.079 / m);
+            }
+        }
+
+        @Override
+        public void reduce(HllState other) {
+            if (!other.isInitialized()) {
+                return;
+            }
+            if (!isInitialized()) {
+                init(other.precision);
+            } else if (precision != other.precision) {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "cannot merge %s sketches with precision %d and %d", NAME, precision, other.precision));
+            }
+            if (other.registers != null) {
+                if (registers == null) {
+                    mergeBuffer();
+                }
+                if (registers == null) {
+                    toDense(sparse, sparseSize);
+                }
+                for (int i = 0; i < registers.length; i++) {
+                    if (registers[i] < other.registers[i]) {
+                        registers[i] = other.registers[i];
+                    }
+                }
+                return;
+            }
+            other.mergeBuffer();
+            for (int i = 0; i < other.sparseSize; i++) {
+                if (registers != null) {
+                    addSparseEntry(other.sparse[i]);
+                } else {
+                    buffer[bufferSize++] = other.sparse[i];
+                    if (bufferSize == buffer.length) {
+                        mergeBuffer();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            int streamedPrecision = in.readByte();
+            if (streamedPrecision == 0) {
+                precision = 0;
+                return;
+            }
+            init(streamedPrecision);
+            if (in.readBoolean()) {
+                registers = new byte[1 << precision];
+                in.readBytes(registers, 0, registers.length);
+                buffer = null;
+            } else {
+                sparseSize = in.readVInt();
+                sparse = new int[sparseSize];
+                int previous = 0;
+                for (int i = 0; i < sparseSize; i++) {
+                    previous += in.readVInt();
+                    sparse[i] = previous;
+                }
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeByte((byte) precision);
+            if (!isInitialized()) {
+                return;
+            }
+            mergeBuffer();
+            out.writeBoolean(registers != null);
+            if (registers != null) {
+                out.writeBytes(registers);
+            } else {
+                // the entries are sorted, so the deltas are small
+                out.writeVInt(sparseSize);
+                int previous = 0;
+                for (int i = 0; i < sparseSize; i++) {
+                    out.writeVInt(sparse[i] - previous);
+                    previous = sparse[i];
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(HllState o) {
+            if (o == null) return -1;
+            return Long.compare(cardinality(), o.cardinality());
+        }
+
+        @Override
+        public String toString() {
+            return "HllState {" + cardinality() + "}";
+        }
+    }
+}
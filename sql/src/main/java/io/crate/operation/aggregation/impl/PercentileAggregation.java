@@ -0,0 +1,408 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import io.crate.DataType;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationState;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Symbol;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * estimates percentiles using a t-digest.
+ *
+ * The second argument is either a single fraction or an array of fractions between 0 and 1,
+ * the result is a double or an array of doubles accordingly.
+ * The state keeps a bounded number of centroids and can be merged, so the percentiles of a
+ * group can be computed across all shards and nodes.
+ */
+public class PercentileAggregation extends AggregationFunction<PercentileAggregation.TDigestState> {
+
+    public static final String NAME = "percentile";
+
+    private final FunctionInfo info;
+
+    public static void register(AggregationImplModule mod) {
+        for (DataType t : Iterables.concat(DataType.NUMERIC_TYPES, Arrays.asList(DataType.TIMESTAMP))) {
+            mod.registerAggregateFunction(new PercentileAggregation(
+                    new FunctionInfo(new FunctionIdent(NAME, ImmutableList.of(t, DataType.DOUBLE)),
+                            DataType.DOUBLE, true)));
+            mod.registerAggregateFunction(new PercentileAggregation(
+                    new FunctionInfo(new FunctionIdent(NAME, ImmutableList.of(t, DataType.DOUBLE_ARRAY)),
+                            DataType.DOUBLE_ARRAY, true)));
+        }
+    }
+
+    PercentileAggregation(FunctionInfo info) {
+        this.info = info;
+    }
+
+    @Override
+    public FunctionInfo info() {
+        return info;
+    }
+
+    @Override
+    public Symbol normalizeSymbol(Function function) {
+        Symbol fractions = function.arguments().get(1);
+        if (!fractions.symbolType().isLiteral()) {
+            throw new IllegalArgumentException("the fractions argument of " + NAME + " must be constant");
+        }
+        TDigestState.toFractions(((Literal) fractions).value());
+        return function;
+    }
+
+    @Override
+    public boolean iterate(TDigestState state, Input... args) {
+        Object value = args[0].value();
+        if (value != null) {
+            if (state.fractions == null) {
+                state.fractions(args[1].value());
+            }
+            state.add(((Number) value).doubleValue());
+        }
+        return true;
+    }
+
+    @Override
+    public TDigestState newState() {
+        return new TDigestState();
+    }
+
+    /**
+     * t-digest with the size bound of the original paper: a centroid at the quantile q may
+     * contain up to <code>4 * n * q * (1 - q) / compression</code> values, so the centroids
+     * are small at the tails where the estimates need to be accurate.
+     *
+     * Added values are buffered and merged into the centroids once the buffer is full,
+     * the number of centroids is in the order of the compression.
+     */
+    public static class TDigestState extends AggregationState<TDigestState> {
+
+        static final double COMPRESSION = 100.0;
+        private static final int BUFFER_SIZE = (int) (5 * COMPRESSION);
+
+        private double[] fractions;
+        private boolean singleFraction;
+
+        private double[] means = new double[0];
+        private long[] weights = new long[0];
+        private int numCentroids = 0;
+
+        private double[] bufferMeans = new double[BUFFER_SIZE];
+        private long[] bufferWeights = new long[BUFFER_SIZE];
+        private int bufferSize = 0;
+
+        private long count = 0;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        static double[] toFractions(Object value) {
+            double[] fractions;
+            if (value instanceof Object[]) {
+                Object[] values = (Object[]) value;
+                fractions = new double[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    fractions[i] = toFraction(values[i]);
+                }
+            } else {
+                fractions = new double[]{toFraction(value)};
+            }
+            return fractions;
+        }
+
+        private static double toFraction(Object value) {
+            if (!(value instanceof Number)) {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "%s fractions must be numbers between 0 and 1, got %s", NAME, value));
+            }
+            double fraction = ((Number) value).doubleValue();
+            if (fraction < 0.0 || fraction > 1.0) {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "%s fractions must be numbers between 0 and 1, got %s", NAME, value));
+            }
+            return fraction;
+        }
+
+        void fractions(Object value) {
+            fractions = toFractions(value);
+            singleFraction = !(value instanceof Object[]);
+        }
+
+        long count() {
+            return count;
+        }
+
+        int numCentroids() {
+            compress();
+            return numCentroids;
+        }
+
+        void add(double value) {
+            add(value, 1);
+        }
+
+        private void add(double mean, long weight) {
+            bufferMeans[bufferSize] = mean;
+            bufferWeights[bufferSize] = weight;
+            bufferSize++;
+            count += weight;
+            if (mean < min) {
+                min = mean;
+            }
+            if (mean > max) {
+                max = mean;
+            }
+            if (bufferSize == BUFFER_SIZE) {
+                compress();
+            }
+        }
+
+        /**
+         * merges the buffered values into the centroids
+         */
+        private void compress() {
+            if (bufferSize == 0) {
+                return;
+            }
+            sort(bufferMeans, bufferWeights, 0, bufferSize - 1);
+
+            // the centroids are already sorted, so they are merged with the sorted buffer
+            int size = numCentroids + bufferSize;
+            double[] allMeans = new double[size];
+            long[] allWeights = new long[size];
+            int c = 0;
+            int b = 0;
+            for (int i = 0; i < size; i++) {
+                if (b >= bufferSize || (c < numCentroids && means[c] <= bufferMeans[b])) {
+                    allMeans[i] = means[c];
+                    allWeights[i] = weights[c++];
+                } else {
+                    allMeans[i] = bufferMeans[b];
+                    allWeights[i] = bufferWeights[b++];
+                }
+            }
+            bufferSize = 0;
+
+            int merged = 0;
+            long weightSoFar = 0;
+            for (int i = 1; i < size; i++) {
+                long proposedWeight = allWeights[merged] + allWeights[i];
+                double q = (weightSoFar + proposedWeight / 2.0) / count;
+                if (proposedWeight <= 4 * count * q * (1 - q) / COMPRESSION) {
+                    allMeans[merged] += (allMeans[i] - allMeans[merged]) * allWeights[i] / proposedWeight;
+                    allWeights[merged] = proposedWeight;
+                } else {
+                    weightSoFar += allWeights[merged];
+                    merged++;
+                    allMeans[merged] = allMeans[i];
+                    allWeights[merged] = allWeights[i];
+                }
+            }
+            numCentroids = merged + 1;
+            means = allMeans;
+            weights = allWeights;
+        }
+
+        /**
+         * sorts the values and their weights by the values
+         */
+        private static void sort(double[] values, long[] weights, int from, int to) {
+            while (from < to) {
+                double pivot = values[(from + to) >>> 1];
+                int i = from;
+                int j = to;
+                while (i <= j) {
+                    while (values[i] < pivot) {
+                        i++;
+                    }
+                    while (values[j] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        double value = values[i];
+                        values[i] = values[j];
+                        values[j] = value;
+                        long weight = weights[i];
+                        weights[i] = weights[j];
+                        weights[j] = weight;
+                        i++;
+                        j--;
+                    }
+                }
+                // recurse into the smaller part to bound the stack depth
+                if (j - from < to - i) {
+                    sort(values, weights, from, j);
+                    from = i;
+                } else {
+                    sort(values, weights, i, to);
+                    to = j;
+                }
+            }
+        }
+
+        /**
+         * interpolates linearly between the centers of the centroids and towards the exact min and max
+         */
+        double quantile(double q) {
+            compress();
+            if (numCentroids == 1) {
+                return means[0];
+            }
+            double index = q * count;
+            if (index < weights[0] / 2.0) {
+                return min + (means[0] - min) * index / (weights[0] / 2.0);
+            }
+            double center = weights[0] / 2.0;
+            for (int i = 0; i < numCentroids - 1; i++) {
+                double distance = (weights[i] + weights[i + 1]) / 2.0;
+                if (index <= center + distance) {
+                    return means[i] + (means[i + 1] - means[i]) * (index - center) / distance;
+                }
+                center += distance;
+            }
+            double lastHalf = weights[numCentroids - 1] / 2.0;
+            return means[numCentroids - 1]
+                    + (max - means[numCentroids - 1]) * Math.min(1.0, (index - center) / lastHalf);
+        }
+
+        @Override
+        public Object value() {
+            if (fractions == null) {
+                return null;
+            }
+            if (singleFraction) {
+                return count == 0 ? null : quantile(fractions[0]);
+            }
+            Object[] values = new Object[fractions.length];
+            if (count > 0) {
+                for (int i = 0; i < fractions.length; i++) {
+                    values[i] = quantile(fractions[i]);
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public void reduce(TDigestState other) {
+            if (other == null || other.count == 0) {
+                return;
+            }
+            if (fractions == null) {
+                fractions = other.fractions;
+                singleFraction = other.singleFraction;
+            }
+            other.compress();
+            for (int i = 0; i < other.numCentroids; i++) {
+                add(other.means[i], other.weights[i]);
+            }
+            // the centroids at the tails may have been merged, keep the exact extremes
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            if (!in.readBoolean()) {
+                return;
+            }
+            singleFraction = in.readBoolean();
+            fractions = new double[in.readVInt()];
+            for (int i = 0; i < fractions.length; i++) {
+                fractions[i] = in.readDouble();
+            }
+            count = in.readVLong();
+            min = in.readDouble();
+            max = in.readDouble();
+            numCentroids = in.readVInt();
+            means = new double[numCentroids];
+            weights = new long[numCentroids];
+            for (int i = 0; i < numCentroids; i++) {
+                means[i] = in.readDouble();
+                weights[i] = in.readVLong();
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeBoolean(fractions != null);
+            if (fractions == null) {
+                return;
+            }
+            compress();
+            out.writeBoolean(singleFraction);
+            out.writeVInt(fractions.length);
+            for (double fraction : fractions) {
+                out.writeDouble(fraction);
+            }
+            out.writeVLong(count);
+            out.writeDouble(min);
+            out.writeDouble(max);
+            out.writeVInt(numCentroids);
+            for (int i = 0; i < numCentroids; i++) {
+                out.writeDouble(means[i]);
+                out.writeVLong(weights[i]);
+            }
+        }
+
+        /**
+         * orders by the percentiles, compared fraction by fraction. Empty digests come first.
+         */
+        @Override
+        public int compareTo(TDigestState o) {
+            if (o == null) {
+                return 1;
+            }
+            boolean empty = fractions == null || count == 0;
+            boolean otherEmpty = o.fractions == null || o.count == 0;
+            if (empty || otherEmpty) {
+                return Boolean.compare(otherEmpty, empty);
+            }
+            int numFractions = Math.min(fractions.length, o.fractions.length);
+            for (int i = 0; i < numFractions; i++) {
+                int cmp = Double.compare(quantile(fractions[i]), o.quantile(o.fractions[i]));
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(fractions.length, o.fractions.length);
+        }
+
+        @Override
+        public String toString() {
+            return "TDigestState {count: " + count + ", centroids: " + numCentroids + "}";
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import io.crate.DataType;
+import io.crate.action.SQLXContentQueryParser;
+import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationState;
+import io.crate.operation.aggregation.impl.AverageAggregation;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.operation.aggregation.impl.MaximumAggregation;
+import io.crate.operation.aggregation.impl.MinimumAggregation;
+import io.crate.operation.aggregation.impl.SumAggregation;
+import io.crate.operation.projectors.AggregationProjector;
+import io.crate.operation.reference.doc.FieldCacheExpression;
+import io.crate.operation.reference.doc.LuceneCollectorExpression;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.elasticsearch.cache.recycler.CacheRecycler;
+import org.elasticsearch.cache.recycler.PageCacheRecycler;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.fielddata.AtomicNumericFieldData;
+import org.elasticsearch.index.fielddata.DoubleValues;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData;
+import org.elasticsearch.index.fielddata.LongValues;
+import org.elasticsearch.index.service.IndexService;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.script.ScriptService;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * collects global count, sum, min, max and avg aggregations on numeric columns of a shard.
+ *
+ * The values are read from the field data of the columns and accumulated in primitives,
+ * no rows are built and no values are boxed per document. Once the shard has been collected
+ * the accumulated values are converted to aggregation states and handed to the
+ * {@link AggregationProjector} as the partial result of the shard.
+ */
+public class FieldDataAggregationDocCollector extends LuceneDocCollector {
+
+    private final FieldDataAggregator[] aggregators;
+    private final AggregationProjector aggregationProjector;
+
+    public FieldDataAggregationDocCollector(ClusterService clusterService,
+                                            ShardId shardId,
+                                            IndexService indexService,
+                                            ScriptService scriptService,
+                                            CacheRecycler cacheRecycler,
+                                            PageCacheRecycler pageCacheRecycler,
+                                            BigArrays bigArrays,
+                                            SQLXContentQueryParser sqlxContentQueryParser,
+                                            List<Input<?>> inputs,
+                                            List<LuceneCollectorExpression<?>> collectorExpressions,
+                                            BytesReference querySource,
+                                            FieldDataAggregator[] aggregators,
+                                            AggregationProjector aggregationProjector) throws Exception {
+        super(clusterService, shardId, indexService, scriptService, cacheRecycler, pageCacheRecycler,
+                bigArrays, sqlxContentQueryParser, inputs, collectorExpressions, querySource, aggregationProjector);
+        this.aggregators = aggregators;
+        this.aggregationProjector = aggregationProjector;
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        for (FieldDataAggregator aggregator : aggregators) {
+            aggregator.collect(doc);
+        }
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext context) throws IOException {
+        // the collector expressions aren't used, so they don't have to be positioned
+        for (FieldDataAggregator aggregator : aggregators) {
+            aggregator.setNextReader(context);
+        }
+    }
+
+    @Override
+    protected void collectFinished() throws IOException {
+        AggregationState[] states = new AggregationState[aggregators.length];
+        for (int i = 0; i < aggregators.length; i++) {
+            states[i] = aggregators[i].state();
+        }
+        aggregationProjector.setNextStates(states);
+    }
+
+    /**
+     * @return true if the given aggregation function can be computed by a {@link FieldDataAggregator}
+     */
+    public static boolean supports(String functionName) {
+        return CountAggregation.NAME.equals(functionName)
+                || SumAggregation.NAME.equals(functionName)
+                || MinimumAggregation.NAME.equals(functionName)
+                || MaximumAggregation.NAME.equals(functionName)
+                || AverageAggregation.NAME.equals(functionName);
+    }
+
+    /**
+     * @return true if the values of the given expression can be read as long or double field data
+     */
+    public static boolean supports(Input<?> input) {
+        if (!(input instanceof FieldCacheExpression)) {
+            return false;
+        }
+        switch (((FieldCacheExpression) input).returnType()) {
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * accumulates the values of one numeric column, or the number of documents
+     * if no column is given, for a single aggregation.
+     */
+    public static class FieldDataAggregator {
+
+        private final AggregationFunction function;
+        private final FieldCacheExpression<?, ?> expression;
+        private final DataType argumentType;
+        private final boolean floatingPoint;
+
+        private LongValues longValues;
+        private DoubleValues doubleValues;
+
+        private long count = 0;
+        private double sum = 0;
+        private long minLong = Long.MAX_VALUE;
+        private long maxLong = Long.MIN_VALUE;
+        private double minDouble = Double.POSITIVE_INFINITY;
+        private double maxDouble = Double.NEGATIVE_INFINITY;
+
+        /**
+         * @param function one of the functions accepted by {@link #supports(String)}
+         * @param expression the column to aggregate, accepted by {@link #supports(Input)},
+         *                   or null to count the documents
+         */
+        public FieldDataAggregator(AggregationFunction function, @Nullable FieldCacheExpression<?, ?> expression) {
+            this.function = function;
+            this.expression = expression;
+            if (expression == null) {
+                argumentType = null;
+                floatingPoint = false;
+            } else {
+                argumentType = function.info().ident().argumentTypes().get(0);
+                floatingPoint = expression.returnType() == DataType.DOUBLE
+                        || expression.returnType() == DataType.FLOAT;
+            }
+        }
+
+        void setNextReader(AtomicReaderContext context) {
+            if (expression == null) {
+                return;
+            }
+            AtomicNumericFieldData fieldData =
+                    ((IndexNumericFieldData<?>) expression.indexFieldData()).load(context);
+            if (floatingPoint) {
+                doubleValues = fieldData.getDoubleValues();
+            } else {
+                longValues = fieldData.getLongValues();
+            }
+        }
+
+        void collect(int doc) {
+            if (expression == null) {
+                count++;
+            } else if (floatingPoint) {
+                switch (doubleValues.setDocument(doc)) {
+                    case 0:
+                        return;
+                    case 1:
+                        double value = doubleValues.nextValue();
+                        count++;
+                        sum += value;
+                        minDouble = Math.min(minDouble, value);
+                        maxDouble = Math.max(maxDouble, value);
+                        return;
+                    default:
+                        throw new GroupByOnArrayUnsupportedException(expression.columnName());
+                }
+            } else {
+                switch (longValues.setDocument(doc)) {
+                    case 0:
+                        return;
+                    case 1:
+                        long value = longValues.nextValue();
+                        count++;
+                        sum += value;
+                        if (value < minLong) {
+                            minLong = value;
+                        }
+                        if (value > maxLong) {
+                            maxLong = value;
+                        }
+                        return;
+                    default:
+                        throw new GroupByOnArrayUnsupportedException(expression.columnName());
+                }
+            }
+        }
+
+        /**
+         * @return the accumulated values as state of the aggregation function
+         */
+        @SuppressWarnings("unchecked")
+        AggregationState state() {
+            AggregationState state = function.newState();
+            String name = function.info().ident().name();
+            if (CountAggregation.NAME.equals(name)) {
+                ((CountAggregation.CountAggState) state).value = count;
+            } else if (count > 0) {
+                if (AverageAggregation.NAME.equals(name)) {
+                    ((AverageAggregation.AverageAggState) state).add(sum, count);
+                } else if (SumAggregation.NAME.equals(name)) {
+                    function.iterate(state, constant(sum));
+                } else if (MinimumAggregation.NAME.equals(name)) {
+                    function.iterate(state, constant(floatingPoint ? box(minDouble) : box(minLong)));
+                } else {
+                    function.iterate(state, constant(floatingPoint ? box(maxDouble) : box(maxLong)));
+                }
+            }
+            return state;
+        }
+
+        private Object box(long value) {
+            switch (argumentType) {
+                case BYTE:
+                    return (byte) value;
+                case SHORT:
+                    return (short) value;
+                case INTEGER:
+                    return (int) value;
+                default:
+                    return value;
+            }
+        }
+
+        private Object box(double value) {
+            if (argumentType == DataType.FLOAT) {
+                return (float) value;
+            }
+            return value;
+        }
+
+        private static Input<Object> constant(final Object value) {
+            return new Input<Object>() {
+                @Override
+                public Object value() {
+                    return value;
+                }
+            };
+        }
+    }
+}
@@ -64,11 +64,15 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
 
         final HashSet<String> requiredFields;
         private boolean required = false;
+        private boolean sourceRequired = false;
 
         public CollectorFieldsVisitor(int size) {
             requiredFields = new HashSet<>(size);
         }
 
+        /**
+         * load the given stored field, the _source is only loaded if {@link #required(boolean)} is set
+         */
         public boolean addField(String name){
             required = true;
             return requiredFields.add(name);
@@ -81,20 +85,24 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
         @Override
         public Status needsField(FieldInfo fieldInfo) throws IOException {
             if (SourceFieldMapper.NAME.equals(fieldInfo.name)) {
-                return Status.YES;
+                return sourceRequired ? Status.YES : Status.NO;
             }
             return requiredFields.contains(fieldInfo.name) ? Status.YES : Status.NO;
         }
 
+        /**
+         * the _source is required
+         */
         public void required(boolean required) {
             this.required = required;
+            this.sourceRequired = required;
         }
     }
 
     private final SearchContext searchContext;
-    private Projector downstream;
-    private final List<Input<?>> topLevelInputs;
-    private final List<LuceneCollectorExpression<?>> collectorExpressions;
+    protected Projector downstream;
+    protected final List<Input<?>> topLevelInputs;
+    protected final List<LuceneCollectorExpression<?>> collectorExpressions;
 
     public LuceneDocCollector(ClusterService clusterService,
                               ShardId shardId,
@@ -146,9 +154,10 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
     @Override
     public void setScorer(Scorer scorer) throws IOException {}
 
-    @Override
-    public void collect(int doc) throws IOException {
-        Object[] newRow = new Object[topLevelInputs.size()];
+    /**
+     * positions the collector expressions on the given document
+     */
+    protected void setNextDocId(int doc) throws IOException {
         if (visitorEnabled){
             fieldsVisitor.reset();
             currentReader.document(doc, fieldsVisitor);
@@ -156,6 +165,12 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
         for (LuceneCollectorExpression e : collectorExpressions) {
             e.setNextDocId(doc);
         }
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        Object[] newRow = new Object[topLevelInputs.size()];
+        setNextDocId(doc);
         int i = 0;
         for (Input<?> input : topLevelInputs) {
             newRow[i++] = input.value();
@@ -179,6 +194,12 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
         return true;
     }
 
+    /**
+     * called after all matching documents have been collected, before the downstream is finished
+     */
+    protected void collectFinished() throws IOException {
+    }
+
     @Override
     public void doCollect() throws Exception {
         // start collect
@@ -198,6 +219,7 @@ public class LuceneDocCollector extends Collector implements CrateCollector {
         // do the lucene search
         try {
             searchContext.searcher().search(query, this);
+            collectFinished();
         } finally {
             searchContext.release();
             SearchContext.removeCurrent();
@@ -196,7 +196,8 @@ public class MapSideDataCollectOperation implements CollectOperation<Object[][]>
                     ImmutableMap.<String, FileInputFactory>of(),
                     fileUriCollectNode.sharedStorage(),
                     readers.length,
-                    Arrays.binarySearch(readers, clusterService.localNode().id())
+                    Arrays.binarySearch(readers, clusterService.localNode().id()),
+                    fileUriCollectNode.columnTypes()
             );
         } else {
             ImplementationSymbolVisitor.Context ctx = nodeImplementationSymbolVisitor.process(collectNode);
@@ -0,0 +1,221 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect;
+
+import io.crate.action.SQLXContentQueryParser;
+import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.operation.AggregationContext;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationCollector;
+import io.crate.operation.aggregation.AggregationState;
+import io.crate.operation.projectors.GroupingProjector;
+import io.crate.operation.reference.doc.BytesRefColumnReference;
+import io.crate.operation.reference.doc.LuceneCollectorExpression;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.cache.recycler.CacheRecycler;
+import org.elasticsearch.cache.recycler.PageCacheRecycler;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.fielddata.BytesValues;
+import org.elasticsearch.index.fielddata.ordinals.Ordinals;
+import org.elasticsearch.index.service.IndexService;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.script.ScriptService;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * collects the documents of a shard grouped by a single string column.
+ *
+ * Within a segment the aggregation states are kept in an array indexed by the ordinals
+ * of the key, so the key isn't copied or hashed for every document. The ordinals are
+ * resolved to their values once per group when the segment is finished and the groups
+ * are handed to the {@link GroupingProjector} as partial results, which merges the
+ * groups of all segments and applies its bound on the number of groups.
+ *
+ * Segments without ordinals or with too many of them are grouped by hashing the values
+ * instead, the values are only copied for new groups. These groups are handed to the
+ * projector whenever they reach {@link GroupingProjector#maxGroups()}.
+ */
+public class OrdinalsGroupingDocCollector extends LuceneDocCollector {
+
+    /**
+     * segments with more ordinals are grouped by hashing, to bound the size of the states array
+     */
+    static final long MAX_ORDINALS = 1 << 20;
+
+    private final BytesRefColumnReference keyExpression;
+    private final AggregationCollector[] aggregationCollectors;
+    private final GroupingProjector groupingProjector;
+    private final Map<BytesRef, AggregationState[]> groups = new HashMap<>();
+
+    private BytesValues.WithOrdinals ordinalValues;
+    private Ordinals.Docs ordinals;
+    private AggregationState[][] statesByOrd;
+
+    public OrdinalsGroupingDocCollector(ClusterService clusterService,
+                                        ShardId shardId,
+                                        IndexService indexService,
+                                        ScriptService scriptService,
+                                        CacheRecycler cacheRecycler,
+                                        PageCacheRecycler pageCacheRecycler,
+                                        BigArrays bigArrays,
+                                        SQLXContentQueryParser sqlxContentQueryParser,
+                                        List<Input<?>> inputs,
+                                        List<LuceneCollectorExpression<?>> collectorExpressions,
+                                        BytesReference querySource,
+                                        BytesRefColumnReference keyExpression,
+                                        AggregationContext[] aggregations,
+                                        GroupingProjector groupingProjector) throws Exception {
+        super(clusterService, shardId, indexService, scriptService, cacheRecycler, pageCacheRecycler,
+                bigArrays, sqlxContentQueryParser, inputs, collectorExpressions, querySource, groupingProjector);
+        this.keyExpression = keyExpression;
+        this.groupingProjector = groupingProjector;
+        this.aggregationCollectors = new AggregationCollector[aggregations.length];
+        for (int i = 0; i < aggregations.length; i++) {
+            aggregationCollectors[i] = new AggregationCollector(
+                    aggregations[i].symbol(),
+                    aggregations[i].function(),
+                    aggregations[i].inputs()
+            );
+        }
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        setNextDocId(doc);
+        AggregationState[] states;
+        if (statesByOrd != null) {
+            int ord = (int) keyOrd(doc);
+            states = statesByOrd[ord];
+            if (states == null) {
+                states = newStates();
+                statesByOrd[ord] = states;
+            }
+        } else {
+            BytesRef key = sharedKey(doc);
+            states = groups.get(key);
+            if (states == null) {
+                if (groups.size() == groupingProjector.maxGroups()) {
+                    flushGroups();
+                }
+                states = newStates();
+                groups.put(key == null ? null : BytesRef.deepCopyOf(key), states);
+            }
+        }
+        for (int i = 0; i < aggregationCollectors.length; i++) {
+            aggregationCollectors[i].state(states[i]);
+            aggregationCollectors[i].processRow();
+        }
+    }
+
+    private long keyOrd(int doc) {
+        if (!ordinals.isMultiValued()) {
+            return ordinals.getOrd(doc);
+        }
+        switch (ordinals.setDocument(doc)) {
+            case 0:
+                return Ordinals.MISSING_ORDINAL;
+            case 1:
+                return ordinals.nextOrd();
+            default:
+                throw new GroupByOnArrayUnsupportedException(keyExpression.columnName());
+        }
+    }
+
+    /**
+     * @return the value of the key without copying it, only valid until the next document
+     */
+    private BytesRef sharedKey(int doc) {
+        BytesValues values = keyExpression.values();
+        switch (values.setDocument(doc)) {
+            case 0:
+                return null;
+            case 1:
+                return values.nextValue();
+            default:
+                throw new GroupByOnArrayUnsupportedException(keyExpression.columnName());
+        }
+    }
+
+    private AggregationState[] newStates() {
+        AggregationState[] states = new AggregationState[aggregationCollectors.length];
+        for (int i = 0; i < aggregationCollectors.length; i++) {
+            aggregationCollectors[i].startCollect();
+            states[i] = aggregationCollectors[i].state();
+        }
+        return states;
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext context) throws IOException {
+        finishSegment();
+        super.setNextReader(context);
+        BytesValues values = keyExpression.values();
+        if (values instanceof BytesValues.WithOrdinals) {
+            ordinalValues = (BytesValues.WithOrdinals) values;
+            ordinals = ordinalValues.ordinals();
+            if (ordinals.getMaxOrd() <= MAX_ORDINALS) {
+                // ordinals range from 1 to maxOrd - 1, 0 is used for documents without a value
+                statesByOrd = new AggregationState[(int) ordinals.getMaxOrd()][];
+            }
+        }
+    }
+
+    /**
+     * resolves the ordinals of the groups of the current segment and hands them to the projector
+     */
+    private void finishSegment() {
+        flushGroups();
+        if (statesByOrd == null) {
+            return;
+        }
+        for (int ord = 0; ord < statesByOrd.length; ord++) {
+            AggregationState[] states = statesByOrd[ord];
+            if (states == null) {
+                continue;
+            }
+            BytesRef key = ord == Ordinals.MISSING_ORDINAL ? null : BytesRef.deepCopyOf(ordinalValues.getValueByOrd(ord));
+            groupingProjector.setNextGroup(new Object[] { key }, states);
+        }
+        statesByOrd = null;
+        ordinalValues = null;
+        ordinals = null;
+    }
+
+    private void flushGroups() {
+        for (Map.Entry<BytesRef, AggregationState[]> entry : groups.entrySet()) {
+            groupingProjector.setNextGroup(new Object[] { entry.getKey() }, entry.getValue());
+        }
+        groups.clear();
+    }
+
+    @Override
+    protected void collectFinished() throws IOException {
+        finishSegment();
+    }
+}
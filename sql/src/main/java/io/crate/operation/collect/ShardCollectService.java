@@ -21,21 +21,38 @@
 
 package io.crate.operation.collect;
 
+import io.crate.DataType;
 import io.crate.action.SQLXContentQueryParser;
 import io.crate.analyze.EvaluatingNormalizer;
 import io.crate.blob.v2.BlobIndices;
 import io.crate.exceptions.CrateException;
 import io.crate.executor.transport.task.elasticsearch.ESQueryBuilder;
+import io.crate.metadata.FunctionImplementation;
 import io.crate.metadata.Functions;
 import io.crate.metadata.shard.ShardReferenceResolver;
 import io.crate.metadata.shard.blob.BlobShardReferenceResolver;
+import io.crate.operation.AggregationContext;
 import io.crate.operation.ImplementationSymbolVisitor;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.projectors.AggregationProjector;
+import io.crate.operation.projectors.GroupingProjector;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.operation.projectors.Projector;
+import io.crate.operation.reference.doc.BytesRefColumnReference;
+import io.crate.operation.reference.doc.FieldCacheExpression;
 import io.crate.operation.reference.doc.LuceneCollectorExpression;
 import io.crate.operation.reference.doc.LuceneDocLevelReferenceResolver;
 import io.crate.planner.RowGranularity;
 import io.crate.planner.node.dql.CollectNode;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.planner.projection.GroupProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.symbol.Aggregation;
+import io.crate.planner.symbol.InputColumn;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
+import org.elasticsearch.action.bulk.TransportShardBulkAction;
 import org.elasticsearch.cache.recycler.CacheRecycler;
 import org.elasticsearch.cache.recycler.PageCacheRecycler;
 import org.elasticsearch.client.Client;
@@ -48,6 +65,9 @@ import org.elasticsearch.index.service.IndexService;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.script.ScriptService;
 
+import javax.annotation.Nullable;
+import java.util.List;
+
 public class ShardCollectService {
 
     private final CollectInputSymbolVisitor<LuceneCollectorExpression<?>> docInputSymbolVisitor;
@@ -63,9 +83,11 @@ public class ShardCollectService {
     private final ImplementationSymbolVisitor shardImplementationSymbolVisitor;
     private final EvaluatingNormalizer shardNormalizer;
     private final ProjectionToProjectorVisitor projectorVisitor;
+    private final Functions functions;
 
     @Inject
     public ShardCollectService(Provider<Client> clientProvider,
+                               TransportShardBulkAction transportShardBulkAction,
                                ClusterService clusterService,
                                ShardId shardId,
                                IndexService indexService,
@@ -86,6 +108,7 @@ public class ShardCollectService {
         this.pageCacheRecycler = pageCacheRecycler;
         this.bigArrays = bigArrays;
         this.sqlxContentQueryParser = sqlxContentQueryParser;
+        this.functions = functions;
 
         this.docInputSymbolVisitor = new CollectInputSymbolVisitor<>(
                 functions, LuceneDocLevelReferenceResolver.INSTANCE);
@@ -103,7 +126,7 @@ public class ShardCollectService {
                 (isBlobShard ? blobShardReferenceResolver : referenceResolver)
         );
         this.projectorVisitor = new ProjectionToProjectorVisitor(clientProvider,
-                shardImplementationSymbolVisitor, shardNormalizer);
+                transportShardBulkAction, shardImplementationSymbolVisitor, shardNormalizer, shardId);
     }
 
     /**
@@ -126,6 +149,19 @@ public class ShardCollectService {
             if (granularity == RowGranularity.DOC) {
                 CollectInputSymbolVisitor.Context docCtx = docInputSymbolVisitor.process(normalizedCollectNode);
                 BytesReference querySource = queryBuilder.convert(normalizedCollectNode.whereClause());
+                if (downstream instanceof GroupingProjector) {
+                    CrateCollector collector = ordinalsGroupingCollector(
+                            normalizedCollectNode, docCtx, querySource, (GroupingProjector) downstream);
+                    if (collector != null) {
+                        return collector;
+                    }
+                } else if (downstream instanceof AggregationProjector) {
+                    CrateCollector collector = fieldDataAggregationCollector(
+                            normalizedCollectNode, docCtx, querySource, (AggregationProjector) downstream);
+                    if (collector != null) {
+                        return collector;
+                    }
+                }
                 return new LuceneDocCollector(clusterService, shardId, indexService,
                         scriptService, cacheRecycler, pageCacheRecycler, bigArrays,
                         sqlxContentQueryParser,
@@ -141,4 +177,106 @@ public class ShardCollectService {
             throw new CrateException(String.format("Granularity %s not supported", granularity.name()));
         }
     }
+
+    /**
+     * @return a collector grouping by the ordinals of the key if the downstream groups
+     *         by a single string column, otherwise null
+     */
+    @Nullable
+    private CrateCollector ordinalsGroupingCollector(CollectNode collectNode,
+                                                     CollectInputSymbolVisitor.Context docCtx,
+                                                     BytesReference querySource,
+                                                     GroupingProjector downstream) throws Exception {
+        Projection projection = collectNode.projections().get(0);
+        if (!(projection instanceof GroupProjection)) {
+            return null;
+        }
+        GroupProjection groupProjection = (GroupProjection) projection;
+        if (groupProjection.keys().size() != 1 || !(groupProjection.keys().get(0) instanceof InputColumn)) {
+            return null;
+        }
+        int keyIndex = ((InputColumn) groupProjection.keys().get(0)).index();
+        Symbol key = collectNode.toCollect().get(keyIndex);
+        List<Input<?>> inputs = docCtx.topLevelInputs();
+        if (!(key instanceof Reference) || ((Reference) key).valueType() != DataType.STRING
+                || !(inputs.get(keyIndex) instanceof BytesRefColumnReference)) {
+            return null;
+        }
+
+        AggregationContext[] aggregations = new AggregationContext[groupProjection.values().size()];
+        for (int i = 0; i < aggregations.length; i++) {
+            Aggregation aggregation = groupProjection.values().get(i);
+            FunctionImplementation impl = functions.get(aggregation.functionIdent());
+            if (aggregation.fromStep() != Aggregation.Step.ITER || !(impl instanceof AggregationFunction)) {
+                return null;
+            }
+            aggregations[i] = new AggregationContext((AggregationFunction) impl, aggregation);
+            for (Symbol input : aggregation.inputs()) {
+                if (!(input instanceof InputColumn)) {
+                    return null;
+                }
+                aggregations[i].addInput(inputs.get(((InputColumn) input).index()));
+            }
+        }
+        return new OrdinalsGroupingDocCollector(clusterService, shardId, indexService,
+                scriptService, cacheRecycler, pageCacheRecycler, bigArrays,
+                sqlxContentQueryParser,
+                inputs,
+                docCtx.docLevelExpressions(),
+                querySource,
+                (BytesRefColumnReference) inputs.get(keyIndex),
+                aggregations,
+                downstream);
+    }
+
+    /**
+     * @return a collector aggregating the field data of numeric columns without building rows
+     *         if the downstream only computes count, sum, min, max or avg aggregations on such
+     *         columns, otherwise null
+     */
+    @Nullable
+    private CrateCollector fieldDataAggregationCollector(CollectNode collectNode,
+                                                         CollectInputSymbolVisitor.Context docCtx,
+                                                         BytesReference querySource,
+                                                         AggregationProjector downstream) throws Exception {
+        Projection projection = collectNode.projections().get(0);
+        if (!(projection instanceof AggregationProjection)) {
+            return null;
+        }
+        List<Aggregation> aggregations = ((AggregationProjection) projection).aggregations();
+        List<Input<?>> inputs = docCtx.topLevelInputs();
+        FieldDataAggregationDocCollector.FieldDataAggregator[] aggregators =
+                new FieldDataAggregationDocCollector.FieldDataAggregator[aggregations.size()];
+        for (int i = 0; i < aggregators.length; i++) {
+            Aggregation aggregation = aggregations.get(i);
+            FunctionImplementation impl = functions.get(aggregation.functionIdent());
+            if (aggregation.fromStep() != Aggregation.Step.ITER || !(impl instanceof AggregationFunction)
+                    || !FieldDataAggregationDocCollector.supports(aggregation.functionIdent().name())
+                    || aggregation.inputs().size() > 1) {
+                return null;
+            }
+            FieldCacheExpression<?, ?> expression = null;
+            if (aggregation.inputs().size() == 1) {
+                Symbol input = aggregation.inputs().get(0);
+                if (!(input instanceof InputColumn)) {
+                    return null;
+                }
+                Input<?> topLevelInput = inputs.get(((InputColumn) input).index());
+                if (!FieldDataAggregationDocCollector.supports(topLevelInput)) {
+                    return null;
+                }
+                expression = (FieldCacheExpression<?, ?>) topLevelInput;
+            }
+            aggregators[i] = new FieldDataAggregationDocCollector.FieldDataAggregator(
+                    (AggregationFunction) impl, expression);
+        }
+        return new FieldDataAggregationDocCollector(clusterService, shardId, indexService,
+                scriptService, cacheRecycler, pageCacheRecycler, bigArrays,
+                sqlxContentQueryParser,
+                inputs,
+                docCtx.docLevelExpressions(),
+                querySource,
+                aggregators,
+                downstream);
+    }
 }
@@ -55,11 +55,10 @@ public class ShardProjectorChain {
             return;
         }
 
-        int idx = 0;
-        for (Projection projection : projections) {
-            if (projection.requiredGranularity().ordinal() == RowGranularity.SHARD.ordinal()) {
-                shardProjectionsIndex = idx;
-                break;
+        // every projection up to the last shard bound one runs on shard level
+        for (int i = 0; i < projections.size(); i++) {
+            if (projections.get(i).requiredGranularity().ordinal() == RowGranularity.SHARD.ordinal()) {
+                shardProjectionsIndex = i;
             }
         }
 
@@ -77,7 +76,7 @@ public class ShardProjectorChain {
         }
         if (shardProjectionsIndex >= 0) {
             shardProjectors = new ArrayList<>((shardProjectionsIndex + 1) * numShards);
-            if (shardProjectionsIndex == 0) {
+            if (shardProjectionsIndex == projections.size() - 1) {
                 // no node projectors
                 previousProjector = firstNodeProjector = new CollectingProjector();
             }
@@ -0,0 +1,124 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.files;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * a compact binary file format which stores the values column by column.
+ *
+ * Layout:
+ * <pre>
+ *     MAGIC VERSION numColumns:vint (columnName:string)*
+ *     (numRows:vint (columnLength:vint value{numRows})*)*
+ *     0:vint
+ * </pre>
+ *
+ * Rows are stored in groups of up to {@link #ROW_GROUP_SIZE} rows, within a group
+ * all values of a column are written one after another using
+ * {@link StreamOutput#writeGenericValue(Object)}. The length prefix of a column
+ * lets readers skip the columns they don't need without decoding them.
+ */
+public class ColumnarFormat {
+
+    public static final byte[] MAGIC = new byte[]{'C', 'C', 'O', 'L'};
+    public static final byte VERSION = 1;
+    public static final int ROW_GROUP_SIZE = 4096;
+
+    private ColumnarFormat() {
+    }
+
+    /**
+     * writes rows in the columnar format, the underlying stream isn't closed by this writer.
+     */
+    public static class Writer implements Closeable {
+
+        private final StreamOutput out;
+        private final BytesStreamOutput[] columns;
+        private int rows = 0;
+
+        public Writer(OutputStream outputStream, List<String> columnNames) throws IOException {
+            out = new OutputStreamStreamOutput(outputStream);
+            out.writeBytes(MAGIC);
+            out.writeByte(VERSION);
+            out.writeVInt(columnNames.size());
+            columns = new BytesStreamOutput[columnNames.size()];
+            for (int i = 0; i < columns.length; i++) {
+                out.writeString(columnNames.get(i));
+                columns[i] = new BytesStreamOutput();
+            }
+        }
+
+        public void write(Object[] values) throws IOException {
+            assert values.length == columns.length : "number of values must match the number of columns";
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].writeGenericValue(toGenericValue(values[i]));
+            }
+            rows++;
+            if (rows == ROW_GROUP_SIZE) {
+                flushRowGroup();
+            }
+        }
+
+        private void flushRowGroup() throws IOException {
+            if (rows == 0) {
+                return;
+            }
+            out.writeVInt(rows);
+            for (BytesStreamOutput column : columns) {
+                out.writeVInt(column.size());
+                column.bytes().writeTo(out);
+                column.reset();
+            }
+            rows = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushRowGroup();
+            out.writeVInt(0);
+            out.flush();
+        }
+
+        private static Object toGenericValue(Object value) {
+            if (value instanceof BytesRef) {
+                return ((BytesRef) value).utf8ToString();
+            }
+            if (value instanceof Collection && !(value instanceof List)) {
+                // sets
+                return new ArrayList<>((Collection<?>) value);
+            }
+            return value;
+        }
+    }
+}
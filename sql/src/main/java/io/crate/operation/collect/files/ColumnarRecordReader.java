@@ -0,0 +1,117 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.files;
+
+import io.crate.operation.reference.file.LineContext;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.StreamInput;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * reads files written in the {@link ColumnarFormat}.
+ */
+class ColumnarRecordReader implements RecordReader {
+
+    private final StreamInput in;
+
+    private String[] columns;
+    private Object[][] values;
+    private int numRows = 0;
+    private int row = 0;
+
+    ColumnarRecordReader(InputStream inputStream) {
+        this.in = new InputStreamStreamInput(inputStream);
+    }
+
+    @Override
+    public boolean next(LineContext lineContext) throws IOException {
+        if (columns == null) {
+            readHeader();
+        }
+        while (row >= numRows) {
+            if (!readRowGroup()) {
+                return false;
+            }
+        }
+        Map<String, Object> source = new HashMap<>(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            if (values[i] != null && values[i][row] != null) {
+                source.put(columns[i], values[i][row]);
+            }
+        }
+        row++;
+        lineContext.source(source);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readHeader() throws IOException {
+        byte[] magic = new byte[ColumnarFormat.MAGIC.length];
+        try {
+            in.readBytes(magic, 0, magic.length);
+        } catch (EOFException e) {
+            throw new IOException("input is not in the columnar format", e);
+        }
+        if (!Arrays.equals(magic, ColumnarFormat.MAGIC)) {
+            throw new IOException("input is not in the columnar format");
+        }
+        byte version = in.readByte();
+        if (version != ColumnarFormat.VERSION) {
+            throw new IOException("unsupported columnar format version " + version);
+        }
+        columns = new String[in.readVInt()];
+        values = new Object[columns.length][];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = in.readString();
+        }
+    }
+
+    private boolean readRowGroup() throws IOException {
+        numRows = in.readVInt();
+        row = 0;
+        if (numRows == 0) {
+            return false;
+        }
+        for (int i = 0; i < columns.length; i++) {
+            // the length of the column block
+            in.readVInt();
+            if (values[i] == null || values[i].length < numRows) {
+                values[i] = new Object[numRows];
+            }
+            for (int j = 0; j < numRows; j++) {
+                values[i][j] = in.readGenericValue();
+            }
+        }
+        return true;
+    }
+}
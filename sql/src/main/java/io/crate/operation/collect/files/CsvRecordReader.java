@@ -0,0 +1,265 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.files;
+
+import com.google.common.base.Charsets;
+import io.crate.DataType;
+import io.crate.operation.reference.file.LineContext;
+import org.elasticsearch.common.xcontent.XContentHelper;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * reads CSV files (RFC 4180) whose first record contains the column names.
+ *
+ * If column types are given the values of those columns are converted to their type,
+ * the values of all other columns are kept as strings.
+ * Empty unquoted fields are treated as null.
+ */
+class CsvRecordReader implements RecordReader {
+
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+
+    private static final int END_OF_FIELD = 0;
+    private static final int END_OF_RECORD = 1;
+    private static final int END_OF_FILE = 2;
+
+    private final Reader reader;
+    @Nullable
+    private final Map<String, DataType> columnTypes;
+    private final char[] buffer = new char[FileCompression.BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder();
+
+    private int pos = 0;
+    private int limit = 0;
+    private boolean emptyField;
+    private boolean quoted;
+
+    /**
+     * the column names by position
+     */
+    private String[] columns;
+    private DataType[] types;
+
+    CsvRecordReader(Reader reader, @Nullable Map<String, DataType> columnTypes) {
+        this.reader = reader;
+        this.columnTypes = columnTypes;
+    }
+
+    @Override
+    public boolean next(LineContext lineContext) throws IOException {
+        if (columns == null && !readHeader()) {
+            return false;
+        }
+        while (true) {
+            Map<String, Object> source = new HashMap<>(columns.length);
+            int column = 0;
+            int state;
+            do {
+                // fields without a header are skipped
+                boolean keep = column < columns.length;
+                state = readField(keep);
+                if (keep && !emptyField) {
+                    source.put(columns[column], convert(columns[column], types[column], field.toString()));
+                }
+                column++;
+            } while (state == END_OF_FIELD);
+
+            if (column == 1 && emptyField) {
+                if (state == END_OF_FILE) {
+                    return false;
+                }
+                // skip blank lines
+                continue;
+            }
+            lineContext.source(source);
+            return true;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean readHeader() throws IOException {
+        List<String> names = new ArrayList<>();
+        int state;
+        do {
+            state = readField(true);
+            names.add(field.toString().trim());
+        } while (state == END_OF_FIELD);
+        if (names.size() == 1 && emptyField) {
+            return false;
+        }
+        columns = new String[names.size()];
+        types = new DataType[names.size()];
+        for (int i = 0; i < columns.length; i++) {
+            String name = names.get(i);
+            columns[i] = name;
+            if (columnTypes != null) {
+                types[i] = columnTypes.get(name);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * reads the next field into {@link #field} if keep is true, otherwise the field is skipped.
+     *
+     * @return what ended the field
+     */
+    private int readField(boolean keep) throws IOException {
+        field.setLength(0);
+        emptyField = true;
+        quoted = false;
+        int c = read();
+        if (c == QUOTE) {
+            emptyField = false;
+            quoted = true;
+            while (true) {
+                c = read();
+                if (c == -1) {
+                    throw new IOException("unexpected end of file within a quoted CSV field");
+                }
+                if (c == QUOTE) {
+                    c = read();
+                    if (c != QUOTE) {
+                        break;
+                    }
+                }
+                if (keep) {
+                    field.append((char) c);
+                }
+            }
+        }
+        while (true) {
+            switch (c) {
+                case -1:
+                    return END_OF_FILE;
+                case SEPARATOR:
+                    return END_OF_FIELD;
+                case '\n':
+                    return END_OF_RECORD;
+                case '\r':
+                    if (peek() == '\n') {
+                        pos++;
+                    }
+                    return END_OF_RECORD;
+                default:
+                    emptyField = false;
+                    if (keep) {
+                        field.append((char) c);
+                    }
+                    c = read();
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read == -1) {
+            return false;
+        }
+        pos = 0;
+        limit = read;
+        return true;
+    }
+
+    static Object convert(String column, @Nullable DataType type, String value) {
+        if (type == null) {
+            return value;
+        }
+        try {
+            switch (type) {
+                case BYTE:
+                    return Byte.parseByte(value.trim());
+                case SHORT:
+                    return Short.parseShort(value.trim());
+                case INTEGER:
+                    return Integer.parseInt(value.trim());
+                case LONG:
+                    return Long.parseLong(value.trim());
+                case FLOAT:
+                    return Float.parseFloat(value);
+                case DOUBLE:
+                    return Double.parseDouble(value);
+                case BOOLEAN:
+                    String trimmed = value.trim();
+                    if (trimmed.equalsIgnoreCase("true") || trimmed.equalsIgnoreCase("t")) {
+                        return true;
+                    } else if (trimmed.equalsIgnoreCase("false") || trimmed.equalsIgnoreCase("f")) {
+                        return false;
+                    }
+                    throw new IllegalArgumentException();
+                case TIMESTAMP:
+                    // formatted timestamps are parsed when the document gets indexed
+                    try {
+                        return Long.parseLong(value.trim());
+                    } catch (NumberFormatException e) {
+                        return value;
+                    }
+                case OBJECT:
+                    return XContentHelper.convertToMap(value.getBytes(Charsets.UTF_8), false).v2();
+                case STRING:
+                case IP:
+                    return value;
+                default:
+                    if (DataType.ARRAY_TYPES.contains(type)) {
+                        // arrays are written as JSON arrays
+                        return XContentHelper.convertToMap(
+                                ("{\"v\":" + value + "}").getBytes(Charsets.UTF_8), false).v2().get("v");
+                    }
+                    return value;
+            }
+        } catch (Exception e) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "Cannot convert value \"%s\" of column \"%s\" to type %s", value, column, type), e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect.files;
+
+/**
+ * holds the buffers used by the block based decompressors so that they
+ * can be reused for all files read by one collector.
+ *
+ * Not thread safe, only one stream may use the buffers at a time.
+ */
+public class DecompressionBuffers {
+
+    private byte[] compressed = new byte[0];
+    private byte[] decompressed = new byte[0];
+
+    public byte[] compressed(int minSize) {
+        if (compressed.length < minSize) {
+            compressed = new byte[minSize];
+        }
+        return compressed;
+    }
+
+    public byte[] decompressed(int minSize) {
+        if (decompressed.length < minSize) {
+            decompressed = new byte[minSize];
+        }
+        return decompressed;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect.files;
+
+import com.google.common.base.Joiner;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * compression formats supported by COPY FROM.
+ *
+ * The compression is either given using the <code>compression</code> option
+ * or detected by the file extension.
+ */
+public enum FileCompression {
+
+    NONE {
+        @Override
+        public InputStream decompress(InputStream inputStream, DecompressionBuffers buffers) {
+            return inputStream;
+        }
+    },
+
+    GZIP(".gz", ".gzip") {
+        @Override
+        public InputStream decompress(InputStream inputStream, DecompressionBuffers buffers) throws IOException {
+            return new GZIPInputStream(inputStream, BUFFER_SIZE);
+        }
+    },
+
+    LZ4(".lz4") {
+        @Override
+        public InputStream decompress(InputStream inputStream, DecompressionBuffers buffers) {
+            return new LZ4FrameInputStream(inputStream, buffers);
+        }
+    },
+
+    SNAPPY(".sz", ".snappy") {
+        @Override
+        public InputStream decompress(InputStream inputStream, DecompressionBuffers buffers) {
+            return new SnappyFramedInputStream(inputStream, buffers);
+        }
+    };
+
+    /**
+     * size of the buffers used to read the compressed input
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String[] extensions;
+
+    FileCompression(String... extensions) {
+        this.extensions = extensions;
+    }
+
+    public abstract InputStream decompress(InputStream inputStream, DecompressionBuffers buffers) throws IOException;
+
+    /**
+     * @return the compression for the given <code>compression</code> option or
+     *         <code>null</code> if it should be detected by the file extension
+     * @throws IllegalArgumentException if the compression isn't supported
+     */
+    @Nullable
+    public static FileCompression fromOption(@Nullable String compression) {
+        if (compression == null) {
+            return null;
+        }
+        try {
+            return valueOf(compression.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "Unsupported compression \"%s\", supported are: %s",
+                    compression, Joiner.on(", ").join(values()).toLowerCase(Locale.ENGLISH)));
+        }
+    }
+
+    public static FileCompression fromUri(URI uri) {
+        String path = uri.getPath();
+        if (path == null) {
+            return NONE;
+        }
+        path = path.toLowerCase(Locale.ENGLISH);
+        for (FileCompression compression : values()) {
+            for (String extension : compression.extensions) {
+                if (path.endsWith(extension)) {
+                    return compression;
+                }
+            }
+        }
+        return NONE;
+    }
+}
@@ -21,28 +21,31 @@
 
 package io.crate.operation.collect.files;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import io.crate.DataType;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CrateCollector;
 import io.crate.operation.projectors.Projector;
 import org.apache.lucene.search.CollectionTerminatedException;
 
 import javax.annotation.Nullable;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPInputStream;
 
 public class FileReadingCollector implements CrateCollector {
 
@@ -54,7 +57,12 @@ public class FileReadingCollector implements CrateCollector {
     private final int readerNumber;
     private URI preGlobUri;
     private Projector downstream;
-    private final boolean compressed;
+    @Nullable
+    private final FileCompression compression;
+    private final DecompressionBuffers decompressionBuffers = new DecompressionBuffers();
+    private final FileFormat format;
+    @Nullable
+    private final Map<String, DataType> columnTypes;
     private final List<Input<?>> inputs;
     private final List<LineCollectorExpression<?>> collectorExpressions;
 
@@ -84,7 +92,36 @@ public class FileReadingCollector implements CrateCollector {
     );
 
     public enum FileFormat {
-        JSON
+        JSON(".json"),
+        CSV(".csv"),
+        COLUMNAR(".ccol");
+
+        private final String extension;
+
+        FileFormat(String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        /**
+         * @return the format for the given <code>format</code> option, JSON if none is given
+         * @throws IllegalArgumentException if the format isn't supported
+         */
+        public static FileFormat fromOption(@Nullable String format) {
+            if (format == null) {
+                return JSON;
+            }
+            try {
+                return valueOf(format.toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "Unsupported format \"%s\", supported are: %s",
+                        format, Joiner.on(", ").join(values()).toLowerCase(Locale.ENGLISH)));
+            }
+        }
     }
 
     public FileReadingCollector(String fileUri,
@@ -92,11 +129,30 @@ public class FileReadingCollector implements CrateCollector {
                                 List<LineCollectorExpression<?>> collectorExpressions,
                                 Projector downstream,
                                 FileFormat format,
-                                String compression,
+                                @Nullable String compression,
                                 Map<String, FileInputFactory> additionalFileInputFactories,
                                 Boolean shared,
                                 int numReaders,
                                 int readerNumber) {
+        this(fileUri, inputs, collectorExpressions, downstream, format, compression,
+                additionalFileInputFactories, shared, numReaders, readerNumber, null);
+    }
+
+    /**
+     * @param columnTypes the types of the table columns or null, used to convert the values of CSV files.
+     *                    Values of other columns are kept as strings.
+     */
+    public FileReadingCollector(String fileUri,
+                                List<Input<?>> inputs,
+                                List<LineCollectorExpression<?>> collectorExpressions,
+                                Projector downstream,
+                                FileFormat format,
+                                @Nullable String compression,
+                                Map<String, FileInputFactory> additionalFileInputFactories,
+                                Boolean shared,
+                                int numReaders,
+                                int readerNumber,
+                                @Nullable Map<String, DataType> columnTypes) {
         if (fileUri.startsWith("/")) {
             this.fileUri = URI.create("file://" + fileUri);
         } else {
@@ -109,7 +165,9 @@ public class FileReadingCollector implements CrateCollector {
             }
         }
         downstream(downstream);
-        this.compressed = compression != null && compression.equalsIgnoreCase("gzip");
+        this.compression = FileCompression.fromOption(compression);
+        this.format = format;
+        this.columnTypes = columnTypes;
         this.inputs = inputs;
         this.collectorExpressions = collectorExpressions;
         this.fileInputFactoryMap = new HashMap<>(builtInFileInputFactories);
@@ -165,7 +223,6 @@ public class FileReadingCollector implements CrateCollector {
             collectorExpression.startCollect(collectorContext);
         }
         Object[] newRow;
-        String line;
         List<URI> uris;
         uris = getUris(fileInput, uriPredicate);
         try {
@@ -174,16 +231,11 @@ public class FileReadingCollector implements CrateCollector {
                 if (inputStream == null) {
                     continue;
                 }
-                BufferedReader reader;
-                reader = createReader(inputStream);
+                RecordReader reader = createReader(uri, inputStream);
 
                 try {
-                    while ((line = reader.readLine()) != null) {
-                        collectorContext.lineContext().rawSource(line.getBytes());
+                    while (reader.next(collectorContext.lineContext())) {
                         newRow = new Object[inputs.size()];
-                        for (LineCollectorExpression expression : collectorExpressions) {
-                            expression.setNextLine(line);
-                        }
                         int i = 0;
                         for (Input<?> input : inputs) {
                             newRow[i++] = input.value();
@@ -201,14 +253,22 @@ public class FileReadingCollector implements CrateCollector {
         }
     }
 
-    private BufferedReader createReader(InputStream inputStream) throws IOException {
-        BufferedReader reader;
-        if (compressed) {
-            reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(inputStream)));
-        } else {
-            reader = new BufferedReader(new InputStreamReader(inputStream));
+    /**
+     * create a reader for the given file, if no compression was given it is detected by the file extension
+     */
+    private RecordReader createReader(URI uri, InputStream inputStream) throws IOException {
+        FileCompression fileCompression = compression == null ? FileCompression.fromUri(uri) : compression;
+        InputStream decompressed = fileCompression.decompress(inputStream, decompressionBuffers);
+        switch (format) {
+            case CSV:
+                return new CsvRecordReader(
+                        new InputStreamReader(decompressed, Charsets.UTF_8), columnTypes);
+            case COLUMNAR:
+                return new ColumnarRecordReader(
+                        new BufferedInputStream(decompressed, FileCompression.BUFFER_SIZE));
+            default:
+                return new JsonRecordReader(decompressed);
         }
-        return reader;
     }
 
     private List<URI> getUris(FileInput fileInput, Predicate<URI> uriPredicate) throws IOException {
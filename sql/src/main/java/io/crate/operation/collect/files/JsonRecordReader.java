@@ -0,0 +1,112 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.files;
+
+import io.crate.operation.reference.file.LineContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * reads files containing one JSON object per line.
+ *
+ * The lines are split on the raw bytes and passed on as they are,
+ * they are neither decoded nor parsed here.
+ */
+class JsonRecordReader implements RecordReader {
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[FileCompression.BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+
+    /**
+     * collects lines which exceed the buffer
+     */
+    private byte[] pending = new byte[0];
+    private int pendingLength = 0;
+
+    JsonRecordReader(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public boolean next(LineContext lineContext) throws IOException {
+        pendingLength = 0;
+        while (true) {
+            for (int i = pos; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    lineContext.rawSource(line(pos, i));
+                    pos = i + 1;
+                    return true;
+                }
+            }
+            appendPending(pos, limit);
+            int read = in.read(buffer, 0, buffer.length);
+            if (read == -1) {
+                pos = limit = 0;
+                if (pendingLength == 0) {
+                    return false;
+                }
+                lineContext.rawSource(line(0, 0));
+                return true;
+            }
+            pos = 0;
+            limit = read;
+        }
+    }
+
+    /**
+     * @return a copy of the pending bytes followed by the bytes of the buffer from start to end
+     *         without a trailing carriage return
+     */
+    private byte[] line(int start, int end) {
+        int length = pendingLength + end - start;
+        byte[] line;
+        if (pendingLength == 0) {
+            line = Arrays.copyOfRange(buffer, start, end);
+        } else {
+            line = Arrays.copyOf(pending, length);
+            System.arraycopy(buffer, start, line, pendingLength, end - start);
+        }
+        if (length > 0 && line[length - 1] == '\r') {
+            line = Arrays.copyOf(line, length - 1);
+        }
+        return line;
+    }
+
+    private void appendPending(int start, int end) {
+        int length = end - start;
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+        }
+        System.arraycopy(buffer, start, pending, pendingLength, length);
+        pendingLength += length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
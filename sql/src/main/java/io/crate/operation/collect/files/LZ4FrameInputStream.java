@@ -0,0 +1,287 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect.files;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decompresses data in the LZ4 frame format as written by the <code>lz4</code> command line tool.
+ *
+ * Concatenated and skippable frames are supported, preset dictionaries are not.
+ * The optional xxHash checksums are skipped and not verified.
+ */
+class LZ4FrameInputStream extends InputStream {
+
+    private static final int MAGIC = 0x184D2204;
+    private static final int SKIPPABLE_MAGIC = 0x184D2A50;
+    private static final int SKIPPABLE_MAGIC_MASK = 0xFFFFFFF0;
+
+    /**
+     * linked blocks may reference up to 64KB of previously decompressed data
+     */
+    private static final int WINDOW_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final DecompressionBuffers buffers;
+    private final byte[] singleByte = new byte[1];
+
+    private byte[] compressed;
+    private byte[] decompressed;
+    private int pos = 0;
+    private int limit = 0;
+
+    private boolean inFrame = false;
+    private boolean blockIndependent;
+    private boolean blockChecksum;
+    private boolean contentChecksum;
+    private int maxBlockSize;
+
+    LZ4FrameInputStream(InputStream in, DecompressionBuffers buffers) {
+        this.in = in;
+        this.buffers = buffers;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = read(singleByte, 0, 1);
+        return read == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (pos >= limit) {
+            if (!nextBlock()) {
+                return -1;
+            }
+        }
+        int toCopy = Math.min(len, limit - pos);
+        System.arraycopy(decompressed, pos, b, off, toCopy);
+        pos += toCopy;
+        return toCopy;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return limit - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean nextBlock() throws IOException {
+        while (true) {
+            if (!inFrame && !readFrameHeader()) {
+                return false;
+            }
+            int blockSize = readIntLE();
+            if (blockSize == 0) {
+                // end mark
+                if (contentChecksum) {
+                    skipFully(4);
+                }
+                inFrame = false;
+                continue;
+            }
+            boolean uncompressed = (blockSize & 0x80000000) != 0;
+            blockSize &= 0x7FFFFFFF;
+            if (blockSize > maxBlockSize) {
+                throw new IOException("corrupted LZ4 frame: block size exceeds the maximum block size");
+            }
+
+            int start = prepareWindow();
+            if (uncompressed) {
+                readFully(decompressed, start, blockSize);
+                limit = start + blockSize;
+            } else {
+                readFully(compressed, 0, blockSize);
+                limit = decompressBlock(compressed, blockSize, decompressed, start);
+            }
+            pos = start;
+            if (blockChecksum) {
+                skipFully(4);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return the offset the next block is decompressed to,
+     *         anything in front of it may be referenced by the block.
+     */
+    private int prepareWindow() {
+        if (blockIndependent) {
+            return 0;
+        }
+        if (limit > WINDOW_SIZE) {
+            System.arraycopy(decompressed, limit - WINDOW_SIZE, decompressed, 0, WINDOW_SIZE);
+            return WINDOW_SIZE;
+        }
+        return limit;
+    }
+
+    private boolean readFrameHeader() throws IOException {
+        int magic;
+        while (true) {
+            int first = in.read();
+            if (first == -1) {
+                return false;
+            }
+            magic = first | (readByte() << 8) | (readByte() << 16) | (readByte() << 24);
+            if ((magic & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+                skipFully(readIntLE());
+            } else {
+                break;
+            }
+        }
+        if (magic != MAGIC) {
+            throw new IOException("input is not in the LZ4 frame format");
+        }
+        int flags = readByte();
+        int blockDescriptor = readByte();
+        if ((flags >>> 6) != 1) {
+            throw new IOException("unsupported LZ4 frame version");
+        }
+        if ((flags & 0x01) != 0) {
+            throw new IOException("LZ4 frames with preset dictionaries are not supported");
+        }
+        blockIndependent = (flags & 0x20) != 0;
+        blockChecksum = (flags & 0x10) != 0;
+        contentChecksum = (flags & 0x04) != 0;
+        if ((flags & 0x08) != 0) {
+            skipFully(8); // content size
+        }
+        skipFully(1); // header checksum
+
+        int blockMaxSizeId = (blockDescriptor >>> 4) & 0x07;
+        if (blockMaxSizeId < 4) {
+            throw new IOException("corrupted LZ4 frame: invalid block maximum size");
+        }
+        maxBlockSize = 1 << (2 * blockMaxSizeId + 8);
+        compressed = buffers.compressed(maxBlockSize);
+        decompressed = buffers.decompressed(WINDOW_SIZE + maxBlockSize);
+        pos = 0;
+        limit = 0;
+        inFrame = true;
+        return true;
+    }
+
+    /**
+     * decompresses a single LZ4 block
+     *
+     * @return the end offset of the decompressed data within <code>dest</code>
+     */
+    static int decompressBlock(byte[] src, int srcLength, byte[] dest, int destOffset) throws IOException {
+        int sp = 0;
+        int dp = destOffset;
+        try {
+            while (true) {
+                int token = src[sp++] & 0xFF;
+
+                int literalLength = token >>> 4;
+                if (literalLength == 15) {
+                    int b;
+                    do {
+                        b = src[sp++] & 0xFF;
+                        literalLength += b;
+                    } while (b == 255);
+                }
+                if (sp + literalLength > srcLength) {
+                    throw new IOException("corrupted LZ4 block: literals exceed the block");
+                }
+                System.arraycopy(src, sp, dest, dp, literalLength);
+                sp += literalLength;
+                dp += literalLength;
+                if (sp >= srcLength) {
+                    // the last sequence only contains literals
+                    return dp;
+                }
+
+                int offset = (src[sp++] & 0xFF) | ((src[sp++] & 0xFF) << 8);
+                int matchPos = dp - offset;
+                if (offset == 0 || matchPos < 0) {
+                    throw new IOException("corrupted LZ4 block: invalid match offset");
+                }
+                int matchLength = token & 0x0F;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[sp++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += 4;
+                if (offset >= matchLength) {
+                    System.arraycopy(dest, matchPos, dest, dp, matchLength);
+                    dp += matchLength;
+                } else {
+                    // overlapping match, repeats the last offset bytes
+                    for (int i = 0; i < matchLength; i++) {
+                        dest[dp++] = dest[matchPos++];
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("corrupted LZ4 block", e);
+        }
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("unexpected end of LZ4 frame");
+        }
+        return b;
+    }
+
+    private int readIntLE() throws IOException {
+        return readByte() | (readByte() << 8) | (readByte() << 16) | (readByte() << 24);
+    }
+
+    private void readFully(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int read = in.read(b, off, len);
+            if (read == -1) {
+                throw new EOFException("unexpected end of LZ4 frame");
+            }
+            off += read;
+            len -= read;
+        }
+    }
+
+    private void skipFully(int len) throws IOException {
+        while (len > 0) {
+            long skipped = in.skip(len);
+            if (skipped <= 0) {
+                readByte();
+                skipped = 1;
+            }
+            len -= skipped;
+        }
+    }
+}
@@ -23,9 +23,11 @@ package io.crate.operation.collect.files;
 
 import io.crate.operation.Input;
 
+/**
+ * expression which reads a value of the current line from the {@link io.crate.operation.reference.file.LineContext}
+ * that is set in {@link #startCollect(CollectorContext)}
+ */
 public abstract class LineCollectorExpression<ReturnType> implements Input<ReturnType> {
 
-    public abstract void setNextLine(String line);
-
     public abstract void startCollect(CollectorContext context);
 }
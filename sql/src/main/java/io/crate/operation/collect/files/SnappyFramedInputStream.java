@@ -0,0 +1,245 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect.files;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decompresses data in the snappy framing format
+ * (see https://github.com/google/snappy/blob/master/framing_format.txt).
+ *
+ * The masked CRC-32C checksums of the chunks are skipped and not verified.
+ */
+class SnappyFramedInputStream extends InputStream {
+
+    private static final byte[] STREAM_IDENTIFIER = new byte[]{'s', 'N', 'a', 'P', 'p', 'Y'};
+    private static final int MAX_CHUNK_SIZE = 65536;
+
+    private static final int COMPRESSED_DATA = 0x00;
+    private static final int UNCOMPRESSED_DATA = 0x01;
+    private static final int STREAM_IDENTIFIER_CHUNK = 0xFF;
+
+    private final InputStream in;
+    private final DecompressionBuffers buffers;
+    private final byte[] singleByte = new byte[1];
+    private final byte[] decompressed;
+
+    private int pos = 0;
+    private int limit = 0;
+    private boolean identifierSeen = false;
+
+    SnappyFramedInputStream(InputStream in, DecompressionBuffers buffers) {
+        this.in = in;
+        this.buffers = buffers;
+        this.decompressed = buffers.decompressed(MAX_CHUNK_SIZE);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = read(singleByte, 0, 1);
+        return read == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (pos >= limit) {
+            if (!nextChunk()) {
+                return -1;
+            }
+        }
+        int toCopy = Math.min(len, limit - pos);
+        System.arraycopy(decompressed, pos, b, off, toCopy);
+        pos += toCopy;
+        return toCopy;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return limit - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean nextChunk() throws IOException {
+        int chunkType = in.read();
+        if (chunkType == -1) {
+            return false;
+        }
+        int length = readByte() | (readByte() << 8) | (readByte() << 16);
+
+        if (chunkType == STREAM_IDENTIFIER_CHUNK) {
+            byte[] identifier = new byte[length];
+            readFully(identifier, 0, length);
+            if (!Arrays.equals(identifier, STREAM_IDENTIFIER)) {
+                throw new IOException("input is not in the snappy framing format");
+            }
+            identifierSeen = true;
+            pos = limit = 0;
+            return true;
+        }
+        if (!identifierSeen) {
+            throw new IOException("input is not in the snappy framing format");
+        }
+        switch (chunkType) {
+            case COMPRESSED_DATA:
+                byte[] compressed = buffers.compressed(length);
+                readFully(compressed, 0, length);
+                // the first 4 bytes contain the checksum
+                limit = decompress(compressed, 4, length, decompressed);
+                break;
+            case UNCOMPRESSED_DATA:
+                if (length - 4 > MAX_CHUNK_SIZE) {
+                    throw new IOException("corrupted snappy stream: chunk exceeds the maximum chunk size");
+                }
+                skipFully(4);
+                readFully(decompressed, 0, length - 4);
+                limit = length - 4;
+                break;
+            default:
+                if (chunkType <= 0x7F) {
+                    throw new IOException("corrupted snappy stream: unsupported chunk type " + chunkType);
+                }
+                // skippable chunk
+                skipFully(length);
+                limit = 0;
+        }
+        pos = 0;
+        return true;
+    }
+
+    /**
+     * decompresses raw snappy data
+     *
+     * @return the length of the decompressed data
+     */
+    static int decompress(byte[] src, int offset, int end, byte[] dest) throws IOException {
+        int sp = offset;
+        int dp = 0;
+        try {
+            int uncompressedLength = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = src[sp++] & 0xFF;
+                uncompressedLength |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0 && shift < 35);
+            if (uncompressedLength > dest.length) {
+                throw new IOException("corrupted snappy stream: chunk exceeds the maximum chunk size");
+            }
+
+            while (sp < end) {
+                int tag = src[sp++] & 0xFF;
+                int length;
+                int copyOffset;
+                switch (tag & 0x03) {
+                    case 0:
+                        length = tag >>> 2;
+                        if (length >= 60) {
+                            int numBytes = length - 59;
+                            length = 0;
+                            for (int i = 0; i < numBytes; i++) {
+                                length |= (src[sp++] & 0xFF) << (8 * i);
+                            }
+                        }
+                        length += 1;
+                        if (sp + length > end) {
+                            throw new IOException("corrupted snappy stream: literal exceeds the chunk");
+                        }
+                        System.arraycopy(src, sp, dest, dp, length);
+                        sp += length;
+                        dp += length;
+                        continue;
+                    case 1:
+                        length = 4 + ((tag >>> 2) & 0x07);
+                        copyOffset = ((tag & 0xE0) << 3) | (src[sp++] & 0xFF);
+                        break;
+                    case 2:
+                        length = 1 + (tag >>> 2);
+                        copyOffset = (src[sp++] & 0xFF) | ((src[sp++] & 0xFF) << 8);
+                        break;
+                    default:
+                        length = 1 + (tag >>> 2);
+                        copyOffset = (src[sp++] & 0xFF) | ((src[sp++] & 0xFF) << 8)
+                                | ((src[sp++] & 0xFF) << 16) | ((src[sp++] & 0xFF) << 24);
+                }
+                int copyPos = dp - copyOffset;
+                if (copyOffset <= 0 || copyPos < 0) {
+                    throw new IOException("corrupted snappy stream: invalid copy offset");
+                }
+                if (copyOffset >= length) {
+                    System.arraycopy(dest, copyPos, dest, dp, length);
+                    dp += length;
+                } else {
+                    for (int i = 0; i < length; i++) {
+                        dest[dp++] = dest[copyPos++];
+                    }
+                }
+            }
+            if (dp != uncompressedLength) {
+                throw new IOException("corrupted snappy stream: unexpected decompressed length");
+            }
+            return dp;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("corrupted snappy stream", e);
+        }
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("unexpected end of snappy stream");
+        }
+        return b;
+    }
+
+    private void readFully(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int read = in.read(b, off, len);
+            if (read == -1) {
+                throw new EOFException("unexpected end of snappy stream");
+            }
+            off += read;
+            len -= read;
+        }
+    }
+
+    private void skipFully(int len) throws IOException {
+        while (len > 0) {
+            long skipped = in.skip(len);
+            if (skipped <= 0) {
+                readByte();
+                skipped = 1;
+            }
+            len -= skipped;
+        }
+    }
+}
@@ -21,15 +21,21 @@
 package io.crate.operation.operator;
 
 import com.google.common.collect.ImmutableList;
+import io.crate.core.collections.BytesRefHashSet;
+import io.crate.core.collections.LongHashSet;
+import io.crate.metadata.CompilableScalar;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
 import io.crate.planner.symbol.*;
 import io.crate.DataType;
+import org.apache.lucene.util.BytesRef;
 
+import java.util.List;
 import java.util.Set;
 
-public class InOperator extends Operator<Object> {
+public class InOperator extends Operator<Object> implements CompilableScalar<Boolean, Object> {
 
     public static final String NAME = "op_in";
 
@@ -88,4 +94,126 @@ public class InOperator extends Operator<Object> {
         return inList.contains(inValue);
     }
 
+    /**
+     * materializes a literal list of numbers or strings once into a primitive hash set
+     */
+    @Override
+    public Scalar<Boolean, Object> compile(List<Symbol> arguments) {
+        Symbol right = arguments.get(1);
+        if (!(right instanceof SetLiteral)) {
+            return this;
+        }
+        SetLiteral inList = (SetLiteral) right;
+        if (inList.value().contains(null)) {
+            return this;
+        }
+        DataType itemType = inList.itemType();
+        switch (itemType) {
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+            case LONG:
+            case TIMESTAMP:
+            case FLOAT:
+            case DOUBLE:
+                LongHashSet longs = new LongHashSet(inList.size());
+                for (Object value : inList.value()) {
+                    longs.add(toLong(itemType, value));
+                }
+                return new LongSetInOperator(info, itemType, longs);
+            case STRING:
+            case IP:
+                BytesRefHashSet bytesRefs = new BytesRefHashSet();
+                for (Object value : inList.value()) {
+                    bytesRefs.add(toBytesRef(value));
+                }
+                return new BytesRefSetInOperator(info, bytesRefs);
+            default:
+                return this;
+        }
+    }
+
+    /**
+     * @return the value as long, floating point numbers are converted to their bits
+     *         so that they are only equal if they are equal as boxed numbers
+     */
+    private static long toLong(DataType type, Object value) {
+        switch (type) {
+            case FLOAT:
+                return Float.floatToIntBits(((Number) value).floatValue());
+            case DOUBLE:
+                return Double.doubleToLongBits(((Number) value).doubleValue());
+            default:
+                return ((Number) value).longValue();
+        }
+    }
+
+    private static BytesRef toBytesRef(Object value) {
+        if (value instanceof BytesRef) {
+            return (BytesRef) value;
+        }
+        return new BytesRef(value.toString());
+    }
+
+    abstract static class CompiledInOperator extends Operator<Object> {
+
+        private final FunctionInfo info;
+
+        CompiledInOperator(FunctionInfo info) {
+            this.info = info;
+        }
+
+        @Override
+        public FunctionInfo info() {
+            return info;
+        }
+
+        @Override
+        public Symbol normalizeSymbol(Function symbol) {
+            return symbol;
+        }
+
+        @Override
+        public Boolean evaluate(Input<Object>... args) {
+            Object inValue = args[0].value();
+            if (inValue == null) {
+                return null;
+            }
+            return contains(inValue);
+        }
+
+        protected abstract boolean contains(Object value);
+    }
+
+    static class LongSetInOperator extends CompiledInOperator {
+
+        private final DataType itemType;
+        private final LongHashSet values;
+
+        LongSetInOperator(FunctionInfo info, DataType itemType, LongHashSet values) {
+            super(info);
+            this.itemType = itemType;
+            this.values = values;
+        }
+
+        @Override
+        protected boolean contains(Object value) {
+            return values.contains(toLong(itemType, value));
+        }
+    }
+
+    static class BytesRefSetInOperator extends CompiledInOperator {
+
+        private final BytesRefHashSet values;
+
+        BytesRefSetInOperator(FunctionInfo info, BytesRefHashSet values) {
+            super(info);
+            this.values = values;
+        }
+
+        @Override
+        protected boolean contains(Object value) {
+            return values.contains(toBytesRef(value));
+        }
+    }
 }
@@ -0,0 +1,217 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.operator;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.BasicAutomata;
+import org.apache.lucene.util.automaton.BasicOperations;
+import org.apache.lucene.util.automaton.ByteRunAutomaton;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * matches UTF-8 encoded values against a LIKE pattern.
+ *
+ * <code>%</code> matches any number of characters and <code>_</code> matches exactly one
+ * character, wildcards are escaped by the escape character.
+ *
+ * Exact, prefix (<code>abc%</code>), suffix (<code>%abc</code>) and contains
+ * (<code>%abc%</code>) patterns are matched by comparing the bytes of the value,
+ * all other patterns by running a compiled automaton over the bytes.
+ * A matcher is immutable and may be used by many threads.
+ */
+abstract class LikeMatcher {
+
+    private static final Character ANY_STRING = '%';
+    private static final Character ANY_CHAR = '_';
+
+    /**
+     * @return true if the value matches the pattern, the value must not be null
+     */
+    public abstract boolean matches(BytesRef value);
+
+    public static LikeMatcher compile(BytesRef pattern, char escapeChar) {
+        return compile(pattern.utf8ToString(), escapeChar);
+    }
+
+    public static LikeMatcher compile(String pattern, char escapeChar) {
+        // the literals and unescaped wildcards of the pattern
+        List<Object> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean escaped = false;
+        boolean anyChar = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (!escaped && c == escapeChar) {
+                escaped = true;
+                continue;
+            }
+            if (!escaped && (c == ANY_STRING || c == ANY_CHAR)) {
+                if (literal.length() > 0) {
+                    parts.add(literal.toString());
+                    literal.setLength(0);
+                }
+                // consecutive % are equivalent to a single one
+                if (c == ANY_CHAR || parts.isEmpty() || !parts.get(parts.size() - 1).equals(ANY_STRING)) {
+                    parts.add(c);
+                }
+                anyChar |= c == ANY_CHAR;
+            } else {
+                literal.append(c);
+            }
+            escaped = false;
+        }
+        if (literal.length() > 0) {
+            parts.add(literal.toString());
+        }
+
+        if (parts.isEmpty()) {
+            return new Exact(new BytesRef());
+        }
+        if (!anyChar && parts.size() <= 3) {
+            boolean leading = parts.get(0).equals(ANY_STRING);
+            boolean trailing = parts.size() > 1 && parts.get(parts.size() - 1).equals(ANY_STRING);
+            if (parts.size() == 1) {
+                return leading ? MATCH_ALL : new Exact(new BytesRef((String) parts.get(0)));
+            } else if (parts.size() == 2) {
+                return leading
+                        ? new Suffix(new BytesRef((String) parts.get(1)))
+                        : new Prefix(new BytesRef((String) parts.get(0)));
+            } else if (leading && trailing) {
+                return new Contains(new BytesRef((String) parts.get(1)));
+            }
+        }
+
+        List<Automaton> automata = new ArrayList<>(parts.size());
+        for (Object part : parts) {
+            if (part.equals(ANY_STRING)) {
+                automata.add(BasicAutomata.makeAnyString());
+            } else if (part.equals(ANY_CHAR)) {
+                automata.add(BasicAutomata.makeAnyChar());
+            } else {
+                automata.add(BasicAutomata.makeString((String) part));
+            }
+        }
+        return new AutomatonMatcher(BasicOperations.concatenate(automata));
+    }
+
+    private static final LikeMatcher MATCH_ALL = new LikeMatcher() {
+        @Override
+        public boolean matches(BytesRef value) {
+            return true;
+        }
+    };
+
+    static class Exact extends LikeMatcher {
+
+        private final BytesRef bytes;
+
+        Exact(BytesRef bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return bytes.bytesEquals(value);
+        }
+    }
+
+    static class Prefix extends LikeMatcher {
+
+        private final BytesRef prefix;
+
+        Prefix(BytesRef prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return value.length >= prefix.length
+                    && regionEquals(value.bytes, value.offset, prefix);
+        }
+    }
+
+    static class Suffix extends LikeMatcher {
+
+        private final BytesRef suffix;
+
+        Suffix(BytesRef suffix) {
+            this.suffix = suffix;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return value.length >= suffix.length
+                    && regionEquals(value.bytes, value.offset + value.length - suffix.length, suffix);
+        }
+    }
+
+    static class Contains extends LikeMatcher {
+
+        private final BytesRef infix;
+
+        Contains(BytesRef infix) {
+            this.infix = infix;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            byte first = infix.bytes[infix.offset];
+            int last = value.offset + value.length - infix.length;
+            for (int i = value.offset; i <= last; i++) {
+                if (value.bytes[i] == first && regionEquals(value.bytes, i, infix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static class AutomatonMatcher extends LikeMatcher {
+
+        private final ByteRunAutomaton automaton;
+
+        AutomatonMatcher(Automaton automaton) {
+            this.automaton = new ByteRunAutomaton(automaton);
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return automaton.run(value.bytes, value.offset, value.length);
+        }
+    }
+
+    /**
+     * UTF-8 is self-synchronizing, so comparing the bytes never matches in the middle of a character
+     */
+    private static boolean regionEquals(byte[] bytes, int offset, BytesRef other) {
+        for (int i = 0; i < other.length; i++) {
+            if (bytes[offset + i] != other.bytes[other.offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
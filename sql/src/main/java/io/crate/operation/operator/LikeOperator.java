@@ -21,7 +21,9 @@
 
 package io.crate.operation.operator;
 
+import io.crate.metadata.CompilableScalar;
 import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
 import io.crate.planner.symbol.BooleanLiteral;
 import io.crate.planner.symbol.Function;
@@ -30,9 +32,9 @@ import io.crate.planner.symbol.Symbol;
 import org.apache.lucene.util.BytesRef;
 import io.crate.DataType;
 
-import java.util.regex.Pattern;
+import java.util.List;
 
-public class LikeOperator extends Operator<BytesRef> {
+public class LikeOperator extends Operator<BytesRef> implements CompilableScalar<Boolean, BytesRef> {
 
     public static final String NAME = "op_like";
 
@@ -82,64 +84,48 @@ public class LikeOperator extends Operator<BytesRef> {
             return null;
         }
 
-        return matches(expression.utf8ToString(), pattern.utf8ToString());
+        return LikeMatcher.compile(pattern, DEFAULT_ESCAPE).matches(expression);
     }
 
-    private boolean matches(String expression, String pattern) {
-        return Pattern.matches(
-                patternToRegex(pattern, DEFAULT_ESCAPE, true),
-                expression
-        );
+    /**
+     * compiles the pattern once if it is a literal
+     */
+    @Override
+    public Scalar<Boolean, BytesRef> compile(List<Symbol> arguments) {
+        Symbol pattern = arguments.get(1);
+        if (!(pattern instanceof StringLiteral)) {
+            return this;
+        }
+        return new CompiledLikeOperator(info, LikeMatcher.compile(((StringLiteral) pattern).value(), DEFAULT_ESCAPE));
     }
 
-    protected static String patternToRegex(String patternString, char escapeChar, boolean shouldEscape) {
-        StringBuilder regex = new StringBuilder(patternString.length() * 2);
-
-        regex.append('^');
-        boolean escaped = false;
-        for (char currentChar : patternString.toCharArray()) {
-            if (shouldEscape && !escaped && currentChar == escapeChar) {
-                escaped = true;
-            } else {
-                switch (currentChar) {
-                    case '%':
-                        if (escaped) {
-                            regex.append("%");
-                        } else {
-                            regex.append(".*");
-                        }
-                        escaped = false;
-                        break;
-                    case '_':
-                        if (escaped) {
-                            regex.append("_");
-                        } else {
-                            regex.append('.');
-                        }
-                        escaped = false;
-                        break;
-                    default:
-                        // escape special regex characters
-                        switch (currentChar) {
-                            case '\\':
-                            case '^':
-                            case '$':
-                            case '.':
-                            case '*':
-                            case '[':
-                            case ']':
-                            case '(':
-                            case ')':
-                                regex.append('\\');
-                        }
-
-                        regex.append(currentChar);
-                        escaped = false;
-                }
+    static class CompiledLikeOperator extends Operator<BytesRef> {
+
+        private final FunctionInfo info;
+        private final LikeMatcher matcher;
+
+        CompiledLikeOperator(FunctionInfo info, LikeMatcher matcher) {
+            this.info = info;
+            this.matcher = matcher;
+        }
+
+        @Override
+        public FunctionInfo info() {
+            return info;
+        }
+
+        @Override
+        public Symbol normalizeSymbol(Function symbol) {
+            return symbol;
+        }
+
+        @Override
+        public Boolean evaluate(Input<BytesRef>... args) {
+            BytesRef expression = args[0].value();
+            if (expression == null) {
+                return null;
             }
+            return matcher.matches(expression);
         }
-        regex.append('$');
-        return regex.toString();
     }
-
 }
@@ -24,6 +24,7 @@ package io.crate.operation.projectors;
 import io.crate.operation.AggregationContext;
 import io.crate.operation.ProjectorUpstream;
 import io.crate.operation.aggregation.AggregationCollector;
+import io.crate.operation.aggregation.AggregationState;
 import io.crate.operation.collect.CollectExpression;
 
 import java.util.Set;
@@ -90,6 +91,17 @@ public class AggregationProjector implements Projector {
         return upstreamFailure.get() == null;
     }
 
+    /**
+     * merges states that were already aggregated by an upstream into the states of this projector.
+     * The states must be in the order of the aggregations of this projector.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void setNextStates(AggregationState[] states) {
+        for (int i = 0; i < aggregationCollectors.length; i++) {
+            aggregationCollectors[i].state().reduce(states[i]);
+        }
+    }
+
     @Override
     public void registerUpstream(ProjectorUpstream upstream) {
         remainingUpstreams.incrementAndGet();
@@ -0,0 +1,205 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import io.crate.exceptions.CrateException;
+import io.crate.operation.Input;
+import io.crate.operation.ProjectorUpstream;
+import io.crate.operation.collect.CollectExpression;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.bulk.*;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.shard.ShardId;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * shard level projector which deletes the documents identified by the <code>_uid</code> input
+ * by sending bulk delete requests directly to the shard the documents were collected from.
+ *
+ * emits one row containing the number of documents that have actually been deleted.
+ */
+public class DeleteProjector implements Projector {
+
+    private static final ESLogger logger = Loggers.getLogger(DeleteProjector.class);
+
+    private final ShardId shardId;
+    private final BulkShardProcessor bulkShardProcessor;
+    private final Input<?> uidInput;
+    private final CollectExpression<?>[] collectExpressions;
+    private final AtomicInteger remainingUpstreams = new AtomicInteger(0);
+    private final AtomicInteger inProgress = new AtomicInteger(0);
+    private final AtomicBoolean allRowsAdded = new AtomicBoolean(false);
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private final AtomicLong rowsDeleted = new AtomicLong(0);
+    private final AtomicLong rowsRequested = new AtomicLong(0);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final Object lock = new Object();
+    private Projector downstream;
+
+    public DeleteProjector(TransportShardBulkAction transportShardBulkAction,
+                           ShardId shardId,
+                           Input<?> uidInput,
+                           CollectExpression<?>[] collectExpressions,
+                           int bulkActions,
+                           int concurrency,
+                           @Nullable Double maxDocsPerSecond) {
+        this.shardId = shardId;
+        this.uidInput = uidInput;
+        this.collectExpressions = collectExpressions;
+        this.bulkShardProcessor = new BulkShardProcessor(
+                transportShardBulkAction,
+                shardId,
+                bulkActions,
+                concurrency,
+                maxDocsPerSecond,
+                new Listener());
+    }
+
+    @Override
+    public void startProjection() {
+        allRowsAdded.set(false);
+    }
+
+    @Override
+    public boolean setNextRow(Object... row) {
+        DeleteRequest deleteRequest;
+        synchronized (lock) {
+            for (CollectExpression<?> collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+            deleteRequest = buildRequest();
+        }
+        if (deleteRequest != null) {
+            bulkShardProcessor.add(deleteRequest);
+        }
+        return failure.get() == null;
+    }
+
+    private DeleteRequest buildRequest() {
+        Object value = uidInput.value();
+        if (value == null) {
+            return null;
+        }
+        String uidString = value instanceof BytesRef ? ((BytesRef) value).utf8ToString() : value.toString();
+        Uid uid = Uid.createUid(uidString);
+        return new DeleteRequest(shardId.getIndex(), uid.type(), uid.id());
+    }
+
+    @Override
+    public void registerUpstream(ProjectorUpstream upstream) {
+        remainingUpstreams.incrementAndGet();
+    }
+
+    @Override
+    public void upstreamFinished() {
+        if (remainingUpstreams.decrementAndGet() <= 0) {
+            bulkShardProcessor.close();
+            allRowsAdded.set(true);
+            if (inProgress.get() == 0) {
+                finish();
+            }
+        }
+    }
+
+    @Override
+    public void upstreamFailed(Throwable throwable) {
+        failure.set(throwable);
+        if (remainingUpstreams.decrementAndGet() <= 0) {
+            bulkShardProcessor.close();
+            allRowsAdded.set(true);
+            if (inProgress.get() == 0) {
+                finish();
+            }
+        }
+    }
+
+    private void finish() {
+        if (downstream == null || !finished.compareAndSet(false, true)) {
+            return;
+        }
+        downstream.setNextRow(rowsDeleted.get());
+        Throwable throwable = failure.get();
+        if (throwable != null) {
+            downstream.upstreamFailed(throwable);
+        } else {
+            downstream.upstreamFinished();
+        }
+    }
+
+    @Override
+    public void downstream(Projector downstream) {
+        downstream.registerUpstream(this);
+        this.downstream = downstream;
+    }
+
+    @Override
+    public Projector downstream() {
+        return downstream;
+    }
+
+    private class Listener implements BulkShardProcessor.Listener {
+
+        @Override
+        public void beforeBulk(BulkShardRequest request) {
+            inProgress.incrementAndGet();
+        }
+
+        @Override
+        public void afterBulk(BulkShardRequest request, BulkShardResponse response) {
+            for (BulkItemResponse item : response.getResponses()) {
+                if (item.isFailed()) {
+                    failure.set(new CrateException(item.getFailureMessage()));
+                } else if (((DeleteResponse) item.getResponse()).isFound()) {
+                    rowsDeleted.incrementAndGet();
+                }
+            }
+            logProgress(response.getResponses().length);
+            if (inProgress.decrementAndGet() == 0 && allRowsAdded.get()) {
+                finish();
+            }
+        }
+
+        @Override
+        public void afterBulk(BulkShardRequest request, Throwable e) {
+            failure.set(e);
+            if (inProgress.decrementAndGet() == 0 && allRowsAdded.get()) {
+                finish();
+            }
+        }
+
+        private void logProgress(int numItems) {
+            long requested = rowsRequested.addAndGet(numItems);
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} deleted {} of {} requested documents", shardId, rowsDeleted.get(), requested);
+            }
+        }
+    }
+}
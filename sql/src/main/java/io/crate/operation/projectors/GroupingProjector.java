@@ -34,9 +34,32 @@ import java.util.concurrent.atomic.AtomicReference;
 
 public class GroupingProjector implements Projector {
 
+    public static final int NO_LIMIT = -1;
+
+    /**
+     * number of rows after which a bounded projector checks if grouping reduces the rows at all
+     */
+    static final long MIN_ROWS_FOR_REDUCTION_CHECK = 10000;
+
+    /**
+     * if flushing emitted more groups than this fraction of the received rows the projector
+     * stops grouping and passes every row on as its own group.
+     * Pre-aggregated groups received by {@link #setNextGroup(Object[], AggregationState[])}
+     * have already been reduced, so they never cause the projector to pass rows through.
+     */
+    static final double MAX_REDUCTION_RATIO = 0.8;
+
     private final List<CollectExpression<?>> collectExpressions;
 
     private final Grouper grouper;
+    private final int numKeys;
+    private final int maxGroups;
+
+    private long rowsReceived = 0;
+    private long groupsReceived = 0;
+    private long groupsFlushed = 0;
+    private boolean passThrough = false;
+    private boolean sendToDownstream = true;
 
     private Object[][] rows;
     private Projector downstream;
@@ -46,7 +69,21 @@ public class GroupingProjector implements Projector {
     public GroupingProjector(List<Input<?>> keyInputs,
                              List<CollectExpression<?>> collectExpressions,
                              AggregationContext[] aggregations) {
+        this(keyInputs, collectExpressions, aggregations, NO_LIMIT);
+    }
+
+    /**
+     * @param maxGroups if not {@link #NO_LIMIT} the groups are emitted to the downstream whenever
+     *                  this number of groups is reached, so the same group may be emitted several times.
+     *                  This requires the aggregations to be aggregated to the partial step.
+     */
+    public GroupingProjector(List<Input<?>> keyInputs,
+                             List<CollectExpression<?>> collectExpressions,
+                             AggregationContext[] aggregations,
+                             int maxGroups) {
         this.collectExpressions = collectExpressions;
+        this.numKeys = keyInputs.size();
+        this.maxGroups = maxGroups;
 
         AggregationCollector[] aggregationCollectors = new AggregationCollector[aggregations.length];
         for (int i = 0; i < aggregations.length; i++) {
@@ -87,7 +124,58 @@ public class GroupingProjector implements Projector {
 
     @Override
     public synchronized boolean setNextRow(final Object... row) {
-        return grouper.setNextRow(row);
+        rowsReceived++;
+        if (passThrough) {
+            grouper.passThrough(row);
+        } else {
+            grouper.setNextRow(row);
+            flushIfFull();
+        }
+        return sendToDownstream;
+    }
+
+    /**
+     * merges a group which has already been aggregated by the upstream,
+     * e.g. by grouping on the ordinals of a shard.
+     *
+     * @param keys the values of the keys of this projection, the array is owned by the projector afterwards
+     * @param states the states of the aggregations of this projection, of the same step
+     */
+    public synchronized void setNextGroup(Object[] keys, AggregationState[] states) {
+        assert keys.length == numKeys : "number of keys doesn't match the keys of the projection";
+        grouper.setNextGroup(keys, states);
+        groupsReceived++;
+        flushIfFull();
+    }
+
+    /**
+     * @return the number of groups after which the groups are emitted or {@link #NO_LIMIT}
+     */
+    public int maxGroups() {
+        return maxGroups;
+    }
+
+    /**
+     * emits the groups to the downstream if the bounded hash table is full.
+     * If the groups barely reduce the number of rows, grouping is disabled
+     * and every row is emitted right away.
+     */
+    private void flushIfFull() {
+        if (maxGroups == NO_LIMIT || (!passThrough && grouper.size() < maxGroups)) {
+            return;
+        }
+        groupsFlushed += grouper.size();
+        grouper.flush();
+        if (!passThrough && groupsReceived == 0 && rowsReceived >= MIN_ROWS_FOR_REDUCTION_CHECK
+                && groupsFlushed > rowsReceived * MAX_REDUCTION_RATIO) {
+            passThrough = true;
+        }
+    }
+
+    private void emit(Object[] row) {
+        if (sendToDownstream && downstream != null) {
+            sendToDownstream = downstream.setNextRow(row);
+        }
     }
 
     @Override
@@ -151,8 +239,39 @@ public class GroupingProjector implements Projector {
         }
     }
 
+    /**
+     * aggregates the current row on its own into the given row, starting at <code>offset</code>
+     */
+    private static void aggregateSingleRow(Object[] row, int offset, AggregationCollector[] aggregationCollectors) {
+        for (int i = 0; i < aggregationCollectors.length; i++) {
+            aggregationCollectors[i].startCollect();
+            aggregationCollectors[i].processRow();
+            row[offset + i] = aggregationCollectors[i].finishCollect();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> void mergeGroup(Map<K, AggregationState[]> result, K key, AggregationState[] states) {
+        AggregationState[] existing = result.get(key);
+        if (existing == null) {
+            result.put(key, states);
+        } else {
+            for (int i = 0; i < existing.length; i++) {
+                existing[i].reduce(states[i]);
+            }
+        }
+    }
+
     private interface Grouper {
         boolean setNextRow(final Object... row);
+
+        /**
+         * emits the row as its own group without adding it to the groups
+         */
+        void passThrough(final Object... row);
+        void setNextGroup(Object[] keys, AggregationState[] states);
+        int size();
+        void flush();
         Object[][] finish();
         Iterator<Object[]> iterator();
     }
@@ -199,6 +318,37 @@ public class GroupingProjector implements Projector {
             return true;
         }
 
+        @Override
+        public void passThrough(Object... row) {
+            for (CollectExpression collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+            Object[] groupRow = new Object[1 + aggregationCollectors.length];
+            groupRow[0] = keyInput.value();
+            aggregateSingleRow(groupRow, 1, aggregationCollectors);
+            emit(groupRow);
+        }
+
+        @Override
+        public void setNextGroup(Object[] keys, AggregationState[] states) {
+            mergeGroup(result, keys[0], states);
+        }
+
+        @Override
+        public int size() {
+            return result.size();
+        }
+
+        @Override
+        public void flush() {
+            for (Map.Entry<Object, AggregationState[]> entry : result.entrySet()) {
+                Object[] row = new Object[1 + aggregationCollectors.length];
+                singleTransformToRow(entry, row, aggregationCollectors);
+                emit(row);
+            }
+            result.clear();
+        }
+
         @Override
         public Object[][] finish() {
             Throwable throwable = failure.get();
@@ -207,14 +357,11 @@ public class GroupingProjector implements Projector {
             }
 
             Object[][] rows = new Object[result.size()][1 + aggregationCollectors.length];
-            boolean sendToDownStream = downstream != null;
             int r = 0;
             for (Map.Entry<Object, AggregationState[]> entry : result.entrySet()) {
                 Object[] row = rows[r];
                 singleTransformToRow(entry, row, aggregationCollectors);
-                if (sendToDownStream) {
-                    sendToDownStream = downstream.setNextRow(row);
-                }
+                emit(row);
                 r++;
             }
             if (downstream != null) {
@@ -277,6 +424,41 @@ public class GroupingProjector implements Projector {
             return true;
         }
 
+        @Override
+        public void passThrough(Object... row) {
+            for (CollectExpression collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+            Object[] groupRow = new Object[keyInputs.size() + aggregationCollectors.length];
+            int c = 0;
+            for (Input keyInput : keyInputs) {
+                groupRow[c] = keyInput.value();
+                c++;
+            }
+            aggregateSingleRow(groupRow, c, aggregationCollectors);
+            emit(groupRow);
+        }
+
+        @Override
+        public void setNextGroup(Object[] keys, AggregationState[] states) {
+            mergeGroup(result, Arrays.asList(keys), states);
+        }
+
+        @Override
+        public int size() {
+            return result.size();
+        }
+
+        @Override
+        public void flush() {
+            for (Map.Entry<List<Object>, AggregationState[]> entry : result.entrySet()) {
+                Object[] row = new Object[keyInputs.size() + aggregationCollectors.length];
+                transformToRow(entry, row, aggregationCollectors);
+                emit(row);
+            }
+            result.clear();
+        }
+
         @Override
         public Object[][] finish() {
             Throwable throwable = failure.get();
@@ -284,14 +466,11 @@ public class GroupingProjector implements Projector {
                 downstream.upstreamFailed(throwable);
             }
             Object[][] rows = new Object[result.size()][keyInputs.size() + aggregationCollectors.length];
-            boolean sendToDownStream = downstream != null;
             int r = 0;
             for (Map.Entry<List<Object>, AggregationState[]> entry : result.entrySet()) {
                 Object[] row = rows[r];
                 transformToRow(entry, row, aggregationCollectors);
-                if (sendToDownStream) {
-                    sendToDownStream = downstream.setNextRow(row);
-                }
+                emit(row);
                 r++;
             }
             if (downstream != null) {
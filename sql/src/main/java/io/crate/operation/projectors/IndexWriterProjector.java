@@ -37,11 +37,16 @@ import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.*;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -62,6 +67,12 @@ public class IndexWriterProjector implements Projector {
     private final List<Input<?>> partitionedByInputs;
     private final String[] includes;
     private final String[] excludes;
+    /**
+     * top level keys excluded from a raw source without parsing it into a map,
+     * null if the excludes contain nested paths or patterns
+     */
+    @Nullable
+    private final Set<String> excludedKeys;
     private Projector downstream;
 
     public IndexWriterProjector(Client client,
@@ -86,6 +97,7 @@ public class IndexWriterProjector implements Projector {
         this.partitionedByInputs = partitionedByInputs;
         this.includes = includes;
         this.excludes = excludes;
+        this.excludedKeys = topLevelKeys(excludes);
         BulkProcessor.Builder builder = BulkProcessor.builder(client, listener);
         if (bulkActions != null) {
             builder.setBulkActions(bulkActions);
@@ -175,10 +187,24 @@ public class IndexWriterProjector implements Projector {
             indexRequest.index(tableName);
         }
 
-        if (includes != null || excludes != null) {
-            assert value instanceof Map;
+        if (includes == null && excludedKeys != null && value instanceof BytesRef) {
             // exclude partitioned columns from source
-            Map<String, Object> sourceAsMap = XContentMapValues.filter((Map) value, includes, excludes);
+            try {
+                indexRequest.source(excludeTopLevelKeys((BytesRef) value, excludedKeys));
+            } catch (IOException e) {
+                throw new CrateException("Failed to parse source", e);
+            }
+        } else if (includes != null || excludes != null) {
+            Map<String, Object> source;
+            if (value instanceof BytesRef) {
+                BytesRef bytesRef = (BytesRef) value;
+                source = XContentHelper.convertToMap(bytesRef.bytes, bytesRef.offset, bytesRef.length, false).v2();
+            } else {
+                assert value instanceof Map;
+                source = (Map) value;
+            }
+            // exclude partitioned columns from source
+            Map<String, Object> sourceAsMap = XContentMapValues.filter(source, includes, excludes);
             indexRequest.source(sourceAsMap);
         } else {
             assert value instanceof BytesRef;
@@ -205,6 +231,51 @@ public class IndexWriterProjector implements Projector {
         return indexRequest;
     }
 
+    @Nullable
+    private static Set<String> topLevelKeys(@Nullable String[] paths) {
+        if (paths == null) {
+            return null;
+        }
+        Set<String> keys = new HashSet<>(paths.length);
+        for (String path : paths) {
+            if (path.contains(".") || path.contains("*")) {
+                return null;
+            }
+            keys.add(path);
+        }
+        return keys;
+    }
+
+    /**
+     * copies a JSON source without the given top level keys.
+     * The values of the other keys are copied token by token without building a map.
+     */
+    static BytesReference excludeTopLevelKeys(BytesRef source, Set<String> keys) throws IOException {
+        XContentParser parser = XContentFactory.xContent(XContentType.JSON)
+                .createParser(source.bytes, source.offset, source.length);
+        try {
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                throw new IOException("source must be a JSON object");
+            }
+            XContentBuilder builder = XContentFactory.jsonBuilder();
+            builder.startObject();
+            while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                if (keys.contains(name)) {
+                    parser.skipChildren();
+                } else {
+                    builder.field(name);
+                    builder.copyCurrentStructure(parser);
+                }
+            }
+            builder.endObject();
+            return builder.bytes();
+        } finally {
+            parser.close();
+        }
+    }
+
     @Override
     public void downstream(Projector downstream) {
         this.downstream = downstream;
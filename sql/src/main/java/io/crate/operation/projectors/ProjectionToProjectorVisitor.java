@@ -26,32 +26,59 @@ import io.crate.analyze.EvaluatingNormalizer;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.files.FileReadingCollector;
+import io.crate.planner.RowGranularity;
 import io.crate.planner.projection.*;
 import io.crate.planner.symbol.Aggregation;
 import io.crate.planner.symbol.StringLiteral;
 import io.crate.planner.symbol.StringValueSymbolVisitor;
 import io.crate.planner.symbol.Symbol;
+import org.elasticsearch.action.bulk.TransportShardBulkAction;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.inject.Provider;
+import org.elasticsearch.index.shard.ShardId;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projector> {
 
+    /**
+     * maximum number of groups a shard level group projection keeps before it flushes them to the node
+     */
+    static final int SHARD_MAX_GROUPS = 10000;
+
     private final ImplementationSymbolVisitor symbolVisitor;
     private final EvaluatingNormalizer normalizer;
     private final Provider<Client> clientProvider;
+    private final TransportShardBulkAction transportShardBulkAction;
+    private final ShardId shardId;
 
     public Projector process(Projection projection) {
         return process(projection, null);
     }
 
-    public ProjectionToProjectorVisitor(Provider<Client> clientProvider, ImplementationSymbolVisitor symbolVisitor,
-            EvaluatingNormalizer normalizer) {
+    /**
+     * @param shardId the shard this visitor creates projectors for, <code>null</code> on node level.
+     *                Only shard level visitors can create projectors for shard bound projections
+     *                like the {@link DeleteProjection}.
+     */
+    public ProjectionToProjectorVisitor(Provider<Client> clientProvider,
+                                        @Nullable TransportShardBulkAction transportShardBulkAction,
+                                        ImplementationSymbolVisitor symbolVisitor,
+                                        EvaluatingNormalizer normalizer,
+                                        @Nullable ShardId shardId) {
         this.clientProvider = clientProvider;
+        this.transportShardBulkAction = transportShardBulkAction;
         this.symbolVisitor = symbolVisitor;
         this.normalizer = normalizer;
+        this.shardId = shardId;
+    }
+
+    public ProjectionToProjectorVisitor(Provider<Client> clientProvider, ImplementationSymbolVisitor symbolVisitor,
+            EvaluatingNormalizer normalizer) {
+        this(clientProvider, null, symbolVisitor, normalizer, null);
     }
 
     public ProjectionToProjectorVisitor(Provider<Client> clientProvider, ImplementationSymbolVisitor symbolVisitor) {
@@ -114,10 +141,20 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
         for (Aggregation aggregation : projection.values()) {
             symbolVisitor.process(aggregation, symbolContext);
         }
+        if (projection.streaming()) {
+            return new StreamingGroupingProjector(
+                    keyInputs,
+                    ImmutableList.copyOf(symbolContext.collectExpressions()),
+                    symbolContext.aggregations()
+            );
+        }
         Projector groupProjector = new GroupingProjector(
                 keyInputs,
                 ImmutableList.copyOf(symbolContext.collectExpressions()),
-                symbolContext.aggregations()
+                symbolContext.aggregations(),
+                // shard level group projections only pre-reduce the rows for the node level
+                projection.requiredGranularity() == RowGranularity.SHARD
+                        ? SHARD_MAX_GROUPS : GroupingProjector.NO_LIMIT
         );
         return groupProjector;
     }
@@ -157,6 +194,7 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
                 sb.append("/");
             }
             sb.append(fileName);
+            sb.append(FileReadingCollector.FileFormat.fromOption(projection.settings().get("format")).extension());
             if (projection.settings().get("compression", "").equalsIgnoreCase("gzip")) {
                 sb.append(".gz");
             }
@@ -166,7 +204,8 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
                 uri,
                 projection.settings(),
                 inputs,
-                symbolContext.collectExpressions()
+                symbolContext.collectExpressions(),
+                projection.outputNames()
         );
     }
 
@@ -197,4 +236,22 @@ public class ProjectionToProjectorVisitor extends ProjectionVisitor<Void, Projec
                 projection.excludes()
         );
     }
+
+    @Override
+    public Projector visitDeleteProjection(DeleteProjection projection, Void context) {
+        if (shardId == null || transportShardBulkAction == null) {
+            throw new UnsupportedOperationException("DeleteProjection can only be executed on shard level");
+        }
+        ImplementationSymbolVisitor.Context symbolContext = new ImplementationSymbolVisitor.Context();
+        Input<?> uidInput = symbolVisitor.process(projection.uid(), symbolContext);
+        return new DeleteProjector(
+                transportShardBulkAction,
+                shardId,
+                uidInput,
+                symbolContext.collectExpressions().toArray(new CollectExpression[symbolContext.collectExpressions().size()]),
+                projection.bulkActions(),
+                projection.concurrency(),
+                projection.maxDocsPerSecond()
+        );
+    }
 }
@@ -0,0 +1,181 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import com.google.common.base.Objects;
+import io.crate.operation.AggregationContext;
+import io.crate.operation.Input;
+import io.crate.operation.ProjectorUpstream;
+import io.crate.operation.aggregation.AggregationCollector;
+import io.crate.operation.collect.CollectExpression;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * groups rows whose keys arrive as runs of equal values, e.g. grouped by the partition
+ * columns of a shard.
+ * <p>
+ * Only the group of the current run is kept, it is emitted to the downstream as soon as
+ * a row with different keys arrives. If a group arrives in several runs it is emitted
+ * several times, so the downstream must be able to merge the groups
+ * (which is the case if this projector aggregates to the partial step).
+ * <p>
+ * The planner only uses this projector for the shard level group projection of a distributed
+ * GROUP BY on partitioned columns. Its downstream is the node level merge of the partial groups,
+ * which needs all groups, so a LIMIT doesn't stop the collection early. The memory of the shard
+ * level grouping is independent of the number of groups though.
+ */
+public class StreamingGroupingProjector implements Projector {
+
+    private final List<Input<?>> keyInputs;
+    private final List<CollectExpression<?>> collectExpressions;
+    private final AggregationCollector[] aggregationCollectors;
+
+    private Object[] currentKeys = null;
+    private boolean sendToDownstream = true;
+
+    private Projector downstream;
+    private final AtomicInteger remainingUpstreams = new AtomicInteger(0);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>(null);
+
+    public StreamingGroupingProjector(List<Input<?>> keyInputs,
+                                      List<CollectExpression<?>> collectExpressions,
+                                      AggregationContext[] aggregations) {
+        this.keyInputs = keyInputs;
+        this.collectExpressions = collectExpressions;
+
+        aggregationCollectors = new AggregationCollector[aggregations.length];
+        for (int i = 0; i < aggregations.length; i++) {
+            aggregationCollectors[i] = new AggregationCollector(
+                    aggregations[i].symbol(),
+                    aggregations[i].function(),
+                    aggregations[i].inputs()
+            );
+        }
+    }
+
+    @Override
+    public void downstream(Projector downstream) {
+        downstream.registerUpstream(this);
+        this.downstream = downstream;
+    }
+
+    @Override
+    public Projector downstream() {
+        return downstream;
+    }
+
+    @Override
+    public void startProjection() {
+        for (CollectExpression collectExpression : collectExpressions) {
+            collectExpression.startCollect();
+        }
+
+        if (remainingUpstreams.get() <= 0) {
+            upstreamFinished();
+        }
+    }
+
+    @Override
+    public synchronized boolean setNextRow(final Object... row) {
+        for (CollectExpression collectExpression : collectExpressions) {
+            collectExpression.setNextRow(row);
+        }
+
+        if (currentKeys == null || !sameKeys()) {
+            emitCurrentGroup();
+            currentKeys = new Object[keyInputs.size()];
+            for (int i = 0; i < currentKeys.length; i++) {
+                currentKeys[i] = keyInputs.get(i).value();
+            }
+            for (AggregationCollector aggregationCollector : aggregationCollectors) {
+                aggregationCollector.startCollect();
+            }
+        }
+        for (AggregationCollector aggregationCollector : aggregationCollectors) {
+            aggregationCollector.processRow();
+        }
+        return sendToDownstream && failure.get() == null;
+    }
+
+    private boolean sameKeys() {
+        for (int i = 0; i < currentKeys.length; i++) {
+            if (!Objects.equal(currentKeys[i], keyInputs.get(i).value())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void emitCurrentGroup() {
+        if (currentKeys == null) {
+            return;
+        }
+        Object[] row = new Object[currentKeys.length + aggregationCollectors.length];
+        System.arraycopy(currentKeys, 0, row, 0, currentKeys.length);
+        for (int i = 0; i < aggregationCollectors.length; i++) {
+            row[currentKeys.length + i] = aggregationCollectors[i].finishCollect();
+        }
+        currentKeys = null;
+        if (sendToDownstream && downstream != null) {
+            sendToDownstream = downstream.setNextRow(row);
+        }
+    }
+
+    @Override
+    public void registerUpstream(ProjectorUpstream upstream) {
+        remainingUpstreams.incrementAndGet();
+    }
+
+    @Override
+    public void upstreamFinished() {
+        if (remainingUpstreams.decrementAndGet() > 0) {
+            return;
+        }
+        Throwable throwable = failure.get();
+        if (throwable != null) {
+            if (downstream != null) {
+                downstream.upstreamFailed(throwable);
+            }
+            return;
+        }
+        synchronized (this) {
+            emitCurrentGroup();
+        }
+        if (downstream != null) {
+            downstream.upstreamFinished();
+        }
+    }
+
+    @Override
+    public void upstreamFailed(Throwable throwable) {
+        failure.set(throwable);
+        if (remainingUpstreams.decrementAndGet() > 0) {
+            return;
+        }
+        if (downstream != null) {
+            downstream.upstreamFailed(throwable);
+        }
+    }
+}
@@ -21,11 +21,14 @@
 
 package io.crate.operation.projectors;
 
+import com.google.common.base.Charsets;
 import io.crate.exceptions.CrateException;
 import io.crate.exceptions.UnsupportedFeatureException;
 import io.crate.operation.Input;
 import io.crate.operation.ProjectorUpstream;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.files.ColumnarFormat;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.operation.projectors.writer.Output;
 import io.crate.operation.projectors.writer.OutputFile;
 import io.crate.operation.projectors.writer.OutputS3;
@@ -35,11 +38,17 @@ import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 
 import javax.annotation.Nullable;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -52,6 +61,9 @@ public class WriterProjector implements Projector {
     private final URI uri;
     private final Set<CollectExpression<?>> collectExpressions;
     private final List<Input<?>> inputs;
+    @Nullable
+    private final List<String> outputNames;
+    private final FileReadingCollector.FileFormat format;
     private Output output;
 
     protected final AtomicInteger remainingUpstreams = new AtomicInteger();
@@ -73,8 +85,27 @@ public class WriterProjector implements Projector {
                            Settings settings,
                            @Nullable List<Input<?>> inputs,
                            Set<CollectExpression<?>> collectExpressions) {
+        this(uri, settings, inputs, collectExpressions, null);
+    }
+
+    /**
+     * @param outputNames the column names of the inputs,
+     *                    required if the <code>format</code> setting is <code>csv</code> or <code>columnar</code>
+     */
+    public WriterProjector(String uri,
+                           Settings settings,
+                           @Nullable List<Input<?>> inputs,
+                           Set<CollectExpression<?>> collectExpressions,
+                           @Nullable List<String> outputNames) {
         this.collectExpressions = collectExpressions;
         this.inputs = inputs;
+        this.outputNames = outputNames;
+        this.format = FileReadingCollector.FileFormat.fromOption(settings.get("format"));
+        if (format != FileReadingCollector.FileFormat.JSON
+                && (inputs == null || inputs.isEmpty() || outputNames == null)) {
+            throw new IllegalArgumentException(String.format(
+                    "format '%s' requires columns to write", format.name().toLowerCase(Locale.ENGLISH)));
+        }
         try {
             this.uri = new URI(uri);
         } catch (URISyntaxException e) {
@@ -94,7 +125,11 @@ public class WriterProjector implements Projector {
         counter.set(0);
         try {
             output.open();
-            if (inputs != null && !inputs.isEmpty()) {
+            if (format == FileReadingCollector.FileFormat.CSV) {
+                rowWriter = new CsvRowWriter(output.getOutputStream(), collectExpressions, inputs, outputNames, failure);
+            } else if (format == FileReadingCollector.FileFormat.COLUMNAR) {
+                rowWriter = new ColumnarRowWriter(output.getOutputStream(), collectExpressions, inputs, outputNames, failure);
+            } else if (inputs != null && !inputs.isEmpty()) {
                 rowWriter = new ColumnRowWriter(output.getOutputStream(), collectExpressions, inputs, failure);
             } else {
                 rowWriter = new RawRowWriter(output.getOutputStream(), failure);
@@ -235,4 +270,144 @@ public class WriterProjector implements Projector {
             builder.close();
         }
     }
+
+    class CsvRowWriter implements RowWriter {
+
+        private static final char SEPARATOR = ',';
+        private static final char QUOTE = '"';
+
+        private final Set<CollectExpression<?>> collectExpressions;
+        private final List<Input<?>> inputs;
+        private final AtomicReference<Throwable> failure;
+        private final Writer writer;
+
+        CsvRowWriter(OutputStream outputStream,
+                     Set<CollectExpression<?>> collectExpressions,
+                     List<Input<?>> inputs,
+                     List<String> outputNames,
+                     AtomicReference<Throwable> failure) throws IOException {
+            this.collectExpressions = collectExpressions;
+            this.inputs = inputs;
+            this.failure = failure;
+            this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, Charsets.UTF_8));
+            for (int i = 0; i < outputNames.size(); i++) {
+                if (i > 0) {
+                    writer.write(SEPARATOR);
+                }
+                writeField(outputNames.get(i));
+            }
+            writer.write(NEW_LINE);
+        }
+
+        @Override
+        public void write(Object[] row) {
+            for (CollectExpression<?> collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+            try {
+                for (int i = 0; i < inputs.size(); i++) {
+                    if (i > 0) {
+                        writer.write(SEPARATOR);
+                    }
+                    writeValue(inputs.get(i).value());
+                }
+                writer.write(NEW_LINE);
+            } catch (IOException e) {
+                failure.set(new CrateException("Failed to write row to output", e));
+            }
+        }
+
+        /**
+         * null values are written as empty fields, objects and arrays as JSON
+         */
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value instanceof BytesRef) {
+                writeField(((BytesRef) value).utf8ToString());
+            } else if (value instanceof String) {
+                writeField((String) value);
+            } else if (value instanceof Map || value instanceof Collection || value instanceof Object[]) {
+                writeField(XContentFactory.jsonBuilder().value(value).string());
+            } else {
+                writer.write(value.toString());
+            }
+        }
+
+        private void writeField(String value) throws IOException {
+            boolean quote = value.isEmpty();
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == SEPARATOR || c == QUOTE || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write(QUOTE);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == QUOTE) {
+                    writer.write(QUOTE);
+                }
+                writer.write(c);
+            }
+            writer.write(QUOTE);
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                failure.set(new CrateException("Failed to write row to output", e));
+            }
+        }
+    }
+
+    class ColumnarRowWriter implements RowWriter {
+
+        private final Set<CollectExpression<?>> collectExpressions;
+        private final List<Input<?>> inputs;
+        private final AtomicReference<Throwable> failure;
+        private final ColumnarFormat.Writer writer;
+        private final Object[] values;
+
+        ColumnarRowWriter(OutputStream outputStream,
+                          Set<CollectExpression<?>> collectExpressions,
+                          List<Input<?>> inputs,
+                          List<String> outputNames,
+                          AtomicReference<Throwable> failure) throws IOException {
+            this.collectExpressions = collectExpressions;
+            this.inputs = inputs;
+            this.failure = failure;
+            this.writer = new ColumnarFormat.Writer(outputStream, outputNames);
+            this.values = new Object[inputs.size()];
+        }
+
+        @Override
+        public void write(Object[] row) {
+            for (CollectExpression<?> collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = inputs.get(i).value();
+            }
+            try {
+                writer.write(values);
+            } catch (IOException e) {
+                failure.set(new CrateException("Failed to write row to output", e));
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                failure.set(new CrateException("Failed to write row to output", e));
+            }
+        }
+    }
 }
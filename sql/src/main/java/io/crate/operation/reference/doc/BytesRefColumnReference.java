@@ -50,6 +50,14 @@ public class BytesRefColumnReference extends FieldCacheExpression<IndexFieldData
         }
     }
 
+    /**
+     * @return the values of the current segment, the ordinals of the values are
+     *         available if they are an instance of {@link BytesValues.WithOrdinals}
+     */
+    public BytesValues values() {
+        return values;
+    }
+
     @Override
     public void setNextReader(AtomicReaderContext context) {
         super.setNextReader(context);
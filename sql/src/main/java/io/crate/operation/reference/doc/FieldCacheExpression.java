@@ -46,6 +46,13 @@ public abstract class FieldCacheExpression<IFD extends IndexFieldData, ReturnTyp
         indexFieldData = (IFD) context.searchContext().fieldData().getForField(mapper);
     }
 
+    /**
+     * @return the field data of the column, available once {@link #startCollect(CollectorContext)} was called
+     */
+    public IFD indexFieldData() {
+        return indexFieldData;
+    }
+
     @Override
     public void setNextReader(AtomicReaderContext context) {
         this.docId = -1;
@@ -49,6 +49,8 @@ public class LuceneDocLevelReferenceResolver implements DocLevelReferenceResolve
             }
         } else if (DocCollectorExpression.COLUMN_NAME.equals(referenceInfo.ident().columnIdent().name())) {
             return DocCollectorExpression.create(referenceInfo);
+        } else if (UidCollectorExpression.COLUMN_NAME.equals(referenceInfo.ident().columnIdent().fqn())) {
+            return new UidCollectorExpression();
         }
 
         String colName = referenceInfo.ident().columnIdent().fqn();
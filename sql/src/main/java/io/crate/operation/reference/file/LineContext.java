@@ -24,12 +24,23 @@ package io.crate.operation.reference.file;
 import io.crate.metadata.ColumnIdent;
 import io.crate.operation.collect.files.CollectorContext;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
 
 import javax.annotation.Nullable;
-import java.util.LinkedList;
-import java.util.Map;
+import java.io.IOException;
+import java.util.*;
 
+/**
+ * holds the source of the current line.
+ *
+ * JSON lines are kept as raw bytes, columns are extracted by streaming over the
+ * tokens of the line and only the top level keys of the prefetch columns are read.
+ * The line is only parsed into a map if the whole source is required as map.
+ */
 public class LineContext {
 
     private final CollectorContext collectorContext;
@@ -40,9 +51,19 @@ public class LineContext {
 
     private byte[] rawSource;
     private Map<String, Object> parsedSource;
+    private Map<String, Object> prefetchedSource;
+    private Set<String> prefetchKeys;
 
     @Nullable
     public BytesRef sourceAsBytesRef() {
+        if (rawSource == null && parsedSource != null) {
+            // formats other than JSON provide the parsed source only
+            try {
+                rawSource = XContentFactory.jsonBuilder().map(parsedSource).bytes().toBytes();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to build source", e);
+            }
+        }
         if (rawSource != null) {
             return new BytesRef(rawSource);
         }
@@ -61,19 +82,22 @@ public class LineContext {
     }
 
     public Object get(ColumnIdent columnIdent) {
-        if (parsedSource == null) {
-            // TODO: optimize if collectorContext has prefetchColumns
-
-            try {
-                parsedSource = XContentHelper.convertToMap(rawSource, false).v2();
-            } catch (NullPointerException e) {
-                return null;
+        Map parentMap;
+        if (parsedSource != null) {
+            parentMap = parsedSource;
+        } else if (rawSource == null) {
+            return null;
+        } else if (prefetchKeys().contains(columnIdent.name())) {
+            if (prefetchedSource == null) {
+                prefetchedSource = extractTopLevelKeys(rawSource, prefetchKeys());
             }
+            parentMap = prefetchedSource;
+        } else {
+            parentMap = sourceAsMap();
         }
 
         LinkedList<String> path = new LinkedList<>(columnIdent.path());
         path.add(0, columnIdent.name());
-        Map parentMap = parsedSource;
 
         while (path.size() > 1) {
             Object o = parentMap.get(path.pollFirst());
@@ -90,5 +114,72 @@ public class LineContext {
     public void rawSource(byte[] bytes) {
         this.rawSource = bytes;
         this.parsedSource = null;
+        this.prefetchedSource = null;
+    }
+
+    public void source(Map<String, Object> source) {
+        this.rawSource = null;
+        this.parsedSource = source;
+        this.prefetchedSource = null;
+    }
+
+    private Set<String> prefetchKeys() {
+        if (prefetchKeys == null) {
+            prefetchKeys = new HashSet<>();
+            for (ColumnIdent columnIdent : collectorContext.prefetchColumns()) {
+                prefetchKeys.add(columnIdent.name());
+            }
+        }
+        return prefetchKeys;
+    }
+
+    /**
+     * reads the values of the given top level keys from a JSON object,
+     * the values of all other keys are skipped without being parsed.
+     */
+    static Map<String, Object> extractTopLevelKeys(byte[] source, Set<String> keys) {
+        Map<String, Object> values = new HashMap<>(keys.size());
+        XContentParser parser = null;
+        try {
+            parser = XContentFactory.xContent(XContentType.JSON).createParser(source);
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                return values;
+            }
+            XContentParser.Token token;
+            while ((token = parser.nextToken()) == XContentParser.Token.FIELD_NAME) {
+                String name = parser.currentName();
+                token = parser.nextToken();
+                if (keys.contains(name)) {
+                    values.put(name, readValue(parser, token));
+                    if (values.size() == keys.size()) {
+                        break;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return values;
+        } catch (IOException e) {
+            throw new ElasticsearchParseException("Failed to parse content to map", e);
+        } finally {
+            if (parser != null) {
+                parser.close();
+            }
+        }
+    }
+
+    private static Object readValue(XContentParser parser, XContentParser.Token token) throws IOException {
+        if (token == XContentParser.Token.VALUE_NULL) {
+            return null;
+        } else if (token == XContentParser.Token.START_OBJECT) {
+            return parser.map();
+        } else if (token == XContentParser.Token.START_ARRAY) {
+            List<Object> list = new ArrayList<>();
+            while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+                list.add(readValue(parser, token));
+            }
+            return list;
+        }
+        return parser.objectText();
     }
 }
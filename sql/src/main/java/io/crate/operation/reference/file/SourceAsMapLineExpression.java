@@ -37,10 +37,6 @@ public class SourceAsMapLineExpression extends LineCollectorExpression<Map<Strin
         return context.sourceAsMap();
     }
 
-    @Override
-    public void setNextLine(String line) {
-    }
-
     @Override
     public void startCollect(CollectorContext context) {
         this.context = context.lineContext();
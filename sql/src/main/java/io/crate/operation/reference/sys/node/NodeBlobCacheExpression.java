@@ -0,0 +1,81 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.reference.sys.node;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.blob.BlobCache;
+import io.crate.metadata.ColumnIdent;
+import io.crate.operation.reference.sys.SysNodeObjectReference;
+import org.elasticsearch.common.inject.Inject;
+
+public class NodeBlobCacheExpression extends SysNodeObjectReference<Object> {
+
+    abstract class BlobCacheExpression extends SysNodeExpression<Object> {
+        BlobCacheExpression(String name) {
+            super(new ColumnIdent(NAME, ImmutableList.of(name)));
+        }
+    }
+
+    public static final String NAME = "blob_cache";
+
+    public static final String SIZE = "size";
+    public static final String HITS = "hits";
+    public static final String MISSES = "misses";
+    public static final String HIT_RATIO = "hit_ratio";
+
+    private final BlobCache blobCache;
+
+    @Inject
+    public NodeBlobCacheExpression(BlobCache blobCache) {
+        super(NAME);
+        this.blobCache = blobCache;
+        addChildImplementations();
+    }
+
+    private void addChildImplementations() {
+        childImplementations.put(SIZE, new BlobCacheExpression(SIZE) {
+            @Override
+            public Long value() {
+                return blobCache.size();
+            }
+        });
+        childImplementations.put(HITS, new BlobCacheExpression(HITS) {
+            @Override
+            public Long value() {
+                return blobCache.hits();
+            }
+        });
+        childImplementations.put(MISSES, new BlobCacheExpression(MISSES) {
+            @Override
+            public Long value() {
+                return blobCache.misses();
+            }
+        });
+        childImplementations.put(HIT_RATIO, new BlobCacheExpression(HIT_RATIO) {
+            @Override
+            public Double value() {
+                return blobCache.hitRatio();
+            }
+        });
+    }
+
+}
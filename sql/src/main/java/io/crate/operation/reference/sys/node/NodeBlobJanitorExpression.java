@@ -0,0 +1,74 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.reference.sys.node;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.blob.BlobJanitor;
+import io.crate.metadata.ColumnIdent;
+import io.crate.operation.reference.sys.SysNodeObjectReference;
+import org.elasticsearch.common.inject.Inject;
+
+public class NodeBlobJanitorExpression extends SysNodeObjectReference<Object> {
+
+    abstract class BlobJanitorExpression extends SysNodeExpression<Object> {
+        BlobJanitorExpression(String name) {
+            super(new ColumnIdent(NAME, ImmutableList.of(name)));
+        }
+    }
+
+    public static final String NAME = "blob_janitor";
+
+    public static final String EXPIRED_TRANSFERS = "expired_transfers";
+    public static final String DELETED_FILES = "deleted_files";
+    public static final String RECLAIMED_BYTES = "reclaimed_bytes";
+
+    private final BlobJanitor blobJanitor;
+
+    @Inject
+    public NodeBlobJanitorExpression(BlobJanitor blobJanitor) {
+        super(NAME);
+        this.blobJanitor = blobJanitor;
+        addChildImplementations();
+    }
+
+    private void addChildImplementations() {
+        childImplementations.put(EXPIRED_TRANSFERS, new BlobJanitorExpression(EXPIRED_TRANSFERS) {
+            @Override
+            public Long value() {
+                return blobJanitor.expiredTransfers();
+            }
+        });
+        childImplementations.put(DELETED_FILES, new BlobJanitorExpression(DELETED_FILES) {
+            @Override
+            public Long value() {
+                return blobJanitor.deletedFiles();
+            }
+        });
+        childImplementations.put(RECLAIMED_BYTES, new BlobJanitorExpression(RECLAIMED_BYTES) {
+            @Override
+            public Long value() {
+                return blobJanitor.reclaimedBytes();
+            }
+        });
+    }
+
+}
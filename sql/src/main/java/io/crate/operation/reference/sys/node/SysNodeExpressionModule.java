@@ -54,5 +54,7 @@ public class SysNodeExpressionModule extends AbstractModule {
         bindExpr(NodePortExpression.NAME, NodePortExpression.class);
         bindExpr(NodeHeapExpression.NAME, NodeHeapExpression.class);
         bindExpr(NodeVersionExpression.NAME, NodeVersionExpression.class);
+        bindExpr(NodeBlobCacheExpression.NAME, NodeBlobCacheExpression.class);
+        bindExpr(NodeBlobJanitorExpression.NAME, NodeBlobJanitorExpression.class);
     }
 }
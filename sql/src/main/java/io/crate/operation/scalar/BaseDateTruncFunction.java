@@ -21,10 +21,13 @@
 package io.crate.operation.scalar;
 
 import com.google.common.collect.ImmutableMap;
+import io.crate.metadata.CompilableScalar;
 import io.crate.metadata.FunctionInfo;
 import io.crate.metadata.Scalar;
+import io.crate.operation.Input;
 import io.crate.planner.symbol.Function;
 import io.crate.planner.symbol.StringLiteral;
+import io.crate.planner.symbol.Symbol;
 import io.crate.planner.symbol.SymbolFormatter;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.collect.MapBuilder;
@@ -32,7 +35,7 @@ import org.elasticsearch.common.rounding.DateTimeUnit;
 import org.elasticsearch.common.rounding.TimeZoneRounding;
 import org.joda.time.DateTimeZone;
 
-public abstract class BaseDateTruncFunction implements Scalar<Long, Object> {
+public abstract class BaseDateTruncFunction implements CompilableScalar<Long, Object> {
 
     public static final String NAME = "date_trunc";
 
@@ -84,17 +87,108 @@ public abstract class BaseDateTruncFunction implements Scalar<Long, Object> {
      * @return
      */
     protected Long truncate(DateTimeUnit interval, Long ts, DateTimeZone tz) {
-        TimeZoneRounding.Builder tzRoundingBuilder;
-        if (interval != null) {
-            tzRoundingBuilder = TimeZoneRounding.builder(interval);
-        } else {
+        if (interval == null) {
             return null;
         }
-        TimeZoneRounding tzRounding = tzRoundingBuilder
+        return rounding(interval, tz).round(ts);
+    }
+
+    protected static TimeZoneRounding rounding(DateTimeUnit interval, DateTimeZone tz) {
+        return TimeZoneRounding.builder(interval)
                 .preZone(tz)
                 .preZoneAdjustLargeInterval(true)
                 .build();
-        return tzRounding.round(ts);
     }
 
+    /**
+     * date_trunc with a rounding that is built once for the interval and time zone of a function call.
+     *
+     * If the rounding is monotonic, which is the case if the time zone has a fixed offset,
+     * the last bucket is remembered and timestamps falling into it aren't rounded again.
+     * Sorted timestamps, as read from time series data, are mostly truncated without rounding
+     * and without allocating a result.
+     */
+    static class CompiledDateTrunc implements Scalar<Long, Object> {
+
+        private final FunctionInfo info;
+        private final TimeZoneRounding rounding;
+        private final int timestampIndex;
+        private final boolean memoize;
+
+        private Bucket lastBucket = Bucket.EMPTY;
+
+        CompiledDateTrunc(FunctionInfo info, TimeZoneRounding rounding, int timestampIndex, boolean memoize) {
+            this.info = info;
+            this.rounding = rounding;
+            this.timestampIndex = timestampIndex;
+            this.memoize = memoize;
+        }
+
+        @Override
+        public FunctionInfo info() {
+            return info;
+        }
+
+        @Override
+        public Symbol normalizeSymbol(Function symbol) {
+            return symbol;
+        }
+
+        @Override
+        public Long evaluate(Input<Object>... args) {
+            Object value = args[timestampIndex].value();
+            if (value == null) {
+                return null;
+            }
+            long timestamp = (Long) value;
+            Bucket bucket = lastBucket;
+            if (bucket.contains(timestamp)) {
+                return bucket.boxedStart;
+            }
+            return truncate(timestamp);
+        }
+
+        /**
+         * @return the given timestamp truncated without boxing it
+         */
+        public long truncate(long timestamp) {
+            Bucket bucket = lastBucket;
+            if (bucket.contains(timestamp)) {
+                return bucket.start;
+            }
+            long start = rounding.round(timestamp);
+            if (memoize) {
+                long end = rounding.nextRoundingValue(start);
+                // only remember buckets which are verified to round to their start,
+                // with a monotonic rounding all timestamps in between do as well
+                if (end > start && rounding.round(start) == start && rounding.round(end - 1) == start) {
+                    lastBucket = new Bucket(start, end);
+                }
+            }
+            return start;
+        }
+    }
+
+    /**
+     * the timestamps from start (inclusive) to end (exclusive), immutable so that it can be
+     * replaced without synchronization
+     */
+    static class Bucket {
+
+        static final Bucket EMPTY = new Bucket(0, 0);
+
+        final long start;
+        final long end;
+        final Long boxedStart;
+
+        Bucket(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.boxedStart = start;
+        }
+
+        boolean contains(long timestamp) {
+            return timestamp >= start && timestamp < end;
+        }
+    }
 }
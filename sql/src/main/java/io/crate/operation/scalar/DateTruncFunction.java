@@ -24,11 +24,14 @@ import com.google.common.collect.ImmutableList;
 import io.crate.DataType;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
 import io.crate.planner.symbol.*;
 import org.elasticsearch.common.rounding.DateTimeUnit;
 import org.joda.time.DateTimeZone;
 
+import java.util.List;
+
 public class DateTruncFunction extends BaseDateTruncFunction {
 
     public static void register(ScalarFunctionModule module) {
@@ -72,4 +75,16 @@ public class DateTruncFunction extends BaseDateTruncFunction {
         return truncate(fieldParser, (Long) args[1].value(), DEFAULT_TZ);
     }
 
+    @Override
+    public Scalar<Long, Object> compile(List<Symbol> arguments) {
+        Symbol interval = arguments.get(0);
+        if (!(interval instanceof StringLiteral)) {
+            return this;
+        }
+        DateTimeUnit fieldParser = DATE_FIELD_PARSERS.get(((StringLiteral) interval).value());
+        if (fieldParser == null) {
+            return this;
+        }
+        return new CompiledDateTrunc(info(), rounding(fieldParser, DEFAULT_TZ), 1, true);
+    }
 }
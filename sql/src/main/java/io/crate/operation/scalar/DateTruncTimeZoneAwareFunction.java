@@ -24,12 +24,15 @@ import com.google.common.collect.ImmutableList;
 import io.crate.DataType;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
 import io.crate.planner.symbol.*;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.rounding.DateTimeUnit;
 import org.joda.time.DateTimeZone;
 
+import java.util.List;
+
 public class DateTruncTimeZoneAwareFunction extends BaseDateTruncFunction {
 
     public static void register(ScalarFunctionModule module) {
@@ -82,6 +85,25 @@ public class DateTruncTimeZoneAwareFunction extends BaseDateTruncFunction {
         return truncate(fieldParser, (Long) args[2].value(), tz);
     }
 
+    /**
+     * the last bucket is only remembered for time zones with a fixed offset,
+     * daylight saving time transitions may render the rounding non-monotonic
+     */
+    @Override
+    public Scalar<Long, Object> compile(List<Symbol> arguments) {
+        Symbol interval = arguments.get(0);
+        Symbol timezone = arguments.get(1);
+        if (!(interval instanceof StringLiteral) || !(timezone instanceof StringLiteral)) {
+            return this;
+        }
+        DateTimeUnit fieldParser = DATE_FIELD_PARSERS.get(((StringLiteral) interval).value());
+        if (fieldParser == null) {
+            return this;
+        }
+        DateTimeZone tz = parseZone(((StringLiteral) timezone).value());
+        return new CompiledDateTrunc(info(), rounding(fieldParser, tz), 2, tz.isFixed());
+    }
+
     private DateTimeZone parseZone(BytesRef zone) throws IllegalArgumentException {
         String text = zone.utf8ToString();
         int index = text.indexOf(':');
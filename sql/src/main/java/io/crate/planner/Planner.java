@@ -36,13 +36,17 @@ import io.crate.PartitionName;
 import io.crate.analyze.*;
 import io.crate.exceptions.CrateException;
 import io.crate.metadata.*;
+import io.crate.metadata.blob.BlobTableInfo;
 import io.crate.metadata.doc.DocSchemaInfo;
 import io.crate.metadata.doc.DocSysColumns;
+import io.crate.operation.aggregation.impl.CollectSetAggregation;
 import io.crate.operation.aggregation.impl.CountAggregation;
 import io.crate.operation.aggregation.impl.SumAggregation;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.operation.projectors.TopN;
+import io.crate.operation.scalar.CollectionCountFunction;
 import io.crate.planner.node.ddl.*;
-import io.crate.planner.node.dml.ESDeleteByQueryNode;
+import io.crate.planner.node.dml.DeleteBlobsNode;
 import io.crate.planner.node.dml.ESDeleteNode;
 import io.crate.planner.node.dml.ESIndexNode;
 import io.crate.planner.node.dml.ESUpdateNode;
@@ -137,7 +141,10 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
     @Override
     protected Plan visitDeleteAnalysis(DeleteAnalysis analysis, Void context) {
         Plan plan = new Plan();
-        if (analysis.ids().size() == 1 && analysis.routingValues().size() == 1) {
+        if (analysis.table() instanceof BlobTableInfo) {
+            plan.add(new DeleteBlobsNode(((BlobTableInfo) analysis.table()).index(), analysis.ids()));
+            plan.expectsAffectedRows(true);
+        } else if (analysis.ids().size() == 1 && analysis.routingValues().size() == 1) {
             ESDelete(analysis, plan);
         } else {
             ESDeleteByQuery(analysis, plan);
@@ -157,14 +164,34 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
             projection.settings(analysis.settings());
 
             PlannerContextBuilder contextBuilder = new PlannerContextBuilder();
-            if (analysis.outputSymbols() != null && !analysis.outputSymbols().isEmpty()) {
+            FileReadingCollector.FileFormat format =
+                    FileReadingCollector.FileFormat.fromOption(analysis.settings().get("format"));
+            List<Symbol> outputSymbols = analysis.outputSymbols();
+            if (format != FileReadingCollector.FileFormat.JSON
+                    && (outputSymbols == null || outputSymbols.isEmpty())) {
+                // formats other than JSON can't write the raw source, export all top level columns instead
+                outputSymbols = new ArrayList<>();
+                for (ReferenceInfo info : analysis.table().columns()) {
+                    if (info.ident().columnIdent().path().isEmpty()) {
+                        outputSymbols.add(new Reference(info));
+                    }
+                }
+            }
+            if (outputSymbols != null && !outputSymbols.isEmpty()) {
                 // TODO: rewrite to lookup from DocReference (to avoid fieldcache)
-                List<Symbol> columns = new ArrayList<>(analysis.outputSymbols().size());
-                for (Symbol symbol : analysis.outputSymbols()) {
+                List<Symbol> columns = new ArrayList<>(outputSymbols.size());
+                List<String> outputNames = new ArrayList<>(outputSymbols.size());
+                for (Symbol symbol : outputSymbols) {
                     columns.add(DocReferenceBuildingVisitor.INSTANCE.process(symbol, null));
+                    if (symbol instanceof Reference) {
+                        outputNames.add(((Reference) symbol).info().ident().columnIdent().fqn());
+                    } else {
+                        outputNames.add(SymbolFormatter.format(symbol));
+                    }
                 }
                 contextBuilder = contextBuilder.output(columns);
                 projection.inputs(contextBuilder.outputs());
+                projection.outputNames(outputNames);
             } else {
                 Reference rawReference = new Reference(analysis.table().getColumnInfo(DocSysColumns.RAW));
                 contextBuilder = contextBuilder.output(ImmutableList.<Symbol>of(rawReference));
@@ -174,17 +201,8 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
                     ImmutableList.<Projection>of(projection));
 
             plan.add(collectNode);
-            AggregationProjection aggregationProjection = new AggregationProjection(
-                    Arrays.asList(new Aggregation(
-                                    analysis.getFunctionInfo(
-                                            new FunctionIdent(SumAggregation.NAME, Arrays.asList(DataType.LONG))
-                                    ),
-                                    Arrays.<Symbol>asList(new InputColumn(0)),
-                                    Aggregation.Step.ITER,
-                                    Aggregation.Step.FINAL
-                            )
-                    ));
-            MergeNode mergeNode = PlanNodeBuilder.localMerge(ImmutableList.<Projection>of(aggregationProjection), collectNode);
+            MergeNode mergeNode = PlanNodeBuilder.localMerge(
+                    ImmutableList.<Projection>of(sumRowCountProjection(analysis)), collectNode);
             plan.add(mergeNode);
             plan.expectsAffectedRows(true);
         }
@@ -232,11 +250,19 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
             );
         }
 
-        // finally add _raw or _doc
-        if (analysis.table().isPartitioned()) {
-            toCollect.add(new Reference(analysis.table().getColumnInfo(DocSysColumns.DOC)));
-        } else {
-            toCollect.add(new Reference(analysis.table().getColumnInfo(DocSysColumns.RAW)));
+        // finally add _raw, partitioned columns are excluded by the IndexWriterProjector without parsing the source
+        toCollect.add(new Reference(analysis.table().getColumnInfo(DocSysColumns.RAW)));
+
+        // CSV values of the table columns are converted to their type, values of new columns
+        // are kept as strings and typed by the dynamic mapping like the fields of JSON files
+        Map<String, DataType> columnTypes = null;
+        if (!analysis.table().columns().isEmpty()) {
+            columnTypes = new HashMap<>();
+            for (ReferenceInfo info : analysis.table().columns()) {
+                if (info.ident().columnIdent().path().isEmpty()) {
+                    columnTypes.put(info.ident().columnIdent().name(), info.type());
+                }
+            }
         }
 
         DiscoveryNodes allNodes = clusterService.state().nodes();
@@ -247,22 +273,14 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
                 toCollect,
                 projections,
                 analysis.settings().get("compression", null),
-                analysis.settings().getAsBoolean("shared", null)
+                analysis.settings().getAsBoolean("shared", null),
+                FileReadingCollector.FileFormat.fromOption(analysis.settings().get("format")),
+                columnTypes
         );
         PlanNodeBuilder.setOutputTypes(collectNode);
         plan.add(collectNode);
-        AggregationProjection aggregationProjection = new AggregationProjection(
-                Arrays.asList(new Aggregation(
-                        analysis.getFunctionInfo(
-                            new FunctionIdent(SumAggregation.NAME, Arrays.asList(DataType.LONG))
-                        ),
-                        Arrays.<Symbol>asList(new InputColumn(0)),
-                        Aggregation.Step.ITER,
-                        Aggregation.Step.FINAL
-                    )
-                ));
         plan.add(PlanNodeBuilder.localMerge(
-                ImmutableList.<Projection>of(aggregationProjection), collectNode));
+                ImmutableList.<Projection>of(sumRowCountProjection(analysis)), collectNode));
         plan.expectsAffectedRows(true);
     }
 
@@ -381,14 +399,42 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
             // TODO: if we allow queries like 'partitionColumn=X or column=Y' which is currently
             // forbidden through analysis, we must issue deleteByQuery request in addition
             // to above deleteIndex request(s)
-            ESDeleteByQueryNode node = new ESDeleteByQueryNode(
-                    indices,
-                    analysis.whereClause());
-            plan.add(node);
+            collectDelete(analysis, plan);
         }
         plan.expectsAffectedRows(true);
     }
 
+    /**
+     * collect the _uid of all matching documents and delete them
+     * on the shard they were collected from, the affected rows are summed up on the handler
+     */
+    private void collectDelete(DeleteAnalysis analysis, Plan plan) {
+        Reference uidReference = new Reference(analysis.table().getColumnInfo(DocSysColumns.UID));
+        DeleteProjection deleteProjection = new DeleteProjection(
+                new InputColumn(0),
+                clusterService.state().metaData().settings());
+        CollectNode collectNode = PlanNodeBuilder.collect(
+                analysis,
+                ImmutableList.<Symbol>of(uidReference),
+                ImmutableList.<Projection>of(deleteProjection));
+        plan.add(collectNode);
+        plan.add(PlanNodeBuilder.localMerge(
+                ImmutableList.<Projection>of(sumRowCountProjection(analysis)), collectNode));
+    }
+
+    private AggregationProjection sumRowCountProjection(AbstractDataAnalysis analysis) {
+        return new AggregationProjection(
+                Arrays.asList(new Aggregation(
+                        analysis.getFunctionInfo(
+                                new FunctionIdent(SumAggregation.NAME, Arrays.asList(DataType.LONG))
+                        ),
+                        Arrays.<Symbol>asList(new InputColumn(0)),
+                        Aggregation.Step.ITER,
+                        Aggregation.Step.FINAL
+                )
+        ));
+    }
+
     private void ESGet(SelectAnalysis analysis, Plan plan) {
         PlannerContextBuilder contextBuilder = new PlannerContextBuilder()
                 .output(analysis.outputSymbols())
@@ -526,6 +572,11 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
             plan.add(new ESCountNode(analysis.table().ident().name(), analysis.whereClause()));
             return;
         }
+        Reference distinctColumn = distinctCountColumn(analysis);
+        if (distinctColumn != null) {
+            distributedDistinctCount(analysis, distinctColumn, plan);
+            return;
+        }
 
         // global aggregate: collect and partial aggregate on C and final agg on H
         PlannerContextBuilder contextBuilder = new PlannerContextBuilder(2)
@@ -554,6 +605,73 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
         plan.add(PlanNodeBuilder.localMerge(projections, collectNode));
     }
 
+    /**
+     * @return the column of a query which only selects <code>count(distinct column)</code>
+     *         on a table with distributed rows, otherwise null
+     */
+    @Nullable
+    private Reference distinctCountColumn(SelectAnalysis analysis) {
+        if (analysis.outputSymbols().size() != 1
+                || analysis.hasSysExpressions()
+                || analysis.rowGranularity().ordinal() < RowGranularity.DOC.ordinal()
+                || !analysis.table().getRouting(analysis.whereClause()).hasLocations()) {
+            return null;
+        }
+        Symbol symbol = analysis.outputSymbols().get(0);
+        if (symbol.symbolType() != SymbolType.FUNCTION
+                || !((Function) symbol).info().ident().name().equals(CollectionCountFunction.NAME)) {
+            return null;
+        }
+        Symbol collectSet = ((Function) symbol).arguments().get(0);
+        if (collectSet.symbolType() != SymbolType.FUNCTION
+                || !((Function) collectSet).info().ident().name().equals(CollectSetAggregation.NAME)) {
+            return null;
+        }
+        Symbol column = ((Function) collectSet).arguments().get(0);
+        if (column.symbolType() != SymbolType.REFERENCE) {
+            return null;
+        }
+        return (Reference) column;
+    }
+
+    /**
+     * count(distinct column) without collecting all distinct values on the handler:
+     * <p/>
+     * the distinct values are collected per node and distributed by their hash, so every
+     * reducer dedups and counts its own slice of the values. The handler sums up the counts.
+     */
+    private void distributedDistinctCount(SelectAnalysis analysis, Reference column, Plan plan) {
+        GroupProjection groupProjection = new GroupProjection(
+                ImmutableList.<Symbol>of(new InputColumn(0)), ImmutableList.<Aggregation>of());
+        CollectNode collectNode = PlanNodeBuilder.distributingCollect(
+                analysis,
+                ImmutableList.<Symbol>of(column),
+                nodesFromTable(analysis),
+                ImmutableList.<Projection>of(groupProjection)
+        );
+        plan.add(collectNode);
+
+        FunctionInfo countInfo = analysis.getFunctionInfo(
+                new FunctionIdent(CountAggregation.NAME, Arrays.asList(column.valueType())));
+        MergeNode mergeNode = PlanNodeBuilder.distributedMerge(collectNode, ImmutableList.<Projection>of(
+                new GroupProjection(ImmutableList.<Symbol>of(new InputColumn(0)), ImmutableList.<Aggregation>of()),
+                new AggregationProjection(Arrays.asList(new Aggregation(
+                        countInfo,
+                        Arrays.<Symbol>asList(new InputColumn(0)),
+                        Aggregation.Step.ITER,
+                        Aggregation.Step.PARTIAL)))
+        ));
+        plan.add(mergeNode);
+
+        plan.add(PlanNodeBuilder.localMerge(ImmutableList.<Projection>of(
+                new AggregationProjection(Arrays.asList(new Aggregation(
+                        countInfo,
+                        Arrays.<Symbol>asList(new InputColumn(0)),
+                        Aggregation.Step.PARTIAL,
+                        Aggregation.Step.FINAL)))
+        ), mergeNode));
+    }
+
     private boolean hasOnlyGlobalCount(List<Symbol> symbols) {
         if (symbols.size() != 1) {
             return false;
@@ -623,14 +741,17 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
                 .output(analysis.outputSymbols())
                 .orderBy(analysis.sortSymbols());
 
-        // collector
-        GroupProjection groupProjection = new GroupProjection(
+        // collector, pre-reduces the rows of every shard before they are merged on the node
+        GroupProjection shardGroupProjection = new GroupProjection(
                 contextBuilder.groupBy(), contextBuilder.aggregations());
+        shardGroupProjection.requiredGranularity(RowGranularity.SHARD);
+        // the partition values are constant per shard, so every shard delivers a single run
+        shardGroupProjection.streaming(groupedByPartitionedColumns(analysis));
         CollectNode collectNode = PlanNodeBuilder.distributingCollect(
                 analysis,
                 contextBuilder.toCollect(),
                 nodesFromTable(analysis),
-                ImmutableList.<Projection>of(groupProjection)
+                ImmutableList.<Projection>of(shardGroupProjection, partialGroupMerge(shardGroupProjection))
         );
         plan.add(collectNode);
 
@@ -682,6 +803,47 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
         plan.add(localMergeNode);
     }
 
+    /**
+     * @return a group projection which merges the partial groups emitted by the given
+     *         group projection into partial groups again
+     */
+    private GroupProjection partialGroupMerge(GroupProjection groupProjection) {
+        int numKeys = groupProjection.keys().size();
+        List<Symbol> keys = new ArrayList<>(numKeys);
+        for (int i = 0; i < numKeys; i++) {
+            keys.add(new InputColumn(i));
+        }
+        List<Aggregation> aggregations = new ArrayList<>(groupProjection.values().size());
+        for (Aggregation aggregation : groupProjection.values()) {
+            aggregations.add(new Aggregation(
+                    aggregation.functionInfo(),
+                    Arrays.<Symbol>asList(new InputColumn(numKeys + aggregations.size())),
+                    Aggregation.Step.PARTIAL,
+                    Aggregation.Step.PARTIAL));
+        }
+        return new GroupProjection(keys, aggregations);
+    }
+
+    /**
+     * @return true if the query only groups by partitioned columns of the table
+     */
+    private boolean groupedByPartitionedColumns(SelectAnalysis analysis) {
+        if (!analysis.table().isPartitioned() || analysis.groupBy().isEmpty()) {
+            return false;
+        }
+        Set<ReferenceIdent> partitionedBy = new HashSet<>();
+        for (ReferenceInfo info : analysis.table().partitionedByColumns()) {
+            partitionedBy.add(info.ident());
+        }
+        for (Symbol symbol : analysis.groupBy()) {
+            if (symbol.symbolType() != SymbolType.REFERENCE
+                    || !partitionedBy.contains(((Reference) symbol).info().ident())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private List<String> nodesFromTable(SelectAnalysis analysis) {
         return Lists.newArrayList(analysis.table().getRouting(analysis.whereClause()).nodes());
     }
@@ -695,7 +857,8 @@ public class Planner extends AnalysisVisitor<Void, Plan> {
                 indices,
                 analysis.sourceMaps(),
                 analysis.ids(),
-                analysis.routingValues());
+                analysis.routingValues(),
+                analysis.onDuplicateKeyAssignments());
         plan.add(indexNode);
         plan.expectsAffectedRows(true);
     }
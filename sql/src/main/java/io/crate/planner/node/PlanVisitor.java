@@ -52,11 +52,11 @@ public class PlanVisitor<C, R> {
         return visitPlanNode(node, context);
     }
 
-    public R visitESDeleteByQueryNode(ESDeleteByQueryNode node, C context) {
+    public R visitESDeleteNode(ESDeleteNode node, C context) {
         return visitPlanNode(node, context);
     }
 
-    public R visitESDeleteNode(ESDeleteNode node, C context) {
+    public R visitDeleteBlobsNode(DeleteBlobsNode node, C context) {
         return visitPlanNode(node, context);
     }
 
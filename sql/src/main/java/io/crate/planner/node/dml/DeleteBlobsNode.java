@@ -6,7 +6,7 @@
  * you may not use this file except in compliance with the License.  You may
  * obtain a copy of the License at
  *
- *  http://www.apache.org/licenses/LICENSE-2.0
+ *   http://www.apache.org/licenses/LICENSE-2.0
  *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
@@ -21,30 +21,33 @@
 
 package io.crate.planner.node.dml;
 
-import io.crate.analyze.WhereClause;
 import io.crate.planner.node.PlanVisitor;
 
-public class ESDeleteByQueryNode extends DMLPlanNode {
+import java.util.List;
 
-    private final String[] indices;
-    private final WhereClause whereClause;
+/**
+ * deletes blobs of a blob table by their digests
+ */
+public class DeleteBlobsNode extends DMLPlanNode {
+
+    private final String index;
+    private final List<String> digests;
 
-    public ESDeleteByQueryNode(String[] indices, WhereClause whereClause) {
-        assert whereClause != null;
-        this.indices = indices;
-        this.whereClause = whereClause;
+    public DeleteBlobsNode(String index, List<String> digests) {
+        this.index = index;
+        this.digests = digests;
     }
 
-    public String[] indices() {
-        return indices;
+    public String index() {
+        return index;
     }
 
-    public WhereClause whereClause() {
-        return whereClause;
+    public List<String> digests() {
+        return digests;
     }
 
     @Override
     public <C, R> R accept(PlanVisitor<C, R> visitor, C context) {
-        return visitor.visitESDeleteByQueryNode(this, context);
+        return visitor.visitDeleteBlobsNode(this, context);
     }
 }
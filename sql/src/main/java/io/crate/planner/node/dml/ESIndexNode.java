@@ -21,7 +21,10 @@
 
 package io.crate.planner.node.dml;
 
+import com.google.common.collect.ImmutableMap;
 import io.crate.planner.node.PlanVisitor;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
 
 import javax.annotation.Nullable;
 import java.util.List;
@@ -30,6 +33,9 @@ import java.util.Map;
 /**
  * plan node for 1 or more documents to index via ESIndexTask
  * for a single index
+ *
+ * If <code>ON DUPLICATE KEY UPDATE</code> assignments are given every document is
+ * upserted with a single request routed to the shard of its primary key.
  */
 public class ESIndexNode extends DMLPlanNode {
 
@@ -38,17 +44,27 @@ public class ESIndexNode extends DMLPlanNode {
     private List<Map<String, Object>> sourceMaps;
     private List<String> ids;
     private List<String> routingValues;
+    private Map<String, Object> updateDoc;
 
     public ESIndexNode(String[] indices,
                        List<Map<String, Object>> sourceMaps,
                        List<String> ids,
                        @Nullable List<String> routingValues) {
+        this(indices, sourceMaps, ids, routingValues, ImmutableMap.<Reference, Symbol>of());
+    }
+
+    public ESIndexNode(String[] indices,
+                       List<Map<String, Object>> sourceMaps,
+                       List<String> ids,
+                       @Nullable List<String> routingValues,
+                       Map<Reference, Symbol> onDuplicateKeyAssignments) {
         assert indices != null : "no indices";
         assert indices.length == 1 || indices.length == sourceMaps.size() : "unsupported number of indices";
         this.indices = indices;
         this.sourceMaps = sourceMaps;
         this.ids = ids;
         this.routingValues = routingValues;
+        this.updateDoc = ESUpdateNode.updateDoc(onDuplicateKeyAssignments);
     }
 
     public String[] indices() {
@@ -68,6 +84,20 @@ public class ESIndexNode extends DMLPlanNode {
         return routingValues;
     }
 
+    /**
+     * @return true if existing documents are updated instead of failing the insert
+     */
+    public boolean isUpsert() {
+        return !updateDoc.isEmpty();
+    }
+
+    /**
+     * @return the column paths and values to update on existing documents
+     */
+    public Map<String, Object> updateDoc() {
+        return updateDoc;
+    }
+
     @Override
     public <C, R> R accept(PlanVisitor<C, R> visitor, C context) {
         return visitor.visitESIndexNode(this, context);
@@ -49,7 +49,17 @@ public class ESUpdateNode extends DMLPlanNode {
         this.ids = ids;
         this.routingValues = routingValues;
         version = whereClause.version();
-        updateDoc = new HashMap<>(assignments.size());
+        updateDoc = updateDoc(assignments);
+        columns = updateDoc.keySet().toArray(new String[updateDoc.size()]);
+
+        this.whereClause = whereClause;
+    }
+
+    /**
+     * converts the literal assignments to a map of column paths to values
+     */
+    static Map<String, Object> updateDoc(Map<Reference, Symbol> assignments) {
+        Map<String, Object> updateDoc = new HashMap<>(assignments.size());
         for (Map.Entry<Reference, Symbol> entry: assignments.entrySet()) {
             Object value;
             if (entry.getValue().symbolType() == SymbolType.STRING_LITERAL) {
@@ -59,13 +69,7 @@ public class ESUpdateNode extends DMLPlanNode {
             }
             updateDoc.put(entry.getKey().info().ident().columnIdent().fqn(), value);
         }
-        columns = new String[assignments.size()];
-        int i = 0;
-        for (Reference ref : assignments.keySet()) {
-            columns[i++] = ref.info().ident().columnIdent().fqn();
-        }
-
-        this.whereClause = whereClause;
+        return updateDoc;
     }
 
     public List<String> ids() {
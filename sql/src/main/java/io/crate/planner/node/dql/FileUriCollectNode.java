@@ -22,6 +22,7 @@
 package io.crate.planner.node.dql;
 
 import com.google.common.base.Objects;
+import io.crate.DataType;
 import io.crate.analyze.EvaluatingNormalizer;
 import io.crate.analyze.WhereClause;
 import io.crate.metadata.Routing;
@@ -33,13 +34,18 @@ import org.elasticsearch.common.io.stream.StreamOutput;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class FileUriCollectNode extends CollectNode {
 
     private Symbol targetUri;
     private String compression;
     private Boolean sharedStorage;
+    private FileReadingCollector.FileFormat fileFormat = FileReadingCollector.FileFormat.JSON;
+    @Nullable
+    private Map<String, DataType> columnTypes;
 
     public FileUriCollectNode() {
 
@@ -52,10 +58,28 @@ public class FileUriCollectNode extends CollectNode {
                               List<Projection> projections,
                               String compression,
                               Boolean sharedStorage) {
+        this(id, routing, targetUri, toCollect, projections, compression, sharedStorage,
+                FileReadingCollector.FileFormat.JSON, null);
+    }
+
+    /**
+     * @param columnTypes the types of the table columns used to convert CSV values, may be null
+     */
+    public FileUriCollectNode(String id,
+                              Routing routing,
+                              Symbol targetUri,
+                              List<Symbol> toCollect,
+                              List<Projection> projections,
+                              String compression,
+                              Boolean sharedStorage,
+                              FileReadingCollector.FileFormat fileFormat,
+                              @Nullable Map<String, DataType> columnTypes) {
         super(id, routing, toCollect, projections);
         this.targetUri = targetUri;
         this.compression = compression;
         this.sharedStorage = sharedStorage;
+        this.fileFormat = fileFormat;
+        this.columnTypes = columnTypes;
     }
 
     public Symbol targetUri() {
@@ -63,7 +87,12 @@ public class FileUriCollectNode extends CollectNode {
     }
 
     public FileReadingCollector.FileFormat fileFormat() {
-        return FileReadingCollector.FileFormat.JSON;
+        return fileFormat;
+    }
+
+    @Nullable
+    public Map<String, DataType> columnTypes() {
+        return columnTypes;
     }
 
     @Override
@@ -85,7 +114,9 @@ public class FileUriCollectNode extends CollectNode {
                 normalizedToCollect,
                 projections(),
                 compression(),
-                sharedStorage());
+                sharedStorage(),
+                fileFormat,
+                columnTypes);
         result.downStreamNodes(downStreamNodes());
         result.maxRowGranularity(maxRowGranularity());
         result.whereClause(normalizedWhereClause);
@@ -106,6 +137,14 @@ public class FileUriCollectNode extends CollectNode {
         compression = in.readOptionalString();
         sharedStorage = in.readOptionalBoolean();
         targetUri = Symbol.fromStream(in);
+        fileFormat = FileReadingCollector.FileFormat.values()[in.readVInt()];
+        if (in.readBoolean()) {
+            int numColumns = in.readVInt();
+            columnTypes = new HashMap<>(numColumns);
+            for (int i = 0; i < numColumns; i++) {
+                columnTypes.put(in.readString(), DataType.fromStream(in));
+            }
+        }
     }
 
     @Override
@@ -114,6 +153,15 @@ public class FileUriCollectNode extends CollectNode {
         out.writeOptionalString(compression);
         out.writeOptionalBoolean(sharedStorage);
         Symbol.toStream(targetUri, out);
+        out.writeVInt(fileFormat.ordinal());
+        out.writeBoolean(columnTypes != null);
+        if (columnTypes != null) {
+            out.writeVInt(columnTypes.size());
+            for (Map.Entry<String, DataType> entry : columnTypes.entrySet()) {
+                out.writeString(entry.getKey());
+                DataType.toStream(entry.getValue(), out);
+            }
+        }
     }
 
     @Override
@@ -124,6 +172,7 @@ public class FileUriCollectNode extends CollectNode {
                 .add("projections", projections)
                 .add("outputTypes", outputTypes)
                 .add("compression", compression)
+                .add("fileFormat", fileFormat)
                 .add("sharedStorageDefault", sharedStorage)
                 .toString();
     }
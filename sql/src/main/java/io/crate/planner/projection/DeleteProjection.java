@@ -0,0 +1,164 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.planner.projection;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import io.crate.DataType;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.symbol.Symbol;
+import io.crate.planner.symbol.Value;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * deletes the documents identified by their <code>_uid</code> on the shard they were collected from.
+ *
+ * Bulk size, concurrency and rate limit are taken from the (dynamic) cluster settings
+ * {@link #BULK_SIZE}, {@link #CONCURRENCY} and {@link #MAX_DOCS_PER_SEC}.
+ */
+public class DeleteProjection extends Projection {
+
+    private final static List<Symbol> OUTPUTS = ImmutableList.<Symbol>of(
+            new Value(DataType.LONG)  // number of rows deleted
+    );
+
+    public final static String BULK_SIZE = "crate.delete.bulk_size";
+    public final static int BULK_SIZE_DEFAULT = 1000;
+
+    public final static String CONCURRENCY = "crate.delete.concurrency";
+    public final static int CONCURRENCY_DEFAULT = 2;
+
+    /**
+     * maximum number of documents deleted per second and shard, 0 means unlimited
+     */
+    public final static String MAX_DOCS_PER_SEC = "crate.delete.max_docs_per_sec";
+    public final static int MAX_DOCS_PER_SEC_DEFAULT = 0;
+
+    private Symbol uidSymbol;
+    private int bulkActions;
+    private int concurrency;
+    private int maxDocsPerSecond;
+
+    public static final ProjectionFactory<DeleteProjection> FACTORY =
+            new ProjectionFactory<DeleteProjection>() {
+        @Override
+        public DeleteProjection newInstance() {
+            return new DeleteProjection();
+        }
+    };
+
+    public DeleteProjection() {}
+
+    public DeleteProjection(Symbol uidSymbol, Settings settings) {
+        this.uidSymbol = uidSymbol;
+        this.bulkActions = settings.getAsInt(BULK_SIZE, BULK_SIZE_DEFAULT);
+        this.concurrency = settings.getAsInt(CONCURRENCY, CONCURRENCY_DEFAULT);
+        this.maxDocsPerSecond = settings.getAsInt(MAX_DOCS_PER_SEC, MAX_DOCS_PER_SEC_DEFAULT);
+        Preconditions.checkArgument(bulkActions > 0, "\"%s\" must be greater than 0.", BULK_SIZE);
+        Preconditions.checkArgument(concurrency > 0, "\"%s\" must be greater than 0.", CONCURRENCY);
+        Preconditions.checkArgument(maxDocsPerSecond >= 0, "\"%s\" must not be negative.", MAX_DOCS_PER_SEC);
+    }
+
+    @Override
+    public RowGranularity requiredGranularity() {
+        return RowGranularity.SHARD;
+    }
+
+    @Override
+    public ProjectionType projectionType() {
+        return ProjectionType.DELETE;
+    }
+
+    @Override
+    public <C, R> R accept(ProjectionVisitor<C, R> visitor, C context) {
+        return visitor.visitDeleteProjection(this, context);
+    }
+
+    @Override
+    public List<? extends Symbol> outputs() {
+        return OUTPUTS;
+    }
+
+    public Symbol uid() {
+        return uidSymbol;
+    }
+
+    public int bulkActions() {
+        return bulkActions;
+    }
+
+    public int concurrency() {
+        return concurrency;
+    }
+
+    @Nullable
+    public Double maxDocsPerSecond() {
+        return maxDocsPerSecond > 0 ? (double) maxDocsPerSecond : null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        DeleteProjection that = (DeleteProjection) o;
+
+        if (bulkActions != that.bulkActions) return false;
+        if (concurrency != that.concurrency) return false;
+        if (maxDocsPerSecond != that.maxDocsPerSecond) return false;
+        if (!uidSymbol.equals(that.uidSymbol)) return false;
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = super.hashCode();
+        result = 31 * result + uidSymbol.hashCode();
+        result = 31 * result + bulkActions;
+        result = 31 * result + concurrency;
+        result = 31 * result + maxDocsPerSecond;
+        return result;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        uidSymbol = Symbol.fromStream(in);
+        bulkActions = in.readVInt();
+        concurrency = in.readVInt();
+        maxDocsPerSecond = in.readVInt();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        Symbol.toStream(uidSymbol, out);
+        out.writeVInt(bulkActions);
+        out.writeVInt(concurrency);
+        out.writeVInt(maxDocsPerSecond);
+    }
+}
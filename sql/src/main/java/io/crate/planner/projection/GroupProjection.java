@@ -21,6 +21,7 @@
 
 package io.crate.planner.projection;
 
+import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.Aggregation;
 import io.crate.planner.symbol.Symbol;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -36,6 +37,9 @@ public class GroupProjection extends Projection {
     List<Aggregation> values;
     List<Symbol> outputs;
 
+    private RowGranularity requiredGranularity = RowGranularity.CLUSTER;
+    private boolean streaming = false;
+
     public static final ProjectionFactory<GroupProjection> FACTORY = new ProjectionFactory<GroupProjection>() {
         @Override
         public GroupProjection newInstance() {
@@ -67,6 +71,27 @@ public class GroupProjection extends Projection {
         this.values = values;
     }
 
+    @Override
+    public RowGranularity requiredGranularity() {
+        return requiredGranularity;
+    }
+
+    public void requiredGranularity(RowGranularity requiredGranularity) {
+        this.requiredGranularity = requiredGranularity;
+    }
+
+    /**
+     * @return true if the rows of every group arrive as a single run, so the groups
+     *         can be emitted one after another instead of being collected in a hash table
+     */
+    public boolean streaming() {
+        return streaming;
+    }
+
+    public void streaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     @Override
     public ProjectionType projectionType() {
         return ProjectionType.GROUP;
@@ -98,6 +123,8 @@ public class GroupProjection extends Projection {
         for (int i = 0; i < size; i++) {
             values.add((Aggregation) Symbol.fromStream(in));
         }
+        requiredGranularity = RowGranularity.fromStream(in);
+        streaming = in.readBoolean();
     }
 
     @Override
@@ -111,6 +138,8 @@ public class GroupProjection extends Projection {
         for (Symbol symbol : values) {
             Symbol.toStream(symbol, out);
         }
+        RowGranularity.toStream(requiredGranularity, out);
+        out.writeBoolean(streaming);
     }
 
     @Override
@@ -122,6 +151,8 @@ public class GroupProjection extends Projection {
 
         if (!keys.equals(that.keys)) return false;
         if (values != null ? !values.equals(that.values) : that.values != null) return false;
+        if (requiredGranularity != that.requiredGranularity) return false;
+        if (streaming != that.streaming) return false;
 
         return true;
     }
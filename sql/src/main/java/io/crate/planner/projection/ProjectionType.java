@@ -28,7 +28,8 @@ public enum ProjectionType {
     COLUMN(ColumnProjection.FACTORY),
     AGGREGATION(AggregationProjection.FACTORY),
     WRITER(WriterProjection.FACTORY),
-    INDEX_WRITER(IndexWriterProjection.FACTORY);
+    INDEX_WRITER(IndexWriterProjection.FACTORY),
+    DELETE(DeleteProjection.FACTORY);
 
     private final Projection.ProjectionFactory factory;
 
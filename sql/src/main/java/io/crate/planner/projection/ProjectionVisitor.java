@@ -66,5 +66,9 @@ public class ProjectionVisitor<C, R> {
     public R visitIndexWriterProjection(IndexWriterProjection projection, C context) {
         return visitProjection(projection, context);
     }
+
+    public R visitDeleteProjection(DeleteProjection projection, C context) {
+        return visitProjection(projection, context);
+    }
 }
 
@@ -51,10 +51,13 @@ public class WriterProjection extends Projection {
     private final static Reference SHARD_ID_REF = new Reference(SysShardsTableInfo.INFOS.get(new ColumnIdent("id")));
     private final static Reference TABLE_NAME_REF = new Reference(SysShardsTableInfo.INFOS.get(new ColumnIdent("table_name")));
 
+    /**
+     * resolves to the file name without extension, the extension depends on the file format
+     */
     public static final Symbol DIRECTORY_TO_FILENAME = new Function(new FunctionInfo(
             new FunctionIdent(FormatFunction.NAME, Arrays.asList(DataType.STRING, DataType.STRING, DataType.STRING)),
             DataType.STRING),
-            Arrays.<Symbol>asList(new StringLiteral("%s_%s.json"), TABLE_NAME_REF, SHARD_ID_REF)
+            Arrays.<Symbol>asList(new StringLiteral("%s_%s"), TABLE_NAME_REF, SHARD_ID_REF)
     );
 
     private Symbol uri;
@@ -216,6 +219,8 @@ public class WriterProjection extends Projection {
             p.uri = nUri;
             p.outputNames = outputNames;
             p.settings = settings;
+            p.inputs = inputs;
+            p.isDirectoryUri = isDirectoryUri;
             return p;
         }
         return this;
@@ -41,8 +41,10 @@ import io.crate.operation.reference.sys.shard.SysShardExpressionModule;
 import io.crate.operation.reference.sys.shard.blob.BlobShardExpressionModule;
 import io.crate.operation.scalar.ScalarFunctionModule;
 import io.crate.planner.PlanModule;
+import io.crate.planner.projection.DeleteProjection;
 import io.crate.rest.action.RestSQLAction;
 import org.elasticsearch.cluster.settings.ClusterDynamicSettingsModule;
+import org.elasticsearch.cluster.settings.Validator;
 import org.elasticsearch.common.component.LifecycleComponent;
 import org.elasticsearch.common.inject.Module;
 import org.elasticsearch.common.settings.ImmutableSettings;
@@ -133,5 +135,8 @@ public class SQLPlugin extends AbstractPlugin {
     public void onModule(ClusterDynamicSettingsModule clusterDynamicSettingsModule) {
         // add our dynamic cluster settings
         clusterDynamicSettingsModule.addDynamicSettings(Constants.CUSTOM_ANALYSIS_SETTINGS_PREFIX + "*");
+        clusterDynamicSettingsModule.addDynamicSetting(DeleteProjection.BULK_SIZE, Validator.POSITIVE_INTEGER);
+        clusterDynamicSettingsModule.addDynamicSetting(DeleteProjection.CONCURRENCY, Validator.POSITIVE_INTEGER);
+        clusterDynamicSettingsModule.addDynamicSetting(DeleteProjection.MAX_DOCS_PER_SEC, Validator.NON_NEGATIVE_INTEGER);
     }
 }
@@ -0,0 +1,146 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.shard.ShardId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Processor that batches requests for a single, already known shard and sends them
+ * using the {@link TransportShardBulkAction} so that no routing or id based shard
+ * resolution is required.
+ *
+ * It lives inside the <code>org.elasticsearch.action.bulk</code> package because the
+ * {@link BulkShardRequest} and {@link BulkItemRequest} constructors aren't public.
+ *
+ * {@link #add(ActionRequest)} blocks if <code>concurrency</code> bulk requests are
+ * already in flight or if the optional rate limit (items per second) is exceeded.
+ */
+public class BulkShardProcessor {
+
+    public interface Listener {
+
+        void beforeBulk(BulkShardRequest request);
+
+        void afterBulk(BulkShardRequest request, BulkShardResponse response);
+
+        void afterBulk(BulkShardRequest request, Throwable e);
+    }
+
+    private final TransportShardBulkAction transportShardBulkAction;
+    private final ShardId shardId;
+    private final int bulkSize;
+    private final Semaphore semaphore;
+    private final RateLimiter rateLimiter;
+    private final Listener listener;
+
+    private List<BulkItemRequest> items;
+    private int itemId = 0;
+    private boolean closed = false;
+
+    public BulkShardProcessor(TransportShardBulkAction transportShardBulkAction,
+                              ShardId shardId,
+                              int bulkSize,
+                              int concurrency,
+                              @Nullable Double itemsPerSecond,
+                              Listener listener) {
+        this.transportShardBulkAction = transportShardBulkAction;
+        this.shardId = shardId;
+        this.bulkSize = bulkSize;
+        this.semaphore = new Semaphore(concurrency);
+        this.rateLimiter = itemsPerSecond == null ? null : RateLimiter.create(itemsPerSecond);
+        this.listener = listener;
+        this.items = new ArrayList<>(bulkSize);
+    }
+
+    public synchronized void add(ActionRequest request) {
+        if (closed) {
+            throw new IllegalStateException("bulk shard processor already closed");
+        }
+        items.add(new BulkItemRequest(itemId++, request));
+        if (items.size() >= bulkSize) {
+            execute();
+        }
+    }
+
+    /**
+     * sends all pending requests, afterwards no more requests can be added
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (items.size() > 0) {
+            execute();
+        }
+    }
+
+    private void execute() {
+        final BulkShardRequest request = new BulkShardRequest(
+                shardId.getIndex(),
+                shardId.id(),
+                false,
+                items.toArray(new BulkItemRequest[items.size()]));
+        items = new ArrayList<>(bulkSize);
+
+        if (rateLimiter != null) {
+            rateLimiter.acquire(request.items().length);
+        }
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listener.beforeBulk(request);
+            listener.afterBulk(request, e);
+            return;
+        }
+
+        listener.beforeBulk(request);
+        transportShardBulkAction.execute(request, new ActionListener<BulkShardResponse>() {
+            @Override
+            public void onResponse(BulkShardResponse response) {
+                try {
+                    listener.afterBulk(request, response);
+                } finally {
+                    semaphore.release();
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                try {
+                    listener.afterBulk(request, e);
+                } finally {
+                    semaphore.release();
+                }
+            }
+        });
+    }
+}
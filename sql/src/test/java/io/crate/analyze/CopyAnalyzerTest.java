@@ -106,6 +106,28 @@ public class CopyAnalyzerTest extends BaseAnalyzerTest {
         assertThat((String)((Parameter)analysis.uri()).value(), is(path));
     }
 
+    @Test
+    public void testCopyFromWithCompression() throws Exception {
+        CopyAnalysis analysis = (CopyAnalysis)analyze("copy users from '/some/file.json.lz4' with (compression='lz4')");
+        assertThat(analysis.settings().get("compression"), is("lz4"));
+    }
+
+    @Test( expected = IllegalArgumentException.class)
+    public void testCopyFromWithUnsupportedCompression() throws Exception {
+        analyze("copy users from '/some/file.json.zst' with (compression='zstd')");
+    }
+
+    @Test
+    public void testCopyFromWithFormat() throws Exception {
+        CopyAnalysis analysis = (CopyAnalysis)analyze("copy users from '/some/file.csv' with (format='csv')");
+        assertThat(analysis.settings().get("format"), is("csv"));
+    }
+
+    @Test( expected = IllegalArgumentException.class)
+    public void testCopyToWithUnsupportedFormat() throws Exception {
+        analyze("copy users to '/some/file.parquet' with (format='parquet')");
+    }
+
     @Test
     public void testCopyToFile() throws Exception {
         CopyAnalysis analysis = (CopyAnalysis)analyze("copy users to '/blah.txt'");
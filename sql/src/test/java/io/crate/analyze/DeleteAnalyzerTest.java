@@ -24,6 +24,9 @@ package io.crate.analyze;
 import com.google.common.collect.ImmutableList;
 import io.crate.PartitionName;
 import io.crate.metadata.MetaDataModule;
+import io.crate.metadata.TableIdent;
+import io.crate.metadata.blob.BlobSchemaInfo;
+import io.crate.metadata.blob.BlobTableInfo;
 import io.crate.metadata.doc.DocSchemaInfo;
 import io.crate.metadata.sys.MetaDataSysModule;
 import io.crate.metadata.table.SchemaInfo;
@@ -33,6 +36,7 @@ import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.Function;
 import io.crate.planner.symbol.Reference;
 import io.crate.planner.symbol.StringLiteral;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.inject.Module;
 import org.hamcrest.Matchers;
 import org.hamcrest.core.IsInstanceOf;
@@ -59,6 +63,12 @@ public class DeleteAnalyzerTest extends BaseAnalyzerTest {
             when(schemaInfo.getTableInfo(TEST_PARTITIONED_TABLE_IDENT.name()))
                     .thenReturn(TEST_PARTITIONED_TABLE_INFO);
             schemaBinder.addBinding(DocSchemaInfo.NAME).toInstance(schemaInfo);
+
+            SchemaInfo blobSchemaInfo = mock(SchemaInfo.class);
+            when(blobSchemaInfo.systemSchema()).thenReturn(true);
+            when(blobSchemaInfo.getTableInfo("screenshots")).thenReturn(new BlobTableInfo(
+                    new TableIdent(BlobSchemaInfo.NAME, "screenshots"), ".blob_screenshots", null, 5, new BytesRef("0")));
+            schemaBinder.addBinding(BlobSchemaInfo.NAME).toInstance(blobSchemaInfo);
         }
     }
 
@@ -113,4 +123,19 @@ public class DeleteAnalyzerTest extends BaseAnalyzerTest {
         assertThat(analysis.whereClause().noMatch(), Matchers.is(false));
         assertEquals(ImmutableList.<String>of(), analysis.whereClause().partitions());
     }
+
+    @Test
+    public void testDeleteBlobsByDigest() throws Exception {
+        DeleteAnalysis analysis = (DeleteAnalysis) analyze(
+                "delete from blob.screenshots where digest in " +
+                        "('6f10281ad07d4a35c6ec2f993e6376032b77181d', '62cdb7020ff920e5aa642c3d4066950dd1f01f4d')");
+        assertThat(analysis.table(), IsInstanceOf.instanceOf(BlobTableInfo.class));
+        assertThat(analysis.ids(), Matchers.containsInAnyOrder(
+                "6f10281ad07d4a35c6ec2f993e6376032b77181d", "62cdb7020ff920e5aa642c3d4066950dd1f01f4d"));
+    }
+
+    @Test( expected = UnsupportedOperationException.class )
+    public void testDeleteBlobsWithoutDigest() throws Exception {
+        analyze("delete from blob.screenshots");
+    }
 }
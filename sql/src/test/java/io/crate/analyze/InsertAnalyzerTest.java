@@ -35,7 +35,11 @@ import io.crate.metadata.sys.MetaDataSysModule;
 import io.crate.metadata.table.SchemaInfo;
 import io.crate.metadata.table.TableInfo;
 import io.crate.metadata.table.TestingTableInfo;
+import io.crate.operation.Input;
 import io.crate.planner.RowGranularity;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.collect.MapBuilder;
 import org.elasticsearch.common.inject.Module;
 import org.junit.Test;
@@ -417,4 +421,39 @@ public class InsertAnalyzerTest extends BaseAnalyzerTest {
                 hasEntry("date", null));
 
     }
+
+    @Test
+    public void testInsertOnDuplicateKey() throws Exception {
+        InsertAnalysis analysis = (InsertAnalysis) analyze(
+                "insert into users (id, name) values (1, 'Trillian') on duplicate key update name = ?",
+                new Object[]{"Arthur"});
+        assertThat(analysis.sourceMaps().size(), is(1));
+        assertThat(analysis.onDuplicateKeyAssignments().size(), is(1));
+
+        Map.Entry<Reference, Symbol> assignment =
+                analysis.onDuplicateKeyAssignments().entrySet().iterator().next();
+        assertThat(assignment.getKey().info().ident().columnIdent().fqn(), is("name"));
+        assertThat(((Input) assignment.getValue()).value(), is((Object) new BytesRef("Arthur")));
+    }
+
+    @Test
+    public void testInsertWithoutOnDuplicateKey() throws Exception {
+        InsertAnalysis analysis = (InsertAnalysis) analyze("insert into users (id, name) values (1, 'Trillian')");
+        assertThat(analysis.onDuplicateKeyAssignments().size(), is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOnDuplicateKeyUpdatePrimaryKey() throws Exception {
+        analyze("insert into users (id, name) values (1, 'Trillian') on duplicate key update id = 2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOnDuplicateKeyRepeatedColumn() throws Exception {
+        analyze("insert into users (id, name) values (1, 'Trillian') on duplicate key update name = 'a', name = 'b'");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOnDuplicateKeyWithoutPrimaryKey() throws Exception {
+        analyze("insert into parted (id, name, date) values (1, 'Trillian', 0) on duplicate key update name = 'Arthur'");
+    }
 }
@@ -42,7 +42,6 @@ import io.crate.operation.projectors.TopN;
 import io.crate.operation.scalar.DateTruncFunction;
 import io.crate.planner.Plan;
 import io.crate.planner.RowGranularity;
-import io.crate.planner.node.dml.ESDeleteByQueryNode;
 import io.crate.planner.node.dml.ESDeleteNode;
 import io.crate.planner.node.dml.ESIndexNode;
 import io.crate.planner.node.dml.ESUpdateNode;
@@ -389,48 +388,6 @@ public class TransportExecutorTest extends SQLTransportIntegrationTest {
         assertThat((Long) rows[2][2], is(0L));
     }
 
-    @Test
-    public void testESDeleteByQueryTask() throws Exception {
-        insertCharacters();
-
-        Function whereClause = new Function(new FunctionInfo(
-                new FunctionIdent(EqOperator.NAME, asList(DataType.STRING, DataType.STRING)),
-                DataType.BOOLEAN),
-                Arrays.<Symbol>asList(id_ref, new IntegerLiteral(2)));
-
-        ESDeleteByQueryNode node = new ESDeleteByQueryNode(
-                new String[]{"characters"},
-                new WhereClause(whereClause));
-        Plan plan = new Plan();
-        plan.add(node);
-        Job job = executor.newJob(plan);
-        ESDeleteByQueryTask task = (ESDeleteByQueryTask) job.tasks().get(0);
-
-        task.start();
-        Object[][] rows = task.result().get(0).get();
-        assertThat(rows.length, is(1));
-        assertThat((Long)rows[0][0], is(-1L));
-
-        // verify deletion
-        ESSearchNode searchNode = new ESSearchNode(
-                new String[]{"characters"},
-                Arrays.<Symbol>asList(id_ref, name_ref),
-                Arrays.<Reference>asList(name_ref),
-                new boolean[]{false},
-                null, null,
-                new WhereClause(whereClause),
-                null
-        );
-        plan = new Plan();
-        plan.add(searchNode);
-        job = executor.newJob(plan);
-        ESSearchTask searchTask = (ESSearchTask) job.tasks().get(0);
-
-        searchTask.start();
-        rows = searchTask.result().get(0).get();
-        assertThat(rows.length, is(0));
-    }
-
     @Test
     public void testESDeleteTask() throws Exception {
         insertCharacters();
@@ -34,7 +34,6 @@ import io.crate.operation.predicate.PredicateModule;
 import io.crate.operation.scalar.MatchFunction;
 import io.crate.operation.scalar.ScalarFunctionModule;
 import io.crate.planner.RowGranularity;
-import io.crate.planner.node.dml.ESDeleteByQueryNode;
 import io.crate.planner.node.dql.ESSearchNode;
 import io.crate.planner.symbol.*;
 import io.crate.testing.TestingHelpers;
@@ -236,6 +235,24 @@ public class ESQueryBuilderTest {
         assertEquals(ImmutableSet.of("alpha", "bravo", "charlie"), new HashSet<>(actualList));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWhereReferenceInLargeListUsesTermsFilter() throws Exception {
+        FunctionImplementation inListImpl = functions.get(
+                new FunctionIdent(InOperator.NAME, Arrays.asList(DataType.LONG, DataType.LONG_SET)));
+        Set<Long> values = new HashSet<>();
+        for (long i = 0; i < 1000; i++) {
+            values.add(i);
+        }
+        Function inList = new Function(inListImpl.info(),
+                Arrays.<Symbol>asList(long_ref, new SetLiteral(DataType.LONG, values)));
+
+        BytesReference reference = generator.convert(new WhereClause(inList));
+        Map<String, Object> query = (Map<String, Object>) XContentHelper.convertToMap(reference, true).v2().get("query");
+        Map<String, Object> terms = (Map<String, Object>) ((Map) ((Map) query.get("filtered")).get("filter")).get("terms");
+        assertThat(((List) terms.get(long_ref.info().ident().columnIdent().fqn())).size(), is(1000));
+    }
+
     @Test
     public void testWhereReferenceMatchString() throws Exception {
         FunctionIdent functionIdent = new FunctionIdent(
@@ -296,20 +313,6 @@ public class ESQueryBuilderTest {
         generator.convert(new WhereClause(whereClause));
     }
 
-    @Test
-    public void testConvertESDeleteByQueryNode() throws Exception {
-        FunctionImplementation eqImpl = functions.get(new FunctionIdent(EqOperator.NAME, typeX2(DataType.STRING)));
-        Function whereClause = new Function(eqImpl.info(), Arrays.<Symbol>asList(name_ref, new StringLiteral("Marvin")));
-
-        ESDeleteByQueryNode deleteByQueryNode = new ESDeleteByQueryNode(
-                new String[]{characters.name()},
-                new WhereClause(whereClause));
-
-        BytesReference reference = generator.convert(deleteByQueryNode);
-        String actual = reference.toUtf8();
-        assertThat(actual, is("{\"query\":{\"term\":{\"name\":\"Marvin\"}}}"));
-    }
-
     @Test
     public void testSelect_OnlyVersion() throws Exception {
         Reference version_ref = TestingHelpers.createReference("_version", DataType.INTEGER);
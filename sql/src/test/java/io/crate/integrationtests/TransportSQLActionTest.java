@@ -372,7 +372,7 @@ public class TransportSQLActionTest extends SQLTransportIntegrationTest {
         client().prepareIndex("test", "default", "id1").setSource("{}").execute().actionGet();
         refresh();
         execute("delete from test");
-        assertEquals(-1, response.rowCount());
+        assertEquals(1, response.rowCount());
         assertThat(response.duration(), greaterThanOrEqualTo(0L));
         execute("select \"_id\" from test");
         assertEquals(0, response.rowCount());
@@ -2827,8 +2827,7 @@ public class TransportSQLActionTest extends SQLTransportIntegrationTest {
         refresh();
 
         execute("delete from quotes where id=1");
-        // no rowCount available for deleteByQuery requests
-        assertEquals(-1L, response.rowCount());
+        assertEquals(1L, response.rowCount());
         refresh();
 
         execute("select quote from quotes where id=1");
@@ -3220,7 +3219,7 @@ public class TransportSQLActionTest extends SQLTransportIntegrationTest {
         refresh();
 
         execute("delete from quotes where timestamp = 1395874800000 and id = 1");
-        assertEquals(-1, response.rowCount());
+        assertEquals(1, response.rowCount());
         refresh();
 
         execute("select id, quote from quotes where timestamp = 1395874800000");
@@ -3541,7 +3540,7 @@ public class TransportSQLActionTest extends SQLTransportIntegrationTest {
         assertThat((Long)response.rows()[0][0], is(1L));
 
         execute("delete from quotes where created['user_id'] = 'Arthur' and id = 1 and created['date'] = 1395874800000");
-        assertEquals(-1L, response.rowCount());
+        assertEquals(1L, response.rowCount());
         refresh();
 
         execute("select * from quotes");
@@ -0,0 +1,143 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.module.sql.benchmark;
+
+import com.carrotsearch.junitbenchmarks.BenchmarkOptions;
+import com.carrotsearch.junitbenchmarks.BenchmarkRule;
+import com.carrotsearch.junitbenchmarks.annotation.AxisRange;
+import com.carrotsearch.junitbenchmarks.annotation.BenchmarkMethodChart;
+import com.google.common.collect.ImmutableList;
+import io.crate.DataType;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Scalar;
+import io.crate.operation.Input;
+import io.crate.operation.operator.LikeOperator;
+import io.crate.planner.symbol.StringLiteral;
+import io.crate.planner.symbol.Symbol;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * compares the evaluation of LIKE with a pattern compiled once per query
+ * to the evaluation with a regular expression compiled for every row
+ */
+@AxisRange(min = 0)
+@BenchmarkMethodChart(filePrefix = "benchmark-like")
+public class LikeOperatorBenchmark {
+
+    public static final int BENCHMARK_ROUNDS = 100;
+    public static final int NUMBER_OF_VALUES = 100000;
+
+    private static final BytesRef[] VALUES = new BytesRef[NUMBER_OF_VALUES];
+
+    static {
+        Random random = new Random(42);
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = new BytesRef("country " + random.nextInt(1000) + " of continent " + random.nextInt(7));
+        }
+    }
+
+    private final LikeOperator likeOperator = new LikeOperator(new FunctionInfo(
+            new FunctionIdent(LikeOperator.NAME, ImmutableList.of(DataType.STRING, DataType.STRING)),
+            DataType.BOOLEAN));
+
+    @Rule
+    public TestRule benchmarkRun = new BenchmarkRule();
+
+    private int evaluateRegex(String regex) {
+        int matches = 0;
+        for (BytesRef value : VALUES) {
+            if (Pattern.matches(regex, value.utf8ToString())) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private int evaluateCompiled(String pattern) {
+        StringLiteral patternLiteral = new StringLiteral(pattern);
+        Scalar<Boolean, BytesRef> scalar = likeOperator.compile(
+                ImmutableList.<Symbol>of(new StringLiteral("value"), patternLiteral));
+        ValueInput input = new ValueInput();
+        int matches = 0;
+        for (BytesRef value : VALUES) {
+            input.value = value;
+            if (scalar.evaluate(input, patternLiteral)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 10)
+    @Test
+    public void testLikePrefixRegex() {
+        evaluateRegex("^country 1.*$");
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 10)
+    @Test
+    public void testLikePrefixCompiled() {
+        evaluateCompiled("country 1%");
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 10)
+    @Test
+    public void testLikeContainsRegex() {
+        evaluateRegex("^.*continent 3.*$");
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 10)
+    @Test
+    public void testLikeContainsCompiled() {
+        evaluateCompiled("%continent 3%");
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 10)
+    @Test
+    public void testLikeGeneralRegex() {
+        evaluateRegex("^country .2 of .*3$");
+    }
+
+    @BenchmarkOptions(benchmarkRounds = BENCHMARK_ROUNDS, warmupRounds = 10)
+    @Test
+    public void testLikeGeneralCompiled() {
+        evaluateCompiled("country _2 of %3");
+    }
+
+    static class ValueInput implements Input<BytesRef> {
+
+        BytesRef value;
+
+        @Override
+        public BytesRef value() {
+            return value;
+        }
+    }
+}
@@ -27,6 +27,8 @@ import io.crate.metadata.FunctionIdent;
 import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.AggregationState;
 import io.crate.operation.aggregation.AggregationTest;
+import io.crate.planner.symbol.Literal;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.junit.Test;
@@ -116,6 +118,29 @@ public class CollectSetAggregationTest extends AggregationTest {
         assertTrue(((Set)result[0][0]).contains("Youri"));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStringReduceAndSerialization() throws Exception {
+        FunctionIdent fi = new FunctionIdent("collect_set", ImmutableList.of(DataType.STRING));
+        AggregationFunction impl = (AggregationFunction) functions.get(fi);
+        AggregationState state = impl.newState();
+        AggregationState other = impl.newState();
+        impl.iterate(state, Literal.forValue(new BytesRef("Youri")));
+        impl.iterate(other, Literal.forValue(new BytesRef("Ruben")));
+        impl.iterate(other, Literal.forValue(new BytesRef("Youri")));
+
+        BytesStreamOutput streamOutput = new BytesStreamOutput();
+        other.writeTo(streamOutput);
+        AggregationState streamed = impl.newState();
+        streamed.readFrom(new BytesStreamInput(streamOutput.bytes()));
+        state.reduce(streamed);
+
+        Set<BytesRef> values = (Set<BytesRef>) state.value();
+        assertEquals(2, values.size());
+        assertTrue(values.contains(new BytesRef("Ruben")));
+        assertTrue(values.contains(new BytesRef("Youri")));
+    }
+
     @Test
     public void testBoolean() throws Exception {
         Object[][] result = executeAggregation(DataType.BOOLEAN, new Object[][]{{true}, {false}, {false}});
@@ -0,0 +1,149 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.DataType;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationTest;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.LongLiteral;
+import io.crate.planner.symbol.Symbol;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HyperLogLogDistinctAggregationTest extends AggregationTest {
+
+    private Object[][] executeAggregation(DataType dataType, Object[][] data) throws Exception {
+        return executeAggregation("hyperloglog_distinct", dataType, data);
+    }
+
+    private HyperLogLogDistinctAggregation.HllState newState(long... values) {
+        HyperLogLogDistinctAggregation.HllState state = new HyperLogLogDistinctAggregation.HllState();
+        AggregationFunction impl = (AggregationFunction) functions.get(
+                new FunctionIdent("hyperloglog_distinct", ImmutableList.of(DataType.LONG)));
+        for (final long value : values) {
+            impl.iterate(state, new Input<Long>() {
+                @Override
+                public Long value() {
+                    return value;
+                }
+            });
+        }
+        return state;
+    }
+
+    private long[] range(long from, long to) {
+        long[] values = new long[(int) (to - from)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = from + i;
+        }
+        return values;
+    }
+
+    @Test
+    public void testReturnType() throws Exception {
+        FunctionIdent fi = new FunctionIdent("hyperloglog_distinct", ImmutableList.of(DataType.STRING));
+        assertEquals(DataType.LONG, functions.get(fi).info().returnType());
+    }
+
+    @Test
+    public void testString() throws Exception {
+        Object[][] result = executeAggregation(DataType.STRING, new Object[][]{
+                {new BytesRef("Youri")}, {new BytesRef("Ruben")}, {new BytesRef("Youri")}, {null}});
+
+        assertEquals(2L, result[0][0]);
+    }
+
+    @Test
+    public void testNoValues() throws Exception {
+        Object[][] result = executeAggregation(DataType.DOUBLE, new Object[][]{{null}});
+
+        assertEquals(0L, result[0][0]);
+    }
+
+    @Test
+    public void testSparseIsExactForFewValues() throws Exception {
+        HyperLogLogDistinctAggregation.HllState state = newState(range(0, 1000));
+        assertTrue(state.isSparse());
+        assertEquals(1000L, state.value());
+    }
+
+    @Test
+    public void testDenseEstimate() throws Exception {
+        HyperLogLogDistinctAggregation.HllState state = newState(range(0, 100000));
+        assertFalse(state.isSparse());
+        // standard error for precision 14 is ~0.8%
+        assertEquals(100000.0, ((Long) state.value()).doubleValue(), 3000.0);
+    }
+
+    @Test
+    public void testReduceAndStreaming() throws Exception {
+        HyperLogLogDistinctAggregation.HllState sparse = newState(range(0, 1000));
+        HyperLogLogDistinctAggregation.HllState dense = newState(range(500, 50500));
+
+        for (HyperLogLogDistinctAggregation.HllState state : new HyperLogLogDistinctAggregation.HllState[]{sparse, dense}) {
+            BytesStreamOutput out = new BytesStreamOutput();
+            state.writeTo(out);
+            HyperLogLogDistinctAggregation.HllState streamed = new HyperLogLogDistinctAggregation.HllState();
+            streamed.readFrom(new BytesStreamInput(out.bytes()));
+            assertEquals(state.value(), streamed.value());
+            assertEquals(state.isSparse(), streamed.isSparse());
+        }
+
+        HyperLogLogDistinctAggregation.HllState reduced = new HyperLogLogDistinctAggregation.HllState();
+        reduced.reduce(sparse);
+        assertEquals(1000L, reduced.value());
+        reduced.reduce(dense);
+        assertEquals(50500.0, ((Long) reduced.value()).doubleValue(), 1500.0);
+    }
+
+    @Test
+    public void testPrecisionArgument() throws Exception {
+        FunctionIdent fi = new FunctionIdent("hyperloglog_distinct", ImmutableList.of(DataType.LONG, DataType.LONG));
+        AggregationFunction impl = (AggregationFunction) functions.get(fi);
+        HyperLogLogDistinctAggregation.HllState state = (HyperLogLogDistinctAggregation.HllState) impl.newState();
+        impl.iterate(state, new LongLiteral(1L), new LongLiteral(10L));
+        assertEquals(10, state.precision());
+    }
+
+    @Test
+    public void testInvalidPrecision() throws Exception {
+        FunctionIdent fi = new FunctionIdent("hyperloglog_distinct", ImmutableList.of(DataType.LONG, DataType.LONG));
+        AggregationFunction impl = (AggregationFunction) functions.get(fi);
+
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("precision of hyperloglog_distinct must be between 4 and 18, got 20");
+        impl.normalizeSymbol(new Function(new FunctionInfo(fi, DataType.LONG, true),
+                ImmutableList.<Symbol>of(new LongLiteral(1L), new LongLiteral(20L))));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.DataType;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationTest;
+import io.crate.planner.symbol.ArrayLiteral;
+import io.crate.planner.symbol.DoubleLiteral;
+import io.crate.planner.symbol.Function;
+import io.crate.planner.symbol.Literal;
+import io.crate.planner.symbol.Symbol;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PercentileAggregationTest extends AggregationTest {
+
+    private static final FunctionIdent SINGLE_IDENT =
+            new FunctionIdent("percentile", ImmutableList.of(DataType.LONG, DataType.DOUBLE));
+    private static final FunctionIdent ARRAY_IDENT =
+            new FunctionIdent("percentile", ImmutableList.of(DataType.DOUBLE, DataType.DOUBLE_ARRAY));
+
+    private PercentileAggregation.TDigestState execute(FunctionIdent ident, Symbol fractions, Object... values) {
+        AggregationFunction impl = (AggregationFunction) functions.get(ident);
+        PercentileAggregation.TDigestState state = (PercentileAggregation.TDigestState) impl.newState();
+        for (Object value : values) {
+            impl.iterate(state, Literal.forValue(value), fractions);
+        }
+        return state;
+    }
+
+    @Test
+    public void testReturnTypes() throws Exception {
+        assertEquals(DataType.DOUBLE, functions.get(SINGLE_IDENT).info().returnType());
+        assertEquals(DataType.DOUBLE_ARRAY, functions.get(ARRAY_IDENT).info().returnType());
+    }
+
+    @Test
+    public void testSingleFraction() throws Exception {
+        PercentileAggregation.TDigestState state = execute(SINGLE_IDENT, new DoubleLiteral(0.5), 1L, 2L, 3L, null, 4L, 5L);
+        assertEquals(5L, state.count());
+        assertEquals(3.0, state.value());
+    }
+
+    @Test
+    public void testNoValues() throws Exception {
+        assertNull(execute(SINGLE_IDENT, new DoubleLiteral(0.5), new Object[]{null}).value());
+    }
+
+    @Test
+    public void testMergedFractions() throws Exception {
+        ArrayLiteral fractions = new ArrayLiteral(DataType.DOUBLE, new Object[]{0.0, 0.5, 0.99, 1.0});
+        Random random = new Random(42);
+        PercentileAggregation.TDigestState merged = (PercentileAggregation.TDigestState)
+                ((AggregationFunction) functions.get(ARRAY_IDENT)).newState();
+        for (int part = 0; part < 4; part++) {
+            Object[] values = new Object[25000];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextDouble() * 1000;
+            }
+            merged.reduce(execute(ARRAY_IDENT, fractions, values));
+        }
+        assertEquals(100000L, merged.count());
+        assertTrue(merged.numCentroids() < 2000);
+
+        Object[] result = (Object[]) merged.value();
+        assertEquals(0.0, (Double) result[0], 1.0);
+        assertEquals(500.0, (Double) result[1], 10.0);
+        assertEquals(990.0, (Double) result[2], 2.0);
+        assertEquals(1000.0, (Double) result[3], 1.0);
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        ArrayLiteral fractions = new ArrayLiteral(DataType.DOUBLE, new Object[]{0.25, 0.75});
+        Object[] values = new Object[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (double) i;
+        }
+        PercentileAggregation.TDigestState state = execute(ARRAY_IDENT, fractions, values);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        state.writeTo(out);
+        PercentileAggregation.TDigestState streamed = new PercentileAggregation.TDigestState();
+        streamed.readFrom(new BytesStreamInput(out.bytes()));
+
+        Object[] expected = (Object[]) state.value();
+        Object[] actual = (Object[]) streamed.value();
+        assertEquals(expected[0], actual[0]);
+        assertEquals(expected[1], actual[1]);
+    }
+
+    @Test
+    public void testCompareToOrdersByPercentile() throws Exception {
+        DoubleLiteral median = new DoubleLiteral(0.5);
+        PercentileAggregation.TDigestState small = execute(SINGLE_IDENT, median, 1L, 2L, 3L, 4L, 5L);
+        PercentileAggregation.TDigestState large = execute(SINGLE_IDENT, median, 10L, 20L, 30L);
+        PercentileAggregation.TDigestState empty = execute(SINGLE_IDENT, median, new Object[]{null});
+
+        // small has more values but the smaller median
+        assertTrue(small.compareTo(large) < 0);
+        assertTrue(large.compareTo(small) > 0);
+        assertEquals(0, small.compareTo(execute(SINGLE_IDENT, median, 3L, 2L, 1L, 5L, 4L)));
+
+        assertTrue(empty.compareTo(small) < 0);
+        assertTrue(small.compareTo(empty) > 0);
+        assertEquals(0, empty.compareTo(new PercentileAggregation.TDigestState()));
+        assertTrue(small.compareTo(null) > 0);
+    }
+
+    @Test
+    public void testCompareToWithManyFractions() throws Exception {
+        ArrayLiteral fractions = new ArrayLiteral(DataType.DOUBLE, new Object[]{0.0, 1.0});
+        PercentileAggregation.TDigestState state = execute(ARRAY_IDENT, fractions, 1.0, 5.0);
+        // same minimum, the maximum decides
+        assertTrue(state.compareTo(execute(ARRAY_IDENT, fractions, 1.0, 9.0)) < 0);
+        assertTrue(state.compareTo(execute(ARRAY_IDENT, fractions, 2.0, 3.0)) < 0);
+    }
+
+    @Test
+    public void testInvalidFraction() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("percentile fractions must be numbers between 0 and 1, got 1.5");
+        functions.get(SINGLE_IDENT).normalizeSymbol(new Function(new FunctionInfo(SINGLE_IDENT, DataType.DOUBLE, true),
+                ImmutableList.<Symbol>of(new DoubleLiteral(1.5), new DoubleLiteral(1.5))));
+    }
+}
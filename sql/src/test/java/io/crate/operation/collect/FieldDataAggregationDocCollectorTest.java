@@ -0,0 +1,186 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.DataType;
+import io.crate.analyze.WhereClause;
+import io.crate.integrationtests.SQLTransportIntegrationTest;
+import io.crate.metadata.*;
+import io.crate.metadata.doc.DocSchemaInfo;
+import io.crate.operation.ImplementationSymbolVisitor;
+import io.crate.operation.aggregation.impl.AverageAggregation;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.operation.aggregation.impl.MaximumAggregation;
+import io.crate.operation.aggregation.impl.MinimumAggregation;
+import io.crate.operation.projectors.ProjectionToProjectorVisitor;
+import io.crate.operation.reference.doc.RawCollectorExpression;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.node.dql.CollectNode;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.symbol.Aggregation;
+import io.crate.planner.symbol.InputColumn;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
+import io.crate.test.integration.CrateIntegrationTest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Provider;
+import org.elasticsearch.indices.IndicesService;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.core.Is.is;
+
+@CrateIntegrationTest.ClusterScope(scope = CrateIntegrationTest.Scope.SUITE, numNodes = 1)
+public class FieldDataAggregationDocCollectorTest extends SQLTransportIntegrationTest {
+
+    private static final String TABLE_NAME = "measurements";
+    private static final TableIdent TABLE_IDENT = new TableIdent(DocSchemaInfo.NAME, TABLE_NAME);
+
+    private ShardCollectService shardCollectService;
+    private ProjectionToProjectorVisitor nodeProjectorVisitor;
+    private Routing routing;
+
+    @Before
+    public void prepare() {
+        execute(String.format("create table %s (id integer, i integer, s short, f float) " +
+                "clustered into 1 shards with(number_of_replicas=0)", TABLE_NAME));
+        ensureGreen();
+        // every refresh creates a new segment
+        execute(String.format("insert into %s (id, i, s, f) values (?, ?, ?, ?), (?, ?, ?, ?)", TABLE_NAME),
+                new Object[]{1, 3, 10, 1.5, 2, null, null, null});
+        refresh();
+        execute(String.format("insert into %s (id, i, s, f) values (?, ?, ?, ?)", TABLE_NAME),
+                new Object[]{3, -7, 2, -2.5});
+        refresh();
+        execute(String.format("insert into %s (id, i, s, f) values (?, ?, ?, ?), (?, ?, ?, ?)", TABLE_NAME),
+                new Object[]{4, 12, null, 4.0, 5, null, 30, null});
+        refresh();
+
+        shardCollectService = cluster().getInstance(IndicesService.class)
+                .indexServiceSafe(TABLE_NAME)
+                .shardInjectorSafe(0)
+                .getInstance(ShardCollectService.class);
+        routing = cluster().getInstance(DocSchemaInfo.class)
+                .getTableInfo(TABLE_NAME).getRouting(WhereClause.MATCH_ALL);
+        ImplementationSymbolVisitor symbolVisitor = new ImplementationSymbolVisitor(
+                cluster().getInstance(ReferenceResolver.class),
+                cluster().getInstance(Functions.class),
+                RowGranularity.NODE);
+        nodeProjectorVisitor = new ProjectionToProjectorVisitor(new Provider<Client>() {
+            @Override
+            public Client get() {
+                return client();
+            }
+        }, symbolVisitor);
+    }
+
+    private Reference reference(String column, DataType type) {
+        return new Reference(new ReferenceInfo(new ReferenceIdent(TABLE_IDENT, column), RowGranularity.DOC, type));
+    }
+
+    /**
+     * aggregates the collected column at <code>inputIndex</code>, or counts the documents if no argument types are given
+     */
+    private Aggregation aggregation(String name, DataType returnType, int inputIndex, DataType... argumentTypes) {
+        FunctionInfo info = new FunctionInfo(new FunctionIdent(name, Arrays.asList(argumentTypes)), returnType);
+        List<Symbol> inputs = new ArrayList<>();
+        if (argumentTypes.length > 0) {
+            inputs.add(new InputColumn(inputIndex));
+        }
+        return new Aggregation(info, inputs, Aggregation.Step.ITER, Aggregation.Step.FINAL);
+    }
+
+    private CollectNode collectNode(List<Symbol> toCollect, List<Aggregation> aggregations) {
+        CollectNode collectNode = new CollectNode("fieldDataCollect", routing, toCollect,
+                ImmutableList.<Projection>of(new AggregationProjection(aggregations)));
+        collectNode.maxRowGranularity(RowGranularity.DOC);
+        return collectNode;
+    }
+
+    private Object[] collect(CollectNode collectNode, Class<?> expectedCollector) throws Exception {
+        ShardProjectorChain projectorChain = new ShardProjectorChain(1, collectNode.projections(), nodeProjectorVisitor);
+        CrateCollector collector = shardCollectService.getCollector(collectNode, projectorChain);
+        assertThat(collector.getClass().getName(), is(expectedCollector.getName()));
+        projectorChain.startProjections();
+        collector.doCollect();
+        Object[][] rows = projectorChain.result().get();
+        assertThat(rows.length, is(1));
+        return rows[0];
+    }
+
+    @Test
+    public void testCountSkipsMissingValues() throws Exception {
+        Object[] row = collect(collectNode(
+                ImmutableList.<Symbol>of(reference("i", DataType.INTEGER)),
+                Arrays.asList(
+                        aggregation(CountAggregation.NAME, DataType.LONG, 0),
+                        aggregation(CountAggregation.NAME, DataType.LONG, 0, DataType.INTEGER),
+                        aggregation(AverageAggregation.NAME, DataType.DOUBLE, 0, DataType.INTEGER))
+        ), FieldDataAggregationDocCollector.class);
+
+        assertThat((Long) row[0], is(5L));
+        assertThat((Long) row[1], is(3L));
+        assertThat((Double) row[2], closeTo(8.0 / 3, 0.0001));
+    }
+
+    @Test
+    public void testMinMaxKeepTheColumnType() throws Exception {
+        Object[] row = collect(collectNode(
+                ImmutableList.<Symbol>of(
+                        reference("i", DataType.INTEGER),
+                        reference("s", DataType.SHORT),
+                        reference("f", DataType.FLOAT)),
+                Arrays.asList(
+                        aggregation(MinimumAggregation.NAME, DataType.INTEGER, 0, DataType.INTEGER),
+                        aggregation(MaximumAggregation.NAME, DataType.INTEGER, 0, DataType.INTEGER),
+                        aggregation(MinimumAggregation.NAME, DataType.SHORT, 1, DataType.SHORT),
+                        aggregation(MaximumAggregation.NAME, DataType.SHORT, 1, DataType.SHORT),
+                        aggregation(MinimumAggregation.NAME, DataType.FLOAT, 2, DataType.FLOAT),
+                        aggregation(MaximumAggregation.NAME, DataType.FLOAT, 2, DataType.FLOAT))
+        ), FieldDataAggregationDocCollector.class);
+
+        // the values of all segments are accumulated
+        assertThat((Integer) row[0], is(-7));
+        assertThat((Integer) row[1], is(12));
+        assertThat((Short) row[2], is((short) 2));
+        assertThat((Short) row[3], is((short) 30));
+        assertThat((Float) row[4], is(-2.5f));
+        assertThat((Float) row[5], is(4.0f));
+    }
+
+    @Test
+    public void testFallbackIfInputIsNotAFieldCacheExpression() throws Exception {
+        Object[] row = collect(collectNode(
+                ImmutableList.<Symbol>of(reference(RawCollectorExpression.COLUMN_NAME, DataType.STRING)),
+                Arrays.asList(aggregation(CountAggregation.NAME, DataType.LONG, 0, DataType.STRING))
+        ), LuceneDocCollector.class);
+
+        assertThat((Long) row[0], is(5L));
+    }
+}
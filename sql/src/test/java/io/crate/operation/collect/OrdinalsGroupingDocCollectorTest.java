@@ -0,0 +1,132 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.DataType;
+import io.crate.analyze.WhereClause;
+import io.crate.integrationtests.SQLTransportIntegrationTest;
+import io.crate.metadata.*;
+import io.crate.metadata.doc.DocSchemaInfo;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.planner.RowGranularity;
+import io.crate.planner.node.dql.CollectNode;
+import io.crate.planner.projection.GroupProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.symbol.Aggregation;
+import io.crate.planner.symbol.InputColumn;
+import io.crate.planner.symbol.Reference;
+import io.crate.planner.symbol.Symbol;
+import io.crate.test.integration.CrateIntegrationTest;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.indices.IndicesService;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.core.Is.is;
+
+@CrateIntegrationTest.ClusterScope(scope = CrateIntegrationTest.Scope.SUITE, numNodes = 1)
+public class OrdinalsGroupingDocCollectorTest extends SQLTransportIntegrationTest {
+
+    private static final String TABLE_NAME = "characters";
+    private static final TableIdent TABLE_IDENT = new TableIdent(DocSchemaInfo.NAME, TABLE_NAME);
+
+    private ShardCollectService shardCollectService;
+    private Routing routing;
+
+    @Before
+    public void prepare() {
+        execute(String.format("create table %s (id integer, name string) " +
+                "clustered into 1 shards with(number_of_replicas=0)", TABLE_NAME));
+        ensureGreen();
+        // every refresh creates a new segment
+        execute(String.format("insert into %s (id, name) values (?, ?), (?, ?), (?, ?)", TABLE_NAME),
+                new Object[]{1, "Arthur", 2, "Ford", 3, null});
+        refresh();
+        execute(String.format("insert into %s (id, name) values (?, ?), (?, ?)", TABLE_NAME),
+                new Object[]{4, "Arthur", 5, "Trillian"});
+        refresh();
+        execute(String.format("insert into %s (id, name) values (?, ?), (?, ?), (?, ?)", TABLE_NAME),
+                new Object[]{6, null, 7, "Arthur", 8, "Ford"});
+        refresh();
+
+        shardCollectService = cluster().getInstance(IndicesService.class)
+                .indexServiceSafe(TABLE_NAME)
+                .shardInjectorSafe(0)
+                .getInstance(ShardCollectService.class);
+        routing = cluster().getInstance(DocSchemaInfo.class)
+                .getTableInfo(TABLE_NAME).getRouting(WhereClause.MATCH_ALL);
+    }
+
+    private Aggregation countAggregation(DataType... argumentTypes) {
+        FunctionInfo info = new FunctionInfo(
+                new FunctionIdent(CountAggregation.NAME, Arrays.asList(argumentTypes)), DataType.LONG);
+        ImmutableList.Builder<Symbol> inputs = ImmutableList.builder();
+        if (argumentTypes.length > 0) {
+            inputs.add(new InputColumn(0));
+        }
+        return new Aggregation(info, inputs.build(), Aggregation.Step.ITER, Aggregation.Step.PARTIAL);
+    }
+
+    @Test
+    public void testGroupsOfAllSegmentsAreMerged() throws Exception {
+        GroupProjection projection = new GroupProjection(
+                ImmutableList.<Symbol>of(new InputColumn(0)),
+                Arrays.asList(countAggregation(), countAggregation(DataType.STRING)));
+        projection.requiredGranularity(RowGranularity.SHARD);
+
+        CollectNode collectNode = new CollectNode("ordinalsCollect", routing,
+                ImmutableList.<Symbol>of(new Reference(new ReferenceInfo(
+                        new ReferenceIdent(TABLE_IDENT, "name"), RowGranularity.DOC, DataType.STRING))),
+                ImmutableList.<Projection>of(projection));
+        collectNode.maxRowGranularity(RowGranularity.DOC);
+
+        ShardProjectorChain projectorChain = new ShardProjectorChain(1, collectNode.projections(), null);
+        CrateCollector collector = shardCollectService.getCollector(collectNode, projectorChain);
+        assertThat(collector, instanceOf(OrdinalsGroupingDocCollector.class));
+
+        projectorChain.startProjections();
+        collector.doCollect();
+        Object[][] rows = projectorChain.result().get();
+
+        Map<String, Long> counts = new HashMap<>();
+        Map<String, Long> valueCounts = new HashMap<>();
+        for (Object[] row : rows) {
+            String key = row[0] == null ? null : ((BytesRef) row[0]).utf8ToString();
+            assertThat(counts.containsKey(key), is(false));
+            counts.put(key, (Long) ((CountAggregation.CountAggState) row[1]).value());
+            valueCounts.put(key, (Long) ((CountAggregation.CountAggState) row[2]).value());
+        }
+        assertThat(counts.size(), is(4));
+        assertThat(counts.get("Arthur"), is(3L));
+        assertThat(counts.get("Ford"), is(2L));
+        assertThat(counts.get("Trillian"), is(1L));
+        assertThat(counts.get(null), is(2L));
+        assertThat(valueCounts.get("Arthur"), is(3L));
+        assertThat(valueCounts.get(null), is(0L));
+    }
+}
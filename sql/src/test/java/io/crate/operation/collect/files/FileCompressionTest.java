@@ -0,0 +1,158 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.collect.files;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+public class FileCompressionTest {
+
+    private static final byte[] LZ4_MAGIC = new byte[]{0x04, 0x22, 0x4D, 0x18};
+    private static final byte[] SNAPPY_IDENTIFIER =
+            new byte[]{(byte) 0xFF, 0x06, 0x00, 0x00, 's', 'N', 'a', 'P', 'p', 'Y'};
+
+    /**
+     * creates a LZ4 frame containing the given data as one uncompressed block
+     */
+    static byte[] lz4Frame(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(LZ4_MAGIC);
+        out.write(new byte[]{0x60, 0x40, 0x00}); // independent blocks, 64KB max block size
+        writeIntLE(out, data.length | 0x80000000);
+        out.write(data);
+        writeIntLE(out, 0);
+        return out.toByteArray();
+    }
+
+    /**
+     * creates a snappy stream containing the given data as one uncompressed chunk
+     */
+    static byte[] snappyFrame(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(SNAPPY_IDENTIFIER);
+        int length = data.length + 4;
+        out.write(new byte[]{0x01, (byte) length, (byte) (length >>> 8), (byte) (length >>> 16)});
+        out.write(new byte[4]); // checksum
+        out.write(data);
+        return out.toByteArray();
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static String decompress(FileCompression compression, byte[] data) throws IOException {
+        InputStream in = compression.decompress(new ByteArrayInputStream(data), new DecompressionBuffers());
+        return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+    }
+
+    @Test
+    public void testFromOption() throws Exception {
+        assertNull(FileCompression.fromOption(null));
+        assertThat(FileCompression.fromOption("gzip"), is(FileCompression.GZIP));
+        assertThat(FileCompression.fromOption("LZ4"), is(FileCompression.LZ4));
+        assertThat(FileCompression.fromOption("snappy"), is(FileCompression.SNAPPY));
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testFromOptionUnsupported() throws Exception {
+        FileCompression.fromOption("zstd");
+    }
+
+    @Test
+    public void testFromUri() throws Exception {
+        assertThat(FileCompression.fromUri(URI.create("file:///tmp/data.json")), is(FileCompression.NONE));
+        assertThat(FileCompression.fromUri(URI.create("file:///tmp/data.json.gz")), is(FileCompression.GZIP));
+        assertThat(FileCompression.fromUri(URI.create("s3://bucket/data.json.lz4")), is(FileCompression.LZ4));
+        assertThat(FileCompression.fromUri(URI.create("file:///tmp/data.json.SZ")), is(FileCompression.SNAPPY));
+    }
+
+    @Test
+    public void testLZ4CompressedBlock() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(LZ4_MAGIC);
+        out.write(new byte[]{0x60, 0x40, 0x00});
+        // 6 literals "hello ", match offset 6 length 11, 1 literal "\n"
+        byte[] block = new byte[]{0x67, 'h', 'e', 'l', 'l', 'o', ' ', 0x06, 0x00, 0x10, '\n'};
+        writeIntLE(out, block.length);
+        out.write(block);
+        writeIntLE(out, 0);
+
+        assertThat(decompress(FileCompression.LZ4, out.toByteArray()), is("hello hello hello\n"));
+    }
+
+    @Test
+    public void testLZ4LinkedBlocksAndConcatenatedFrames() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(LZ4_MAGIC);
+        out.write(new byte[]{0x40, 0x40, 0x00}); // linked blocks
+        writeIntLE(out, 6 | 0x80000000);
+        out.write("hello ".getBytes(Charsets.UTF_8));
+        // match referencing the previous block with offset 6 length 5, 1 literal "\n"
+        byte[] block = new byte[]{0x01, 0x06, 0x00, 0x10, '\n'};
+        writeIntLE(out, block.length);
+        out.write(block);
+        writeIntLE(out, 0);
+        out.write(lz4Frame("bye\n".getBytes(Charsets.UTF_8)));
+
+        assertThat(decompress(FileCompression.LZ4, out.toByteArray()), is("hello hello\nbye\n"));
+    }
+
+    @Test (expected = IOException.class)
+    public void testLZ4InvalidMagic() throws Exception {
+        decompress(FileCompression.LZ4, "not lz4".getBytes(Charsets.UTF_8));
+    }
+
+    @Test
+    public void testSnappyCompressedChunk() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(SNAPPY_IDENTIFIER);
+        // length 18, literal "hello ", copy offset 6 length 11, literal "\n"
+        byte[] data = new byte[]{0x12, 0x14, 'h', 'e', 'l', 'l', 'o', ' ', 0x1D, 0x06, 0x00, '\n'};
+        int length = data.length + 4;
+        out.write(new byte[]{0x00, (byte) length, 0x00, 0x00});
+        out.write(new byte[4]); // checksum
+        out.write(data);
+        out.write(snappyFrame("bye\n".getBytes(Charsets.UTF_8)));
+
+        assertThat(decompress(FileCompression.SNAPPY, out.toByteArray()), is("hello hello hello\nbye\n"));
+    }
+
+    @Test (expected = IOException.class)
+    public void testSnappyMissingStreamIdentifier() throws Exception {
+        decompress(FileCompression.SNAPPY, new byte[]{0x01, 0x05, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 'a'});
+    }
+}
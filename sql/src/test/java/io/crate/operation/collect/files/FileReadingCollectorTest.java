@@ -27,6 +27,7 @@ import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
 import io.crate.DataType;
 import io.crate.external.S3ClientHelper;
@@ -36,7 +37,9 @@ import io.crate.metadata.FunctionImplementation;
 import io.crate.metadata.Functions;
 import io.crate.operation.projectors.CollectingProjector;
 import io.crate.operation.reference.file.FileLineReferenceResolver;
+import io.crate.planner.symbol.Symbol;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -46,10 +49,12 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.zip.GZIPOutputStream;
 
 import static io.crate.testing.TestingHelpers.createReference;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
@@ -59,6 +64,10 @@ import static org.mockito.Mockito.when;
 
 public class FileReadingCollectorTest {
 
+    private static final String LINES =
+            "{\"name\": \"Arthur\", \"id\": 4, \"details\": {\"age\": 38}}\n" +
+            "{\"id\": 5, \"name\": \"Trillian\", \"details\": {\"age\": 33}}\n";
+
     private static File tmpFile;
     private static File tmpFileGz;
     private FileCollectInputSymbolVisitor inputSymbolVisitor;
@@ -71,12 +80,10 @@ public class FileReadingCollectorTest {
         tmpFile = File.createTempFile("fileReadingCollector", ".json", copy_from.toFile());
         try (BufferedWriter writer =
                      new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(tmpFileGz))))) {
-            writer.write("{\"name\": \"Arthur\", \"id\": 4, \"details\": {\"age\": 38}}\n");
-            writer.write("{\"id\": 5, \"name\": \"Trillian\", \"details\": {\"age\": 33}}\n");
+            writer.write(LINES);
         }
         try (FileWriter writer = new FileWriter(tmpFile)) {
-            writer.write("{\"name\": \"Arthur\", \"id\": 4, \"details\": {\"age\": 38}}\n");
-            writer.write("{\"id\": 5, \"name\": \"Trillian\", \"details\": {\"age\": 33}}\n");
+            writer.write(LINES);
         }
     }
 
@@ -141,6 +148,155 @@ public class FileReadingCollectorTest {
         assertCorrectResult(projector.result().get());
     }
 
+    @Test
+    public void testDoCollectRawFromCompressedDetectedByExtension() throws Throwable {
+        CollectingProjector projector = getObjects(tmpFileGz.getAbsolutePath());
+        assertCorrectResult(projector.result().get());
+    }
+
+    @Test
+    public void testDoCollectRawFromLZ4Compressed() throws Throwable {
+        File file = File.createTempFile("fileReadingCollector", ".json.lz4");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(FileCompressionTest.lz4Frame(LINES.getBytes(Charsets.UTF_8)));
+            }
+            CollectingProjector projector = getObjects(file.getAbsolutePath());
+            assertCorrectResult(projector.result().get());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDoCollectRawFromSnappyCompressed() throws Throwable {
+        File file = File.createTempFile("fileReadingCollector", ".json");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(FileCompressionTest.snappyFrame(LINES.getBytes(Charsets.UTF_8)));
+            }
+            CollectingProjector projector = getObjects(file.getAbsolutePath(), "snappy");
+            assertCorrectResult(projector.result().get());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDoCollectCsvKeepsNewColumns() throws Throwable {
+        File file = File.createTempFile("fileReadingCollector", ".csv");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(("name,id,nickname\r\n" +
+                        "Arthur,4,\"Dent, Arthur\"\r\n" +
+                        "\n" +
+                        "\"Trillian, \"\"Tricia\"\"\",,\n").getBytes(Charsets.UTF_8));
+            }
+            Object[][] rows = collect(file.getAbsolutePath(), FileReadingCollector.FileFormat.CSV,
+                    ImmutableMap.of("id", DataType.INTEGER, "name", DataType.STRING),
+                    createReference("id", DataType.INTEGER),
+                    createReference("name", DataType.STRING),
+                    createReference("nickname", DataType.STRING));
+            assertThat(rows.length, is(2));
+            assertThat((Integer) rows[0][0], is(4));
+            assertThat((String) rows[0][1], is("Arthur"));
+            // nickname isn't part of the table, it's kept as string for the dynamic mapping
+            assertThat((String) rows[0][2], is("Dent, Arthur"));
+            assertNull(rows[1][2]);
+            assertNull(rows[1][0]);
+            assertThat((String) rows[1][1], is("Trillian, \"Tricia\""));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDoCollectRawFromCsv() throws Throwable {
+        File file = File.createTempFile("fileReadingCollector", ".csv");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write("id,details\n5,\"{\"\"age\"\": 33}\"".getBytes(Charsets.UTF_8));
+            }
+            Object[][] rows = collect(file.getAbsolutePath(), FileReadingCollector.FileFormat.CSV,
+                    ImmutableMap.of("id", DataType.LONG, "details", DataType.OBJECT),
+                    createReference("_raw", DataType.STRING));
+            assertThat(rows.length, is(1));
+            Map<String, Object> source = XContentHelper.convertToMap(((BytesRef) rows[0][0]).bytes, false).v2();
+            assertThat(((Number) source.get("id")).longValue(), is(5L));
+            assertThat(((Number) ((Map) source.get("details")).get("age")).intValue(), is(33));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test (expected = IllegalArgumentException.class)
+    public void testDoCollectCsvInvalidValue() throws Throwable {
+        File file = File.createTempFile("fileReadingCollector", ".csv");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write("id\nfoo\n".getBytes(Charsets.UTF_8));
+            }
+            collect(file.getAbsolutePath(), FileReadingCollector.FileFormat.CSV,
+                    ImmutableMap.of("id", DataType.INTEGER),
+                    createReference("id", DataType.INTEGER));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDoCollectColumnar() throws Throwable {
+        File file = File.createTempFile("fileReadingCollector", ".ccol");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                ColumnarFormat.Writer writer = new ColumnarFormat.Writer(out, Arrays.asList("id", "name", "details"));
+                for (int i = 0; i < ColumnarFormat.ROW_GROUP_SIZE + 10; i++) {
+                    writer.write(new Object[]{i, new BytesRef("name" + i), ImmutableMap.of("age", i)});
+                }
+                writer.write(new Object[]{null, null, null});
+                writer.close();
+            }
+            Object[][] rows = collect(file.getAbsolutePath(), FileReadingCollector.FileFormat.COLUMNAR,
+                    ImmutableMap.of("id", DataType.INTEGER, "name", DataType.STRING),
+                    createReference("id", DataType.INTEGER),
+                    createReference("name", DataType.STRING),
+                    createReference("details", DataType.OBJECT));
+            assertThat(rows.length, is(ColumnarFormat.ROW_GROUP_SIZE + 11));
+            assertThat((Integer) rows[4100][0], is(4100));
+            assertThat((String) rows[4100][1], is("name4100"));
+            // details isn't part of the table, it's kept for the dynamic mapping
+            assertThat(((Number) ((Map) rows[4100][2]).get("age")).intValue(), is(4100));
+            assertNull(rows[ColumnarFormat.ROW_GROUP_SIZE + 10][0]);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private Object[][] collect(String fileUri,
+                               FileReadingCollector.FileFormat format,
+                               Map<String, DataType> columnTypes,
+                               Symbol... toCollect) throws Throwable {
+        CollectingProjector projector = new CollectingProjector();
+        FileCollectInputSymbolVisitor.Context context =
+                inputSymbolVisitor.process(toCollect);
+        FileReadingCollector collector = new FileReadingCollector(
+                fileUri,
+                context.topLevelInputs(),
+                context.expressions(),
+                projector,
+                format,
+                null,
+                ImmutableMap.<String, FileInputFactory>of(),
+                false,
+                1,
+                0,
+                columnTypes
+        );
+        projector.startProjection();
+        collector.doCollect();
+        return projector.result().get();
+    }
+
     private void assertCorrectResult(Object[][] rows) throws Throwable {
         assertThat(((BytesRef)rows[0][0]).utf8ToString(), is(
                 "{\"name\": \"Arthur\", \"id\": 4, \"details\": {\"age\": 38}}"));
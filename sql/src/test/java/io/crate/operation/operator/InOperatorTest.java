@@ -20,9 +20,11 @@
  */
 package io.crate.operation.operator;
 
+import io.crate.metadata.Scalar;
 import io.crate.operation.operator.input.ObjectInput;
 import io.crate.planner.symbol.*;
 import io.crate.DataType;
+import org.apache.lucene.util.BytesRef;
 import org.junit.Test;
 
 import java.util.*;
@@ -231,4 +233,36 @@ public class InOperatorTest {
         assertNull(op.evaluate(new ObjectInput("something"), new ObjectInput(null)));
     }
 
+    private Boolean compiledIn(Object inValue, SetLiteral inList) {
+        InOperator op = new InOperator(Operator.generateInfo(InOperator.NAME, inList.itemType()));
+        Scalar<Boolean, Object> compiled = op.compile(Arrays.<Symbol>asList(new Reference(), inList));
+        assertThat(compiled, instanceOf(InOperator.CompiledInOperator.class));
+        return compiled.evaluate(new ObjectInput(inValue), new ObjectInput(inList.value()));
+    }
+
+    @Test
+    public void testEvaluateCompiledInOperator() {
+        SetLiteral integers = new SetLiteral(DataType.INTEGER, new HashSet<>(Arrays.asList(1, 2, 4, 8)));
+        assertTrue(compiledIn(4, integers));
+        assertFalse(compiledIn(128, integers));
+        assertNull(compiledIn(null, integers));
+
+        SetLiteral doubles = new SetLiteral(DataType.DOUBLE, new HashSet<>(Arrays.asList(0.5d, 2.25d)));
+        assertTrue(compiledIn(2.25d, doubles));
+        assertFalse(compiledIn(2.0d, doubles));
+
+        SetLiteral strings = new SetLiteral(DataType.STRING, new HashSet<>(Arrays.asList(
+                new BytesRef("alpha"), new BytesRef("bravo"))));
+        assertTrue(compiledIn(new BytesRef("bravo"), strings));
+        assertFalse(compiledIn(new BytesRef("charlie"), strings));
+    }
+
+    @Test
+    public void testCompileInOperatorWithNullInList() {
+        SetLiteral inList = new SetLiteral(DataType.INTEGER, new HashSet<>(Arrays.asList(1, null)));
+        InOperator op = new InOperator(Operator.generateInfo(InOperator.NAME, DataType.INTEGER));
+        Scalar<Boolean, Object> compiled = op.compile(Arrays.<Symbol>asList(new Reference(), inList));
+        assertThat(compiled, is((Scalar<Boolean, Object>) op));
+        assertNull(compiled.evaluate(new ObjectInput(1), new ObjectInput(inList.value())));
+    }
 }
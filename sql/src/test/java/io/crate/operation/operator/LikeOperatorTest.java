@@ -21,6 +21,7 @@
 package io.crate.operation.operator;
 
 import com.google.common.collect.ImmutableList;
+import io.crate.metadata.Scalar;
 import io.crate.operation.operator.input.BytesRefInput;
 import io.crate.planner.symbol.BooleanLiteral;
 import io.crate.planner.symbol.Function;
@@ -30,7 +31,7 @@ import org.apache.lucene.util.BytesRef;
 import io.crate.DataType;
 import org.junit.Test;
 
-import static io.crate.operation.operator.LikeOperator.DEFAULT_ESCAPE;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.junit.Assert.*;
 
 public class LikeOperatorTest {
@@ -94,45 +95,36 @@ public class LikeOperatorTest {
     // Following tests: escaping wildcards
 
     @Test
-    public void testExpressionToRegexExactlyOne() {
-        String expression = "fo_bar";
-        assertEquals("^fo.bar$", LikeOperator.patternToRegex(expression, DEFAULT_ESCAPE, true));
+    public void testLikeEscapingPercent() {
+        assertTrue(like("fo%bar", "fo\\%bar"));
+        assertFalse(like("foobar", "fo\\%bar"));
     }
 
     @Test
-    public void testExpressionToRegexZeroOrMore() {
-        String expression = "fo%bar";
-        assertEquals("^fo.*bar$", LikeOperator.patternToRegex(expression, DEFAULT_ESCAPE, true));
+    public void testLikeEscapingUnderline() {
+        assertTrue(like("fo_bar", "fo\\_bar"));
+        assertFalse(like("foobar", "fo\\_bar"));
     }
 
     @Test
-    public void testExpressionToRegexEscapingPercent() {
-        String expression = "fo\\%bar";
-        assertEquals("^fo%bar$", LikeOperator.patternToRegex(expression, DEFAULT_ESCAPE, true));
+    public void testLikeEscapingEscapeChar() {
+        assertTrue(like("fo\\xbar", "fo\\\\_bar"));
+        assertFalse(like("foxbar", "fo\\\\_bar"));
     }
 
     @Test
-    public void testExpressionToRegexEscapingUnderline() {
-        String expression = "fo\\_bar";
-        assertEquals("^fo_bar$", LikeOperator.patternToRegex(expression, DEFAULT_ESCAPE, true));
+    public void testLikeEscapingMulti() {
+        assertTrue(like("a%sum", "%%\\%sum%%"));
+        assertFalse(like("asum", "%%\\%sum%%"));
     }
 
     @Test
-    public void testExpressionToRegexEscaping() {
-        String expression = "fo\\\\_bar";
-        assertEquals("^fo\\\\.bar$", LikeOperator.patternToRegex(expression, DEFAULT_ESCAPE, true));
-    }
-
-    @Test
-    public void testExpressionToRegexEscapingMutli() {
-        String expression = "%%\\%sum%%";
-        assertEquals("^.*.*%sum.*.*$", LikeOperator.patternToRegex(expression, DEFAULT_ESCAPE, true));
-    }
-
-    @Test
-    public void testExpressionToRegexMaliciousPatterns() {
-        String expression = "fo(ooo)o[asdf]o\\bar^$.*";
-        assertEquals("^fo\\(ooo\\)o\\[asdf\\]obar\\^\\$\\.\\*$", LikeOperator.patternToRegex(expression, DEFAULT_ESCAPE, true));
+    public void testLikeRegexCharactersAreLiterals() {
+        String pattern = "fo(ooo)o[asdf]o\\bar^$.*";
+        assertTrue(like("fo(ooo)o[asdf]obar^$.*", pattern));
+        assertFalse(like("fooooooaobar^$xx", pattern));
+        assertTrue(like("a.c", "a.c"));
+        assertFalse(like("abc", "a.c"));
     }
 
     // test evaluate
@@ -160,4 +152,33 @@ public class LikeOperatorTest {
         assertNull(op.evaluate(new BytesRefInput("foobarbaz"), brNullValue));
     }
 
+    @Test
+    public void testLikeOperatorMultiByteCharacters() {
+        assertTrue(like("äöü", "_ö_"));
+        assertFalse(like("äöü", "__"));
+        assertTrue(like("grüße", "grü%"));
+        assertTrue(like("grüße", "%ße"));
+        assertTrue(like("straße 1", "%aß%"));
+        assertFalse(like("strasse", "%aß%"));
+    }
+
+    @Test
+    public void testLikeOperatorMatchesLineTerminators() {
+        assertTrue(like("foo\nbar", "foo%bar"));
+        assertTrue(like("foo\nbar", "foo_bar"));
+    }
+
+    @Test
+    public void testCompileWithLiteralPattern() {
+        LikeOperator op = new LikeOperator(
+                LikeOperator.generateInfo(LikeOperator.NAME, DataType.STRING)
+        );
+        Scalar<Boolean, BytesRef> compiled = op.compile(
+                ImmutableList.<Symbol>of(new StringLiteral("foo"), new StringLiteral("%ob%")));
+        assertThat(compiled, instanceOf(LikeOperator.CompiledLikeOperator.class));
+        assertTrue(compiled.evaluate(new BytesRefInput("foobar"), new BytesRefInput("ignored")));
+        assertFalse(compiled.evaluate(new BytesRefInput("bar"), new BytesRefInput("ignored")));
+        BytesRef nullValue = null;
+        assertNull(compiled.evaluate(new BytesRefInput(nullValue), new BytesRefInput("ignored")));
+    }
 }
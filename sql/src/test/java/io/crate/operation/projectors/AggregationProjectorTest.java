@@ -0,0 +1,92 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.crate.DataType;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Functions;
+import io.crate.operation.AggregationContext;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationState;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.aggregation.impl.AverageAggregation;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.planner.symbol.Aggregation;
+import io.crate.planner.symbol.InputColumn;
+import io.crate.planner.symbol.Symbol;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AggregationProjectorTest {
+
+    @Test
+    public void testSetNextStatesMergesPartialStates() throws ExecutionException, InterruptedException {
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataType.LONG);
+        FunctionInfo avgInfo = new FunctionInfo(
+                new FunctionIdent("avg", ImmutableList.of(DataType.DOUBLE)), DataType.DOUBLE);
+        AggregationContext countContext = new AggregationContext(
+                (AggregationFunction) functions.get(countInfo.ident()),
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.FINAL));
+        AggregationContext avgContext = new AggregationContext(
+                (AggregationFunction) functions.get(avgInfo.ident()),
+                new Aggregation(avgInfo, ImmutableList.<Symbol>of(new InputColumn(0)),
+                        Aggregation.Step.ITER, Aggregation.Step.FINAL));
+        InputCollectExpression<Object> input = new InputCollectExpression<>(0);
+        avgContext.addInput(input);
+
+        AggregationProjector projector = new AggregationProjector(
+                ImmutableSet.<CollectExpression<?>>of(input),
+                new AggregationContext[] { countContext, avgContext }
+        );
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.registerUpstream(null);
+        projector.downstream(collectingProjector);
+
+        projector.startProjection();
+        projector.setNextRow(1.0d);
+
+        CountAggregation.CountAggState countState = new CountAggregation.CountAggState();
+        countState.value = 3;
+        AverageAggregation.AverageAggState avgState = new AverageAggregation.AverageAggState();
+        avgState.add(11.0d, 3);
+        projector.setNextStates(new AggregationState[] { countState, avgState });
+        projector.upstreamFinished();
+
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(1));
+        assertThat((Long) rows[0][0], is(4L));
+        assertThat((Double) rows[0][1], is(3.0d));
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.operation.projectors;
+
+import io.crate.exceptions.CrateException;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkShardRequest;
+import org.elasticsearch.action.bulk.BulkShardResponse;
+import org.elasticsearch.action.bulk.TransportShardBulkAction;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class DeleteProjectorTest {
+
+    private static final ShardId SHARD_ID = new ShardId("users", 0);
+
+    private TransportShardBulkAction transportShardBulkAction;
+    private CollectingProjector collectingProjector;
+    private DeleteProjector projector;
+
+    @Before
+    public void prepare() {
+        transportShardBulkAction = mock(TransportShardBulkAction.class);
+        collectingProjector = new CollectingProjector();
+        InputCollectExpression<Object> uidInput = new InputCollectExpression<>(0);
+        // one document per bulk request, so every response contains a single item
+        projector = new DeleteProjector(
+                transportShardBulkAction,
+                SHARD_ID,
+                uidInput,
+                new CollectExpression<?>[]{uidInput},
+                1,
+                1,
+                null);
+        projector.downstream(collectingProjector);
+        projector.registerUpstream(null);
+        projector.startProjection();
+    }
+
+    private static BulkItemResponse deleteItem(int id, boolean found) {
+        BulkItemResponse item = mock(BulkItemResponse.class);
+        when(item.isFailed()).thenReturn(false);
+        doReturn(new DeleteResponse(SHARD_ID.getIndex(), "default", Integer.toString(id), 1L, found))
+                .when(item).getResponse();
+        return item;
+    }
+
+    private static BulkItemResponse failedItem(String message) {
+        BulkItemResponse item = mock(BulkItemResponse.class);
+        when(item.isFailed()).thenReturn(true);
+        when(item.getFailureMessage()).thenReturn(message);
+        return item;
+    }
+
+    /**
+     * answers the bulk requests in order with the given item responses
+     */
+    @SuppressWarnings("unchecked")
+    private void answerWith(final BulkItemResponse... items) {
+        final AtomicInteger request = new AtomicInteger();
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                BulkShardResponse response = mock(BulkShardResponse.class);
+                when(response.getResponses()).thenReturn(new BulkItemResponse[]{ items[request.getAndIncrement()] });
+                ((ActionListener<BulkShardResponse>) invocation.getArguments()[1]).onResponse(response);
+                return null;
+            }
+        }).when(transportShardBulkAction).execute(any(BulkShardRequest.class), any(ActionListener.class));
+    }
+
+    @Test
+    public void testOnlyFoundDocumentsAreCounted() throws Exception {
+        answerWith(deleteItem(1, true), deleteItem(2, false), deleteItem(3, true));
+
+        projector.setNextRow(new BytesRef("default#1"));
+        projector.setNextRow(new BytesRef("default#2"));
+        // rows without an _uid are skipped
+        projector.setNextRow((Object) null);
+        projector.setNextRow(new BytesRef("default#3"));
+        projector.upstreamFinished();
+
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(1));
+        assertThat((Long) rows[0][0], is(2L));
+        verify(transportShardBulkAction, times(3)).execute(any(BulkShardRequest.class), any(ActionListener.class));
+    }
+
+    @Test
+    public void testNoRows() throws Exception {
+        projector.upstreamFinished();
+
+        Object[][] rows = collectingProjector.result().get();
+        assertThat((Long) rows[0][0], is(0L));
+        verifyZeroInteractions(transportShardBulkAction);
+    }
+
+    @Test
+    public void testFailedItemIsPassedToDownstream() throws Exception {
+        answerWith(deleteItem(1, true), failedItem("version conflict"));
+
+        projector.setNextRow(new BytesRef("default#1"));
+        projector.setNextRow(new BytesRef("default#2"));
+        projector.upstreamFinished();
+
+        try {
+            collectingProjector.result().get();
+            fail("the failure of the bulk item must be passed to the downstream");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(CrateException.class));
+            assertThat(e.getCause().getMessage(), is("version conflict"));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedBulkRequestStopsTheUpstream() throws Exception {
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                ((ActionListener<BulkShardResponse>) invocation.getArguments()[1])
+                        .onFailure(new IllegalStateException("shard closed"));
+                return null;
+            }
+        }).when(transportShardBulkAction).execute(any(BulkShardRequest.class), any(ActionListener.class));
+
+        assertThat(projector.setNextRow(new BytesRef("default#1")), is(false));
+        projector.upstreamFinished();
+
+        try {
+            collectingProjector.result().get();
+            fail("the failure of the bulk request must be passed to the downstream");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("shard closed"));
+        }
+    }
+
+    @Test
+    public void testUpstreamFailureIsPassedToDownstream() throws Exception {
+        answerWith(deleteItem(1, true));
+
+        projector.setNextRow(new BytesRef("default#1"));
+        projector.upstreamFailed(new IllegalStateException("collect failed"));
+
+        try {
+            collectingProjector.result().get();
+            fail("the failure of the upstream must be passed to the downstream");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause().getMessage(), is("collect failed"));
+        }
+    }
+}
@@ -7,9 +7,11 @@ import io.crate.metadata.Functions;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
 import io.crate.operation.aggregation.impl.CountAggregation;
 import io.crate.operation.AggregationContext;
+import io.crate.operation.aggregation.AggregationState;
 import io.crate.planner.symbol.Aggregation;
 import io.crate.planner.symbol.Symbol;
 import io.crate.DataType;
@@ -68,6 +70,165 @@ public class GroupingProjectorTest {
         assertThat(rows[0][1], instanceOf(CountAggregation.CountAggState.class));
     }
 
+    @Test
+    public void testSetNextGroupMergesPartialStates() throws ExecutionException, InterruptedException {
+        ImmutableList<Input<?>> keys = ImmutableList.<Input<?>>of(new DummyInput("one"));
+
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataType.LONG);
+        Aggregation countAggregation =
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.PARTIAL);
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+        AggregationContext[] aggregations = new AggregationContext[] {
+                new AggregationContext((AggregationFunction)functions.get(countInfo.ident()), countAggregation)
+        };
+        GroupingProjector projector = new GroupingProjector(
+                keys,
+                ImmutableList.<CollectExpression<?>>of(),
+                aggregations
+        );
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.registerUpstream(null);
+        projector.downstream(collectingProjector);
+
+        projector.startProjection();
+        projector.setNextRow();
+        projector.setNextGroup(new Object[] { "one" }, new AggregationState[] { countState(2) });
+        projector.setNextGroup(new Object[] { "two" }, new AggregationState[] { countState(5) });
+        projector.upstreamFinished();
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(2));
+        for (Object[] row : rows) {
+            long expected = row[0].equals("one") ? 3L : 5L;
+            assertThat((Long) ((CountAggregation.CountAggState) row[1]).value(), is(expected));
+        }
+    }
+
+    @Test
+    public void testSetNextGroupWithManyKeys() throws ExecutionException, InterruptedException {
+        InputCollectExpression<Object> key1 = new InputCollectExpression<>(0);
+        InputCollectExpression<Object> key2 = new InputCollectExpression<>(1);
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataType.LONG);
+        Aggregation countAggregation =
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.PARTIAL);
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+        AggregationContext[] aggregations = new AggregationContext[] {
+                new AggregationContext((AggregationFunction)functions.get(countInfo.ident()), countAggregation)
+        };
+        GroupingProjector projector = new GroupingProjector(
+                ImmutableList.<Input<?>>of(key1, key2),
+                ImmutableList.<CollectExpression<?>>of(key1, key2),
+                aggregations
+        );
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.registerUpstream(null);
+        projector.downstream(collectingProjector);
+
+        projector.startProjection();
+        projector.setNextRow("a", 1);
+        projector.setNextGroup(new Object[] { "a", 1 }, new AggregationState[] { countState(2) });
+        projector.setNextGroup(new Object[] { "a", 2 }, new AggregationState[] { countState(5) });
+        projector.upstreamFinished();
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(2));
+        for (Object[] row : rows) {
+            long expected = row[1].equals(1) ? 3L : 5L;
+            assertThat((Long) ((CountAggregation.CountAggState) row[2]).value(), is(expected));
+        }
+    }
+
+    @Test
+    public void testBoundedFlushesPartialGroups() throws ExecutionException, InterruptedException {
+        CollectingProjector collectingProjector = new CollectingProjector();
+        GroupingProjector projector = boundedCountProjector(2, collectingProjector);
+
+        projector.startProjection();
+        projector.setNextRow("a");
+        projector.setNextRow("a");
+        assertThat(collectingProjector.rows.size(), is(0));
+        projector.setNextRow("b");
+        assertThat(collectingProjector.rows.size(), is(2));
+        projector.setNextRow("a");
+        projector.upstreamFinished();
+
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(3));
+        long countA = 0;
+        for (Object[] row : rows) {
+            if (row[0].equals("a")) {
+                countA += (Long) ((CountAggregation.CountAggState) row[1]).value();
+            }
+        }
+        assertThat(countA, is(3L));
+    }
+
+    @Test
+    public void testBoundedPassesRowsThroughIfGroupingDoesNotReduce() throws ExecutionException, InterruptedException {
+        CollectingProjector collectingProjector = new CollectingProjector();
+        GroupingProjector projector = boundedCountProjector(100, collectingProjector);
+
+        projector.startProjection();
+        int numRows = (int) GroupingProjector.MIN_ROWS_FOR_REDUCTION_CHECK;
+        for (int i = 0; i < numRows; i++) {
+            projector.setNextRow("key" + i);
+        }
+        assertThat(collectingProjector.rows.size(), is(numRows));
+
+        projector.setNextRow("a");
+        assertThat(collectingProjector.rows.size(), is(numRows + 1));
+        projector.setNextRow("a");
+        assertThat(collectingProjector.rows.size(), is(numRows + 2));
+        projector.upstreamFinished();
+        assertThat(collectingProjector.result().get().length, is(numRows + 2));
+    }
+
+    @Test
+    public void testBoundedDoesNotPassThroughPreAggregatedGroups() throws ExecutionException, InterruptedException {
+        CollectingProjector collectingProjector = new CollectingProjector();
+        GroupingProjector projector = boundedCountProjector(100, collectingProjector);
+
+        projector.startProjection();
+        int numGroups = (int) GroupingProjector.MIN_ROWS_FOR_REDUCTION_CHECK;
+        for (int i = 0; i < numGroups; i++) {
+            projector.setNextGroup(new Object[] { "key" + i }, new AggregationState[] { countState(10) });
+        }
+        assertThat(collectingProjector.rows.size(), is(numGroups));
+
+        projector.setNextGroup(new Object[] { "a" }, new AggregationState[] { countState(10) });
+        projector.setNextGroup(new Object[] { "a" }, new AggregationState[] { countState(10) });
+        assertThat(collectingProjector.rows.size(), is(numGroups));
+        projector.upstreamFinished();
+        assertThat(collectingProjector.result().get().length, is(numGroups + 1));
+    }
+
+    private GroupingProjector boundedCountProjector(int maxGroups, Projector downstream) {
+        InputCollectExpression<Object> key = new InputCollectExpression<>(0);
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataType.LONG);
+        Aggregation countAggregation =
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.PARTIAL);
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+        AggregationContext[] aggregations = new AggregationContext[] {
+                new AggregationContext((AggregationFunction)functions.get(countInfo.ident()), countAggregation)
+        };
+        GroupingProjector projector = new GroupingProjector(
+                ImmutableList.<Input<?>>of(key),
+                ImmutableList.<CollectExpression<?>>of(key),
+                aggregations,
+                maxGroups
+        );
+        projector.registerUpstream(null);
+        projector.downstream(downstream);
+        return projector;
+    }
+
+    private CountAggregation.CountAggState countState(long value) {
+        CountAggregation.CountAggState state = new CountAggregation.CountAggState();
+        state.value = value;
+        return state;
+    }
+
     class DummyInput implements Input<String> {
 
         private final String[] values;
@@ -22,16 +22,19 @@
 package io.crate.operation.projectors;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
 import io.crate.operation.collect.InputCollectExpression;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 
 public class IndexWriterProjectorUnitTest {
@@ -93,4 +96,12 @@ public class IndexWriterProjectorUnitTest {
         indexWriter.setNextRow(null, new BytesRef("{\"y\": \"x\"}"));
         indexWriter.upstreamFinished();
     }
+
+    @Test
+    public void testExcludeTopLevelKeys() throws Exception {
+        BytesRef source = new BytesRef(
+                "{\"id\": 1, \"date\": 1395874800000, \"o\": {\"date\": 1}, \"l\": [{\"a\": 1}]}");
+        BytesReference filtered = IndexWriterProjector.excludeTopLevelKeys(source, ImmutableSet.of("date"));
+        assertEquals("{\"id\":1,\"o\":{\"date\":1},\"l\":[{\"a\":1}]}", filtered.toUtf8());
+    }
 }
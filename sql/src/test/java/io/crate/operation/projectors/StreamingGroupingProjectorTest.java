@@ -0,0 +1,102 @@
+package io.crate.operation.projectors;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.DataType;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Functions;
+import io.crate.operation.AggregationContext;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.planner.symbol.Aggregation;
+import io.crate.planner.symbol.Symbol;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingGroupingProjectorTest {
+
+    private StreamingGroupingProjector projector;
+
+    @Before
+    public void setUpProjector() {
+        InputCollectExpression<Object> key = new InputCollectExpression<>(0);
+
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataType.LONG);
+        Aggregation countAggregation =
+                new Aggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER, Aggregation.Step.FINAL);
+        Functions functions = new ModulesBuilder()
+                .add(new AggregationImplModule()).createInjector().getInstance(Functions.class);
+        AggregationContext[] aggregations = new AggregationContext[] {
+                new AggregationContext((AggregationFunction)functions.get(countInfo.ident()), countAggregation)
+        };
+        projector = new StreamingGroupingProjector(
+                ImmutableList.<Input<?>>of(key),
+                ImmutableList.<CollectExpression<?>>of(key),
+                aggregations
+        );
+    }
+
+    @Test
+    public void testEmitsGroupPerRun() throws Exception {
+        CollectingProjector collectingProjector = new CollectingProjector();
+        projector.registerUpstream(null);
+        projector.downstream(collectingProjector);
+
+        projector.startProjection();
+        projector.setNextRow("a");
+        projector.setNextRow("a");
+        assertThat(collectingProjector.rows.size(), is(0));
+
+        projector.setNextRow("b");
+        assertThat(collectingProjector.rows.size(), is(1));
+
+        projector.setNextRow("b");
+        projector.setNextRow("b");
+        projector.setNextRow("c");
+        projector.upstreamFinished();
+
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(3));
+        assertThat((String) rows[0][0], is("a"));
+        assertThat((Long) rows[0][1], is(2L));
+        assertThat((String) rows[1][0], is("b"));
+        assertThat((Long) rows[1][1], is(3L));
+        assertThat((String) rows[2][0], is("c"));
+        assertThat((Long) rows[2][1], is(1L));
+    }
+
+    @Test
+    public void testStopsIfDownstreamIsSatisfied() throws Exception {
+        InputCollectExpression<Object> key = new InputCollectExpression<>(0);
+        SimpleTopNProjector topNProjector = new SimpleTopNProjector(
+                new Input<?>[] { key },
+                new CollectExpression<?>[] { key },
+                1,
+                0);
+        CollectingProjector collectingProjector = new CollectingProjector();
+        topNProjector.downstream(collectingProjector);
+        projector.registerUpstream(null);
+        projector.downstream(topNProjector);
+
+        collectingProjector.startProjection();
+        topNProjector.startProjection();
+        projector.startProjection();
+        assertTrue(projector.setNextRow("a"));
+        assertTrue(projector.setNextRow("a"));
+        assertFalse(projector.setNextRow("b"));
+        projector.upstreamFinished();
+
+        Object[][] rows = collectingProjector.result().get();
+        assertThat(rows.length, is(1));
+        assertThat((String) rows[0][0], is("a"));
+    }
+}
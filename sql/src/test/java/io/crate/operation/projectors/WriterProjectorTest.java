@@ -22,7 +22,9 @@
 package io.crate.operation.projectors;
 
 import com.google.common.collect.ImmutableSet;
+import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
 import io.crate.testing.TestingHelpers;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.settings.ImmutableSettings;
@@ -31,6 +33,8 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.assertEquals;
 
 public class WriterProjectorTest {
@@ -71,4 +75,37 @@ public class WriterProjectorTest {
                 "input line 03\n" +
                 "input line 04\n", TestingHelpers.readFile(uri));
     }
+
+    @Test
+    public void testWriteCsvToFile() throws Exception {
+        String uri = folder.newFile("out.csv").getAbsolutePath();
+        Settings settings = ImmutableSettings.builder().put("format", "csv").build();
+        InputCollectExpression<Object> id = new InputCollectExpression<>(0);
+        InputCollectExpression<Object> name = new InputCollectExpression<>(1);
+        WriterProjector projector = new WriterProjector(
+                uri,
+                settings,
+                Arrays.<Input<?>>asList(id, name),
+                ImmutableSet.<CollectExpression<?>>of(id, name),
+                Arrays.asList("id", "name")
+        );
+        Projector downstream = new CollectingProjector();
+        projector.downstream(downstream);
+
+        projector.startProjection();
+
+        projector.registerUpstream(null);
+        projector.setNextRow(1, new BytesRef("Arthur"));
+        projector.setNextRow(2, new BytesRef("Trillian, \"Tricia\""));
+        projector.setNextRow(3, null);
+        projector.upstreamFinished();
+
+        Object[][] rows = ((ResultProvider) downstream).result().get();
+        assertEquals(3L, rows[0][0]);
+
+        assertEquals("id,name\n" +
+                "1,Arthur\n" +
+                "2,\"Trillian, \"\"Tricia\"\"\"\n" +
+                "3,\n", TestingHelpers.readFile(uri));
+    }
 }
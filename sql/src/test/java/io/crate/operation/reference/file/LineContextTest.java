@@ -21,12 +21,17 @@
 
 package io.crate.operation.reference.file;
 
+import com.google.common.collect.ImmutableSet;
 import io.crate.metadata.ColumnIdent;
 import io.crate.operation.collect.files.CollectorContext;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class LineContextTest {
     @Test
@@ -40,4 +45,34 @@ public class LineContextTest {
         assertNull(context.get(new ColumnIdent("details", "invalid")));
         assertEquals(43, context.get(new ColumnIdent("details", "age")));
     }
+
+    @Test
+    public void testGetPrefetchColumns() throws Exception {
+        CollectorContext collectorContext = new CollectorContext();
+        collectorContext.addPrefetchColumn(new ColumnIdent("id"));
+        collectorContext.addPrefetchColumn(new ColumnIdent("details", "age"));
+        LineContext context = new LineContext(collectorContext);
+
+        context.rawSource(("{\"tags\": [{\"a\": [1, 2]}], \"details\": {\"age\": 43}, " +
+                "\"name\": \"foo\", \"id\": 1}").getBytes());
+        assertEquals(1, context.get(new ColumnIdent("id")));
+        assertEquals(43, context.get(new ColumnIdent("details", "age")));
+        // not prefetched
+        assertEquals("foo", context.get(new ColumnIdent("name")));
+
+        context.rawSource("{\"id\": 2}".getBytes());
+        assertEquals(2, context.get(new ColumnIdent("id")));
+        assertNull(context.get(new ColumnIdent("details", "age")));
+    }
+
+    @Test
+    public void testExtractTopLevelKeys() throws Exception {
+        Map<String, Object> values = LineContext.extractTopLevelKeys(
+                "{\"o\": {\"x\": {\"id\": 3}}, \"id\": null, \"l\": [1, \"b\", [true]], \"s\": \"t\"}".getBytes(),
+                ImmutableSet.of("id", "l"));
+        assertEquals(2, values.size());
+        assertTrue(values.containsKey("id"));
+        assertNull(values.get("id"));
+        assertEquals(Arrays.<Object>asList(1, "b", Arrays.asList(true)), values.get("l"));
+    }
 }
@@ -22,6 +22,8 @@ package io.crate.operation.reference.sys;
 
 import io.crate.Build;
 import io.crate.Version;
+import io.crate.blob.BlobCache;
+import io.crate.blob.BlobJanitor;
 import io.crate.metadata.GlobalReferenceResolver;
 import io.crate.metadata.ReferenceIdent;
 import io.crate.metadata.ReferenceResolver;
@@ -166,6 +168,19 @@ public class TestSysNodesExpressions {
             when(jvmService.stats()).thenReturn(jvmStats);
             bind(JvmService.class).toInstance(jvmService);
 
+            BlobCache blobCache = mock(BlobCache.class);
+            when(blobCache.size()).thenReturn(4096L);
+            when(blobCache.hits()).thenReturn(3L);
+            when(blobCache.misses()).thenReturn(1L);
+            when(blobCache.hitRatio()).thenReturn(0.75);
+            bind(BlobCache.class).toInstance(blobCache);
+
+            BlobJanitor blobJanitor = mock(BlobJanitor.class);
+            when(blobJanitor.expiredTransfers()).thenReturn(2L);
+            when(blobJanitor.deletedFiles()).thenReturn(5L);
+            when(blobJanitor.reclaimedBytes()).thenReturn(1048576L);
+            bind(BlobJanitor.class).toInstance(blobJanitor);
+
             bind(ReferenceResolver.class).to(GlobalReferenceResolver.class).asEagerSingleton();
         }
     }
@@ -303,4 +318,29 @@ public class TestSysNodesExpressions {
 
     }
 
+    @Test
+    public void testBlobCache() throws Exception {
+
+        ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "blob_cache");
+        SysObjectReference<Object> blobCache = (SysObjectReference<Object>) resolver.getImplementation(ident);
+
+        Map<String, Object> v = blobCache.value();
+        assertEquals(4096L, v.get("size"));
+        assertEquals(3L, v.get("hits"));
+        assertEquals(1L, v.get("misses"));
+        assertEquals(0.75, v.get("hit_ratio"));
+    }
+
+    @Test
+    public void testBlobJanitor() throws Exception {
+
+        ReferenceIdent ident = new ReferenceIdent(SysNodesTableInfo.IDENT, "blob_janitor");
+        SysObjectReference<Object> blobJanitor = (SysObjectReference<Object>) resolver.getImplementation(ident);
+
+        Map<String, Object> v = blobJanitor.value();
+        assertEquals(2L, v.get("expired_transfers"));
+        assertEquals(5L, v.get("deleted_files"));
+        assertEquals(1048576L, v.get("reclaimed_bytes"));
+    }
+
 }
@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableList;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.metadata.ReferenceInfo;
+import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
 import io.crate.planner.symbol.*;
 import org.apache.lucene.util.BytesRef;
@@ -129,4 +130,22 @@ public class DateTruncFunctionTest {
         assertTruncated("quarter", TIMESTAMP, 915148800000L);    // Fri Jan  1 00:00:00.000 UTC 1999
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateCompiled() throws Exception {
+        Scalar<Long, Object> compiled = func.compile(ImmutableList.<Symbol>of(
+                new StringLiteral("hour"), new Reference(new ReferenceInfo(null, null, DataType.TIMESTAMP))));
+        assertThat(compiled, instanceOf(BaseDateTruncFunction.CompiledDateTrunc.class));
+
+        Input<Object> interval = new DateTruncInput(new BytesRef("hour"));
+        // sorted timestamps within and across hours, followed by an older one
+        long[] timestamps = new long[]{
+                TIMESTAMP, TIMESTAMP + 1000, 919947599999L, 919947600000L, 919947600001L, TIMESTAMP};
+        for (long timestamp : timestamps) {
+            Input<Object> ts = new DateTruncInput(timestamp);
+            assertThat(compiled.evaluate(interval, ts), is(func.evaluate(interval, ts)));
+        }
+        assertThat(compiled.evaluate(interval, new DateTruncInput(null)), is((Long) null));
+    }
+
 }
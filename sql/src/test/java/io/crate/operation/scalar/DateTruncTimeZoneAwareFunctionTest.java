@@ -25,6 +25,7 @@ import io.crate.DataType;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.metadata.ReferenceInfo;
+import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
 import io.crate.planner.symbol.*;
 import org.apache.lucene.util.BytesRef;
@@ -143,4 +144,23 @@ public class DateTruncTimeZoneAwareFunctionTest {
         assertTruncated("day", "-08:00", TIMESTAMP, 919929600000L);         // Thu Feb 25 08:00:00.000 UTC 1999
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEvaluateCompiledTimeZoneAware() throws Exception {
+        Reference timestamp = new Reference(new ReferenceInfo(null, null, DataType.TIMESTAMP));
+        Input<Object> interval = new DateTruncInput(new BytesRef("day"));
+        // the time zone Europe/Vienna switches to daylight saving time on Mar 28 01:00 UTC 1999
+        long[] timestamps = new long[]{
+                TIMESTAMP, 922575600000L, 922579199999L, 922579200000L, 922582800000L, 922665599999L, TIMESTAMP};
+        for (String timeZone : new String[]{"-08:00", "Europe/Vienna"}) {
+            Scalar<Long, Object> compiled = funcTZ.compile(ImmutableList.<Symbol>of(
+                    new StringLiteral("day"), new StringLiteral(timeZone), timestamp));
+            Input<Object> tz = new DateTruncInput(new BytesRef(timeZone));
+            for (long ts : timestamps) {
+                Input<Object> tsInput = new DateTruncInput(ts);
+                assertThat(compiled.evaluate(interval, tz, tsInput), is(funcTZ.evaluate(interval, tz, tsInput)));
+            }
+        }
+    }
+
 }
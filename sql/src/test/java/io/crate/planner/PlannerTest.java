@@ -26,7 +26,6 @@ import io.crate.operation.scalar.ScalarFunctionModule;
 import io.crate.planner.node.PlanNode;
 import io.crate.planner.node.ddl.ESDeleteIndexNode;
 import io.crate.planner.node.ddl.ESDeleteTemplateNode;
-import io.crate.planner.node.dml.ESDeleteByQueryNode;
 import io.crate.planner.node.dml.ESDeleteNode;
 import io.crate.planner.node.dml.ESIndexNode;
 import io.crate.planner.node.dml.ESUpdateNode;
@@ -37,6 +36,7 @@ import io.crate.sql.parser.SqlParser;
 import io.crate.sql.tree.Statement;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
@@ -132,6 +132,7 @@ public class PlannerTest {
             DiscoveryNode node = mock(DiscoveryNode.class);
             when(clusterService.state()).thenReturn(clusterState);
             when(clusterState.nodes()).thenReturn(nodes);
+            when(clusterState.metaData()).thenReturn(MetaData.EMPTY_META_DATA);
             ImmutableOpenMap<String, DiscoveryNode> dataNodes =
                     ImmutableOpenMap.<String, DiscoveryNode>builder().fPut("foo", node).build();
             when(nodes.dataNodes()).thenReturn(dataNodes);
@@ -150,6 +151,7 @@ public class PlannerTest {
                     .add("name", DataType.STRING, null)
                     .add("id", DataType.LONG, null)
                     .add(DocSysColumns.RAW.name(), DataType.STRING, null)
+                    .add(DocSysColumns.UID.name(), DataType.STRING, null)
                     .addPrimaryKey("id")
                     .clusteredBy("id")
                     .build();
@@ -236,8 +238,15 @@ public class PlannerTest {
         assertThat(collectNode.maxRowGranularity(), is(RowGranularity.DOC));
         assertThat(collectNode.executionNodes().size(), is(2));
         assertThat(collectNode.toCollect().size(), is(1));
-        assertThat(collectNode.projections().size(), is(1));
+        assertThat(collectNode.projections().size(), is(2));
         assertThat(collectNode.projections().get(0), instanceOf(GroupProjection.class));
+        assertThat(collectNode.projections().get(0).requiredGranularity(), is(RowGranularity.SHARD));
+        assertThat(collectNode.projections().get(1), instanceOf(GroupProjection.class));
+        assertThat(collectNode.projections().get(1).requiredGranularity(), is(RowGranularity.CLUSTER));
+        Aggregation nodeAggregation = ((GroupProjection) collectNode.projections().get(1)).values().get(0);
+        assertThat(nodeAggregation.fromStep(), is(Aggregation.Step.PARTIAL));
+        assertThat(nodeAggregation.toStep(), is(Aggregation.Step.PARTIAL));
+        assertThat(((InputColumn) nodeAggregation.inputs().get(0)).index(), is(1));
         assertThat(collectNode.outputTypes().size(), is(2));
         assertThat(collectNode.outputTypes().get(0), is(DataType.STRING));
         assertThat(collectNode.outputTypes().get(1), is(DataType.NULL));
@@ -345,7 +354,21 @@ public class PlannerTest {
     public void testMultiDeletePlan() throws Exception {
         Plan plan = plan("delete from users where id in (1, 2)");
         Iterator<PlanNode> iterator = plan.iterator();
-        assertThat(iterator.next(), instanceOf(ESDeleteByQueryNode.class));
+        CollectNode collectNode = (CollectNode) iterator.next();
+        assertThat(collectNode.toCollect().size(), is(1));
+        Reference uidRef = (Reference) collectNode.toCollect().get(0);
+        assertThat(uidRef.info().ident().columnIdent(), is(DocSysColumns.UID));
+        assertThat(collectNode.projections().size(), is(1));
+        DeleteProjection deleteProjection = (DeleteProjection) collectNode.projections().get(0);
+        assertThat(deleteProjection.bulkActions(), is(DeleteProjection.BULK_SIZE_DEFAULT));
+        assertThat(deleteProjection.concurrency(), is(DeleteProjection.CONCURRENCY_DEFAULT));
+        assertNull(deleteProjection.maxDocsPerSecond());
+        assertThat(collectNode.outputTypes().get(0), is(DataType.LONG));
+
+        MergeNode mergeNode = (MergeNode) iterator.next();
+        assertThat(mergeNode.projections().get(0), instanceOf(AggregationProjection.class));
+        assertFalse(iterator.hasNext());
+        assertTrue(plan.expectsAffectedRows());
     }
 
     @Test
@@ -417,6 +440,30 @@ public class PlannerTest {
         assertFalse(plan.expectsAffectedRows());
     }
 
+    @Test
+    public void testGroupByOnPartitionedColumnStreamsPerShard() throws Exception {
+        Plan plan = plan("select count(*), date from parted group by date");
+        Iterator<PlanNode> iterator = plan.iterator();
+
+        CollectNode collectNode = (CollectNode) iterator.next();
+        GroupProjection groupProjection = (GroupProjection) collectNode.projections().get(0);
+        assertThat(groupProjection.requiredGranularity(), is(RowGranularity.SHARD));
+        assertTrue(groupProjection.streaming());
+
+        groupProjection = (GroupProjection) collectNode.projections().get(1);
+        assertThat(groupProjection.requiredGranularity(), is(RowGranularity.CLUSTER));
+        assertFalse(groupProjection.streaming());
+    }
+
+    @Test
+    public void testGroupByOnPartitionedAndNormalColumnIsNotStreaming() throws Exception {
+        Plan plan = plan("select count(*), date, name from parted group by date, name");
+        CollectNode collectNode = (CollectNode) plan.iterator().next();
+        GroupProjection groupProjection = (GroupProjection) collectNode.projections().get(0);
+        assertThat(groupProjection.requiredGranularity(), is(RowGranularity.SHARD));
+        assertFalse(groupProjection.streaming());
+    }
+
     @Test
     public void testGroupByOnNodeLevel() throws Exception {
         Plan plan = plan("select count(*), name from sys.nodes group by name");
@@ -596,15 +643,33 @@ public class PlannerTest {
         assertTrue(plan.expectsAffectedRows());
     }
 
+    @Test
+    public void testInsertOnDuplicateKeyPlan() throws Exception {
+        Plan plan = plan("insert into users (id, name) values (42, 'Deep Thought') on duplicate key update name = 'Marvin'");
+        Iterator<PlanNode> iterator = plan.iterator();
+        PlanNode planNode = iterator.next();
+        assertThat(planNode, instanceOf(ESIndexNode.class));
+
+        ESIndexNode indexNode = (ESIndexNode) planNode;
+        assertTrue(indexNode.isUpsert());
+        assertThat(indexNode.ids().size(), is(1));
+        assertThat(indexNode.routingValues().size(), is(1));
+        assertThat(indexNode.updateDoc().size(), is(1));
+        assertThat((String) indexNode.updateDoc().get("name"), is("Marvin"));
+        assertThat((String) indexNode.sourceMaps().get(0).get("name"), is("Deep Thought"));
+
+        assertTrue(plan.expectsAffectedRows());
+    }
+
     @Test
     public void testCountDistinctPlan() throws Exception {
-        Plan plan = plan("select count(distinct name) from users");
+        Plan plan = plan("select count(distinct name), count(*) from users");
         Iterator<PlanNode> iterator = plan.iterator();
         CollectNode collectNode = (CollectNode)iterator.next();
         Projection projection = collectNode.projections().get(0);
         assertThat(projection, instanceOf(AggregationProjection.class));
         AggregationProjection aggregationProjection = (AggregationProjection)projection;
-        assertThat(aggregationProjection.aggregations().size(), is(1));
+        assertThat(aggregationProjection.aggregations().size(), is(2));
 
         Aggregation aggregation = aggregationProjection.aggregations().get(0);
         assertThat(aggregation.toStep(), is(Aggregation.Step.PARTIAL));
@@ -622,6 +687,34 @@ public class PlannerTest {
         assertThat(collection_count, instanceOf(Function.class));
     }
 
+    @Test
+    public void testDistributedCountDistinctPlan() throws Exception {
+        Plan plan = plan("select count(distinct name) from users");
+        Iterator<PlanNode> iterator = plan.iterator();
+
+        CollectNode collectNode = (CollectNode)iterator.next();
+        assertThat(collectNode.downStreamNodes().size(), greaterThan(0));
+        assertThat(((Reference)collectNode.toCollect().get(0)).info().ident().columnIdent().name(), is("name"));
+        GroupProjection groupProjection = (GroupProjection)collectNode.projections().get(0);
+        assertThat(groupProjection.values().size(), is(0));
+        assertThat(collectNode.outputTypes().get(0), is(DataType.STRING));
+
+        // every reducer dedups and counts its slice of the distinct values
+        MergeNode mergeNode = (MergeNode)iterator.next();
+        assertThat(mergeNode.projections().size(), is(2));
+        assertThat(mergeNode.projections().get(0), instanceOf(GroupProjection.class));
+        Aggregation count = ((AggregationProjection)mergeNode.projections().get(1)).aggregations().get(0);
+        assertThat(count.functionIdent().name(), is("count"));
+        assertThat(count.toStep(), is(Aggregation.Step.PARTIAL));
+
+        MergeNode localMergeNode = (MergeNode)iterator.next();
+        count = ((AggregationProjection)localMergeNode.projections().get(0)).aggregations().get(0);
+        assertThat(count.fromStep(), is(Aggregation.Step.PARTIAL));
+        assertThat(count.toStep(), is(Aggregation.Step.FINAL));
+        assertThat(localMergeNode.outputTypes().get(0), is(DataType.LONG));
+        assertFalse(iterator.hasNext());
+    }
+
     @Test
     public void testGroupByWithOrderOnAggregate() throws Exception {
         Plan plan = plan("select count(*), name from users group by name order by count(*)");
@@ -26,6 +26,7 @@ import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.testing.TestingHelpers;
 import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.planner.RowGranularity;
 import io.crate.planner.symbol.Aggregation;
 import io.crate.planner.symbol.Reference;
 import io.crate.planner.symbol.Symbol;
@@ -90,4 +91,23 @@ public class GroupProjectionTest {
         assertThat(p2.keys.size(), is(1));
         assertThat(p2.values().size(), is(1));
     }
+
+    @Test
+    public void testStreamingGranularityAndStreamingFlag() throws Exception {
+        GroupProjection p = new GroupProjection(
+                ImmutableList.<Symbol>of(new Value(DataType.STRING)),
+                ImmutableList.<Aggregation>of());
+        p.requiredGranularity(RowGranularity.SHARD);
+        p.streaming(true);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        Projection.toStream(p, out);
+
+        BytesStreamInput in = new BytesStreamInput(out.bytes());
+        GroupProjection p2 = (GroupProjection) Projection.fromStream(in);
+
+        assertThat(p2.requiredGranularity(), is(RowGranularity.SHARD));
+        assertThat(p2.streaming(), is(true));
+        assertEquals(p, p2);
+    }
 }
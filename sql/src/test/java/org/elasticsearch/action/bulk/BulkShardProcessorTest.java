@@ -0,0 +1,201 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class BulkShardProcessorTest {
+
+    private static final ShardId SHARD_ID = new ShardId("users", 1);
+
+    private TransportShardBulkAction transportShardBulkAction;
+    private RecordingListener listener;
+
+    // requests and their listeners in the order they have been sent
+    private final List<BulkShardRequest> requests = Collections.synchronizedList(new ArrayList<BulkShardRequest>());
+    private final List<ActionListener<BulkShardResponse>> listeners =
+            Collections.synchronizedList(new ArrayList<ActionListener<BulkShardResponse>>());
+
+    private static class RecordingListener implements BulkShardProcessor.Listener {
+
+        private final List<BulkShardRequest> before = Collections.synchronizedList(new ArrayList<BulkShardRequest>());
+        private final List<BulkShardResponse> responses = Collections.synchronizedList(new ArrayList<BulkShardResponse>());
+        private final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        @Override
+        public void beforeBulk(BulkShardRequest request) {
+            before.add(request);
+        }
+
+        @Override
+        public void afterBulk(BulkShardRequest request, BulkShardResponse response) {
+            responses.add(response);
+        }
+
+        @Override
+        public void afterBulk(BulkShardRequest request, Throwable e) {
+            failures.add(e);
+        }
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void prepare() {
+        transportShardBulkAction = mock(TransportShardBulkAction.class);
+        listener = new RecordingListener();
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                requests.add((BulkShardRequest) invocation.getArguments()[0]);
+                listeners.add((ActionListener<BulkShardResponse>) invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(transportShardBulkAction).execute(any(BulkShardRequest.class), any(ActionListener.class));
+    }
+
+    private DeleteRequest deleteRequest(int id) {
+        return new DeleteRequest(SHARD_ID.getIndex(), "default", Integer.toString(id));
+    }
+
+    private void respond(int request) {
+        listeners.get(request).onResponse(mock(BulkShardResponse.class));
+    }
+
+    @Test
+    public void testBatchesByBulkSize() throws Exception {
+        BulkShardProcessor processor = new BulkShardProcessor(
+                transportShardBulkAction, SHARD_ID, 2, 10, null, listener);
+        for (int i = 0; i < 5; i++) {
+            processor.add(deleteRequest(i));
+        }
+        assertThat(requests.size(), is(2));
+
+        processor.close();
+        assertThat(requests.size(), is(3));
+        assertThat(requests.get(0).items().length, is(2));
+        assertThat(requests.get(1).items().length, is(2));
+        assertThat(requests.get(2).items().length, is(1));
+        assertThat(requests.get(2).items()[0].id(), is(4));
+        for (BulkShardRequest request : requests) {
+            assertThat(request.index(), is(SHARD_ID.getIndex()));
+            assertThat(request.shardId(), is(SHARD_ID.id()));
+        }
+        assertThat(listener.before.size(), is(3));
+    }
+
+    @Test
+    public void testCloseWithoutPendingItemsSendsNothing() throws Exception {
+        BulkShardProcessor processor = new BulkShardProcessor(
+                transportShardBulkAction, SHARD_ID, 2, 10, null, listener);
+        processor.add(deleteRequest(0));
+        processor.add(deleteRequest(1));
+        processor.close();
+        processor.close();
+        assertThat(requests.size(), is(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddAfterClose() throws Exception {
+        BulkShardProcessor processor = new BulkShardProcessor(
+                transportShardBulkAction, SHARD_ID, 2, 10, null, listener);
+        processor.close();
+        processor.add(deleteRequest(0));
+    }
+
+    @Test
+    public void testConcurrencyLimitsBulksInFlight() throws Exception {
+        final BulkShardProcessor processor = new BulkShardProcessor(
+                transportShardBulkAction, SHARD_ID, 1, 1, null, listener);
+        processor.add(deleteRequest(0));
+        assertThat(requests.size(), is(1));
+
+        final CountDownLatch added = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processor.add(deleteRequest(1));
+                added.countDown();
+            }
+        });
+        thread.start();
+
+        // blocks until the first bulk request has been answered
+        assertFalse(added.await(200, TimeUnit.MILLISECONDS));
+        assertThat(requests.size(), is(1));
+
+        respond(0);
+        assertTrue(added.await(5, TimeUnit.SECONDS));
+        assertThat(requests.size(), is(2));
+        assertThat(listener.responses.size(), is(1));
+        thread.join();
+    }
+
+    @Test
+    public void testFailureIsPassedToListenerAndReleasesPermit() throws Exception {
+        BulkShardProcessor processor = new BulkShardProcessor(
+                transportShardBulkAction, SHARD_ID, 1, 1, null, listener);
+        processor.add(deleteRequest(0));
+        listeners.get(0).onFailure(new IllegalStateException("shard unavailable"));
+
+        assertThat(listener.failures.size(), is(1));
+        assertThat(listener.failures.get(0).getMessage(), is("shard unavailable"));
+
+        // wouldn't return if the permit of the failed request had been kept
+        processor.add(deleteRequest(1));
+        assertThat(requests.size(), is(2));
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        BulkShardProcessor processor = new BulkShardProcessor(
+                transportShardBulkAction, SHARD_ID, 5, 10, 10.0, listener);
+        long start = System.nanoTime();
+        // the first bulk is sent right away, the two others have to wait half a second each
+        for (int i = 0; i < 15; i++) {
+            processor.add(deleteRequest(i));
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat(requests.size(), is(3));
+        assertTrue("bulk requests were sent faster than the rate limit: " + elapsedMillis + "ms",
+                elapsedMillis >= 800);
+    }
+}